@@ -25,6 +25,10 @@ import java.lang.annotation.Target;
 
 /**
  * Annotation to denote if a {@link Dataset} constructor or method only performs read operations.
+ *
+ * It can also annotate a service handler method that only reads from datasets. If the method runs in an implicit
+ * transaction, that transaction shares a snapshot with other read-only calls, which is refreshed periodically.
+ * Such a method may therefore not see the most recent changes, and it fails if it writes to a dataset.
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.CONSTRUCTOR, ElementType.METHOD})
@@ -63,6 +63,7 @@ import co.cask.cdap.internal.app.runtime.schedule.DistributedTimeSchedulerServic
 import co.cask.cdap.internal.app.runtime.schedule.ExecutorThreadPool;
 import co.cask.cdap.internal.app.runtime.schedule.LocalTimeSchedulerService;
 import co.cask.cdap.internal.app.runtime.schedule.TimeSchedulerService;
+import co.cask.cdap.internal.app.runtime.schedule.TimeWheelSchedulerService;
 import co.cask.cdap.internal.app.runtime.schedule.store.DatasetBasedTimeScheduleStore;
 import co.cask.cdap.internal.app.runtime.schedule.store.TriggerMisfireLogger;
 import co.cask.cdap.internal.app.runtime.workflow.BasicWorkflowStateWriter;
@@ -93,7 +94,10 @@ import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
 import com.google.inject.Module;
+import com.google.inject.Provider;
 import com.google.inject.Provides;
 import com.google.inject.Scopes;
 import com.google.inject.TypeLiteral;
@@ -138,7 +142,8 @@ public final class AppFabricServiceRuntimeModule extends RuntimeModule {
                              protected void configure() {
                                bind(RunRecordCorrectorService.class).to(NoopRunRecordCorrectorService.class)
                                  .in(Scopes.SINGLETON);
-                               bind(TimeSchedulerService.class).to(LocalTimeSchedulerService.class)
+                               bind(TimeSchedulerService.class)
+                                 .toProvider(new TimeSchedulerServiceProvider(LocalTimeSchedulerService.class))
                                  .in(Scopes.SINGLETON);
                                bind(MRJobInfoFetcher.class).to(LocalMRJobInfoFetcher.class);
                                bind(StorageProviderNamespaceAdmin.class).to(LocalStorageProviderNamespaceAdmin.class);
@@ -178,7 +183,8 @@ public final class AppFabricServiceRuntimeModule extends RuntimeModule {
                              protected void configure() {
                                bind(RunRecordCorrectorService.class).to(LocalRunRecordCorrectorService.class)
                                  .in(Scopes.SINGLETON);
-                               bind(TimeSchedulerService.class).to(LocalTimeSchedulerService.class)
+                               bind(TimeSchedulerService.class)
+                                 .toProvider(new TimeSchedulerServiceProvider(LocalTimeSchedulerService.class))
                                  .in(Scopes.SINGLETON);
                                bind(MRJobInfoFetcher.class).to(LocalMRJobInfoFetcher.class);
                                bind(StorageProviderNamespaceAdmin.class).to(LocalStorageProviderNamespaceAdmin.class);
@@ -229,7 +235,8 @@ public final class AppFabricServiceRuntimeModule extends RuntimeModule {
                              protected void configure() {
                                bind(RunRecordCorrectorService.class).to(ScheduledRunRecordCorrectorService.class)
                                  .in(Scopes.SINGLETON);
-                               bind(TimeSchedulerService.class).to(DistributedTimeSchedulerService.class)
+                               bind(TimeSchedulerService.class)
+                                 .toProvider(new TimeSchedulerServiceProvider(DistributedTimeSchedulerService.class))
                                  .in(Scopes.SINGLETON);
                                bind(MRJobInfoFetcher.class).to(DistributedMRJobInfoFetcher.class);
                                bind(StorageProviderNamespaceAdmin.class)
@@ -400,4 +407,38 @@ public final class AppFabricServiceRuntimeModule extends RuntimeModule {
       return scheduler;
     }
   }
+
+  /**
+   * Provides the {@link TimeSchedulerService} of the time schedule engine set in the configuration.
+   */
+  private static final class TimeSchedulerServiceProvider implements Provider<TimeSchedulerService> {
+
+    private final Class<? extends TimeSchedulerService> quartzServiceClass;
+    private Injector injector;
+    private CConfiguration cConf;
+
+    TimeSchedulerServiceProvider(Class<? extends TimeSchedulerService> quartzServiceClass) {
+      this.quartzServiceClass = quartzServiceClass;
+    }
+
+    @Inject
+    @SuppressWarnings("unused")
+    void setInjector(Injector injector, CConfiguration cConf) {
+      this.injector = injector;
+      this.cConf = cConf;
+    }
+
+    @Override
+    public TimeSchedulerService get() {
+      String engine = cConf.get(Constants.Scheduler.TIME_ENGINE, Constants.Scheduler.TIME_ENGINE_QUARTZ);
+      if (Constants.Scheduler.TIME_ENGINE_WHEEL.equals(engine)) {
+        return injector.getInstance(TimeWheelSchedulerService.class);
+      }
+      if (!Constants.Scheduler.TIME_ENGINE_QUARTZ.equals(engine)) {
+        throw new IllegalArgumentException(String.format("Unsupported time schedule engine '%s' set in '%s'",
+                                                         engine, Constants.Scheduler.TIME_ENGINE));
+      }
+      return injector.getInstance(quartzServiceClass);
+    }
+  }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -18,10 +18,12 @@ package co.cask.cdap.app.preview;
 import co.cask.cdap.api.preview.DataTracer;
 import co.cask.cdap.proto.id.ApplicationId;
 
+import java.io.Closeable;
+
 /**
  * DataTracerFactory will be injected in the Program context classes. This may not be directly used by Applications.
  */
-public interface DataTracerFactory {
+public interface DataTracerFactory extends Closeable {
 
   /**
    * Get the {@link DataTracer} used to put the debug data.
@@ -30,4 +32,21 @@ public interface DataTracerFactory {
    * @return the instance of the DataTracer
    */
   DataTracer getDataTracer(ApplicationId applicationId, String tracerName);
+
+  /**
+   * Makes all the data traced so far visible to the readers of the preview data. The default implementation does
+   * nothing, for factories whose tracers don't buffer any data.
+   */
+  default void flush() {
+    // no-op
+  }
+
+  /**
+   * Flushes the remaining traced data and releases the resources of this factory. The default implementation only
+   * calls {@link #flush()}.
+   */
+  @Override
+  default void close() {
+    flush();
+  }
 }
@@ -46,13 +46,15 @@ public class PreviewHttpServer extends AbstractIdleService {
   private static final Logger LOG = LoggerFactory.getLogger(AppFabricServer.class);
 
   private final DiscoveryService discoveryService;
+  private final PreviewManager previewManager;
   private final NettyHttpService httpService;
   private Cancellable cancelHttpService;
 
   @Inject
   PreviewHttpServer(CConfiguration cConf, DiscoveryService discoveryService, PreviewHttpHandler previewHttpHandler,
-                    MetricsCollectionService metricsCollectionService) {
+                    MetricsCollectionService metricsCollectionService, PreviewManager previewManager) {
     this.discoveryService = discoveryService;
+    this.previewManager = previewManager;
     this.httpService = new CommonNettyHttpServiceBuilder(cConf, Constants.Service.PREVIEW_HTTP)
       .setHost(cConf.get(Constants.Preview.ADDRESS))
       .setPort(cConf.getInt(Constants.Preview.PORT))
@@ -86,7 +88,11 @@ public class PreviewHttpServer extends AbstractIdleService {
     try {
       cancelHttpService.cancel();
     } finally {
-      httpService.stop();
+      try {
+        httpService.stop();
+      } finally {
+        previewManager.close();
+      }
     }
     LOG.info("Preview HTTP server stopped");
   }
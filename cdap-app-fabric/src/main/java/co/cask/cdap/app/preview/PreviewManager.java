@@ -21,10 +21,12 @@ import co.cask.cdap.proto.artifact.AppRequest;
 import co.cask.cdap.proto.id.ApplicationId;
 import co.cask.cdap.proto.id.NamespaceId;
 
+import java.io.Closeable;
+
 /**
  * Interface used for managing the preview runs.
  */
-public interface PreviewManager {
+public interface PreviewManager extends Closeable {
 
   /**
    * Start the preview of an application config provided as an input in a given namespace.
@@ -51,4 +53,11 @@ public interface PreviewManager {
    * @throws NotFoundException if the preview application is not found
    */
   LogReader getLogReader(ApplicationId preview) throws NotFoundException;
+
+  /**
+   * Stops all the preview runs and releases the resources held by this manager. Previews can still be started after
+   * it is closed, but without any preview runtime prepared ahead of time.
+   */
+  @Override
+  void close();
 }
@@ -137,7 +137,7 @@ public class PreviewRunnerModule extends PrivateModule {
     bind(PreviewStore.class).to(DefaultPreviewStore.class).in(Scopes.SINGLETON);
     bind(Scheduler.class).to(NoOpScheduler.class);
 
-    bind(DataTracerFactory.class).to(DefaultDataTracerFactory.class);
+    bind(DataTracerFactory.class).to(DefaultDataTracerFactory.class).in(Scopes.SINGLETON);
     expose(DataTracerFactory.class);
 
     bind(OwnerStore.class).to(DefaultOwnerStore.class);
@@ -19,6 +19,7 @@ import co.cask.cdap.api.app.ApplicationSpecification;
 import co.cask.cdap.api.common.RuntimeArguments;
 import co.cask.cdap.api.plugin.Plugin;
 import co.cask.cdap.app.guice.ClusterMode;
+import co.cask.cdap.app.program.DefaultProgram;
 import co.cask.cdap.app.program.Program;
 import co.cask.cdap.app.program.ProgramDescriptor;
 import co.cask.cdap.app.program.Programs;
@@ -28,7 +29,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.id.Id;
 import co.cask.cdap.common.io.Locations;
-import co.cask.cdap.common.lang.jar.BundleJarUtil;
+import co.cask.cdap.common.lang.jar.UnpackedJarCache;
 import co.cask.cdap.common.twill.TwillAppNames;
 import co.cask.cdap.common.utils.DirUtils;
 import co.cask.cdap.internal.app.runtime.AbstractListener;
@@ -104,17 +105,20 @@ public abstract class AbstractProgramRuntimeService extends AbstractIdleService
   private final Table<ProgramType, RunId, RuntimeInfo> runtimeInfos;
   private final ProgramRunnerFactory programRunnerFactory;
   private final ArtifactRepository noAuthArtifactRepository;
+  private final UnpackedJarCache unpackedJarCache;
   private ProgramRunnerFactory remoteProgramRunnerFactory;
   private TwillRunnerService remoteTwillRunnerService;
 
   protected AbstractProgramRuntimeService(CConfiguration cConf,
                                           ProgramRunnerFactory programRunnerFactory,
-                                          ArtifactRepository noAuthArtifactRepository) {
+                                          ArtifactRepository noAuthArtifactRepository,
+                                          UnpackedJarCache unpackedJarCache) {
     this.cConf = cConf;
     this.runtimeInfosLock = new ReentrantReadWriteLock();
     this.runtimeInfos = HashBasedTable.create();
     this.programRunnerFactory = programRunnerFactory;
     this.noAuthArtifactRepository = noAuthArtifactRepository;
+    this.unpackedJarCache = unpackedJarCache;
   }
 
   /**
@@ -186,6 +190,8 @@ public abstract class AbstractProgramRuntimeService extends AbstractIdleService
 
   /**
    * Creates a {@link Program} for the given {@link ProgramRunner} from the given program jar {@link Location}.
+   * Runs of the same program jar share the directory that the jar is unpacked to. The directory is released when
+   * the returned {@link Program} is closed.
    */
   protected Program createProgram(CConfiguration cConf, ProgramRunner programRunner,
                                   ProgramDescriptor programDescriptor,
@@ -193,20 +199,26 @@ public abstract class AbstractProgramRuntimeService extends AbstractIdleService
 
     final Location programJarLocation = artifactDetail.getDescriptor().getLocation();
 
-    // Take a snapshot of the JAR file to avoid program mutation
-    final File unpackedDir = new File(tempDir, "unpacked");
-    unpackedDir.mkdirs();
+    // The cache unpacks the jar again if it is modified, which avoids program mutation
+    UnpackedJarCache.Reference unpackedDir = unpackedJarCache.acquire(programJarLocation);
     try {
-      File programJar = Locations.linkOrCopy(programJarLocation, new File(tempDir, "program.jar"));
-      // Unpack the JAR file
-      BundleJarUtil.unJar(programJar, unpackedDir);
-    } catch (IOException ioe) {
-      throw ioe;
+      Program program = Programs.create(cConf, programRunner, programDescriptor,
+                                        programJarLocation, unpackedDir.getDirectory());
+      return new DefaultProgram(programDescriptor, programJarLocation, program.getClassLoader()) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            unpackedDir.close();
+          }
+        }
+      };
     } catch (Exception e) {
-      // should not happen
+      unpackedDir.close();
+      Throwables.propagateIfPossible(e, IOException.class);
       throw Throwables.propagate(e);
     }
-    return Programs.create(cConf, programRunner, programDescriptor, programJarLocation, unpackedDir);
   }
 
   private Runnable createCleanupTask(final Object... resources) {
@@ -448,7 +460,7 @@ public abstract class AbstractProgramRuntimeService extends AbstractIdleService
 
   @Override
   protected void shutDown() throws Exception {
-    // No-op
+    unpackedJarCache.close();
   }
 
   @VisibleForTesting
@@ -251,6 +251,13 @@ public interface Store {
    */
   Map<ProgramRunId, RunRecordMeta> getActiveRuns(Set<NamespaceId> namespaces, Predicate<RunRecordMeta> filter);
 
+  /**
+   * Fetches the active (i.e STARTING or RUNNING or SUSPENDED) run records across all namespaces.
+   * @param filter predicate to be passed to filter the records
+   * @return map of logged runs
+   */
+  Map<ProgramRunId, RunRecordMeta> getActiveRuns(Predicate<RunRecordMeta> filter);
+
   /**
    * Fetches the active (i.e STARTING or RUNNING or SUSPENDED) run records against a given ApplicationId.
    * @param applicationId the application id to match against
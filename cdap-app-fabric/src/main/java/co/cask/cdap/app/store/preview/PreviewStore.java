@@ -37,6 +37,17 @@ public interface PreviewStore {
    */
   void put(ApplicationId applicationId, String tracerName, String propertyName, Object value);
 
+  /**
+   * Add or replace sampled preview data in a single batch. Each value is stored at the given position of the
+   * property, replacing the value previously stored at the same position.
+   *
+   * @param applicationId the id of the program which is logging the preview data
+   * @param tracerName the name of the logger used to put the preview data
+   * @param propertyName the name of the property for which values are being added
+   * @param values the JSON encoded values keyed by their positions
+   */
+  void putSamples(ApplicationId applicationId, String tracerName, String propertyName, Map<Integer, byte[]> values);
+
   /**
    * Get the preview data associated with the given application id.
    *
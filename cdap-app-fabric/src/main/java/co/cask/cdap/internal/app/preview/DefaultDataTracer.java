@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -15,28 +15,45 @@
  */
 package co.cask.cdap.internal.app.preview;
 
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.preview.DataTracer;
 import co.cask.cdap.app.store.preview.PreviewStore;
+import co.cask.cdap.internal.io.SchemaTypeAdapter;
 import co.cask.cdap.proto.id.ApplicationId;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * Default implementation of {@link DataTracer}, the data are preserved using {@link PreviewStore}
+ * Default implementation of {@link DataTracer}. Values of each property are sampled into a {@link TraceReservoir}
+ * of bounded size and are preserved using {@link PreviewStore} when the tracer is flushed.
  */
 class DefaultDataTracer implements DataTracer {
 
+  private static final Gson GSON = new GsonBuilder()
+    .registerTypeAdapter(Schema.class, new SchemaTypeAdapter())
+    .create();
+
   private final String tracerName;
   private final ApplicationId applicationId;
-  private final PreviewStore previewStore;
+  private final int maxRecords;
+  private final ConcurrentMap<String, TraceReservoir> reservoirs;
 
-  DefaultDataTracer(ApplicationId applicationId, String tracerName, PreviewStore previewStore) {
+  DefaultDataTracer(ApplicationId applicationId, String tracerName, int maxRecords) {
     this.tracerName = tracerName;
     this.applicationId = applicationId;
-    this.previewStore = previewStore;
+    this.maxRecords = maxRecords;
+    this.reservoirs = new ConcurrentHashMap<>();
   }
 
   @Override
   public void info(String propertyName, Object propertyValue) {
-    previewStore.put(applicationId, tracerName, propertyName, propertyValue);
+    reservoirs.computeIfAbsent(propertyName, k -> new TraceReservoir(maxRecords))
+      .add(propertyValue, value -> Bytes.toBytes(GSON.toJson(value)));
   }
 
   @Override
@@ -48,4 +65,16 @@ class DefaultDataTracer implements DataTracer {
   public boolean isEnabled() {
     return true;
   }
+
+  /**
+   * Writes the values sampled since the last flush to the given {@link PreviewStore}.
+   */
+  void flush(PreviewStore previewStore) {
+    for (Map.Entry<String, TraceReservoir> entry : reservoirs.entrySet()) {
+      Map<Integer, byte[]> samples = entry.getValue().drain();
+      if (!samples.isEmpty()) {
+        previewStore.putSamples(applicationId, tracerName, entry.getKey(), samples);
+      }
+    }
+  }
 }
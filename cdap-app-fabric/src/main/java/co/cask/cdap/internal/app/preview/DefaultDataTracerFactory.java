@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -18,23 +18,102 @@ package co.cask.cdap.internal.app.preview;
 import co.cask.cdap.api.preview.DataTracer;
 import co.cask.cdap.app.preview.DataTracerFactory;
 import co.cask.cdap.app.store.preview.PreviewStore;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.proto.id.ApplicationId;
+import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Default implementation of {@link DataTracerFactory}
+ * Default implementation of {@link DataTracerFactory}. The same {@link DataTracer} is returned for the same
+ * application and tracer name, so that each property is sampled once across all the users of the tracer. The
+ * sampled values are written to the {@link PreviewStore} in batches periodically in the background,
+ * as well as on {@link #flush()}.
  */
 public class DefaultDataTracerFactory implements DataTracerFactory {
 
+  private static final Logger LOG = LoggerFactory.getLogger(DefaultDataTracerFactory.class);
+
   private final PreviewStore previewStore;
+  private final int maxRecords;
+  private final long flushIntervalMillis;
+  private final ConcurrentMap<ApplicationId, ConcurrentMap<String, DefaultDataTracer>> tracers;
+  private final Object flushLock;
+  private ScheduledExecutorService flushExecutor;
+  private boolean closed;
 
   @Inject
-  public DefaultDataTracerFactory(PreviewStore previewStore) {
+  public DefaultDataTracerFactory(CConfiguration cConf, PreviewStore previewStore) {
     this.previewStore = previewStore;
+    this.maxRecords = cConf.getInt(Constants.Preview.TRACER_MAX_RECORDS);
+    this.flushIntervalMillis = cConf.getLong(Constants.Preview.TRACER_FLUSH_INTERVAL_MILLIS);
+    this.tracers = new ConcurrentHashMap<>();
+    this.flushLock = new Object();
+    Preconditions.checkArgument(maxRecords > 0, "The value of '%s' must be positive",
+                                Constants.Preview.TRACER_MAX_RECORDS);
   }
 
   @Override
   public DataTracer getDataTracer(ApplicationId applicationId, String tracerName) {
-    return new DefaultDataTracer(applicationId, tracerName, previewStore);
+    startFlusher();
+    return tracers.computeIfAbsent(applicationId, k -> new ConcurrentHashMap<>())
+      .computeIfAbsent(tracerName, name -> new DefaultDataTracer(applicationId, name, maxRecords));
+  }
+
+  /**
+   * Writes all the values sampled since the last flush to the {@link PreviewStore}.
+   */
+  @Override
+  public void flush() {
+    // Flushes are serialized, so that an older sample never overwrites a newer one in the same slot
+    synchronized (flushLock) {
+      for (ConcurrentMap<String, DefaultDataTracer> appTracers : tracers.values()) {
+        for (DefaultDataTracer tracer : appTracers.values()) {
+          tracer.flush(previewStore);
+        }
+      }
+    }
+  }
+
+  /**
+   * Stops the background flushing and flushes all remaining values.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+      if (flushExecutor != null) {
+        flushExecutor.shutdownNow();
+      }
+    }
+    flush();
+  }
+
+  /**
+   * Starts the periodic flushing on first use of this factory.
+   */
+  private synchronized void startFlusher() {
+    if (closed || flushExecutor != null) {
+      return;
+    }
+    flushExecutor = Executors.newSingleThreadScheduledExecutor(
+      Threads.createDaemonThreadFactory("preview-tracer-flush"));
+    flushExecutor.scheduleWithFixedDelay(() -> {
+      try {
+        flush();
+      } catch (Exception e) {
+        // The values are dropped, but newer samples will still be written on subsequent flushes
+        LOG.warn("Failed to write preview data", e);
+      }
+    }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
   }
 }
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.internal.app.preview;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.api.security.store.SecureStore;
 import co.cask.cdap.app.guice.AppFabricServiceRuntimeModule;
 import co.cask.cdap.app.guice.ProgramRunnerRuntimeModule;
@@ -64,6 +65,7 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.Service;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
@@ -87,6 +89,7 @@ import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 /**
@@ -111,6 +114,8 @@ public class DefaultPreviewManager implements PreviewManager {
   private final AuthorizationEnforcer authorizationEnforcer;
   private final Cache<ApplicationId, Injector> appInjectors;
   private final Path previewDataDir;
+  private final PreviewRuntimePool<PreviewRuntime> runtimePool;
+  private final AtomicLong lastApplicationTime;
 
   @Inject
   DefaultPreviewManager(final CConfiguration cConf, Configuration hConf, DiscoveryService discoveryService,
@@ -118,7 +123,8 @@ public class DefaultPreviewManager implements PreviewManager {
                         PreferencesService preferencesService, SecureStore secureStore,
                         TransactionSystemClient transactionSystemClient, ArtifactRepository artifactRepository,
                         ArtifactStore artifactStore, AuthorizerInstantiator authorizerInstantiator,
-                        PrivilegesManager privilegesManager, AuthorizationEnforcer authorizationEnforcer) {
+                        PrivilegesManager privilegesManager, AuthorizationEnforcer authorizationEnforcer,
+                        MetricsCollectionService metricsCollectionService) {
     this.cConf = cConf;
     this.hConf = hConf;
     this.datasetFramework = datasetFramework;
@@ -132,6 +138,14 @@ public class DefaultPreviewManager implements PreviewManager {
     this.privilegesManager = privilegesManager;
     this.authorizationEnforcer = authorizationEnforcer;
     this.previewDataDir = Paths.get(cConf.get(Constants.CFG_LOCAL_DATA_DIR), "preview").toAbsolutePath();
+    this.lastApplicationTime = new AtomicLong();
+    this.runtimePool = new PreviewRuntimePool<>(
+      cConf.getInt(Constants.Preview.RUNTIME_POOL_SIZE), cConf.getLong(Constants.Preview.RUNTIME_POOL_WAIT_MILLIS),
+      this::createPreviewRuntime, this::stopPreviewRuntime,
+      metricsCollectionService.getContext(ImmutableMap.of(
+        Constants.Metrics.Tag.COMPONENT, Constants.Service.PREVIEW_HTTP,
+        Constants.Metrics.Tag.INSTANCE_ID, "0",
+        Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace())));
 
     this.appInjectors = CacheBuilder.newBuilder()
       .maximumSize(cConf.getInt(Constants.Preview.PREVIEW_CACHE_SIZE, 10))
@@ -156,14 +170,18 @@ public class DefaultPreviewManager implements PreviewManager {
       .build();
   }
 
+  @Override
+  public void close() {
+    // Stop the runtimes prepared ahead of time, followed by the ones of the preview runs
+    runtimePool.close();
+    appInjectors.invalidateAll();
+  }
+
   @Override
   public ApplicationId start(NamespaceId namespace, AppRequest<?> appRequest) throws Exception {
-    ApplicationId previewApp = namespace.app(PREFIX + System.currentTimeMillis());
-    Injector injector = createPreviewInjector(previewApp);
-    PreviewRunner runner = injector.getInstance(PreviewRunner.class);
-    if (runner instanceof Service) {
-      ((Service) runner).startAndWait();
-    }
+    PreviewRuntime runtime = runtimePool.acquire();
+    ApplicationId previewApp = namespace.app(runtime.applicationName);
+    PreviewRunner runner = runtime.injector.getInstance(PreviewRunner.class);
     try {
       runner.startPreview(new PreviewRequest<>(getProgramIdFromRequest(previewApp, appRequest), appRequest));
     } catch (Exception e) {
@@ -173,7 +191,7 @@ public class DefaultPreviewManager implements PreviewManager {
       removePreviewDir(previewApp);
       throw e;
     }
-    appInjectors.put(previewApp, injector);
+    appInjectors.put(previewApp, runtime.injector);
     return previewApp;
   }
 
@@ -197,13 +215,46 @@ public class DefaultPreviewManager implements PreviewManager {
     return injector.getInstance(LogReader.class);
   }
 
+  /**
+   * Creates the injector for a new preview application and starts its {@link PreviewRunner}.
+   */
+  private PreviewRuntime createPreviewRuntime() throws IOException {
+    // The name is unique even if multiple runtimes are created within the same millisecond
+    long now = System.currentTimeMillis();
+    String applicationName = PREFIX + lastApplicationTime.updateAndGet(last -> Math.max(last + 1, now));
+    Injector injector = createPreviewInjector(applicationName);
+    PreviewRunner runner = injector.getInstance(PreviewRunner.class);
+    if (runner instanceof Service) {
+      try {
+        ((Service) runner).startAndWait();
+      } catch (Exception e) {
+        stopQuietly((Service) runner);
+        deletePreviewDir(applicationName);
+        throw e;
+      }
+    }
+    return new PreviewRuntime(applicationName, injector);
+  }
+
+  private void stopPreviewRuntime(PreviewRuntime runtime) {
+    PreviewRunner runner = runtime.injector.getInstance(PreviewRunner.class);
+    if (runner instanceof Service) {
+      stopQuietly((Service) runner);
+    }
+    deletePreviewDir(runtime.applicationName);
+  }
+
   /**
    * Create injector for the given application id.
    */
   @VisibleForTesting
   Injector createPreviewInjector(ApplicationId applicationId) throws IOException {
+    return createPreviewInjector(applicationId.getApplication());
+  }
+
+  private Injector createPreviewInjector(String applicationName) throws IOException {
     CConfiguration previewCConf = CConfiguration.copy(cConf);
-    Path previewDir = Files.createDirectories(previewDataDir.resolve(applicationId.getApplication()));
+    Path previewDir = Files.createDirectories(previewDataDir.resolve(applicationName));
 
     previewCConf.set(Constants.CFG_LOCAL_DATA_DIR, previewDir.toString());
     previewCConf.setIfUnset(Constants.CFG_DATA_LEVELDB_DIR, previewDir.toString());
@@ -283,13 +334,30 @@ public class DefaultPreviewManager implements PreviewManager {
   }
 
   private void removePreviewDir(ApplicationId applicationId) {
-    Path previewDirPath = previewDataDir.resolve(applicationId.getApplication());
+    DataTracerFactoryProvider.removeDataTracerFactory(applicationId);
+    deletePreviewDir(applicationId.getApplication());
+  }
+
+  private void deletePreviewDir(String applicationName) {
+    Path previewDirPath = previewDataDir.resolve(applicationName);
 
     try {
-      DataTracerFactoryProvider.removeDataTracerFactory(applicationId);
       DirUtils.deleteDirectoryContents(previewDirPath.toFile());
     } catch (IOException e) {
       LOG.debug("Error deleting the preview directory {}", previewDirPath, e);
     }
   }
+
+  /**
+   * The injector of a preview application with its {@link PreviewRunner} started.
+   */
+  private static final class PreviewRuntime {
+    private final String applicationName;
+    private final Injector injector;
+
+    PreviewRuntime(String applicationName, Injector injector) {
+      this.applicationName = applicationName;
+      this.injector = injector;
+    }
+  }
 }
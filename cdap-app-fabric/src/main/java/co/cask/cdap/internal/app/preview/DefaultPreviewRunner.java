@@ -242,6 +242,8 @@ public class DefaultPreviewRunner extends AbstractIdleService implements Preview
 
   @Override
   public Map<String, List<JsonElement>> getData(String tracerName) {
+    // Make the values that are traced but not yet written by the background flush visible
+    dataTracerFactory.flush();
     return previewStore.get(programId.getParent(), tracerName);
   }
 
@@ -288,6 +290,7 @@ public class DefaultPreviewRunner extends AbstractIdleService implements Preview
   @Override
   protected void shutDown() throws Exception {
     shutDownUnrequiredServices();
+    dataTracerFactory.close();
     datasetService.stopAndWait();
     dsOpExecService.stopAndWait();
     if (messagingService instanceof Service) {
@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.preview;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.conf.Constants;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A pool of preview runtimes that are created and started ahead of time in the background, so that a preview
+ * request doesn't have to wait for the runtime services to start. The pool starts filling up on the first
+ * {@link #acquire()} call and is refilled every time a runtime is taken out of it.
+ *
+ * @param <T> type of the runtime
+ */
+@ThreadSafe
+final class PreviewRuntimePool<T> implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PreviewRuntimePool.class);
+
+  private final int size;
+  private final long waitMillis;
+  private final Callable<T> factory;
+  private final Consumer<T> disposer;
+  private final MetricsContext metricsContext;
+  private final BlockingQueue<T> available;
+  private final ExecutorService executor;
+  private int pending;
+  private boolean closed;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param size the number of runtimes to keep ready, a value of 0 disables pooling
+   * @param waitMillis the maximum time to wait for a runtime that is being prepared before creating a new one
+   * @param factory the factory for creating and starting runtimes
+   * @param disposer for releasing runtimes that are left in the pool when it is closed
+   * @param metricsContext the {@link MetricsContext} for emitting pool metrics
+   */
+  PreviewRuntimePool(int size, long waitMillis, Callable<T> factory,
+                     Consumer<T> disposer, MetricsContext metricsContext) {
+    this.size = size;
+    this.waitMillis = waitMillis;
+    this.factory = factory;
+    this.disposer = disposer;
+    this.metricsContext = metricsContext;
+    this.available = new LinkedBlockingQueue<>();
+    this.executor = Executors.newSingleThreadExecutor(Threads.createDaemonThreadFactory("preview-runtime-pool"));
+  }
+
+  /**
+   * Returns a started runtime. It is taken from the pool if one is ready or becomes ready within the wait time,
+   * otherwise a new one is created in the calling thread. Runtimes are not returned to the pool after use.
+   *
+   * @throws Exception if failed to create the runtime
+   */
+  T acquire() throws Exception {
+    if (size <= 0 || isClosed()) {
+      return factory.call();
+    }
+
+    long startTime = System.nanoTime();
+    replenish();
+    T runtime = available.poll(waitMillis, TimeUnit.MILLISECONDS);
+    metricsContext.gauge(Constants.Metrics.Preview.RUNTIME_WAIT_MILLIS,
+                         TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    metricsContext.gauge(Constants.Metrics.Preview.RUNTIMES_AVAILABLE, available.size());
+    // Prepare the replacement of the runtime just taken
+    replenish();
+    if (runtime != null) {
+      return runtime;
+    }
+    LOG.debug("No preview runtime is ready after waiting for {} ms. Creating a new one.", waitMillis);
+    return factory.call();
+  }
+
+  @Override
+  public void close() {
+    List<T> runtimes = new ArrayList<>();
+    synchronized (this) {
+      closed = true;
+      available.drainTo(runtimes);
+    }
+    executor.shutdownNow();
+    runtimes.forEach(disposer);
+  }
+
+  private synchronized boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Schedules the creation of runtimes until the pool is going to be full.
+   */
+  private synchronized void replenish() {
+    while (!closed && available.size() + pending < size) {
+      pending++;
+      executor.execute(this::createRuntime);
+    }
+  }
+
+  private void createRuntime() {
+    T runtime;
+    try {
+      runtime = factory.call();
+    } catch (Exception e) {
+      // Not retrying right away. It will be retried on the next acquire call.
+      LOG.warn("Failed to prepare preview runtime", e);
+      synchronized (this) {
+        pending--;
+      }
+      return;
+    }
+
+    synchronized (this) {
+      pending--;
+      if (!closed) {
+        available.add(runtime);
+        metricsContext.gauge(Constants.Metrics.Preview.RUNTIMES_AVAILABLE, available.size());
+        return;
+      }
+    }
+    disposer.accept(runtime);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.preview;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A fixed size uniform sample of the values traced for a property. The first {@code capacity} values are all
+ * kept. After that, each new value replaces a random slot with a probability of {@code capacity / count}, so that
+ * every value seen has the same chance of being in the sample (reservoir sampling).
+ *
+ * Values are kept in their encoded form and only until they are drained, hence the memory used is bounded by the
+ * capacity regardless of how many values are traced.
+ */
+@ThreadSafe
+final class TraceReservoir {
+
+  private final byte[][] slots;
+  private final BitSet dirty;
+  private long count;
+
+  TraceReservoir(int capacity) {
+    this.slots = new byte[capacity][];
+    this.dirty = new BitSet(capacity);
+  }
+
+  /**
+   * Offers a value to the sample.
+   *
+   * @param value the value traced
+   * @param encoder the function to encode the value, which is only called if the value is sampled
+   * @return {@code true} if the value is sampled
+   */
+  synchronized <T> boolean add(T value, Function<T, byte[]> encoder) {
+    count++;
+    int slot;
+    if (count <= slots.length) {
+      slot = (int) (count - 1);
+    } else {
+      long index = ThreadLocalRandom.current().nextLong(count);
+      if (index >= slots.length) {
+        return false;
+      }
+      slot = (int) index;
+    }
+    slots[slot] = encoder.apply(value);
+    dirty.set(slot);
+    return true;
+  }
+
+  /**
+   * Removes and returns the values sampled since the last call to this method.
+   *
+   * @return the encoded values keyed by the slot they occupy in the sample
+   */
+  synchronized Map<Integer, byte[]> drain() {
+    Map<Integer, byte[]> result = new LinkedHashMap<>();
+    for (int slot = dirty.nextSetBit(0); slot >= 0; slot = dirty.nextSetBit(slot + 1)) {
+      result.put(slot, slots[slot]);
+      slots[slot] = null;
+    }
+    dirty.clear();
+    return result;
+  }
+
+  /**
+   * Returns the number of values offered to this sample.
+   */
+  synchronized long getCount() {
+    return count;
+  }
+}
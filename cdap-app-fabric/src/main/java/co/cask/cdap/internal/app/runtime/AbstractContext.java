@@ -80,6 +80,7 @@ import co.cask.cdap.data2.dataset2.SingleThreadDatasetCache;
 import co.cask.cdap.data2.metadata.lineage.AccessType;
 import co.cask.cdap.data2.metadata.writer.MetadataOperation;
 import co.cask.cdap.data2.metadata.writer.MetadataPublisher;
+import co.cask.cdap.data2.transaction.ReadOnlyTransactionSystemClient;
 import co.cask.cdap.data2.transaction.RetryingShortTransactionSystemClient;
 import co.cask.cdap.data2.transaction.Transactions;
 import co.cask.cdap.internal.app.preview.DataTracerFactoryProvider;
@@ -526,11 +527,27 @@ public abstract class AbstractContext extends AbstractServiceDiscoverer
    * Execute in a transaction with optional retry on conflict.
    */
   public void execute(final TxRunnable runnable, boolean retryOnConflict) throws TransactionFailureException {
+    execute(retryOnConflict
+              ? Transactions.createTransactionalWithRetry(transactional, RetryStrategies.retryOnConflict(20, 100))
+              : transactional, runnable);
+  }
+
+  /**
+   * Execute in a read-only transaction, which is started and completed through the given
+   * {@link TransactionSystemClient}. The transaction fails if the runnable makes any changes.
+   *
+   * @param runnable the runnable to execute
+   * @param readOnlyTxClient the client for starting and completing the transaction, usually a
+   *                         {@link ReadOnlyTransactionSystemClient} that shares snapshot transactions among calls
+   */
+  public void executeReadOnly(final TxRunnable runnable,
+                              TransactionSystemClient readOnlyTxClient) throws TransactionFailureException {
+    execute(Transactions.createTransactional(datasetCache, readOnlyTxClient), runnable);
+  }
+
+  private void execute(Transactional txnl, final TxRunnable runnable) throws TransactionFailureException {
     ClassLoader oldClassLoader = ClassLoaders.setContextClassLoader(getClass().getClassLoader());
     try {
-      Transactional txnl = retryOnConflict
-        ? Transactions.createTransactionalWithRetry(transactional, RetryStrategies.retryOnConflict(20, 100))
-        : transactional;
       txnl.execute(new TxRunnable() {
         @Override
         public void run(DatasetContext context) throws Exception {
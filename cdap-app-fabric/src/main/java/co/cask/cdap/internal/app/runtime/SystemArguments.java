@@ -81,6 +81,9 @@ public final class SystemArguments {
   public static final String SERVICE_THREADS = "system.service.threads";
   public static final String SERVICE_THREAD_KEEPALIVE_SECS = "system.service.thread.keepalive.secs";
 
+  // Keys for workflow
+  public static final String WORKFLOW_MAX_PARALLELISM = "system." + Constants.AppFabric.WORKFLOW_MAX_PARALLELISM;
+
   // Keys for profiles
   public static final String PROFILE_NAME = "system.profile.name";
   public static final String PROFILE_PROVISIONER = "system.profile.provisioner";
@@ -157,6 +160,18 @@ public final class SystemArguments {
     return timeout;
   }
 
+  /**
+   * Returns the maximum number of actions that a workflow run executes concurrently, based on the given arguments
+   * or, as fallback, the CConfiguration.
+   *
+   * @return the value of the argument system.workflow.max.parallelism, or if that is not given in the arguments,
+   *         the value for workflow.max.parallelism from the CConfiguration. A value of 0 means no limit.
+   */
+  public static int getWorkflowMaxParallelism(Map<String, String> args, CConfiguration cConf) {
+    return getNonNegativeInt(args, WORKFLOW_MAX_PARALLELISM, "workflow max parallelism",
+                             cConf.getInt(Constants.AppFabric.WORKFLOW_MAX_PARALLELISM, 0));
+  }
+
   /**
    * Validates the custom transaction timeout, if specified in the given arguments.
    *
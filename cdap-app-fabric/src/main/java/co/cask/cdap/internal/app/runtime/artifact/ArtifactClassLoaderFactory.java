@@ -21,11 +21,9 @@ import co.cask.cdap.app.runtime.ProgramClassLoaderProvider;
 import co.cask.cdap.app.runtime.ProgramRunner;
 import co.cask.cdap.app.runtime.ProgramRunnerFactory;
 import co.cask.cdap.common.conf.CConfiguration;
-import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.lang.DirectoryClassLoader;
 import co.cask.cdap.common.lang.FilterClassLoader;
-import co.cask.cdap.common.lang.jar.BundleJarUtil;
-import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.common.lang.jar.UnpackedJarCache;
 import co.cask.cdap.internal.app.runtime.ProgramClassLoader;
 import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.security.impersonation.EntityImpersonator;
@@ -43,20 +41,22 @@ import java.util.concurrent.Callable;
 
 /**
  * Given an artifact, creates a {@link CloseableClassLoader} from it. Takes care of unpacking the artifact and
- * cleaning up the directory when the classloader is closed.
+ * releasing the unpacked directory when the classloader is closed. Classloaders of the same artifact share the
+ * unpacked directory, which is cleaned up after it is not used for a while.
  */
 final class ArtifactClassLoaderFactory {
   private static final Logger LOG = LoggerFactory.getLogger(ArtifactClassLoaderFactory.class);
 
   private final CConfiguration cConf;
   private final ProgramRunnerFactory programRunnerFactory;
-  private final File tmpDir;
+  private final UnpackedJarCache unpackedJarCache;
 
-  ArtifactClassLoaderFactory(CConfiguration cConf, ProgramRunnerFactory programRunnerFactory) {
+  ArtifactClassLoaderFactory(CConfiguration cConf, ProgramRunnerFactory programRunnerFactory,
+                             UnpackedJarCache unpackedJarCache) {
     this.cConf = cConf;
     this.programRunnerFactory = programRunnerFactory;
-    this.tmpDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
-                           cConf.get(Constants.AppFabric.TEMP_DIR)).getAbsoluteFile();
+    // Classloaders created for the same artifact share the unpacked directory
+    this.unpackedJarCache = unpackedJarCache;
   }
 
   /**
@@ -106,8 +106,8 @@ final class ArtifactClassLoaderFactory {
   }
 
   /**
-   * Unpack the given {@code artifactLocation} to a temporary directory and call
-   * {@link #createClassLoader(File)} to create the {@link ClassLoader}.
+   * Unpack the given {@code artifactLocation} to a directory shared with other classloaders of the same artifact
+   * and call {@link #createClassLoader(File)} to create the {@link ClassLoader}.
    *
    * @param artifactLocation the location of the artifact to create the classloader from
    * @return a closeable classloader based off the specified artifact; on closing the returned {@link ClassLoader},
@@ -118,27 +118,23 @@ final class ArtifactClassLoaderFactory {
   private CloseableClassLoader createClassLoader(final Location artifactLocation,
                                                  EntityImpersonator entityImpersonator) throws IOException {
     try {
-      final File unpackDir = entityImpersonator.impersonate(new Callable<File>() {
-        @Override
-        public File call() throws IOException {
-          return BundleJarUtil.unJar(artifactLocation, DirUtils.createTempDir(tmpDir));
-        }
-      });
-
-      final CloseableClassLoader classLoader = createClassLoader(unpackDir);
-      return new CloseableClassLoader(classLoader, new Closeable() {
-        @Override
-        public void close() throws IOException {
-          try {
-            Closeables.closeQuietly(classLoader);
-            if (unpackDir.exists()) {
-              DirUtils.deleteDirectoryContents(unpackDir);
+      final UnpackedJarCache.Reference unpackDir = acquireUnpackedDir(artifactLocation, entityImpersonator);
+      try {
+        final CloseableClassLoader classLoader = createClassLoader(unpackDir.getDirectory());
+        return new CloseableClassLoader(classLoader, new Closeable() {
+          @Override
+          public void close() {
+            try {
+              Closeables.closeQuietly(classLoader);
+            } finally {
+              unpackDir.close();
             }
-          } catch (IOException e) {
-            LOG.warn("Failed to delete directory {}", unpackDir, e);
           }
-        }
-      });
+        });
+      } catch (Exception e) {
+        unpackDir.close();
+        throw e;
+      }
     } catch (Exception e) {
       throw Throwables.propagate(e);
     }
@@ -166,29 +162,40 @@ final class ArtifactClassLoaderFactory {
     }
 
     try {
-      final File unpackDir = entityImpersonator.impersonate(new Callable<File>() {
-        @Override
-        public File call() throws IOException {
-          return BundleJarUtil.unJar(artifactLocation, DirUtils.createTempDir(tmpDir));
-        }
-      });
-
-      final CloseableClassLoader parentClassLoader = createClassLoader(artifactLocations, entityImpersonator);
-      return new CloseableClassLoader(new DirectoryClassLoader(unpackDir, parentClassLoader, "lib"), new Closeable() {
-        @Override
-        public void close() throws IOException {
-          try {
-            Closeables.closeQuietly(parentClassLoader);
-            if (unpackDir.exists()) {
-              DirUtils.deleteDirectoryContents(unpackDir);
+      final UnpackedJarCache.Reference unpackDir = acquireUnpackedDir(artifactLocation, entityImpersonator);
+      try {
+        final CloseableClassLoader parentClassLoader = createClassLoader(artifactLocations, entityImpersonator);
+        return new CloseableClassLoader(new DirectoryClassLoader(unpackDir.getDirectory(), parentClassLoader, "lib"),
+                                        new Closeable() {
+          @Override
+          public void close() {
+            try {
+              Closeables.closeQuietly(parentClassLoader);
+            } finally {
+              unpackDir.close();
             }
-          } catch (IOException e) {
-            LOG.warn("Failed to delete directory {}", unpackDir, e);
           }
-        }
-      });
+        });
+      } catch (Exception e) {
+        unpackDir.close();
+        throw e;
+      }
     } catch (Exception e) {
       throw Throwables.propagate(e);
     }
   }
+
+  /**
+   * Returns a reference to the directory that the given artifact is unpacked to. The artifact is unpacked as the
+   * impersonated user if there is no unpacked directory for it yet.
+   */
+  private UnpackedJarCache.Reference acquireUnpackedDir(final Location artifactLocation,
+                                                        EntityImpersonator entityImpersonator) throws Exception {
+    return entityImpersonator.impersonate(new Callable<UnpackedJarCache.Reference>() {
+      @Override
+      public UnpackedJarCache.Reference call() throws IOException {
+        return unpackedJarCache.acquire(artifactLocation);
+      }
+    });
+  }
 }
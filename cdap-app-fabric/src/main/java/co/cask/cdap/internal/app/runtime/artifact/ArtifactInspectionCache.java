@@ -0,0 +1,223 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.artifact;
+
+import co.cask.cdap.api.artifact.ArtifactClasses;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.utils.ProjectInfo;
+import co.cask.cdap.internal.io.SchemaTypeAdapter;
+import co.cask.cdap.security.impersonation.EntityImpersonator;
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nullable;
+
+/**
+ * A cache of {@link ArtifactClasses} inspected from artifact files, persisted on the local disk. Entries are keyed by
+ * the checksum of the artifact file, the ids and checksums of the parent artifacts it was inspected with and the
+ * CDAP version, so that re-adding an unchanged artifact, such as the system artifacts on every startup, doesn't
+ * need to inspect it again. The least recently used entries are removed when the number of entries exceeds the
+ * configured maximum.
+ */
+final class ArtifactInspectionCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ArtifactInspectionCache.class);
+  private static final Gson GSON = new GsonBuilder()
+    .registerTypeAdapter(Schema.class, new SchemaTypeAdapter())
+    .create();
+  private static final int MAX_PARENT_CHECKSUMS = 100;
+
+  @Nullable
+  private final Path cacheDir;
+  private final int maxEntries;
+  // Checksums of parent artifact files, keyed the same way as the UnpackedJarCache, so that a parent artifact is
+  // only read once for all the artifacts extending it
+  private final Cache<String, HashCode> parentChecksums;
+
+  ArtifactInspectionCache(CConfiguration cConf) {
+    String cacheDir = cConf.get(Constants.AppFabric.ARTIFACT_INSPECTION_CACHE_DIR);
+    this.cacheDir = Strings.isNullOrEmpty(cacheDir)
+      ? null
+      : Paths.get(cConf.get(Constants.CFG_LOCAL_DATA_DIR), cacheDir).toAbsolutePath();
+    this.maxEntries = cConf.getInt(Constants.AppFabric.ARTIFACT_INSPECTION_CACHE_MAX_ENTRIES);
+    this.parentChecksums = CacheBuilder.newBuilder().maximumSize(MAX_PARENT_CHECKSUMS).build();
+  }
+
+  /**
+   * Computes the key of the inspection result of the given artifact file.
+   *
+   * @param artifactFile the artifact file
+   * @param parents the resolved parent artifacts that the artifact is inspected with
+   * @param entityImpersonator the {@link EntityImpersonator} for reading the parent artifacts
+   * @return the cache key or {@code null} if the cache is disabled
+   * @throws IOException if failed to read the artifact file or the parent artifacts
+   */
+  @Nullable
+  String getKey(File artifactFile, List<ArtifactDescriptor> parents,
+                EntityImpersonator entityImpersonator) throws IOException {
+    if (cacheDir == null) {
+      return null;
+    }
+    Hasher hasher = Hashing.sha256().newHasher()
+      .putBytes(com.google.common.io.Files.hash(artifactFile, Hashing.sha256()).asBytes())
+      .putString(ProjectInfo.getVersion().toString(), Charsets.UTF_8);
+    // The parents are in the order of the parent class loaders, hence the key is deterministic
+    for (ArtifactDescriptor parent : parents) {
+      hasher.putString(parent.getArtifactId().toString(), Charsets.UTF_8);
+      hasher.putBytes(getChecksum(parent.getLocation(), entityImpersonator).asBytes());
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Returns the cached {@link ArtifactClasses} for the given key or {@code null} if there is none.
+   */
+  @Nullable
+  ArtifactClasses get(String key) {
+    if (cacheDir == null) {
+      return null;
+    }
+    Path file = cacheDir.resolve(key + ".json");
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    try (Reader reader = Files.newBufferedReader(file, Charsets.UTF_8)) {
+      ArtifactClasses artifactClasses = GSON.fromJson(reader, ArtifactClasses.class);
+      // Mark the entry as recently used, so that it is the last to be removed
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+      return artifactClasses;
+    } catch (IOException | JsonParseException e) {
+      LOG.warn("Failed to read cached artifact inspection result from {}. The entry will be removed.", file, e);
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException ex) {
+        LOG.warn("Failed to delete cached artifact inspection result {}", file, ex);
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Stores the given {@link ArtifactClasses} for the given key. Failure to store is only logged, since it only
+   * means the artifact will be inspected again.
+   */
+  void put(String key, ArtifactClasses artifactClasses) {
+    if (cacheDir == null) {
+      return;
+    }
+    Path file = cacheDir.resolve(key + ".json");
+    try {
+      Files.createDirectories(cacheDir);
+      // Write to a temp file and move it, so that readers never see a partially written entry
+      Path tmpFile = Files.createTempFile(cacheDir, key, ".tmp");
+      try {
+        try (Writer writer = Files.newBufferedWriter(tmpFile, Charsets.UTF_8)) {
+          GSON.toJson(artifactClasses, writer);
+        }
+        Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(tmpFile);
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to cache artifact inspection result in {}", file, e);
+      return;
+    }
+    evict();
+  }
+
+  /**
+   * Removes the least recently used entries if the number of entries exceeds the maximum.
+   */
+  private void evict() {
+    // Read the modification times once, so that the sort order is stable even if entries are used concurrently
+    Map<Path, Long> lastModifiedTimes = new HashMap<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir, "*.json")) {
+      stream.forEach(file -> lastModifiedTimes.put(file, getLastModified(file)));
+    } catch (IOException e) {
+      LOG.warn("Failed to list the artifact inspection cache directory {}", cacheDir, e);
+      return;
+    }
+    if (lastModifiedTimes.size() <= maxEntries) {
+      return;
+    }
+
+    List<Path> files = new ArrayList<>(lastModifiedTimes.keySet());
+    files.sort(Comparator.comparing(lastModifiedTimes::get));
+    for (Path file : files.subList(0, files.size() - maxEntries)) {
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        LOG.warn("Failed to delete cached artifact inspection result {}", file, e);
+      }
+    }
+  }
+
+  private HashCode getChecksum(Location location, EntityImpersonator entityImpersonator) throws IOException {
+    try {
+      return entityImpersonator.impersonate(() -> {
+        String key = location.toURI() + "@" + location.lastModified() + ":" + location.length();
+        return parentChecksums.get(key, () -> ByteStreams.hash(Locations.newInputSupplier(location),
+                                                               Hashing.sha256()));
+      });
+    } catch (Exception e) {
+      Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+      Throwables.propagateIfPossible(cause, IOException.class);
+      throw new IOException("Failed to compute the checksum of " + location, cause);
+    }
+  }
+
+  private static long getLastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      // The file may have been removed concurrently, which makes it the first to remove
+      return 0L;
+    }
+  }
+}
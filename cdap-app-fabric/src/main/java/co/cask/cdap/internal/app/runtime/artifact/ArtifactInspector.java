@@ -43,14 +43,9 @@ import co.cask.cdap.common.lang.jar.BundleJarUtil;
 import co.cask.cdap.common.utils.DirUtils;
 import co.cask.cdap.internal.app.runtime.plugin.PluginInstantiator;
 import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import co.cask.cdap.security.impersonation.EntityImpersonator;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Function;
-import com.google.common.base.Predicate;
 import com.google.common.base.Strings;
-import com.google.common.base.Throwables;
-import com.google.common.collect.AbstractIterator;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import com.google.common.primitives.Primitives;
 import com.google.common.reflect.TypeToken;
@@ -71,19 +66,16 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Enumeration;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.stream.Collectors;
@@ -99,11 +91,46 @@ final class ArtifactInspector {
   private final CConfiguration cConf;
   private final ArtifactClassLoaderFactory artifactClassLoaderFactory;
   private final ReflectionSchemaGenerator schemaGenerator;
+  private final ArtifactInspectionCache inspectionCache;
 
   ArtifactInspector(CConfiguration cConf, ArtifactClassLoaderFactory artifactClassLoaderFactory) {
     this.cConf = cConf;
     this.artifactClassLoaderFactory = artifactClassLoaderFactory;
     this.schemaGenerator = new ReflectionSchemaGenerator(false);
+    this.inspectionCache = new ArtifactInspectionCache(cConf);
+  }
+
+  /**
+   * Inspect the given artifact to determine the classes contained in the artifact. If the same artifact file was
+   * inspected with the same parent artifacts before, the cached result is returned without inspecting the artifact.
+   *
+   * @param artifactId the id of the artifact to inspect
+   * @param artifactFile the artifact file
+   * @param parents the resolved parent artifacts of the artifact
+   * @param entityImpersonator the {@link EntityImpersonator} for reading the parent artifacts
+   * @param parentClassLoader the parent classloader to use when inspecting plugins contained in the artifact.
+   *                          It must be created from the given parent artifacts.
+   * @return metadata about the classes contained in the artifact
+   * @throws IOException if there was an exception opening the jar file
+   * @throws InvalidArtifactException if the artifact is invalid. For example, if the application main class is not
+   *                                  actually an Application.
+   */
+  ArtifactClasses inspectArtifact(Id.Artifact artifactId, File artifactFile, List<ArtifactDescriptor> parents,
+                                  EntityImpersonator entityImpersonator,
+                                  @Nullable ClassLoader parentClassLoader) throws IOException,
+                                                                                  InvalidArtifactException {
+    String cacheKey = inspectionCache.getKey(artifactFile, parents, entityImpersonator);
+    ArtifactClasses artifactClasses = cacheKey == null ? null : inspectionCache.get(cacheKey);
+    if (artifactClasses != null) {
+      LOG.debug("Using cached inspection result for artifact {}", artifactId);
+      return artifactClasses;
+    }
+
+    artifactClasses = inspectArtifact(artifactId, artifactFile, parentClassLoader);
+    if (cacheKey != null) {
+      inspectionCache.put(cacheKey, artifactClasses);
+    }
+    return artifactClasses;
   }
 
   /**
@@ -228,15 +255,23 @@ final class ArtifactInspector {
                                                  ArtifactId artifactId, PluginInstantiator pluginInstantiator)
     throws IOException, InvalidArtifactException {
 
-    // See if there are export packages. Plugins should be in those packages
-    Set<String> exportPackages = getExportPackages(artifactFile);
-    if (exportPackages.isEmpty()) {
+    List<String> pluginClassNames;
+    try (JarFile jarFile = new JarFile(artifactFile)) {
+      // See if there are export packages. Plugins should be in those packages
+      Set<String> exportPackages = ManifestFields.getExportPackages(jarFile.getManifest());
+      if (exportPackages.isEmpty()) {
+        return builder;
+      }
+      pluginClassNames = getPluginClassNames(jarFile, exportPackages);
+    }
+    if (pluginClassNames.isEmpty()) {
       return builder;
     }
 
     try {
       ClassLoader pluginClassLoader = pluginInstantiator.getArtifactClassLoader(artifactId);
-      for (Class<?> cls : getPluginClasses(exportPackages, pluginClassLoader)) {
+      for (String pluginClassName : pluginClassNames) {
+        Class<?> cls = pluginClassLoader.loadClass(pluginClassName);
         Plugin pluginAnnotation = cls.getAnnotation(Plugin.class);
         if (pluginAnnotation == null) {
           continue;
@@ -265,86 +300,20 @@ final class ArtifactInspector {
   }
 
   /**
-   * Returns the set of package names that are declared in "Export-Package" in the jar file Manifest.
-   */
-  private Set<String> getExportPackages(File file) throws IOException {
-    try (JarFile jarFile = new JarFile(file)) {
-      return ManifestFields.getExportPackages(jarFile.getManifest());
-    }
-  }
-
-  /**
-   * Returns an {@link Iterable} of class name that are under the given list of package names that are loadable
-   * through the plugin ClassLoader.
+   * Returns the names of the classes annotated with {@link Plugin} that are directly under the given packages in the
+   * given jar file. Only classes in the top level jar file are inspected for plugins. The jar manifest may have
+   * packages in Export-Package that are loadable from the bundled jar files, which is for classloading purpose.
+   * Those classes won't be inspected for plugin classes.
    */
-  private Iterable<Class<?>> getPluginClasses(final Iterable<String> packages, final ClassLoader pluginClassLoader) {
-    return new Iterable<Class<?>>() {
-      @Override
-      public Iterator<Class<?>> iterator() {
-        final Iterator<String> packageIterator = packages.iterator();
-
-        return new AbstractIterator<Class<?>>() {
-          Iterator<String> classIterator = ImmutableList.<String>of().iterator();
-          String currentPackage;
-
-          @Override
-          protected Class<?> computeNext() {
-            while (!classIterator.hasNext()) {
-              if (!packageIterator.hasNext()) {
-                return endOfData();
-              }
-              currentPackage = packageIterator.next();
-
-              try {
-                // Gets all package resource URL for the given package
-                String resourceName = currentPackage.replace('.', File.separatorChar);
-                Enumeration<URL> resources = pluginClassLoader.getResources(resourceName);
-                List<Iterator<String>> iterators = new ArrayList<>();
-                // Go though all available resources and collect all class names that are plugin classes.
-                while (resources.hasMoreElements()) {
-                  URL packageResource = resources.nextElement();
-
-                  // Only inspect classes in the top level jar file for Plugins.
-                  // The jar manifest may have packages in Export-Package that are loadable from the bundled jar files,
-                  // which is for classloading purpose. Those classes won't be inspected for plugin classes.
-                  // There should be exactly one of resource that match, because it maps to a directory on the FS.
-                  if (packageResource.getProtocol().equals("file")) {
-                    Iterator<String> classFiles = DirUtils.list(new File(packageResource.toURI()), "class").iterator();
-
-                    // Transform class file into class name and filter by @Plugin class only
-                    iterators.add(Iterators.filter(
-                      Iterators.transform(classFiles, new Function<String, String>() {
-                        @Override
-                        public String apply(String input) {
-                          return getClassName(currentPackage, input);
-                        }
-                      }), new Predicate<String>() {
-                        @Override
-                        public boolean apply(String className) {
-                          return isPlugin(className, pluginClassLoader);
-                        }
-                      }));
-                  }
-                }
-                if (!iterators.isEmpty()) {
-                  classIterator = Iterators.concat(iterators.iterator());
-                }
-              } catch (Exception e) {
-                // Cannot happen
-                throw Throwables.propagate(e);
-              }
-            }
-
-            try {
-              return pluginClassLoader.loadClass(classIterator.next());
-            } catch (ClassNotFoundException | NoClassDefFoundError e) {
-              // Cannot happen, since the class name is from the list of the class files under the classloader.
-              throw Throwables.propagate(e);
-            }
-          }
-        };
-      }
-    };
+  private List<String> getPluginClassNames(JarFile jarFile, Set<String> packages) {
+    // The class files are read directly from the jar and inspected without defining the classes. They are read
+    // sequentially, since reads from the same JarFile are serialized.
+    return jarFile.stream()
+      .filter(entry -> !entry.isDirectory() && entry.getName().endsWith(".class"))
+      .filter(entry -> packages.contains(getPackageName(entry.getName())))
+      .filter(entry -> isPlugin(jarFile, entry))
+      .map(entry -> getClassName(entry.getName()))
+      .collect(Collectors.toList());
   }
 
   /**
@@ -422,10 +391,18 @@ final class ArtifactInspector {
   }
 
   /**
-   * Constructs the fully qualified class name based on the package name and the class file name.
+   * Returns the package name of the given class file entry name, e.g. {@code a.b} for {@code a/b/C.class}.
+   */
+  private String getPackageName(String classFileName) {
+    int idx = classFileName.lastIndexOf('/');
+    return idx < 0 ? "" : classFileName.substring(0, idx).replace('/', '.');
+  }
+
+  /**
+   * Returns the fully qualified class name of the given class file entry name.
    */
-  private String getClassName(String packageName, String classFileName) {
-    return packageName + "." + classFileName.substring(0, classFileName.length() - ".class".length());
+  private String getClassName(String classFileName) {
+    return classFileName.substring(0, classFileName.length() - ".class".length()).replace('/', '.');
   }
 
   /**
@@ -518,16 +495,12 @@ final class ArtifactInspector {
   /**
    * Detects if a class is annotated with {@link Plugin} without loading the class.
    *
-   * @param className name of the class
-   * @param classLoader ClassLoader for loading the class file of the given class
+   * @param jarFile the jar file containing the class file
+   * @param classEntry the jar entry of the class file
    * @return true if the given class is annotated with {@link Plugin}
    */
-  private boolean isPlugin(String className, ClassLoader classLoader) {
-    try (InputStream is = classLoader.getResourceAsStream(className.replace('.', '/') + ".class")) {
-      if (is == null) {
-        return false;
-      }
-
+  private boolean isPlugin(JarFile jarFile, JarEntry classEntry) {
+    try (InputStream is = jarFile.getInputStream(classEntry)) {
       // Use ASM to inspect the class bytecode to see if it is annotated with @Plugin
       final boolean[] isPlugin = new boolean[1];
       ClassReader cr = new ClassReader(is);
@@ -544,7 +517,7 @@ final class ArtifactInspector {
       return isPlugin[0];
     } catch (IOException e) {
       // If failed to open the class file, then it cannot be a plugin
-      LOG.warn("Failed to open class file for {}", className, e);
+      LOG.warn("Failed to open class file {}", classEntry.getName(), e);
       return false;
     }
   }
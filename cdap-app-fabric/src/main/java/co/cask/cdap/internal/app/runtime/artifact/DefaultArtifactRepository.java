@@ -1,5 +1,5 @@
 /*
- * Copyright © 2017-2018 Cask Data, Inc.
+ * Copyright © 2017-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -35,6 +35,7 @@ import co.cask.cdap.common.conf.ArtifactConfigReader;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.id.Id;
+import co.cask.cdap.common.lang.jar.UnpackedJarCache;
 import co.cask.cdap.common.utils.DirUtils;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.metadata.system.ArtifactSystemMetadataWriter;
@@ -101,9 +102,9 @@ public class DefaultArtifactRepository implements ArtifactRepository {
   public DefaultArtifactRepository(CConfiguration cConf, ArtifactStore artifactStore,
                                    MetadataPublisher metadataPublisher,
                                    ProgramRunnerFactory programRunnerFactory,
-                                   Impersonator impersonator) {
+                                   Impersonator impersonator, UnpackedJarCache unpackedJarCache) {
     this.artifactStore = artifactStore;
-    this.artifactClassLoaderFactory = new ArtifactClassLoaderFactory(cConf, programRunnerFactory);
+    this.artifactClassLoaderFactory = new ArtifactClassLoaderFactory(cConf, programRunnerFactory, unpackedJarCache);
     this.artifactInspector = new ArtifactInspector(cConf, artifactClassLoaderFactory);
     this.systemArtifactDirs = new HashSet<>();
     String systemArtifactsDir = cConf.get(Constants.AppFabric.SYSTEM_ARTIFACTS_DIR);
@@ -264,12 +265,16 @@ public class DefaultArtifactRepository implements ArtifactRepository {
     CloseableClassLoader parentClassLoader = null;
     EntityImpersonator entityImpersonator = new EntityImpersonator(artifactId.toEntityId(),
                                                                    impersonator);
+    List<ArtifactDescriptor> parents = Collections.emptyList();
     if (!parentArtifacts.isEmpty()) {
       validateParentSet(artifactId, parentArtifacts);
-      parentClassLoader = createParentClassLoader(artifactId, parentArtifacts, entityImpersonator);
+      parents = resolveParents(artifactId, parentArtifacts);
+      parentClassLoader = artifactClassLoaderFactory.createClassLoader(
+        parents.stream().map(ArtifactDescriptor::getLocation).iterator(), entityImpersonator);
     }
     try {
-      ArtifactClasses artifactClasses = inspectArtifact(artifactId, artifactFile, additionalPlugins, parentClassLoader);
+      ArtifactClasses artifactClasses = inspectArtifact(artifactId, artifactFile, additionalPlugins,
+                                                        parents, entityImpersonator, parentClassLoader);
       ArtifactMeta meta = new ArtifactMeta(artifactClasses, parentArtifacts, properties);
       ArtifactDetail artifactDetail = artifactStore.write(artifactId, meta, artifactFile, entityImpersonator);
       ArtifactDescriptor descriptor = artifactDetail.getDescriptor();
@@ -503,9 +508,12 @@ public class DefaultArtifactRepository implements ArtifactRepository {
 
   private ArtifactClasses inspectArtifact(Id.Artifact artifactId, File artifactFile,
                                           @Nullable Set<PluginClass> additionalPlugins,
+                                          List<ArtifactDescriptor> parents,
+                                          EntityImpersonator entityImpersonator,
                                           @Nullable ClassLoader parentClassLoader) throws IOException,
     InvalidArtifactException {
-    ArtifactClasses artifactClasses = artifactInspector.inspectArtifact(artifactId, artifactFile, parentClassLoader);
+    ArtifactClasses artifactClasses = artifactInspector.inspectArtifact(artifactId, artifactFile, parents,
+                                                                        entityImpersonator, parentClassLoader);
     validatePluginSet(artifactClasses.getPlugins());
     if (additionalPlugins == null || additionalPlugins.isEmpty()) {
       return artifactClasses;
@@ -547,17 +555,17 @@ public class DefaultArtifactRepository implements ArtifactRepository {
   }
 
   /**
-   * Create a parent classloader using an artifact from one of the artifacts in the specified parents.
+   * Resolves the artifacts to create the parent classloader from, using one of the artifacts in the specified parents
+   * and the parent of that artifact, if any.
    *
-   * @param artifactId the id of the artifact to create the parent classloader for
-   * @param parentArtifacts the ranges of parents to create the classloader from
-   * @return a classloader based off a parent artifact
+   * @param artifactId the id of the artifact to resolve the parents for
+   * @param parentArtifacts the ranges of parents to resolve
+   * @return the descriptors of the parent artifact, followed by its own parent if it has one
    * @throws ArtifactRangeNotFoundException if none of the parents could be found
    * @throws InvalidArtifactException if one of the parents also has parents
    * @throws IOException if there was some error reading from the store
    */
-  private CloseableClassLoader createParentClassLoader(Id.Artifact artifactId, Set<ArtifactRange> parentArtifacts,
-                                                       EntityImpersonator entityImpersonator)
+  private List<ArtifactDescriptor> resolveParents(Id.Artifact artifactId, Set<ArtifactRange> parentArtifacts)
     throws ArtifactRangeNotFoundException, IOException, InvalidArtifactException {
 
     List<ArtifactDetail> parents = new ArrayList<>();
@@ -570,8 +578,8 @@ public class DefaultArtifactRepository implements ArtifactRepository {
                                                              artifactId, Joiner.on('/').join(parentArtifacts)));
     }
 
-    Location parentLocation = null;
-    Location grandparentLocation = null;
+    ArtifactDescriptor parentDescriptor = null;
+    ArtifactDescriptor grandparentDescriptor = null;
 
     // check if any of the parents also have grandparents, which is not allowed. This is to simplify things
     // so that we don't have to chain a bunch of classloaders, and also to keep it simple for users to avoid
@@ -601,24 +609,24 @@ public class DefaultArtifactRepository implements ArtifactRepository {
           }
 
           // assumes any grandparent will do
-          if (parentLocation == null && grandparentLocation == null) {
-            grandparentLocation = grandparent.getDescriptor().getLocation();
+          if (parentDescriptor == null && grandparentDescriptor == null) {
+            grandparentDescriptor = grandparent.getDescriptor();
           }
         }
       }
 
       // assumes any parent will do
-      if (parentLocation == null) {
-        parentLocation = parent.getDescriptor().getLocation();
+      if (parentDescriptor == null) {
+        parentDescriptor = parent.getDescriptor();
       }
     }
 
-    List<Location> parentLocations = new ArrayList<>();
-    parentLocations.add(parentLocation);
-    if (grandparentLocation != null) {
-      parentLocations.add(grandparentLocation);
+    List<ArtifactDescriptor> parentDescriptors = new ArrayList<>();
+    parentDescriptors.add(parentDescriptor);
+    if (grandparentDescriptor != null) {
+      parentDescriptors.add(grandparentDescriptor);
     }
-    return artifactClassLoaderFactory.createClassLoader(parentLocations.iterator(), entityImpersonator);
+    return parentDescriptors;
   }
 
   private void addAppSummaries(List<ApplicationClassSummary> summaries, NamespaceId namespace) {
@@ -25,6 +25,7 @@ import co.cask.cdap.app.store.Store;
 import co.cask.cdap.common.app.RunIds;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.lang.jar.UnpackedJarCache;
 import co.cask.cdap.common.twill.TwillAppNames;
 import co.cask.cdap.internal.app.runtime.AbstractListener;
 import co.cask.cdap.internal.app.runtime.artifact.ArtifactDetail;
@@ -87,8 +88,9 @@ public final class DistributedProgramRuntimeService extends AbstractProgramRunti
                                    // privileges needed for artifacts
                                    @Named(AppFabricServiceRuntimeModule.NOAUTH_ARTIFACT_REPO)
                                      ArtifactRepository noAuthArtifactRepository,
-                                   Impersonator impersonator, ProgramStateWriter programStateWriter) {
-    super(cConf, programRunnerFactory, noAuthArtifactRepository);
+                                   Impersonator impersonator, ProgramStateWriter programStateWriter,
+                                   UnpackedJarCache unpackedJarCache) {
+    super(cConf, programRunnerFactory, noAuthArtifactRepository, unpackedJarCache);
     this.twillRunner = twillRunner;
     this.store = store;
     this.impersonator = impersonator;
@@ -100,7 +100,7 @@ public abstract class AbstractTimeSchedulerService extends AbstractIdleService i
     }
   }
 
-  private boolean containsTimeTrigger(ProgramSchedule schedule) {
+  static boolean containsTimeTrigger(ProgramSchedule schedule) {
     // A composite trigger may contain a TimeTrigger
     return schedule.getTrigger() instanceof TimeTrigger
       || schedule.getTrigger() instanceof AbstractSatisfiableCompositeTrigger;
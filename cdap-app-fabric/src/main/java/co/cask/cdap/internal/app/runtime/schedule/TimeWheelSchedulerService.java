@@ -0,0 +1,534 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.schedule;
+
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.api.schedule.SchedulableProgramType;
+import co.cask.cdap.common.AlreadyExistsException;
+import co.cask.cdap.common.NotFoundException;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.service.Retries;
+import co.cask.cdap.common.service.RetryStrategies;
+import co.cask.cdap.common.utils.TimeProvider;
+import co.cask.cdap.internal.app.runtime.ProgramOptionConstants;
+import co.cask.cdap.internal.app.runtime.schedule.store.Schedulers;
+import co.cask.cdap.internal.app.runtime.schedule.trigger.AbstractSatisfiableCompositeTrigger;
+import co.cask.cdap.internal.app.runtime.schedule.trigger.SatisfiableTrigger;
+import co.cask.cdap.internal.app.runtime.schedule.trigger.TimeTrigger;
+import co.cask.cdap.messaging.MessagingService;
+import co.cask.cdap.proto.Notification;
+import co.cask.cdap.proto.ProtoTrigger;
+import co.cask.cdap.proto.ScheduledRuntime;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.ProgramId;
+import co.cask.cdap.proto.id.ScheduleId;
+import co.cask.cdap.spi.data.StructuredRow;
+import co.cask.cdap.spi.data.StructuredTable;
+import co.cask.cdap.spi.data.table.field.Field;
+import co.cask.cdap.spi.data.table.field.Fields;
+import co.cask.cdap.spi.data.table.field.Range;
+import co.cask.cdap.spi.data.transaction.TransactionRunner;
+import co.cask.cdap.spi.data.transaction.TransactionRunners;
+import co.cask.cdap.store.StoreDefinition;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.inject.Inject;
+import org.apache.twill.common.Threads;
+import org.quartz.CronExpression;
+import org.quartz.TriggerKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link TimeSchedulerService} that fires time schedules from an in-memory {@link TimingWheel} instead of
+ * the Quartz scheduler. The triggers of all time schedules are loaded from the schedule store when the service
+ * starts, and the next fire time of a trigger is only computed from its cron expression when the previous one
+ * fires. Notifications of the triggers that fire in the same tick are published to the time event topic
+ * in batches, and the last fire time of every trigger is checkpointed in the
+ * {@link StoreDefinition.TimeScheduleStore#FIRE_CHECKPOINTS} table, so that fires missed during a restart
+ * are recovered within the misfire threshold.
+ */
+public final class TimeWheelSchedulerService extends AbstractIdleService implements TimeSchedulerService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TimeWheelSchedulerService.class);
+
+  private final TransactionRunner transactionRunner;
+  private final TimeProvider timeProvider;
+  private final ScheduleTaskPublisher taskPublisher;
+  private final long tickMillis;
+  private final int wheelSize;
+  private final int publishBatchSize;
+  private final long misfireThresholdMillis;
+  // trigger name to trigger, guarded by this
+  private final Map<String, WheelTrigger> triggers;
+  // program id in the format of AbstractTimeSchedulerService#programIdFor to the triggers of the program,
+  // guarded by this
+  private final Map<String, Map<String, WheelTrigger>> programTriggers;
+  // fires that were already due when they were scheduled, guarded by this
+  private final List<Fire> overdueFires;
+  private TimingWheel<Fire> wheel;
+  private ScheduledExecutorService executor;
+
+  @Inject
+  TimeWheelSchedulerService(CConfiguration cConf, MessagingService messagingService,
+                            TransactionRunner transactionRunner) {
+    this(cConf, messagingService, transactionRunner, TimeProvider.SYSTEM_TIME);
+  }
+
+  @VisibleForTesting
+  TimeWheelSchedulerService(CConfiguration cConf, MessagingService messagingService,
+                            TransactionRunner transactionRunner, TimeProvider timeProvider) {
+    this.transactionRunner = transactionRunner;
+    this.timeProvider = timeProvider;
+    this.taskPublisher = new ScheduleTaskPublisher(messagingService,
+                                                   NamespaceId.SYSTEM.topic(
+                                                     cConf.get(Constants.Scheduler.TIME_EVENT_TOPIC)));
+    this.tickMillis = cConf.getLong(Constants.Scheduler.TIME_WHEEL_TICK_MILLIS, 1000L);
+    this.wheelSize = cConf.getInt(Constants.Scheduler.TIME_WHEEL_SIZE, 60);
+    this.publishBatchSize = cConf.getInt(Constants.Scheduler.TIME_WHEEL_PUBLISH_BATCH_SIZE, 100);
+    this.misfireThresholdMillis = cConf.getLong(Constants.Scheduler.CFG_SCHEDULER_MISFIRE_THRESHOLD_MS, 60000L);
+    this.triggers = new HashMap<>();
+    this.programTriggers = new HashMap<>();
+    this.overdueFires = new ArrayList<>();
+  }
+
+  @Override
+  protected void startUp() throws Exception {
+    List<ProgramScheduleRecord> records = new ArrayList<>();
+    Map<String, Long> checkpoints = new HashMap<>();
+    // The schedule store may not be available yet during startup, hence keep retrying
+    Retries.runWithRetries(() -> TransactionRunners.run(transactionRunner, context -> {
+      records.clear();
+      checkpoints.clear();
+      records.addAll(Schedulers.getScheduleStore(context)
+                       .listAllScheduleRecords(AbstractTimeSchedulerService::containsTimeTrigger));
+      StructuredTable checkpointTable = context.getTable(StoreDefinition.TimeScheduleStore.FIRE_CHECKPOINTS);
+      try (CloseableIterator<StructuredRow> iterator = checkpointTable.scan(Range.all(), Integer.MAX_VALUE)) {
+        while (iterator.hasNext()) {
+          StructuredRow row = iterator.next();
+          checkpoints.put(row.getString(StoreDefinition.TimeScheduleStore.TRIGGER_NAME_FIELD),
+                          row.getLong(StoreDefinition.TimeScheduleStore.FIRE_TIME_FIELD));
+        }
+      }
+    }), RetryStrategies.exponentialDelay(200, 5000, TimeUnit.MILLISECONDS), Retries.ALWAYS_TRUE);
+
+    long now = timeProvider.currentTimeMillis();
+    synchronized (this) {
+      wheel = new TimingWheel<>(tickMillis, wheelSize, now);
+      for (ProgramScheduleRecord record : records) {
+        ProgramSchedule schedule = record.getSchedule();
+        boolean scheduled = record.getMeta().getStatus() == ProgramScheduleStatus.SCHEDULED;
+        for (WheelTrigger trigger : createTriggers(schedule)) {
+          Long lastFireTime = checkpoints.get(trigger.name);
+          trigger.previousFireTime = lastFireTime == null ? -1L : lastFireTime;
+          trigger.paused = !scheduled;
+          addTrigger(trigger);
+          if (scheduled) {
+            // Recover the fires that were missed while the scheduler was not running, up to the misfire threshold
+            long lastTime = lastFireTime == null ? record.getMeta().getLastUpdated() : lastFireTime;
+            scheduleNext(trigger, Math.max(lastTime, now - misfireThresholdMillis));
+          }
+        }
+      }
+      LOG.info("Loaded {} time triggers of {} schedules", triggers.size(), records.size());
+    }
+
+    executor = Executors.newSingleThreadScheduledExecutor(Threads.createDaemonThreadFactory("time-wheel-scheduler"));
+    executor.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    LOG.info("Started time wheel scheduler");
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+    LOG.info("Stopped time wheel scheduler");
+  }
+
+  @Override
+  public synchronized void addProgramSchedule(ProgramSchedule schedule)
+    throws AlreadyExistsException, SchedulerException {
+    if (!AbstractTimeSchedulerService.containsTimeTrigger(schedule)) {
+      return;
+    }
+    List<WheelTrigger> newTriggers = createTriggers(schedule);
+    // Verify every trigger does not exist first before adding any of them
+    for (WheelTrigger trigger : newTriggers) {
+      if (triggers.containsKey(trigger.name)) {
+        throw new AlreadyExistsException(schedule.getScheduleId(),
+                                         String.format("Time trigger with name '%s' already exists", trigger.name));
+      }
+    }
+    // New schedules are suspended until they are explicitly resumed
+    for (WheelTrigger trigger : newTriggers) {
+      trigger.paused = true;
+      addTrigger(trigger);
+    }
+  }
+
+  @Override
+  public void deleteProgramSchedule(ProgramSchedule schedule) throws NotFoundException, SchedulerException {
+    if (!AbstractTimeSchedulerService.containsTimeTrigger(schedule)) {
+      return;
+    }
+    List<WheelTrigger> deleted = new ArrayList<>();
+    synchronized (this) {
+      for (WheelTrigger trigger : getExistingTriggers(schedule)) {
+        triggers.remove(trigger.name);
+        Map<String, WheelTrigger> triggersOfProgram = programTriggers.get(trigger.programKey);
+        triggersOfProgram.remove(trigger.name);
+        if (triggersOfProgram.isEmpty()) {
+          programTriggers.remove(trigger.programKey);
+        }
+        deleted.add(trigger);
+      }
+    }
+    // The fire entries of the deleted triggers in the wheel are ignored when they expire
+    try {
+      TransactionRunners.run(transactionRunner, context -> {
+        StructuredTable checkpointTable = context.getTable(StoreDefinition.TimeScheduleStore.FIRE_CHECKPOINTS);
+        for (WheelTrigger trigger : deleted) {
+          checkpointTable.delete(getCheckpointKeys(trigger.name));
+        }
+      });
+    } catch (Exception e) {
+      LOG.warn("Failed to delete fire checkpoints of schedule {}", schedule.getScheduleId(), e);
+    }
+  }
+
+  @Override
+  public synchronized void suspendProgramSchedule(ProgramSchedule schedule)
+    throws NotFoundException, SchedulerException {
+    if (!AbstractTimeSchedulerService.containsTimeTrigger(schedule)) {
+      return;
+    }
+    for (WheelTrigger trigger : getExistingTriggers(schedule)) {
+      trigger.paused = true;
+      trigger.nextFireTime = -1L;
+    }
+  }
+
+  @Override
+  public synchronized void resumeProgramSchedule(ProgramSchedule schedule)
+    throws NotFoundException, SchedulerException {
+    if (!AbstractTimeSchedulerService.containsTimeTrigger(schedule)) {
+      return;
+    }
+    long now = timeProvider.currentTimeMillis();
+    for (WheelTrigger trigger : getExistingTriggers(schedule)) {
+      if (trigger.paused) {
+        trigger.paused = false;
+        scheduleNext(trigger, now);
+      }
+    }
+  }
+
+  @Override
+  public synchronized List<ScheduledRuntime> previousScheduledRuntime(ProgramId program,
+                                                                      SchedulableProgramType programType) {
+    List<ScheduledRuntime> scheduledRuntimes = new ArrayList<>();
+    for (WheelTrigger trigger : getTriggersOfProgram(program, programType)) {
+      // previous fire time is not set for the triggers which are not yet fired
+      if (trigger.previousFireTime >= 0) {
+        scheduledRuntimes.add(new ScheduledRuntime(trigger.runtimeId, trigger.previousFireTime));
+      }
+    }
+    return scheduledRuntimes;
+  }
+
+  @Override
+  public synchronized List<ScheduledRuntime> nextScheduledRuntime(ProgramId program,
+                                                                  SchedulableProgramType programType) {
+    List<ScheduledRuntime> scheduledRuntimes = new ArrayList<>();
+    for (WheelTrigger trigger : getTriggersOfProgram(program, programType)) {
+      // skip the trigger that is not enabled, since it cannot launch program as scheduled
+      if (!trigger.paused && trigger.nextFireTime >= 0) {
+        scheduledRuntimes.add(new ScheduledRuntime(trigger.runtimeId, trigger.nextFireTime));
+      }
+    }
+    return scheduledRuntimes;
+  }
+
+  @Override
+  public synchronized List<ScheduledRuntime> getAllScheduledRunTimes(ProgramId program,
+                                                                     SchedulableProgramType programType,
+                                                                     long startTimeSecs, long endTimeSecs) {
+    // decrease the start time by one second to include the next fire time that is equal to the start time
+    Date startTime = new Date(TimeUnit.SECONDS.toMillis(startTimeSecs - 1));
+    long endTimeMillis = TimeUnit.SECONDS.toMillis(endTimeSecs);
+    List<ScheduledRuntime> scheduledRuntimes = new ArrayList<>();
+    for (WheelTrigger trigger : getTriggersOfProgram(program, programType)) {
+      // skip the trigger that is not enabled, since it cannot launch program as scheduled
+      if (trigger.paused) {
+        continue;
+      }
+      Date nextFireTime = trigger.cronExpression.getNextValidTimeAfter(startTime);
+      while (nextFireTime != null && nextFireTime.getTime() < endTimeMillis) {
+        scheduledRuntimes.add(new ScheduledRuntime(trigger.runtimeId, nextFireTime.getTime()));
+        nextFireTime = trigger.cronExpression.getNextValidTimeAfter(nextFireTime);
+      }
+    }
+    return scheduledRuntimes;
+  }
+
+  /**
+   * Advances the timing wheel to the current time and publishes the notifications of the triggers that fire.
+   */
+  @VisibleForTesting
+  void tick() {
+    try {
+      List<Fire> fires = collectFires(timeProvider.currentTimeMillis());
+      for (List<Fire> batch : Lists.partition(fires, publishBatchSize)) {
+        publishFires(batch);
+      }
+    } catch (Throwable t) {
+      // Catch everything, otherwise the executor will not run the next tick
+      LOG.warn("Exception raised when firing time schedules", t);
+    }
+  }
+
+  /**
+   * Advances the timing wheel to the given time and schedules the next fires of the triggers that fire.
+   *
+   * @return the fires to publish, in the order of their fire times
+   */
+  private synchronized List<Fire> collectFires(long now) {
+    List<Fire> expired = new ArrayList<>(overdueFires);
+    overdueFires.clear();
+    wheel.advance(now, expired);
+
+    List<Fire> fires = new ArrayList<>();
+    for (Fire fire : expired) {
+      WheelTrigger trigger = fire.trigger;
+      // Skip the fires of the triggers that were deleted, suspended or rescheduled after the fire was added
+      if (triggers.get(trigger.name) != trigger || trigger.paused || trigger.nextFireTime != fire.fireTime) {
+        continue;
+      }
+      if (now - fire.fireTime > misfireThresholdMillis) {
+        LOG.warn("Trigger {} misfired at {}. Should have fired at {}.", trigger.name, now, fire.fireTime);
+      } else {
+        fires.add(fire);
+      }
+      scheduleNext(trigger, Math.max(fire.fireTime, now - misfireThresholdMillis));
+    }
+    fires.sort((fire1, fire2) -> Long.compare(fire1.fireTime, fire2.fireTime));
+    return fires;
+  }
+
+  /**
+   * Publishes the notifications of the given fires in one request and checkpoints the fire times.
+   */
+  private void publishFires(List<Fire> fires) {
+    List<Notification> notifications = new ArrayList<>(fires.size());
+    for (Fire fire : fires) {
+      WheelTrigger trigger = fire.trigger;
+      LOG.debug("Emitting time notification for schedule '{}' with trigger '{}' at {}.",
+                trigger.scheduleId, trigger.name, fire.fireTime);
+      ImmutableMap.Builder<String, String> systemOverrides = ImmutableMap.builder();
+      if (trigger.composite) {
+        systemOverrides.put(ProgramOptionConstants.CRON_EXPRESSION, trigger.cronEntry);
+      }
+      systemOverrides.put(ProgramOptionConstants.SCHEDULE_NAME, trigger.scheduleId.getSchedule());
+      Map<String, String> userOverrides = ImmutableMap.of(ProgramOptionConstants.LOGICAL_START_TIME,
+                                                          Long.toString(fire.fireTime));
+      notifications.add(ScheduleTaskPublisher.createNotification(Notification.Type.TIME, trigger.scheduleId,
+                                                                 systemOverrides.build(), userOverrides));
+    }
+    try {
+      taskPublisher.publishNotifications(notifications);
+    } catch (Throwable t) {
+      LOG.warn("Error while publishing notifications for {} time schedule fires.", fires.size(), t);
+      return;
+    }
+
+    // Only the latest fire time of a trigger needs to be checkpointed
+    Map<String, Long> fireTimes = new LinkedHashMap<>();
+    synchronized (this) {
+      for (Fire fire : fires) {
+        fire.trigger.previousFireTime = Math.max(fire.trigger.previousFireTime, fire.fireTime);
+        fireTimes.put(fire.trigger.name, fire.trigger.previousFireTime);
+      }
+    }
+    try {
+      TransactionRunners.run(transactionRunner, context -> {
+        StructuredTable checkpointTable = context.getTable(StoreDefinition.TimeScheduleStore.FIRE_CHECKPOINTS);
+        for (Map.Entry<String, Long> entry : fireTimes.entrySet()) {
+          List<Field<?>> fields = new ArrayList<>(getCheckpointKeys(entry.getKey()));
+          fields.add(Fields.longField(StoreDefinition.TimeScheduleStore.FIRE_TIME_FIELD, entry.getValue()));
+          checkpointTable.upsert(fields);
+        }
+      });
+    } catch (Exception e) {
+      LOG.warn("Failed to checkpoint the fire times of time triggers {}", fireTimes.keySet(), e);
+    }
+  }
+
+  /**
+   * Computes the next fire time of the given trigger after the given time and adds it to the wheel.
+   */
+  private void scheduleNext(WheelTrigger trigger, long afterTime) {
+    Date nextFireTime = trigger.cronExpression.getNextValidTimeAfter(new Date(afterTime));
+    if (nextFireTime == null) {
+      // The cron expression has no more fire times
+      trigger.nextFireTime = -1L;
+      return;
+    }
+    trigger.nextFireTime = nextFireTime.getTime();
+    Fire fire = new Fire(trigger, trigger.nextFireTime);
+    if (!wheel.add(fire, fire.fireTime)) {
+      overdueFires.add(fire);
+    }
+  }
+
+  private void addTrigger(WheelTrigger trigger) {
+    triggers.put(trigger.name, trigger);
+    programTriggers.computeIfAbsent(trigger.programKey, k -> new HashMap<>()).put(trigger.name, trigger);
+  }
+
+  private Collection<WheelTrigger> getTriggersOfProgram(ProgramId program, SchedulableProgramType programType) {
+    Map<String, WheelTrigger> triggersOfProgram =
+      programTriggers.get(AbstractTimeSchedulerService.programIdFor(program, programType));
+    return triggersOfProgram == null ? Collections.emptyList() : triggersOfProgram.values();
+  }
+
+  /**
+   * Gets the triggers of the given schedule, asserting all of them exist.
+   */
+  private List<WheelTrigger> getExistingTriggers(ProgramSchedule schedule) throws SchedulerException {
+    List<WheelTrigger> result = new ArrayList<>();
+    for (String triggerName : getCronTriggerNames(schedule).values()) {
+      WheelTrigger trigger = triggers.get(triggerName);
+      if (trigger == null) {
+        throw new SchedulerException("Trigger with name '" + triggerName + "' does not exist");
+      }
+      result.add(trigger);
+    }
+    return result;
+  }
+
+  private List<WheelTrigger> createTriggers(ProgramSchedule schedule) throws SchedulerException {
+    ProgramId program = schedule.getProgramId();
+    String programKey = AbstractTimeSchedulerService.programIdFor(program, program.getType().getSchedulableType());
+    boolean composite = schedule.getTrigger() instanceof AbstractSatisfiableCompositeTrigger;
+    List<WheelTrigger> result = new ArrayList<>();
+    for (Map.Entry<String, String> entry : getCronTriggerNames(schedule).entrySet()) {
+      try {
+        CronExpression cronExpression = new CronExpression(Schedulers.getQuartzCronExpression(entry.getKey()));
+        result.add(new WheelTrigger(entry.getValue(), programKey, schedule.getScheduleId(), entry.getKey(),
+                                    cronExpression, composite));
+      } catch (ParseException e) {
+        throw new SchedulerException(e);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return A Map with cron expression as keys and corresponding trigger name as values. Trigger names are
+   * created from program name, programType and scheduleName (and cron expression if the trigger in the schedule
+   * is a composite trigger), the same as the names of the Quartz triggers.
+   */
+  private static Map<String, String> getCronTriggerNames(ProgramSchedule schedule) {
+    ProgramId program = schedule.getProgramId();
+    SchedulableProgramType programType = program.getType().getSchedulableType();
+    co.cask.cdap.api.schedule.Trigger trigger = schedule.getTrigger();
+    // Get a set of TimeTrigger if the schedule's trigger is a composite trigger
+    if (trigger instanceof AbstractSatisfiableCompositeTrigger) {
+      Set<SatisfiableTrigger> triggerSet =
+        ((AbstractSatisfiableCompositeTrigger) trigger).getUnitTriggers().get(ProtoTrigger.Type.TIME);
+      if (triggerSet == null) {
+        return Collections.emptyMap();
+      }
+      Map<String, String> cronTriggerNames = new HashMap<>();
+      for (SatisfiableTrigger timeTrigger : triggerSet) {
+        String cron = ((TimeTrigger) timeTrigger).getCronExpression();
+        cronTriggerNames.put(cron, AbstractTimeSchedulerService.getTriggerName(program, programType,
+                                                                               schedule.getName(), cron));
+      }
+      return cronTriggerNames;
+    }
+    // No need to include cron expression in trigger name if the trigger is not composite trigger
+    return Collections.singletonMap(((TimeTrigger) trigger).getCronExpression(),
+                                    AbstractTimeSchedulerService.scheduleIdFor(program, programType,
+                                                                               schedule.getName()));
+  }
+
+  private static List<Field<?>> getCheckpointKeys(String triggerName) {
+    return Arrays.asList(Fields.stringField(StoreDefinition.TimeScheduleStore.TRIGGER_NAME_FIELD, triggerName));
+  }
+
+  /**
+   * A time trigger of a schedule. The mutable fields are guarded by the {@link TimeWheelSchedulerService}.
+   */
+  private static final class WheelTrigger {
+    private final String name;
+    private final String programKey;
+    private final String runtimeId;
+    private final ScheduleId scheduleId;
+    private final String cronEntry;
+    private final CronExpression cronExpression;
+    private final boolean composite;
+    private boolean paused;
+    private long nextFireTime = -1L;
+    private long previousFireTime = -1L;
+
+    WheelTrigger(String name, String programKey, ScheduleId scheduleId, String cronEntry,
+                 CronExpression cronExpression, boolean composite) {
+      this.name = name;
+      this.programKey = programKey;
+      // Same as the Quartz trigger key, which is used as the id of scheduled runtimes
+      this.runtimeId = new TriggerKey(name).toString();
+      this.scheduleId = scheduleId;
+      this.cronEntry = cronEntry;
+      this.cronExpression = cronExpression;
+      this.composite = composite;
+    }
+  }
+
+  /**
+   * A fire of a trigger at a given time.
+   */
+  private static final class Fire {
+    private final WheelTrigger trigger;
+    private final long fireTime;
+
+    Fire(WheelTrigger trigger, long fireTime) {
+      this.trigger = trigger;
+      this.fireTime = fireTime;
+    }
+  }
+}
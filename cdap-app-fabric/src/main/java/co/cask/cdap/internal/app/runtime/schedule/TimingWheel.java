@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.schedule;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel that keeps items until their expiration time. Each level of the wheel has the same
+ * number of buckets, and a bucket of a level covers all the buckets of the level below it. An item is placed in the
+ * lowest level that covers its expiration time, and is moved down to a lower level when the bucket holding it
+ * is reached, so adding an item and expiring it are both constant time regardless of how far ahead it expires.
+ * Items expire at the start of the tick of the lowest level that contains their expiration time,
+ * hence the tick duration of the lowest level is the resolution of the wheel.
+ * This class is not thread safe.
+ *
+ * @param <T> type of the items kept in the wheel
+ */
+final class TimingWheel<T> {
+
+  private final long tickMillis;
+  private final int wheelSize;
+  private final long intervalMillis;
+  private final List<List<Entry<T>>> buckets;
+  private long currentTime;
+  private int size;
+  private TimingWheel<T> overflowWheel;
+
+  /**
+   * Creates a timing wheel.
+   *
+   * @param tickMillis the tick duration of the lowest level in milliseconds
+   * @param wheelSize number of buckets in each level
+   * @param startTime the time in milliseconds to start the wheel at
+   */
+  TimingWheel(long tickMillis, int wheelSize, long startTime) {
+    Preconditions.checkArgument(tickMillis > 0, "Tick duration must be positive: %s", tickMillis);
+    Preconditions.checkArgument(wheelSize > 1, "Wheel size must be larger than one: %s", wheelSize);
+    this.tickMillis = tickMillis;
+    this.wheelSize = wheelSize;
+    this.intervalMillis = tickMillis * wheelSize;
+    this.buckets = new ArrayList<>(wheelSize);
+    for (int i = 0; i < wheelSize; i++) {
+      buckets.add(new ArrayList<>());
+    }
+    this.currentTime = startTime - (startTime % tickMillis);
+  }
+
+  /**
+   * Adds an item that expires at the given time.
+   *
+   * @return {@code true} if the item is added, or {@code false} if the expiration time is in the current tick,
+   *         meaning the item is already expired and is not added to the wheel
+   */
+  boolean add(T item, long expirationTime) {
+    return add(new Entry<>(item, expirationTime));
+  }
+
+  /**
+   * Advances the wheel to the given time.
+   *
+   * @param time the time in milliseconds to advance to. Nothing happens if it is not after the current tick
+   * @param expired collection for adding the items that expired while advancing
+   */
+  void advance(long time, Collection<T> expired) {
+    advance(time, this, expired);
+  }
+
+  /**
+   * Returns the number of items in the wheel.
+   */
+  int size() {
+    return size + (overflowWheel == null ? 0 : overflowWheel.size());
+  }
+
+  private boolean add(Entry<T> entry) {
+    long expirationTime = entry.expirationTime;
+    if (expirationTime < currentTime + tickMillis) {
+      return false;
+    }
+    if (expirationTime < currentTime + intervalMillis) {
+      buckets.get(bucketIndex(expirationTime)).add(entry);
+      size++;
+      return true;
+    }
+    if (overflowWheel == null) {
+      overflowWheel = new TimingWheel<>(intervalMillis, wheelSize, currentTime);
+    }
+    return overflowWheel.add(entry);
+  }
+
+  private void advance(long time, TimingWheel<T> root, Collection<T> expired) {
+    while (time >= currentTime + tickMillis) {
+      if (size == 0) {
+        // Nothing in this level, jump directly to the tick of the given time
+        currentTime = time - (time % tickMillis);
+      } else {
+        currentTime += tickMillis;
+        List<Entry<T>> bucket = buckets.get(bucketIndex(currentTime));
+        if (!bucket.isEmpty()) {
+          List<Entry<T>> flushed = new ArrayList<>(bucket);
+          bucket.clear();
+          size -= flushed.size();
+          // Re-add from the lowest level, which either moves the entry to a lower level or expires it
+          for (Entry<T> entry : flushed) {
+            if (!root.add(entry)) {
+              expired.add(entry.item);
+            }
+          }
+        }
+      }
+      if (overflowWheel != null) {
+        overflowWheel.advance(currentTime, root, expired);
+      }
+    }
+  }
+
+  private int bucketIndex(long time) {
+    return (int) ((time / tickMillis) % wheelSize);
+  }
+
+  /**
+   * An item in the wheel together with its expiration time.
+   *
+   * @param <T> type of the item
+   */
+  private static final class Entry<T> {
+    private final T item;
+    private final long expirationTime;
+
+    Entry(T item, long expirationTime) {
+      this.item = item;
+      this.expirationTime = expirationTime;
+    }
+  }
+}
@@ -24,6 +24,7 @@ import co.cask.cdap.proto.id.ProgramId;
 import co.cask.cdap.proto.id.ProgramRunId;
 
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * Context object, exposing information that may be useful during checking constraints.
@@ -32,11 +33,21 @@ public final class ConstraintContext {
   private final Job job;
   private final long checkTimeMillis;
   private final Store store;
+  private final ProgramRunsCache runsCache;
 
   public ConstraintContext(Job job, long checkTimeMillis, Store store) {
+    this(job, checkTimeMillis, store, null);
+  }
+
+  /**
+   * Creates a context that looks up program runs through the given {@link ProgramRunsCache}, which
+   * is shared among the jobs being checked in the same pass.
+   */
+  public ConstraintContext(Job job, long checkTimeMillis, Store store, @Nullable ProgramRunsCache runsCache) {
     this.job = job;
     this.checkTimeMillis = checkTimeMillis;
     this.store = store;
+    this.runsCache = runsCache;
   }
 
   public long getCheckTimeMillis() {
@@ -44,11 +55,14 @@ public final class ConstraintContext {
   }
 
   public Map<ProgramRunId, RunRecordMeta> getProgramRuns(ProgramId programId, ProgramRunStatus status, int limit) {
-    return store.getRuns(programId, status, 0, Long.MAX_VALUE, limit);
+    return getProgramRuns(programId, status, 0, Long.MAX_VALUE, limit);
   }
 
   public Map<ProgramRunId, RunRecordMeta> getProgramRuns(ProgramId programId, ProgramRunStatus status,
                                                          long startTime, long endTime, int limit) {
+    if (runsCache != null) {
+      return runsCache.getRuns(programId, status, startTime, endTime, limit);
+    }
     return store.getRuns(programId, status, startTime, endTime, limit);
   }
 
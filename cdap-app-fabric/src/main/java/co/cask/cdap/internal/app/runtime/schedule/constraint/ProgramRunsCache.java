@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.schedule.constraint;
+
+import co.cask.cdap.app.store.Store;
+import co.cask.cdap.internal.app.store.RunRecordMeta;
+import co.cask.cdap.proto.ProgramRunStatus;
+import co.cask.cdap.proto.id.ProgramId;
+import co.cask.cdap.proto.id.ProgramRunId;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Caches the program runs looked up from the {@link Store} while checking the constraints of a batch of jobs,
+ * so that jobs of the same program don't scan the run records repeatedly. It should only be used within one
+ * pass over the job queue, since it never expires the cached runs.
+ * This class is not thread safe.
+ */
+public final class ProgramRunsCache {
+
+  private final Store store;
+  private final Map<RunsKey, CachedRuns> cache;
+
+  public ProgramRunsCache(Store store) {
+    this.store = store;
+    this.cache = new HashMap<>();
+  }
+
+  /**
+   * Returns the runs of the given program, as returned by
+   * {@link Store#getRuns(ProgramId, ProgramRunStatus, long, long, int)}.
+   * A cached result is reused if it was fetched with a limit that is not smaller than the given one,
+   * or if it already contains all the runs.
+   */
+  public Map<ProgramRunId, RunRecordMeta> getRuns(ProgramId programId, ProgramRunStatus status,
+                                                  long startTime, long endTime, int limit) {
+    RunsKey key = new RunsKey(programId, status, startTime, endTime);
+    CachedRuns cached = cache.get(key);
+    if (cached == null || !cached.covers(limit)) {
+      cached = new CachedRuns(store.getRuns(programId, status, startTime, endTime, limit), limit);
+      cache.put(key, cached);
+    }
+    return cached.getRuns(limit);
+  }
+
+  /**
+   * Runs fetched from the store with a given limit.
+   */
+  private static final class CachedRuns {
+    private final Map<ProgramRunId, RunRecordMeta> runs;
+    private final int limit;
+
+    CachedRuns(Map<ProgramRunId, RunRecordMeta> runs, int limit) {
+      this.runs = Collections.unmodifiableMap(runs);
+      this.limit = limit;
+    }
+
+    boolean covers(int limit) {
+      return limit <= this.limit || runs.size() < this.limit;
+    }
+
+    Map<ProgramRunId, RunRecordMeta> getRuns(int limit) {
+      if (runs.size() <= limit) {
+        return runs;
+      }
+      Map<ProgramRunId, RunRecordMeta> result = new LinkedHashMap<>();
+      Iterator<Map.Entry<ProgramRunId, RunRecordMeta>> iterator = runs.entrySet().iterator();
+      while (result.size() < limit && iterator.hasNext()) {
+        Map.Entry<ProgramRunId, RunRecordMeta> entry = iterator.next();
+        result.put(entry.getKey(), entry.getValue());
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Key of the cached runs.
+   */
+  private static final class RunsKey {
+    private final ProgramId programId;
+    private final ProgramRunStatus status;
+    private final long startTime;
+    private final long endTime;
+
+    RunsKey(ProgramId programId, ProgramRunStatus status, long startTime, long endTime) {
+      this.programId = programId;
+      this.status = status;
+      this.startTime = startTime;
+      this.endTime = endTime;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      RunsKey that = (RunsKey) o;
+      return startTime == that.startTime && endTime == that.endTime
+        && Objects.equals(programId, that.programId) && status == that.status;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(programId, status, startTime, endTime);
+    }
+  }
+}
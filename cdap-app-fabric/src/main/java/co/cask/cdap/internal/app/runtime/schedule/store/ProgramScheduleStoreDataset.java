@@ -414,6 +414,16 @@ public class ProgramScheduleStoreDataset {
                                           schedule -> programId.equals(schedule.getProgramId()));
   }
 
+  /**
+   * Retrieve the schedule records of all namespaces.
+   *
+   * @param filter the filter to be applied on the result schedules
+   * @return a list of schedule records that pass the filter; never null
+   */
+  public List<ProgramScheduleRecord> listAllScheduleRecords(Predicate<ProgramSchedule> filter) throws IOException {
+    return listScheduleRecordsInRange(Range.all(), filter);
+  }
+
   /**
    * Find all schedules that have a trigger with a given trigger key.
    *
@@ -494,9 +504,16 @@ public class ProgramScheduleStoreDataset {
   private List<ProgramScheduleRecord> listSchedulesRecordsWithPrefix(Collection<Field<?>> prefixKeys,
                                                                      Predicate<ProgramSchedule> filter)
     throws IOException {
+    return listScheduleRecordsInRange(Range.singleton(prefixKeys), filter);
+  }
+
+  /**
+   * List schedule records in the given key range and only returns the schedules that can pass the filter.
+   */
+  private List<ProgramScheduleRecord> listScheduleRecordsInRange(Range range, Predicate<ProgramSchedule> filter)
+    throws IOException {
     List<ProgramScheduleRecord> result = new ArrayList<>();
-    try (CloseableIterator<StructuredRow> iterator =
-           scheduleStore.scan(Range.singleton(prefixKeys), Integer.MAX_VALUE)) {
+    try (CloseableIterator<StructuredRow> iterator = scheduleStore.scan(range, Integer.MAX_VALUE)) {
       while (iterator.hasNext()) {
         StructuredRow row = iterator.next();
         String serializedSchedule = row.getString(StoreDefinition.ProgramScheduleStore.SCHEDULE);
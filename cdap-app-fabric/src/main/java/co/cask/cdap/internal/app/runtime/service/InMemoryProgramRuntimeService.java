@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2017 Cask Data, Inc.
+ * Copyright © 2014-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -23,6 +23,7 @@ import co.cask.cdap.app.runtime.ProgramRunnerFactory;
 import co.cask.cdap.app.runtime.ProgramRuntimeService;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.lang.jar.UnpackedJarCache;
 import co.cask.cdap.internal.app.runtime.ProgramOptionConstants;
 import co.cask.cdap.internal.app.runtime.artifact.ArtifactRepository;
 import co.cask.cdap.proto.ProgramType;
@@ -58,8 +59,9 @@ public final class InMemoryProgramRuntimeService extends AbstractProgramRuntimeS
                                 // no privileges needed for artifacts
                                 @Named(AppFabricServiceRuntimeModule.NOAUTH_ARTIFACT_REPO)
                                   ArtifactRepository noAuthArtifactRepository,
-                                @Named(Constants.Service.MASTER_SERVICES_BIND_ADDRESS) InetAddress hostname) {
-    super(cConf, programRunnerFactory, noAuthArtifactRepository);
+                                @Named(Constants.Service.MASTER_SERVICES_BIND_ADDRESS) InetAddress hostname,
+                                UnpackedJarCache unpackedJarCache) {
+    super(cConf, programRunnerFactory, noAuthArtifactRepository, unpackedJarCache);
     this.hostname = hostname.getCanonicalHostName();
   }
 
@@ -71,6 +73,7 @@ public final class InMemoryProgramRuntimeService extends AbstractProgramRuntimeS
   @Override
   protected void shutDown() throws Exception {
     stopAllPrograms();
+    super.shutDown();
   }
 
   private void stopAllPrograms() {
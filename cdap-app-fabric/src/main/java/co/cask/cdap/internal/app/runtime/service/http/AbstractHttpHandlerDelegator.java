@@ -66,6 +66,17 @@ public abstract class AbstractHttpHandlerDelegator<T> implements HttpHandler {
     context.getServiceTaskExecutor().execute(runnable, transactional);
   }
 
+  /**
+   * Executes a given {@link ThrowingRunnable} in a read-only transaction.
+   *
+   * @param runnable the runnable to call
+   * @throws Exception if there is exception, either caused by the runnable or by the transaction system.
+   * @see ServiceTaskExecutor#executeReadOnly(ThrowingRunnable)
+   */
+  protected final void executeReadOnly(ThrowingRunnable runnable) throws Exception {
+    context.getServiceTaskExecutor().executeReadOnly(runnable);
+  }
+
   /**
    * Returns the user http service handler associated with the current thread.
    * This method is called from handler class generated by {@link HttpHandlerGenerator}.
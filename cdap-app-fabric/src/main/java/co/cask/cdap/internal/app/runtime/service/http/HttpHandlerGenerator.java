@@ -16,6 +16,7 @@
 
 package co.cask.cdap.internal.app.runtime.service.http;
 
+import co.cask.cdap.api.annotation.ReadOnly;
 import co.cask.cdap.api.annotation.TransactionControl;
 import co.cask.cdap.api.annotation.TransactionPolicy;
 import co.cask.cdap.api.metrics.MetricsContext;
@@ -121,6 +122,7 @@ final class HttpHandlerGenerator {
   );
 
   private static final Type TX_POLICY_TYPE = Type.getType(TransactionPolicy.class);
+  private static final Type READ_ONLY_TYPE = Type.getType(ReadOnly.class);
   private static final Type TX_CONTROL_TYPE = Type.getType(TransactionControl.class);
   private static final Type ATOMIC_REFERENCE_TYPE = Type.getType(AtomicReference.class);
   private static final Type THROWING_RUNNABLE_TYPE = Type.getType(ThrowingRunnable.class);
@@ -143,7 +145,8 @@ final class HttpHandlerGenerator {
   /**
    * Generates a new class that implements {@link HttpHandler} by copying methods signatures from the given
    * user service handler class. Calls to user service handler methods are transactional unless
-   * the method is annotated with {@link TransactionPolicy(TransactionControl)}.
+   * the method is annotated with {@link TransactionPolicy(TransactionControl)}. Transactional calls to methods
+   * annotated with {@link ReadOnly} are executed in read-only transactions.
    *
    * @param delegateType type of the user service handler
    * @param pathPrefix prefix for all {@code @PATH} annotation
@@ -411,10 +414,13 @@ final class HttpHandlerGenerator {
       // If any annotations of the method is one of those HttpMethod,
       // this is a handler process, hence need to copy.
       boolean handlerMethod = false;
+      boolean readOnly = false;
       TransactionControl txCtrl = defaultTxControl;
       for (AnnotationNode annotation : annotations) {
         if (isHandlerMethod(Type.getType(annotation.desc))) {
           handlerMethod = true;
+        } else if (READ_ONLY_TYPE.equals(Type.getType(annotation.desc))) {
+          readOnly = true;
         } else if (TX_POLICY_TYPE.equals(Type.getType(annotation.desc))) {
           List list = annotation.values;
           for (Iterator iter = list.iterator(); iter.hasNext(); ) {
@@ -490,7 +496,7 @@ final class HttpHandlerGenerator {
       }
 
       // Generate the method body
-      generateDelegateBody(classWriter, mg, new Method(name, desc), txCtrl);
+      generateDelegateBody(classWriter, mg, new Method(name, desc), txCtrl, readOnly);
 
       super.visitEnd();
     }
@@ -572,6 +578,9 @@ final class HttpHandlerGenerator {
      * }
      * </pre>
      *
+     * If the handler method is transactional and annotated with {@link ReadOnly}, the
+     * {@code execute(..., useTx)} call is replaced by {@code executeReadOnly(...)}.
+     *
      * For handler that returns {@link HttpContentConsumer}, it has the following form:
      *
      * <pre>
@@ -595,7 +604,7 @@ final class HttpHandlerGenerator {
      * </pre>
      */
     private void generateDelegateBody(ClassWriter classWriter, GeneratorAdapter mg,
-                                      Method method, TransactionControl txControl) {
+                                      Method method, TransactionControl txControl, boolean readOnly) {
       boolean useBodyConsumer = method.getReturnType().getSort() == Type.OBJECT;
 
       // Generate the synthetic static method for lambda invoke first
@@ -685,10 +694,15 @@ final class HttpHandlerGenerator {
       mg.invokeDynamic("run", Type.getMethodDescriptor(THROWING_RUNNABLE_TYPE, lambdaMethod.getArgumentTypes()),
                        metaFactoryHandle, samMethodType, lambdaMethodHandle, samMethodType);
 
-      // Second argument to the execute method
-      mg.push(txControl == TransactionControl.IMPLICIT);
-      mg.invokeVirtual(classType, new Method("execute", Type.VOID_TYPE,
-                                             new Type[] { THROWING_RUNNABLE_TYPE, Type.BOOLEAN_TYPE }));
+      if (readOnly && txControl == TransactionControl.IMPLICIT) {
+        mg.invokeVirtual(classType, new Method("executeReadOnly", Type.VOID_TYPE,
+                                               new Type[] { THROWING_RUNNABLE_TYPE }));
+      } else {
+        // Second argument to the execute method
+        mg.push(txControl == TransactionControl.IMPLICIT);
+        mg.invokeVirtual(classType, new Method("execute", Type.VOID_TYPE,
+                                               new Type[] { THROWING_RUNNABLE_TYPE, Type.BOOLEAN_TYPE }));
+      }
 
       mg.goTo(txTryEnd);
 
@@ -35,6 +35,18 @@ public interface ServiceTaskExecutor {
    */
   void execute(ThrowingRunnable runnable, boolean transactional) throws Exception;
 
+  /**
+   * Executes a given {@link ThrowingRunnable} in a read-only transaction. A read-only transaction may share a
+   * snapshot with other calls, hence it may not see the latest changes, and it fails if there are any changes.
+   * By default, it executes the runnable in a regular transaction.
+   *
+   * @param runnable the runnable to call
+   * @throws Exception if there is exception, either caused by the runnable or by the transaction system.
+   */
+  default void executeReadOnly(ThrowingRunnable runnable) throws Exception {
+    execute(runnable, true);
+  }
+
   /**
    * Executes a given {@link Callable} with or without a transaction.
    *
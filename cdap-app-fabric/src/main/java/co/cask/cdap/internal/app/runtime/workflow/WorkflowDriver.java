@@ -68,6 +68,7 @@ import co.cask.cdap.internal.app.runtime.DataSetFieldSetter;
 import co.cask.cdap.internal.app.runtime.MetricsFieldSetter;
 import co.cask.cdap.internal.app.runtime.ProgramRunners;
 import co.cask.cdap.internal.app.runtime.SimpleProgramOptions;
+import co.cask.cdap.internal.app.runtime.SystemArguments;
 import co.cask.cdap.internal.app.runtime.customaction.BasicCustomActionContext;
 import co.cask.cdap.internal.app.runtime.plugin.PluginInstantiator;
 import co.cask.cdap.internal.dataset.DatasetCreationSpec;
@@ -93,16 +94,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -148,6 +147,7 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
   private final MetadataPublisher metadataPublisher;
   private final FieldLineageWriter fieldLineageWriter;
   private final NamespaceQueryAdmin namespaceQueryAdmin;
+  private final WorkflowNodeScheduler nodeScheduler;
 
   private volatile Thread runningThread;
   private boolean suspended;
@@ -188,6 +188,10 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
                                                     secureStore, secureStoreManager, messagingService, null,
                                                     metadataReader, metadataPublisher, namespaceQueryAdmin);
 
+    this.nodeScheduler = new WorkflowNodeScheduler(
+      SystemArguments.getWorkflowMaxParallelism(workflowContext.getRuntimeArguments(), cConf),
+      workflowContext.getProgramMetrics());
+
     this.loggingContext = new WorkflowLoggingContext(program.getNamespaceId(), program.getApplicationId(),
                                                      program.getName(), workflowRunId.getRun());
     this.pluginInstantiator = pluginInstantiator;
@@ -285,6 +289,7 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
         pluginInstantiator.close();
       }
     } finally {
+      nodeScheduler.close();
       if (interrupted) {
         Thread.currentThread().interrupt();
       }
@@ -366,47 +371,25 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
                            final InstantiatorFactory instantiator, final ClassLoader classLoader,
                            final WorkflowToken token) throws Exception {
 
-    CountDownLatch executorTerminateLatch = new CountDownLatch(1);
-    ExecutorService executorService = createExecutor(fork.getBranches().size(), executorTerminateLatch,
-                                                     "fork-" + fork.getNodeId() + "-%d");
-    CompletionService<Map.Entry<String, WorkflowToken>> completionService =
-      new ExecutorCompletionService<>(executorService);
+    List<Callable<Map.Entry<String, WorkflowToken>>> branches = new ArrayList<>();
+    for (final List<WorkflowNode> branch : fork.getBranches()) {
+      branches.add(() -> {
+        WorkflowToken copiedToken = ((BasicWorkflowToken) token).deepCopy();
+        executeAll(branch.iterator(), appSpec, instantiator, classLoader, copiedToken);
+        return Maps.immutableEntry(branch.toString(), copiedToken);
+      });
+    }
 
     try {
-      for (final List<WorkflowNode> branch : fork.getBranches()) {
-        completionService.submit(new Callable<Map.Entry<String, WorkflowToken>>() {
-          @Override
-          public Map.Entry<String, WorkflowToken> call() throws Exception {
-            WorkflowToken copiedToken = ((BasicWorkflowToken) token).deepCopy();
-            executeAll(branch.iterator(), appSpec, instantiator, classLoader, copiedToken);
-            return Maps.immutableEntry(branch.toString(), copiedToken);
-          }
-        });
-      }
-
-      for (int i = 0; i < fork.getBranches().size(); i++) {
-        try {
-          Future<Map.Entry<String, WorkflowToken>> forkBranchResult = completionService.take();
-          Map.Entry<String, WorkflowToken> retValue = forkBranchResult.get();
-          String branchInfo = retValue.getKey();
-          WorkflowToken branchToken = retValue.getValue();
-          ((BasicWorkflowToken) token).mergeToken(branchToken);
-          LOG.trace("Execution of branch {} for fork {} completed.", branchInfo, fork);
-        } catch (InterruptedException e) {
-          // Due to workflow abortion, so just break the loop
-          break;
-        } catch (ExecutionException e) {
-          // Unwrap the cause
-          Throwables.propagateIfPossible(e.getCause(), Exception.class);
-          throw Throwables.propagate(e.getCause());
-        }
-      }
+      nodeScheduler.executeBranches(branches, result -> {
+        ((BasicWorkflowToken) token).mergeToken(result.getValue());
+        LOG.trace("Execution of branch {} for fork {} completed.", result.getKey(), fork);
+      });
+    } catch (InterruptedException e) {
+      // Due to workflow abortion, so just return
     } finally {
       // Update the WorkflowToken after the execution of the FORK node completes.
       workflowStateWriter.setWorkflowToken(workflowRunId, token);
-      executorService.shutdownNow();
-      // Wait for the executor termination
-      executorTerminateLatch.await();
     }
   }
 
@@ -463,11 +446,12 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
     ((BasicWorkflowToken) token).setCurrentNode(node.getNodeId());
     switch (nodeType) {
       case ACTION:
+        // Only actions are limited by the scheduler. Forks and conditions just coordinate the actions in them.
         WorkflowActionNode actionNode = (WorkflowActionNode) node;
         if (SchedulableProgramType.CUSTOM_ACTION == actionNode.getProgram().getProgramType()) {
-          executeCustomAction(actionNode, instantiator, classLoader, token);
+          nodeScheduler.execute(actionNode, () -> executeCustomAction(actionNode, instantiator, classLoader, token));
         } else {
-          executeAction(actionNode, token);
+          nodeScheduler.execute(actionNode, () -> executeAction(actionNode, token));
         }
         break;
       case FORK:
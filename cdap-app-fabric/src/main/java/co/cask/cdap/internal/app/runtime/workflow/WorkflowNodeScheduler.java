@@ -0,0 +1,284 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.workflow;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.workflow.WorkflowNode;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.internal.app.runtime.ThrowingRunnable;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+
+/**
+ * Limits the number of workflow nodes that a workflow run executes concurrently. Every fork branch runs
+ * independently of the other branches, so a node starts as soon as the node before it in the same branch
+ * completes and a slot is available. Slots are granted in the order they are requested, so no branch starves.
+ * The time a node waits for a slot is emitted as a metric for that node.
+ *
+ * The branches of all the forks of a workflow run share one pool of threads, which is bounded by the
+ * same maximum parallelism. A thread that executes a fork runs the branches that no pool thread has picked up
+ * itself, so nested forks make progress even when all the pool threads are busy.
+ */
+final class WorkflowNodeScheduler implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(WorkflowNodeScheduler.class);
+
+  @Nullable
+  private final Semaphore slots;
+  private final MetricsContext metricsContext;
+  private final AtomicInteger queued = new AtomicInteger();
+  private final ThreadPoolExecutor branchExecutor;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param maxParallelism the maximum number of nodes to execute concurrently, or {@code 0} for no limit
+   * @param metricsContext the {@link MetricsContext} for emitting scheduling metrics
+   */
+  WorkflowNodeScheduler(int maxParallelism, MetricsContext metricsContext) {
+    if (maxParallelism < 0) {
+      throw new IllegalArgumentException("Maximum parallelism must not be negative: " + maxParallelism);
+    }
+    this.slots = maxParallelism == 0 ? null : new Semaphore(maxParallelism, true);
+    this.metricsContext = metricsContext;
+    if (maxParallelism == 0) {
+      this.branchExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+                                                   new SynchronousQueue<>(), createThreadFactory());
+    } else {
+      this.branchExecutor = new ThreadPoolExecutor(maxParallelism, maxParallelism, 60L, TimeUnit.SECONDS,
+                                                   new LinkedBlockingQueue<>(), createThreadFactory());
+      this.branchExecutor.allowCoreThreadTimeOut(true);
+    }
+  }
+
+  /**
+   * Executes the given node in the current thread once a slot is available.
+   *
+   * @param node the node to execute
+   * @param runnable the execution of the node
+   * @throws InterruptedException if interrupted while waiting for a slot
+   * @throws Exception if the execution of the node failed
+   */
+  void execute(WorkflowNode node, ThrowingRunnable runnable) throws Exception {
+    if (slots == null) {
+      runnable.run();
+      return;
+    }
+
+    long startTime = System.nanoTime();
+    // Use the timed tryAcquire, since the untimed one does not honor the fairness of the semaphore
+    if (!slots.tryAcquire(0, TimeUnit.SECONDS)) {
+      LOG.debug("Workflow node '{}' is waiting for one of the running nodes to complete", node.getNodeId());
+      metricsContext.gauge(Constants.Metrics.Workflow.NODES_QUEUED, queued.incrementAndGet());
+      try {
+        slots.acquire();
+      } finally {
+        metricsContext.gauge(Constants.Metrics.Workflow.NODES_QUEUED, queued.decrementAndGet());
+      }
+    }
+    try {
+      long waitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+      metricsContext.childContext(Constants.Metrics.Tag.NODE, node.getNodeId())
+        .gauge(Constants.Metrics.Workflow.NODE_QUEUE_WAIT_MILLIS, waitMillis);
+      runnable.run();
+    } finally {
+      slots.release();
+    }
+  }
+
+  /**
+   * Executes the branches of a fork and waits for all of them to complete. The branches are run by the idle
+   * threads of the pool, and the branches that are not picked up by the pool are run by the current thread.
+   * If a branch fails, the other branches are interrupted.
+   *
+   * @param branches the branches to execute
+   * @param resultHandler called from the current thread with the result of every branch, in the order that
+   *                      the branches complete
+   * @param <T> type of the result of a branch
+   * @throws InterruptedException if the current thread is interrupted while waiting for the branches to complete
+   * @throws Exception the failure of the first branch that failed
+   */
+  <T> void executeBranches(List<? extends Callable<T>> branches, Consumer<T> resultHandler) throws Exception {
+    BlockingQueue<Branch<T>> completed = new LinkedBlockingQueue<>();
+    List<Branch<T>> forkBranches = new ArrayList<>(branches.size());
+    for (Callable<T> callable : branches) {
+      forkBranches.add(new Branch<>(callable, forkBranches, completed));
+    }
+    try {
+      for (Branch<T> branch : forkBranches) {
+        branchExecutor.execute(branch);
+      }
+      for (Branch<T> branch : forkBranches) {
+        branch.run();
+      }
+      for (int i = 0; i < forkBranches.size(); i++) {
+        resultHandler.accept(completed.take().getResult());
+      }
+    } finally {
+      // Stop the branches that are still running, due to a failure or an interrupt, and wait for them to stop
+      for (Branch<T> branch : forkBranches) {
+        branch.cancel();
+      }
+      for (Branch<T> branch : forkBranches) {
+        branch.awaitCompletion();
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    branchExecutor.shutdownNow();
+  }
+
+  private static ThreadFactory createThreadFactory() {
+    return new ThreadFactoryBuilder().setNameFormat("workflow-branch-%d").setDaemon(true).build();
+  }
+
+  /**
+   * A fork branch that is run by whichever thread claims it first.
+   *
+   * @param <T> type of the result of the branch
+   */
+  private static final class Branch<T> implements Runnable {
+
+    private final Callable<T> callable;
+    private final List<Branch<T>> siblings;
+    private final BlockingQueue<Branch<T>> completed;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private final CountDownLatch completion = new CountDownLatch(1);
+    // the thread running the branch and whether it was interrupted by cancel, guarded by this
+    private Thread runner;
+    private boolean cancelled;
+    private boolean interrupted;
+    private T result;
+    private Throwable failure;
+
+    Branch(Callable<T> callable, List<Branch<T>> siblings, BlockingQueue<Branch<T>> completed) {
+      this.callable = callable;
+      this.siblings = siblings;
+      this.completed = completed;
+    }
+
+    @Override
+    public void run() {
+      if (!claimed.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        synchronized (this) {
+          if (cancelled) {
+            throw new CancellationException("Fork branch is cancelled");
+          }
+          runner = Thread.currentThread();
+        }
+        result = callable.call();
+      } catch (Throwable t) {
+        failure = t;
+      } finally {
+        synchronized (this) {
+          runner = null;
+          if (interrupted) {
+            // Clear the interrupt of cancel, since the thread can go on to run other branches
+            Thread.interrupted();
+          }
+        }
+        completed.add(this);
+        completion.countDown();
+      }
+      // Cancel the other branches after this one is completed, so that this failure is the first one reported
+      if (failure != null) {
+        for (Branch<T> sibling : siblings) {
+          if (sibling != this) {
+            sibling.cancel();
+          }
+        }
+      }
+    }
+
+    /**
+     * Returns the result of the branch, or throws the failure of the branch.
+     */
+    T getResult() throws Exception {
+      if (failure instanceof Exception) {
+        throw (Exception) failure;
+      }
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      if (failure != null) {
+        throw new RuntimeException(failure);
+      }
+      return result;
+    }
+
+    /**
+     * Cancels the branch. A branch that has not started is not going to run, and a running branch is interrupted.
+     */
+    void cancel() {
+      if (claimed.compareAndSet(false, true)) {
+        failure = new CancellationException("Fork branch is cancelled");
+        completed.add(this);
+        completion.countDown();
+        return;
+      }
+      synchronized (this) {
+        cancelled = true;
+        if (runner != null && !interrupted) {
+          interrupted = true;
+          runner.interrupt();
+        }
+      }
+    }
+
+    /**
+     * Waits for the branch to complete. The interrupt status of the current thread is restored if it is
+     * interrupted while waiting.
+     */
+    void awaitCompletion() {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          completion.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
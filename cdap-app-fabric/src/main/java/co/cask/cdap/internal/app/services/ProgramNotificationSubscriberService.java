@@ -50,12 +50,18 @@ import co.cask.cdap.security.spi.authentication.SecurityRequestContext;
 import co.cask.cdap.spi.data.StructuredTableContext;
 import co.cask.cdap.spi.data.TableNotFoundException;
 import co.cask.cdap.spi.data.transaction.TransactionRunner;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,11 +72,16 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
@@ -85,6 +96,8 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
   private static final Gson GSON = ApplicationSpecificationAdapter.addTypeAdapters(new GsonBuilder()).create();
   private static final Type STRING_STRING_MAP = new TypeToken<Map<String, String>>() { }.getType();
   private static final String CDAP_VERSION = "cdap.version";
+  // Minimum number of notifications in a partition for decoding in parallel to be worthwhile
+  private static final int MIN_DECODE_PARTITION_SIZE = 16;
 
   private final String recordedProgramStatusPublishTopic;
   private final ProvisionerNotifier provisionerNotifier;
@@ -93,6 +106,8 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
   private final ProgramStateWriter programStateWriter;
   private final Queue<Runnable> tasks;
   private final MetricsCollectionService metricsCollectionService;
+  private final int decodeParallelism;
+  private ExecutorService decodeExecutor;
 
   @Inject
   ProgramNotificationSubscriberService(MessagingService messagingService, CConfiguration cConf,
@@ -112,6 +127,7 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
     this.programStateWriter = programStateWriter;
     this.tasks = new LinkedList<>();
     this.metricsCollectionService = metricsCollectionService;
+    this.decodeParallelism = Math.max(1, cConf.getInt(Constants.AppFabric.STATUS_EVENT_DECODE_PARALLELISM, 1));
   }
 
   @Nullable
@@ -126,17 +142,43 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
     getAppMetadataStore(context).persistSubscriberState(getTopicId().getTopic(), "", messageId);
   }
 
+  @Override
+  protected void doStartUp() throws Exception {
+    super.doStartUp();
+    if (decodeParallelism > 1) {
+      decodeExecutor = Executors.newFixedThreadPool(decodeParallelism,
+                                                    Threads.createDaemonThreadFactory("program-status-decoder-%d"));
+    }
+  }
+
+  @Override
+  protected void doShutdown() throws Exception {
+    try {
+      if (decodeExecutor != null) {
+        decodeExecutor.shutdownNow();
+      }
+    } finally {
+      super.doShutdown();
+    }
+  }
+
   @Override
   protected void processMessages(StructuredTableContext structuredTableContext,
                                  Iterator<ImmutablePair<String, Notification>> messages) throws Exception {
+    // Decode the whole batch first, grouping the events by program run while keeping the order within each run.
+    // Events of different runs are independent, hence they don't need to be processed in the message order.
+    Map<ProgramRunId, List<ProgramStatusEvent>> runEvents = new LinkedHashMap<>();
+    for (ProgramStatusEvent event : decodeNotifications(messages)) {
+      runEvents.computeIfAbsent(event.getProgramRunId(), k -> new ArrayList<>()).add(event);
+    }
+
+    AppMetadataStore appMetadataStore = AppMetadataStore.create(structuredTableContext);
     ProgramHeartbeatTable heartbeatDataset = new ProgramHeartbeatTable(structuredTableContext);
     List<Runnable> tasks = new LinkedList<>();
-    while (messages.hasNext()) {
-      ImmutablePair<String, Notification> messagePair = messages.next();
-      List<Runnable> runnables = processNotification(heartbeatDataset,
-                                                     messagePair.getFirst().getBytes(StandardCharsets.UTF_8),
-                                                     messagePair.getSecond(), structuredTableContext);
-      tasks.addAll(runnables);
+    for (List<ProgramStatusEvent> events : runEvents.values()) {
+      for (ProgramStatusEvent event : collapseEvents(events)) {
+        tasks.addAll(processEvent(heartbeatDataset, appMetadataStore, event, structuredTableContext));
+      }
     }
 
     // Only add post processing tasks if all messages are processed. If there is exception in the processNotifiation,
@@ -154,20 +196,63 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
   }
 
   /**
-   * Process a {@link Notification} received from TMS.
+   * Decodes the given notifications into {@link ProgramStatusEvent}. If there are enough notifications, the
+   * decoding is done in parallel partitions. The returned list is in the same order as the given messages.
+   * Notifications that are invalid are logged and excluded from the result.
+   */
+  private List<ProgramStatusEvent> decodeNotifications(Iterator<ImmutablePair<String, Notification>> messages)
+    throws Exception {
+    List<ImmutablePair<String, Notification>> notifications = new ArrayList<>();
+    Iterators.addAll(notifications, messages);
+
+    int partitionSize = (notifications.size() + decodeParallelism - 1) / decodeParallelism;
+    if (decodeExecutor == null || partitionSize < MIN_DECODE_PARTITION_SIZE) {
+      return decodePartition(notifications);
+    }
+
+    List<Future<List<ProgramStatusEvent>>> futures = new ArrayList<>();
+    for (List<ImmutablePair<String, Notification>> partition : Lists.partition(notifications, partitionSize)) {
+      futures.add(decodeExecutor.submit(() -> decodePartition(partition)));
+    }
+    List<ProgramStatusEvent> events = new ArrayList<>(notifications.size());
+    try {
+      for (Future<List<ProgramStatusEvent>> future : futures) {
+        events.addAll(Uninterruptibles.getUninterruptibly(future));
+      }
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), Exception.class);
+      throw new RuntimeException(e.getCause());
+    }
+    return events;
+  }
+
+  private List<ProgramStatusEvent> decodePartition(List<ImmutablePair<String, Notification>> notifications) {
+    List<ProgramStatusEvent> events = new ArrayList<>(notifications.size());
+    for (ImmutablePair<String, Notification> messagePair : notifications) {
+      ProgramStatusEvent event = decodeNotification(messagePair.getFirst().getBytes(StandardCharsets.UTF_8),
+                                                    messagePair.getSecond());
+      if (event != null) {
+        // Decode the program options and descriptor while decoding in parallel, since they are the most
+        // expensive parts to decode. Failures are deferred to when they are used, as if they were not preloaded.
+        if (decodeExecutor != null) {
+          event.preload();
+        }
+        events.add(event);
+      }
+    }
+    return events;
+  }
+
+  /**
+   * Decodes a {@link Notification} received from TMS into a {@link ProgramStatusEvent}.
    *
-   * @param programHeartbeatTable the {@link ProgramHeartbeatTable} for writing heart beats and program status
    * @param messageIdBytes the raw message id in the TMS for the notification
-   * @param notification the {@link Notification} to process
-   * @param context context to get the table for operations
-   * @return a {@link List} of {@link Runnable} tasks to run after the transactional processing of the whole
-   *         messages batch is completed
-   * @throws Exception if failed to process the given notification
+   * @param notification the {@link Notification} to decode
+   * @return the decoded {@link ProgramStatusEvent} or {@code null} if the notification is invalid
    */
-  private List<Runnable> processNotification(ProgramHeartbeatTable programHeartbeatTable,
-                                             byte[] messageIdBytes, Notification notification,
-                                             StructuredTableContext context) throws Exception {
-    AppMetadataStore appMetadataStore = AppMetadataStore.create(context);
+  @VisibleForTesting
+  @Nullable
+  static ProgramStatusEvent decodeNotification(byte[] messageIdBytes, Notification notification) {
     Map<String, String> properties = notification.getProperties();
     // Required parameters
     String programRun = properties.get(ProgramOptionConstants.PROGRAM_RUN_ID);
@@ -177,7 +262,7 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
     // Ignore notifications which specify an invalid ProgramRunId, which shouldn't happen
     if (programRun == null) {
       LOG.warn("Ignore notification that misses program run state information, {}", notification);
-      return Collections.emptyList();
+      return null;
     }
     ProgramRunId programRunId = GSON.fromJson(programRun, ProgramRunId.class);
 
@@ -188,7 +273,7 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
       } catch (IllegalArgumentException e) {
         LOG.warn("Ignore notification with invalid program run status {} for program {}, {}",
                  programStatusStr, programRun, notification);
-        return Collections.emptyList();
+        return null;
       }
     }
 
@@ -199,35 +284,89 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
       } catch (IllegalArgumentException e) {
         LOG.warn("Ignore notification with invalid program run cluster status {} for program {}",
                  clusterStatusStr, programRun);
-        return Collections.emptyList();
+        return null;
       }
     }
-    if (notification.getNotificationType().equals(Notification.Type.PROGRAM_HEART_BEAT)) {
+
+    return new ProgramStatusEvent(programRunId, messageIdBytes, notification, programRunStatus, clusterStatus);
+  }
+
+  /**
+   * Collapses redundant events of the same program run in a batch. A program status notification that duplicates
+   * the preceding notification of the run is dropped, since processing it again wouldn't change the run record.
+   * Heart beats are always kept, since each of them is recorded in the {@link ProgramHeartbeatTable} with its own
+   * timestamp.
+   *
+   * @param events events of the same program run, in the order they were published
+   * @return the events to process, in the same order
+   */
+  @VisibleForTesting
+  static List<ProgramStatusEvent> collapseEvents(List<ProgramStatusEvent> events) {
+    if (events.size() == 1) {
+      return events;
+    }
+    List<ProgramStatusEvent> result = new ArrayList<>(events.size());
+    Notification previous = null;
+    for (ProgramStatusEvent event : events) {
+      if (event.isHeartbeat()) {
+        result.add(event);
+        continue;
+      }
+      Notification notification = event.getNotification();
+      if (!notification.equals(previous)) {
+        result.add(event);
+      }
+      previous = notification;
+    }
+    if (result.size() < events.size()) {
+      LOG.trace("Collapsed {} program status events into {} for program run {}",
+                events.size(), result.size(), events.get(0).getProgramRunId());
+    }
+    return result;
+  }
+
+  /**
+   * Process a {@link ProgramStatusEvent} decoded from a notification received from TMS.
+   *
+   * @param programHeartbeatTable the {@link ProgramHeartbeatTable} for writing heart beats and program status
+   * @param appMetadataStore the {@link AppMetadataStore} for recording the program run status
+   * @param event the {@link ProgramStatusEvent} to process
+   * @param context context to get the table for operations
+   * @return a {@link List} of {@link Runnable} tasks to run after the transactional processing of the whole
+   *         messages batch is completed
+   * @throws Exception if failed to process the given event
+   */
+  private List<Runnable> processEvent(ProgramHeartbeatTable programHeartbeatTable,
+                                      AppMetadataStore appMetadataStore, ProgramStatusEvent event,
+                                      StructuredTableContext context) throws Exception {
+    ProgramRunId programRunId = event.getProgramRunId();
+    Notification notification = event.getNotification();
+    if (event.isHeartbeat()) {
       RunRecordMeta runRecordMeta = appMetadataStore.getRun(programRunId);
-      long heartBeatTimeInSeconds =
-        TimeUnit.MILLISECONDS.toSeconds(Long.parseLong(properties.get(ProgramOptionConstants.HEART_BEAT_TIME)));
+      long heartBeatTimeInSeconds = TimeUnit.MILLISECONDS.toSeconds(
+        Long.parseLong(notification.getProperties().get(ProgramOptionConstants.HEART_BEAT_TIME)));
       writeToHeartBeatTable(runRecordMeta, heartBeatTimeInSeconds, programHeartbeatTable);
       // we can return after writing to heart beat table
       return Collections.emptyList();
     }
     List<Runnable> result = new ArrayList<>();
-    if (programRunStatus != null) {
-      handleProgramEvent(programRunId, programRunStatus, notification, messageIdBytes,
-                         appMetadataStore, programHeartbeatTable).ifPresent(result::add);
+    if (event.getProgramRunStatus() != null) {
+      handleProgramEvent(event, appMetadataStore, programHeartbeatTable).ifPresent(result::add);
     }
-    if (clusterStatus == null) {
+    if (event.getClusterStatus() == null) {
       return result;
     }
 
-    handleClusterEvent(programRunId, clusterStatus, notification,
-                       messageIdBytes, appMetadataStore, context).ifPresent(result::add);
+    handleClusterEvent(event, appMetadataStore, context).ifPresent(result::add);
     return result;
   }
 
-  private Optional<Runnable> handleProgramEvent(ProgramRunId programRunId, ProgramRunStatus programRunStatus,
-                                                Notification notification, byte[] messageIdBytes,
-                                                AppMetadataStore appMetadataStore,
+  private Optional<Runnable> handleProgramEvent(ProgramStatusEvent event, AppMetadataStore appMetadataStore,
                                                 ProgramHeartbeatTable programHeartbeatTable) throws Exception {
+    ProgramRunId programRunId = event.getProgramRunId();
+    ProgramRunStatus programRunStatus = event.getProgramRunStatus();
+    Notification notification = event.getNotification();
+    byte[] messageIdBytes = event.getMessageIdBytes();
     LOG.trace("Processing program status notification: {}", notification);
     Map<String, String> properties = notification.getProperties();
     String twillRunId = notification.getProperties().get(ProgramOptionConstants.TWILL_RUN_ID);
@@ -245,9 +384,8 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
         // if this is a preview run or a program within a workflow, we don't actually need to provision a cluster
         // instead, we skip forward past the provisioning and provisioned states and go straight to starting.
         if (isInWorkflow || skipProvisioning) {
-          ProgramOptions programOptions = createProgramOptions(programRunId.getParent(), properties);
-          ProgramDescriptor programDescriptor =
-            GSON.fromJson(properties.get(ProgramOptionConstants.PROGRAM_DESCRIPTOR), ProgramDescriptor.class);
+          ProgramOptions programOptions = event.getProgramOptions();
+          ProgramDescriptor programDescriptor = event.getProgramDescriptor();
           appMetadataStore.recordProgramProvisioning(programRunId, programOptions.getUserArguments().asMap(),
                                                      programOptions.getArguments().asMap(), messageIdBytes,
                                                      programDescriptor.getArtifactId().toApiArtifactId());
@@ -331,9 +469,8 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
         }
         break;
       case REJECTED:
-        ProgramOptions programOptions = createProgramOptions(programRunId.getParent(), properties);
-        ProgramDescriptor programDescriptor =
-          GSON.fromJson(properties.get(ProgramOptionConstants.PROGRAM_DESCRIPTOR), ProgramDescriptor.class);
+        ProgramOptions programOptions = event.getProgramOptions();
+        ProgramDescriptor programDescriptor = event.getProgramDescriptor();
         recordedRunRecord = appMetadataStore.recordProgramRejected(
           programRunId, programOptions.getUserArguments().asMap(),
           programOptions.getArguments().asMap(), messageIdBytes, programDescriptor.getArtifactId().toApiArtifactId());
@@ -388,18 +525,18 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
     }
   }
 
-  private Optional<Runnable> handleClusterEvent(ProgramRunId programRunId, ProgramRunClusterStatus clusterStatus,
-                                                Notification notification, byte[] messageIdBytes,
-                                                AppMetadataStore appMetadataStore,
+  private Optional<Runnable> handleClusterEvent(ProgramStatusEvent event, AppMetadataStore appMetadataStore,
                                                 StructuredTableContext context) throws IOException {
-    Map<String, String> properties = notification.getProperties();
+    ProgramRunId programRunId = event.getProgramRunId();
+    ProgramRunClusterStatus clusterStatus = event.getClusterStatus();
+    byte[] messageIdBytes = event.getMessageIdBytes();
+    Map<String, String> properties = event.getNotification().getProperties();
 
-    ProgramOptions programOptions = createProgramOptions(programRunId.getParent(), properties);
+    ProgramOptions programOptions = event.getProgramOptions();
     String userId = properties.get(ProgramOptionConstants.USER_ID);
 
     long endTs = getTimeSeconds(properties, ProgramOptionConstants.CLUSTER_END_TIME);
-    ProgramDescriptor programDescriptor =
-      GSON.fromJson(properties.get(ProgramOptionConstants.PROGRAM_DESCRIPTOR), ProgramDescriptor.class);
+    ProgramDescriptor programDescriptor = event.getProgramDescriptor();
     switch (clusterStatus) {
       case PROVISIONING:
         appMetadataStore.recordProgramProvisioning(programRunId, programOptions.getUserArguments().asMap(),
@@ -466,7 +603,7 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
     return profile.map(profileId -> () -> emitProfileMetrics(programRunId, profileId, metricName));
   }
 
-  private ProgramOptions createProgramOptions(ProgramId programId, Map<String, String> properties) {
+  private static ProgramOptions createProgramOptions(ProgramId programId, Map<String, String> properties) {
     String userArgumentsString = properties.get(ProgramOptionConstants.USER_OVERRIDES);
     String systemArgumentsString = properties.get(ProgramOptionConstants.SYSTEM_OVERRIDES);
     String debugString = properties.get(ProgramOptionConstants.DEBUG_ENABLED);
@@ -548,4 +685,95 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
   private AppMetadataStore getAppMetadataStore(StructuredTableContext context) {
     return AppMetadataStore.create(context);
   }
+
+  /**
+   * A program status or heart beat event decoded from a {@link Notification}. The program options and descriptor
+   * are only decoded when they are used, so that a notification with malformed values fails only the processing
+   * that needs them.
+   */
+  @VisibleForTesting
+  static final class ProgramStatusEvent {
+    private final ProgramRunId programRunId;
+    private final byte[] messageIdBytes;
+    private final Notification notification;
+    private final ProgramRunStatus programRunStatus;
+    private final ProgramRunClusterStatus clusterStatus;
+    private ProgramOptions programOptions;
+    private ProgramDescriptor programDescriptor;
+
+    ProgramStatusEvent(ProgramRunId programRunId, byte[] messageIdBytes, Notification notification,
+                       @Nullable ProgramRunStatus programRunStatus, @Nullable ProgramRunClusterStatus clusterStatus) {
+      this.programRunId = programRunId;
+      this.messageIdBytes = messageIdBytes;
+      this.notification = notification;
+      this.programRunStatus = programRunStatus;
+      this.clusterStatus = clusterStatus;
+    }
+
+    ProgramRunId getProgramRunId() {
+      return programRunId;
+    }
+
+    byte[] getMessageIdBytes() {
+      return messageIdBytes;
+    }
+
+    Notification getNotification() {
+      return notification;
+    }
+
+    boolean isHeartbeat() {
+      return notification.getNotificationType().equals(Notification.Type.PROGRAM_HEART_BEAT);
+    }
+
+    @Nullable
+    ProgramRunStatus getProgramRunStatus() {
+      return programRunStatus;
+    }
+
+    @Nullable
+    ProgramRunClusterStatus getClusterStatus() {
+      return clusterStatus;
+    }
+
+    /**
+     * Returns the {@link ProgramOptions} decoded from the notification.
+     */
+    ProgramOptions getProgramOptions() {
+      if (programOptions == null) {
+        programOptions = createProgramOptions(programRunId.getParent(), notification.getProperties());
+      }
+      return programOptions;
+    }
+
+    /**
+     * Returns the {@link ProgramDescriptor} decoded from the notification, or {@code null} if the notification
+     * doesn't carry it.
+     */
+    @Nullable
+    ProgramDescriptor getProgramDescriptor() {
+      if (programDescriptor == null) {
+        String programDescriptorStr = notification.getProperties().get(ProgramOptionConstants.PROGRAM_DESCRIPTOR);
+        programDescriptor = programDescriptorStr == null ?
+          null : GSON.fromJson(programDescriptorStr, ProgramDescriptor.class);
+      }
+      return programDescriptor;
+    }
+
+    /**
+     * Decodes the program options and descriptor of a program status notification ahead of their use.
+     * Failure to decode is ignored, leaving the values to be decoded again when they are used.
+     */
+    void preload() {
+      if (isHeartbeat()) {
+        return;
+      }
+      try {
+        getProgramOptions();
+        getProgramDescriptor();
+      } catch (RuntimeException e) {
+        LOG.trace("Failed to decode program options or descriptor for program run {}", programRunId, e);
+      }
+    }
+  }
 }
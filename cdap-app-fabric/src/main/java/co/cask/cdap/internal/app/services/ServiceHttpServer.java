@@ -33,12 +33,14 @@ import co.cask.cdap.api.service.http.HttpServiceHandlerSpecification;
 import co.cask.cdap.app.program.Program;
 import co.cask.cdap.app.runtime.ProgramOptions;
 import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.lang.InstantiatorFactory;
 import co.cask.cdap.common.lang.PropertyFieldSetter;
 import co.cask.cdap.common.logging.LoggingContext;
 import co.cask.cdap.common.namespace.NamespaceQueryAdmin;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
 import co.cask.cdap.data2.metadata.writer.MetadataPublisher;
+import co.cask.cdap.data2.transaction.ReadOnlyTransactionSystemClient;
 import co.cask.cdap.data2.transaction.Transactions;
 import co.cask.cdap.internal.app.runtime.DataSetFieldSetter;
 import co.cask.cdap.internal.app.runtime.MetricsFieldSetter;
@@ -63,6 +65,7 @@ import org.apache.twill.discovery.DiscoveryServiceClient;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 
@@ -77,6 +80,8 @@ public class ServiceHttpServer extends AbstractServiceHttpServer<HttpServiceHand
   private final AtomicInteger instanceCount;
   private final BasicHttpServiceContextFactory contextFactory;
   private final NamespaceQueryAdmin namespaceQueryAdmin;
+  private final TransactionSystemClient txClient;
+  private ReadOnlyTransactionSystemClient readOnlyTxClient;
 
   public ServiceHttpServer(String host, Program program, ProgramOptions programOptions,
                            CConfiguration cConf, ServiceSpecification spec,
@@ -101,6 +106,26 @@ public class ServiceHttpServer extends AbstractServiceHttpServer<HttpServiceHand
                                                pluginFinder, transactionRunner);
     this.context = contextFactory.create(null);
     this.namespaceQueryAdmin = namespaceQueryAdmin;
+    this.txClient = txClient;
+  }
+
+  @Override
+  public void startUp() throws Exception {
+    // Read-only handler calls of all handler threads share the same snapshot transaction
+    int txTimeout = context.getDefaultTxTimeout();
+    long refreshMillis = Math.min(cConf.getLong(Constants.AppFabric.PROGRAM_READ_ONLY_TX_REFRESH_MS),
+                                  TimeUnit.SECONDS.toMillis(txTimeout) / 2);
+    readOnlyTxClient = new ReadOnlyTransactionSystemClient(txClient, txTimeout, refreshMillis);
+    super.startUp();
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    try {
+      super.shutDown();
+    } finally {
+      readOnlyTxClient.close();
+    }
   }
 
   @Override
@@ -221,6 +246,11 @@ public class ServiceHttpServer extends AbstractServiceHttpServer<HttpServiceHand
           }
         }
 
+        @Override
+        public void executeReadOnly(ThrowingRunnable runnable) throws Exception {
+          context.executeReadOnly(datasetContext -> runnable.run(), readOnlyTxClient);
+        }
+
         @Override
         public <T> T execute(Callable<T> callable, boolean transactional) throws Exception {
           if (transactional) {
@@ -354,6 +354,13 @@ public class DefaultStore implements Store {
     });
   }
 
+  @Override
+  public Map<ProgramRunId, RunRecordMeta> getActiveRuns(Predicate<RunRecordMeta> filter) {
+    return TransactionRunners.run(transactionRunner, context -> {
+      return getAppMetadataStore(context).getActiveRuns(filter);
+    });
+  }
+
   @Override
   public Map<ProgramRunId, RunRecordMeta> getActiveRuns(ApplicationId applicationId) {
     return TransactionRunners.run(transactionRunner, context -> {
@@ -38,6 +38,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -83,6 +84,32 @@ public class DefaultPreviewStore implements PreviewStore {
     }
   }
 
+  @Override
+  public void putSamples(ApplicationId applicationId, String tracerName, String propertyName,
+                         Map<Integer, byte[]> values) {
+    byte[] tracer = Bytes.toBytes(tracerName);
+    byte[] property = Bytes.toBytes(propertyName);
+
+    Map<byte[], Map<byte[], byte[]>> changes = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<Integer, byte[]> entry : values.entrySet()) {
+      Map<byte[], byte[]> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      columns.put(TRACER, tracer);
+      columns.put(PROPERTY, property);
+      columns.put(VALUE, entry.getValue());
+      MDSKey mdsKey = new MDSKey.Builder().add(applicationId.getNamespace())
+        .add(applicationId.getApplication()).add(tracerName).add(propertyName).add(entry.getKey()).build();
+      changes.put(mdsKey.getKey(), columns);
+    }
+
+    try {
+      table.persist(changes, 1L);
+    } catch (IOException e) {
+      String message = String.format("Error while putting samples of property '%s' for application '%s' and " +
+                                       "tracer '%s' in preview table.", propertyName, applicationId, tracerName);
+      throw new RuntimeException(message, e);
+    }
+  }
+
   @Override
   public Map<String, List<JsonElement>> get(ApplicationId applicationId, String tracerName) {
     // PreviewStore is a singleton and we have to create gson for each operation since gson is not thread safe.
@@ -18,6 +18,9 @@ package co.cask.cdap.metadata;
 
 import co.cask.cdap.app.store.Store;
 import co.cask.cdap.common.app.RunIds;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.metadata.lineage.AccessType;
 import co.cask.cdap.data2.metadata.lineage.DefaultLineageStoreReader;
 import co.cask.cdap.data2.metadata.lineage.Lineage;
@@ -31,8 +34,11 @@ import co.cask.cdap.proto.id.ProgramId;
 import co.cask.cdap.proto.id.ProgramRunId;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
@@ -42,6 +48,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -58,9 +65,7 @@ public class LineageAdmin {
 
   private static final Logger LOG = LoggerFactory.getLogger(LineageAdmin.class);
 
-  private static final Function<Relation, ProgramId> RELATION_TO_PROGRAM_FUNCTION = Relation::getProgram;
-
-  private static final Function<Relation, NamespacedEntityId> RELATION_TO_DATA_FUNCTION = Relation::getData;
+  private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
 
   private static final Function<Collection<Relation>, Collection<Relation>> COLLAPSE_UNKNOWN_TYPE_FUNCTION =
     relations -> {
@@ -73,11 +78,24 @@ public class LineageAdmin {
 
   private final LineageStoreReader lineageStoreReader;
   private final Store store;
+  private final long closedWindowDelayMillis;
+  private final int cacheSize;
+  // Relations of a dataset or a program with the runs started in a closed day, keyed by the entity and the day.
+  // It is null if caching is disabled.
+  @Nullable
+  private final Cache<ImmutablePair<NamespacedEntityId, Long>, Set<Relation>> relationsCache;
 
   @Inject
-  LineageAdmin(LineageStoreReader lineageStoreReader, Store store) {
+  LineageAdmin(CConfiguration cConf, LineageStoreReader lineageStoreReader, Store store) {
     this.lineageStoreReader = lineageStoreReader;
     this.store = store;
+    this.closedWindowDelayMillis =
+      TimeUnit.SECONDS.toMillis(cConf.getLong(Constants.Metadata.LINEAGE_CACHE_CLOSED_WINDOW_DELAY_SECS));
+    this.cacheSize = cConf.getInt(Constants.Metadata.LINEAGE_CACHE_SIZE);
+    this.relationsCache = cacheSize <= 0 ? null : CacheBuilder.newBuilder()
+      .maximumSize(cacheSize)
+      .expireAfterWrite(1, TimeUnit.HOURS)
+      .build();
   }
 
   /**
@@ -221,6 +239,7 @@ public class LineageAdmin {
 
     ScanRangeWithFilter scanRange = getScanRange(runningInRange);
     LOG.trace("Using scan start = {}, scan end = {}", scanRange.getStart(), scanRange.getEnd());
+    long cacheEndMillis = relationsCache == null ? 0L : getEarliestActiveStartTime(runningInRange);
 
     Multimap<RelationKey, Relation> relations = HashMultimap.create();
     Set<NamespacedEntityId> visitedDatasets = new HashSet<>();
@@ -231,35 +250,29 @@ public class LineageAdmin {
     toVisitDatasets.add(sourceData);
     for (int i = 0; i < levels; ++i) {
       LOG.trace("Level {}", i);
+      // Fetch related programs of all the datasets in this level
+      toVisitDatasets.removeAll(visitedDatasets);
+      visitedDatasets.addAll(toVisitDatasets);
+      LOG.trace("Visiting datasets {}", toVisitDatasets);
       toVisitPrograms.clear();
-      for (NamespacedEntityId d : toVisitDatasets) {
-        if (visitedDatasets.add(d)) {
-          LOG.trace("Visiting dataset {}", d);
-          // Fetch related programs
-          Iterable<Relation> programRelations = getProgramRelations(d, scanRange.getStart(), scanRange.getEnd(),
-                                                                    scanRange.getFilter());
-          LOG.trace("Got program relations {}", programRelations);
-          for (Relation relation : programRelations) {
-            relations.put(new RelationKey(relation), relation);
-          }
-          Iterables.addAll(toVisitPrograms, Iterables.transform(programRelations, RELATION_TO_PROGRAM_FUNCTION));
+      for (Set<Relation> programRelations : getRelations(toVisitDatasets, scanRange, cacheEndMillis).values()) {
+        LOG.trace("Got program relations {}", programRelations);
+        for (Relation relation : programRelations) {
+          relations.put(new RelationKey(relation), relation);
+          toVisitPrograms.add(relation.getProgram());
         }
       }
 
+      // Fetch related datasets of all the programs in this level
+      toVisitPrograms.removeAll(visitedPrograms);
+      visitedPrograms.addAll(toVisitPrograms);
+      LOG.trace("Visiting programs {}", toVisitPrograms);
       toVisitDatasets.clear();
-      for (ProgramId p : toVisitPrograms) {
-        if (visitedPrograms.add(p)) {
-          LOG.trace("Visiting program {}", p);
-          // Fetch related datasets
-          Iterable<Relation> datasetRelations = lineageStoreReader.getRelations(p, scanRange.getStart(),
-                                                                                scanRange.getEnd(),
-                                                                                scanRange.getFilter());
-          LOG.trace("Got data relations {}", datasetRelations);
-          for (Relation relation : datasetRelations) {
-            relations.put(new RelationKey(relation), relation);
-          }
-          Iterables.addAll(toVisitDatasets,
-                           Iterables.transform(datasetRelations, RELATION_TO_DATA_FUNCTION));
+      for (Set<Relation> datasetRelations : getRelations(toVisitPrograms, scanRange, cacheEndMillis).values()) {
+        LOG.trace("Got data relations {}", datasetRelations);
+        for (Relation relation : datasetRelations) {
+          relations.put(new RelationKey(relation), relation);
+          toVisitDatasets.add(relation.getData());
         }
       }
     }
@@ -274,12 +287,106 @@ public class LineageAdmin {
     return lineage;
   }
 
-  private Iterable<Relation> getProgramRelations(NamespacedEntityId data, long start, long end,
-                                                 Predicate<Relation> filter) {
-    if (!(data instanceof DatasetId)) {
-      throw new IllegalStateException("Unknown data type " + data);
+  /**
+   * Fetches the relations of the given datasets or programs in the given scan range with a single call to the
+   * {@link LineageStoreReader}. Relations of the runs started in the days that are closed are served from the cache
+   * if they are cached for all the entities. Otherwise all the closed days are scanned and cached again.
+   * A day is closed only if it ends before the given cache end time, since runs that are still active can add
+   * relations to the day they started in.
+   *
+   * @param entities the datasets or programs to fetch relations for
+   * @param scanRange the range of run start times and the filter for the relations
+   * @param cacheEndMillis the start time of the earliest run in the scan range that is still active
+   * @return a {@link Map} from each entity to its relations
+   */
+  private Map<NamespacedEntityId, Set<Relation>> getRelations(Set<? extends NamespacedEntityId> entities,
+                                                              ScanRangeWithFilter scanRange, long cacheEndMillis) {
+    if (entities.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    long start = scanRange.getStart();
+    long end = scanRange.getEnd();
+    Predicate<Relation> filter = scanRange.getFilter();
+
+    // Days are cached only if they are closed and their relations are included entirely in the scan range.
+    // Since the scan range is inclusive on both ends, the day containing the end is included only if end is its last
+    // millisecond. The first day can start before the scan range, as relations of runs outside of the scan range
+    // never pass the filter.
+    long firstDay = start / DAY_MILLIS;
+    long lastDay = Math.min(Math.min((end + 1) / DAY_MILLIS, cacheEndMillis / DAY_MILLIS),
+                            (System.currentTimeMillis() - closedWindowDelayMillis) / DAY_MILLIS);
+    // Also skip the cache if the closed days of all the entities would not fit in it
+    if (relationsCache == null || firstDay >= lastDay || (lastDay - firstDay) * entities.size() > cacheSize) {
+      return lineageStoreReader.getRelations(entities, start, end, filter);
+    }
+
+    Map<NamespacedEntityId, Set<Relation>> result = new HashMap<>();
+    boolean allCached = true;
+    for (NamespacedEntityId entity : entities) {
+      Set<Relation> entityRelations = new HashSet<>();
+      for (long day = firstDay; day < lastDay && allCached; day++) {
+        Set<Relation> dayRelations = relationsCache.getIfPresent(new ImmutablePair<>(entity, day));
+        if (dayRelations == null) {
+          allCached = false;
+        } else {
+          dayRelations.stream().filter(filter).forEach(entityRelations::add);
+        }
+      }
+      if (!allCached) {
+        break;
+      }
+      result.put(entity, entityRelations);
+    }
+
+    if (allCached) {
+      LOG.trace("Serving relations of {} from cache for days [{}, {})", entities, firstDay, lastDay);
+      long scanStart = lastDay * DAY_MILLIS;
+      if (scanStart <= end) {
+        for (Map.Entry<NamespacedEntityId, Set<Relation>> entry :
+          lineageStoreReader.getRelations(entities, scanStart, end, filter).entrySet()) {
+          result.get(entry.getKey()).addAll(entry.getValue());
+        }
+      }
+      return result;
+    }
+
+    // Scan all the closed days without the filter to cache them
+    result.clear();
+    for (Map.Entry<NamespacedEntityId, Set<Relation>> entry :
+      lineageStoreReader.getRelations(entities, firstDay * DAY_MILLIS, end, relation -> true).entrySet()) {
+      Map<Long, Set<Relation>> dayRelations = new HashMap<>();
+      Set<Relation> entityRelations = new HashSet<>();
+      for (Relation relation : entry.getValue()) {
+        long day = RunIds.getTime(relation.getRun(), TimeUnit.MILLISECONDS) / DAY_MILLIS;
+        if (day >= firstDay && day < lastDay) {
+          dayRelations.computeIfAbsent(day, k -> new HashSet<>()).add(relation);
+        }
+        if (filter.test(relation)) {
+          entityRelations.add(relation);
+        }
+      }
+      for (long day = firstDay; day < lastDay; day++) {
+        Set<Relation> relations = dayRelations.get(day);
+        relationsCache.put(new ImmutablePair<>(entry.getKey(), day),
+                           relations == null ? ImmutableSet.of() : ImmutableSet.copyOf(relations));
+      }
+      result.put(entry.getKey(), entityRelations);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the start time in milliseconds of the earliest run among the given runs that is still active,
+   * or {@link Long#MAX_VALUE} if none of them is active.
+   */
+  private long getEarliestActiveStartTime(Set<RunId> runIds) {
+    if (runIds.isEmpty()) {
+      return Long.MAX_VALUE;
     }
-    return lineageStoreReader.getRelations((DatasetId) data, start, end, filter);
+    return store.getActiveRuns(record -> runIds.contains(RunIds.fromString(record.getPid()))).values().stream()
+      .mapToLong(record -> RunIds.getTime(record.getPid(), TimeUnit.MILLISECONDS))
+      .min()
+      .orElse(Long.MAX_VALUE);
   }
 
   /**
@@ -33,4 +33,11 @@ public interface MetadataMessageProcessor {
    */
   void processMessage(MetadataMessage message, StructuredTableContext context) throws IOException, ConflictException;
 
+  /**
+   * Writes out the changes buffered by the {@link #processMessage(MetadataMessage, StructuredTableContext)} calls.
+   * It is called in the same transaction after a batch of messages has been processed.
+   */
+  default void flush(StructuredTableContext context) throws IOException {
+    // no-op
+  }
 }
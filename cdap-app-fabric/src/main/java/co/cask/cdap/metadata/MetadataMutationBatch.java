@@ -0,0 +1,241 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metadata;
+
+import co.cask.cdap.api.metadata.MetadataEntity;
+import co.cask.cdap.api.metadata.MetadataScope;
+import co.cask.cdap.spi.metadata.Metadata;
+import co.cask.cdap.spi.metadata.MetadataDirective;
+import co.cask.cdap.spi.metadata.MetadataKind;
+import co.cask.cdap.spi.metadata.MetadataMutation;
+import co.cask.cdap.spi.metadata.MetadataStorage;
+import co.cask.cdap.spi.metadata.ScopedName;
+import co.cask.cdap.spi.metadata.ScopedNameOfKind;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * Collects {@link MetadataMutation}s so that they can be applied with {@link MetadataStorage#batch(List)} calls
+ * in which every entity appears at most once. Mutations of the same entity are folded together when the result
+ * is the same as applying them in order:
+ * <ul>
+ *   <li>A {@link MetadataMutation.Drop} discards all the collected mutations of the entity before it.</li>
+ *   <li>Consecutive {@link MetadataMutation.Update}s are merged into one update.</li>
+ *   <li>An update following a {@link MetadataMutation.Create} is merged into the create, if the update only
+ *   changes the scopes that the create replaces.</li>
+ *   <li>A create replaces an update before it, if the update only changes the scopes that the create replaces,
+ *   and the create has no directive for the metadata set by the update.</li>
+ *   <li>Of two consecutive {@link MetadataMutation.Remove}s, one is dropped if the other removes everything
+ *   it removes, and removals of names are combined.</li>
+ *   <li>An update followed by a remove of everything it sets is replaced by the remove.</li>
+ * </ul>
+ * The mutations of an entity that cannot be folded are applied in subsequent batches, in the order they were added.
+ * This class is not thread safe.
+ */
+final class MetadataMutationBatch {
+
+  private final Map<MetadataEntity, List<MetadataMutation>> entityMutations = new LinkedHashMap<>();
+  private int added;
+
+  /**
+   * Adds a mutation to the batch.
+   */
+  void add(MetadataMutation mutation) {
+    added++;
+    List<MetadataMutation> mutations = entityMutations.computeIfAbsent(mutation.getEntity(), e -> new ArrayList<>());
+    if (mutation.getType() == MetadataMutation.Type.DROP) {
+      mutations.clear();
+    } else if (!mutations.isEmpty()) {
+      int last = mutations.size() - 1;
+      MetadataMutation folded = fold(mutations.get(last), mutation);
+      if (folded != null) {
+        mutations.set(last, folded);
+        return;
+      }
+    }
+    mutations.add(mutation);
+  }
+
+  /**
+   * Returns the number of mutations added to this batch since it was last cleared.
+   */
+  int getAddedCount() {
+    return added;
+  }
+
+  /**
+   * Returns the mutations to apply, split into batches that each contain at most one mutation of every entity.
+   * The batches must be applied in order.
+   */
+  List<List<MetadataMutation>> getBatches() {
+    List<List<MetadataMutation>> batches = new ArrayList<>();
+    for (List<MetadataMutation> mutations : entityMutations.values()) {
+      for (int i = 0; i < mutations.size(); i++) {
+        if (batches.size() == i) {
+          batches.add(new ArrayList<>());
+        }
+        batches.get(i).add(mutations.get(i));
+      }
+    }
+    return batches;
+  }
+
+  boolean isEmpty() {
+    return added == 0;
+  }
+
+  void clear() {
+    entityMutations.clear();
+    added = 0;
+  }
+
+  /**
+   * Folds two consecutive mutations of the same entity into one.
+   *
+   * @return the mutation that has the same result as applying the two mutations in order, or {@code null} if
+   *         there is no such mutation
+   */
+  @Nullable
+  private static MetadataMutation fold(MetadataMutation first, MetadataMutation second) {
+    switch (first.getType()) {
+      case CREATE:
+        if (second.getType() == MetadataMutation.Type.UPDATE) {
+          return fold((MetadataMutation.Create) first, (MetadataMutation.Update) second);
+        }
+        return null;
+      case UPDATE:
+        switch (second.getType()) {
+          case UPDATE:
+            return merge((MetadataMutation.Update) first, (MetadataMutation.Update) second);
+          case CREATE:
+            return fold((MetadataMutation.Update) first, (MetadataMutation.Create) second);
+          case REMOVE:
+            return removesAll((MetadataMutation.Remove) second, ((MetadataMutation.Update) first).getUpdates())
+              ? second : null;
+          default:
+            return null;
+        }
+      case REMOVE:
+        if (second.getType() == MetadataMutation.Type.REMOVE) {
+          return fold((MetadataMutation.Remove) first, (MetadataMutation.Remove) second);
+        }
+        return null;
+      default:
+        return null;
+    }
+  }
+
+  @Nullable
+  private static MetadataMutation fold(MetadataMutation.Create create, MetadataMutation.Update update) {
+    Metadata updates = update.getUpdates();
+    if (!getScopes(create.getMetadata()).containsAll(getScopes(updates))) {
+      return null;
+    }
+    // the update overrides the directives for the metadata it sets
+    Map<ScopedNameOfKind, MetadataDirective> directives = new HashMap<>(create.getDirectives());
+    directives.keySet().removeAll(getNamesOfKind(updates));
+    return new MetadataMutation.Create(create.getEntity(), merge(create.getMetadata(), updates), directives);
+  }
+
+  @Nullable
+  private static MetadataMutation fold(MetadataMutation.Update update, MetadataMutation.Create create) {
+    Metadata updates = update.getUpdates();
+    if (!getScopes(create.getMetadata()).containsAll(getScopes(updates))) {
+      return null;
+    }
+    for (ScopedNameOfKind name : getNamesOfKind(updates)) {
+      if (create.getDirectives().containsKey(name)) {
+        return null;
+      }
+    }
+    return create;
+  }
+
+  @Nullable
+  private static MetadataMutation fold(MetadataMutation.Remove first, MetadataMutation.Remove second) {
+    if (first.getRemovals() != null && second.getRemovals() != null) {
+      Set<ScopedNameOfKind> removals = new HashSet<>(first.getRemovals());
+      removals.addAll(second.getRemovals());
+      return new MetadataMutation.Remove(first.getEntity(), removals);
+    }
+    if (removesAll(first, second)) {
+      return first;
+    }
+    if (removesAll(second, first)) {
+      return second;
+    }
+    return null;
+  }
+
+  private static MetadataMutation.Update merge(MetadataMutation.Update first, MetadataMutation.Update second) {
+    return new MetadataMutation.Update(first.getEntity(), merge(first.getUpdates(), second.getUpdates()));
+  }
+
+  private static Metadata merge(Metadata first, Metadata second) {
+    Set<ScopedName> tags = new HashSet<>(first.getTags());
+    tags.addAll(second.getTags());
+    Map<ScopedName, String> properties = new HashMap<>(first.getProperties());
+    properties.putAll(second.getProperties());
+    return new Metadata(tags, properties);
+  }
+
+  /**
+   * Returns whether the given remove removes everything that the other remove removes.
+   */
+  private static boolean removesAll(MetadataMutation.Remove remove, MetadataMutation.Remove other) {
+    if (other.getRemovals() != null) {
+      return other.getRemovals().stream().allMatch(name -> removes(remove, name));
+    }
+    return remove.getRemovals() == null
+      && remove.getScopes().containsAll(other.getScopes()) && remove.getKinds().containsAll(other.getKinds());
+  }
+
+  /**
+   * Returns whether the given remove removes all the given metadata.
+   */
+  private static boolean removesAll(MetadataMutation.Remove remove, Metadata metadata) {
+    return getNamesOfKind(metadata).stream().allMatch(name -> removes(remove, name));
+  }
+
+  private static boolean removes(MetadataMutation.Remove remove, ScopedNameOfKind name) {
+    if (remove.getRemovals() != null) {
+      return remove.getRemovals().contains(name);
+    }
+    return remove.getScopes().contains(name.getScope()) && remove.getKinds().contains(name.getKind());
+  }
+
+  private static Set<MetadataScope> getScopes(Metadata metadata) {
+    return Stream.concat(metadata.getTags().stream(), metadata.getProperties().keySet().stream())
+      .map(ScopedName::getScope).collect(Collectors.toSet());
+  }
+
+  private static Set<ScopedNameOfKind> getNamesOfKind(Metadata metadata) {
+    return Stream.concat(
+      metadata.getTags().stream().map(tag -> new ScopedNameOfKind(MetadataKind.TAG, tag)),
+      metadata.getProperties().keySet().stream().map(key -> new ScopedNameOfKind(MetadataKind.PROPERTY, key))
+    ).collect(Collectors.toSet());
+  }
+}
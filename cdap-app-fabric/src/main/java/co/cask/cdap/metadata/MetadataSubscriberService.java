@@ -22,6 +22,7 @@ import co.cask.cdap.api.messaging.MessagingContext;
 import co.cask.cdap.api.metadata.MetadataEntity;
 import co.cask.cdap.api.metadata.MetadataScope;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.ConflictException;
 import co.cask.cdap.common.InvalidMetadataException;
 import co.cask.cdap.common.conf.CConfiguration;
@@ -48,6 +49,7 @@ import co.cask.cdap.proto.WorkflowNodeStateDetail;
 import co.cask.cdap.proto.codec.EntityIdTypeAdapter;
 import co.cask.cdap.proto.codec.OperationTypeAdapter;
 import co.cask.cdap.proto.element.EntityType;
+import co.cask.cdap.proto.id.DatasetId;
 import co.cask.cdap.proto.id.EntityId;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.ProgramId;
@@ -71,10 +73,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
@@ -84,6 +89,8 @@ import javax.annotation.Nullable;
  * This is a wrapping service to host multiple {@link AbstractMessagingSubscriberService}s for lineage, usage
  * and metadata subscriptions.
  * No transactions should be started in any of the overrided methods since they are already wrapped in a transaction.
+ * Metadata mutations, lineage and usage of a batch of messages are buffered and written together at the end of
+ * the batch, with the metadata mutations of the same entity coalesced by {@link MetadataMutationBatch}.
  */
 public class MetadataSubscriberService extends AbstractMessagingSubscriberService<MetadataMessage> {
 
@@ -108,6 +115,7 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
   private final MetadataStorage metadataStorage;
   private final MultiThreadMessagingContext messagingContext;
   private final TransactionRunner transactionRunner;
+  private final MetricsContext metricsContext;
 
   @Inject
   MetadataSubscriberService(CConfiguration cConf, MessagingService messagingService,
@@ -115,22 +123,31 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
                             MetricsCollectionService metricsCollectionService,
                             MetadataStorage metadataStorage,
                             TransactionRunner transactionRunner) {
+    this(cConf, messagingService, datasetFramework, metadataStorage, transactionRunner,
+         metricsCollectionService.getContext(ImmutableMap.of(
+           Constants.Metrics.Tag.COMPONENT, Constants.Service.MASTER_SERVICES,
+           Constants.Metrics.Tag.INSTANCE_ID, "0",
+           Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+           Constants.Metrics.Tag.TOPIC, cConf.get(Constants.Metadata.MESSAGING_TOPIC),
+           Constants.Metrics.Tag.CONSUMER, "metadata.writer"
+         )));
+  }
+
+  private MetadataSubscriberService(CConfiguration cConf, MessagingService messagingService,
+                                    DatasetFramework datasetFramework, MetadataStorage metadataStorage,
+                                    TransactionRunner transactionRunner, MetricsContext metricsContext) {
     super(
       NamespaceId.SYSTEM.topic(cConf.get(Constants.Metadata.MESSAGING_TOPIC)),
       cConf.getInt(Constants.Metadata.MESSAGING_FETCH_SIZE),
       cConf.getInt(TxConstants.Manager.CFG_TX_TIMEOUT),
       cConf.getLong(Constants.Metadata.MESSAGING_POLL_DELAY_MILLIS),
       RetryStrategies.fromConfiguration(cConf, "system.metadata."),
-      metricsCollectionService.getContext(ImmutableMap.of(
-        Constants.Metrics.Tag.COMPONENT, Constants.Service.MASTER_SERVICES,
-        Constants.Metrics.Tag.INSTANCE_ID, "0",
-        Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
-        Constants.Metrics.Tag.TOPIC, cConf.get(Constants.Metadata.MESSAGING_TOPIC),
-        Constants.Metrics.Tag.CONSUMER, "metadata.writer"
-      ))
+      metricsContext,
+      cConf.getInt(Constants.MessagingSystem.SUBSCRIBER_THREADS)
     );
 
     this.cConf = cConf;
+    this.metricsContext = metricsContext;
     this.messagingContext = new MultiThreadMessagingContext(messagingService);
     this.datasetFramework = datasetFramework;
     this.metadataStorage = metadataStorage;
@@ -214,8 +231,20 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
         continue;
       }
 
+      // profile messages read and write the metadata storage directly,
+      // hence the metadata mutations buffered so far must be applied before them
+      if (processor instanceof ProfileMetadataMessageProcessor) {
+        MetadataMessageProcessor operationProcessor = processors.get(MetadataMessage.Type.METADATA_OPERATION);
+        if (operationProcessor != null) {
+          operationProcessor.flush(structuredTableContext);
+        }
+      }
       processor.processMessage(message, structuredTableContext);
     }
+
+    for (MetadataMessageProcessor processor : processors.values()) {
+      processor.flush(structuredTableContext);
+    }
   }
 
   /**
@@ -223,6 +252,8 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
    */
   private final class DataAccessLineageProcessor implements MetadataMessageProcessor {
 
+    private final List<ImmutablePair<ProgramRunId, DataAccessLineage>> accesses = new ArrayList<>();
+
     DataAccessLineageProcessor() {}
 
     @Override
@@ -233,9 +264,22 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
       }
 
       DataAccessLineage lineage = message.getPayload(GSON, DataAccessLineage.class);
-      ProgramRunId programRunId = (ProgramRunId) message.getEntityId();
+      accesses.add(new ImmutablePair<>((ProgramRunId) message.getEntityId(), lineage));
+    }
+
+    @Override
+    public void flush(StructuredTableContext context) throws IOException {
+      if (accesses.isEmpty()) {
+        return;
+      }
       LineageTable lineageTable = LineageTable.create(context);
-      lineageTable.addAccess(programRunId, lineage.getDatasetId(), lineage.getAccessType(), lineage.getAccessTime());
+      for (ImmutablePair<ProgramRunId, DataAccessLineage> access : accesses) {
+        DataAccessLineage lineage = access.getSecond();
+        lineageTable.addAccess(access.getFirst(), lineage.getDatasetId(),
+                               lineage.getAccessType(), lineage.getAccessTime());
+      }
+      metricsContext.increment("metadata.lineage.writes", accesses.size());
+      accesses.clear();
     }
   }
 
@@ -244,6 +288,8 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
    */
   private final class FieldLineageProcessor implements MetadataMessageProcessor {
 
+    private FieldLineageTable fieldLineageTable;
+
     FieldLineageProcessor() {}
 
 
@@ -263,7 +309,9 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
                  message, t);
         return;
       }
-      FieldLineageTable fieldLineageTable = FieldLineageTable.create(context);
+      if (fieldLineageTable == null) {
+        fieldLineageTable = FieldLineageTable.create(context);
+      }
       fieldLineageTable.addFieldLineageInfo(programRunId, info);
     }
   }
@@ -273,6 +321,9 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
    */
   private final class UsageProcessor implements MetadataMessageProcessor {
 
+    // registering the same usage again is a no-op, so duplicates in a batch are only written once
+    private final Set<ImmutablePair<ProgramId, DatasetId>> usages = new LinkedHashSet<>();
+
     UsageProcessor() {}
 
     @Override
@@ -282,9 +333,20 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
         return;
       }
       DatasetUsage usage = message.getPayload(GSON, DatasetUsage.class);
-      ProgramId programId = (ProgramId) message.getEntityId();
+      usages.add(new ImmutablePair<>((ProgramId) message.getEntityId(), usage.getDatasetId()));
+    }
+
+    @Override
+    public void flush(StructuredTableContext context) throws IOException {
+      if (usages.isEmpty()) {
+        return;
+      }
       UsageTable usageTable = new UsageTable(context);
-      usageTable.register(programId, usage.getDatasetId());
+      for (ImmutablePair<ProgramId, DatasetId> usage : usages) {
+        usageTable.register(usage.getFirst(), usage.getSecond());
+      }
+      metricsContext.increment("metadata.usage.writes", usages.size());
+      usages.clear();
     }
   }
 
@@ -326,10 +388,30 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
    */
   private class MetadataOperationProcessor extends MetadataValidator implements MetadataMessageProcessor {
 
+    private final MetadataMutationBatch batch = new MetadataMutationBatch();
+
     MetadataOperationProcessor(CConfiguration cConf) {
       super(cConf);
     }
 
+    @Override
+    public void flush(StructuredTableContext context) throws IOException {
+      if (batch.isEmpty()) {
+        return;
+      }
+      int applied = 0;
+      long startTime = System.currentTimeMillis();
+      for (List<MetadataMutation> mutations : batch.getBatches()) {
+        metadataStorage.batch(mutations);
+        applied += mutations.size();
+      }
+      metricsContext.gauge("metadata.batch.time.ms", System.currentTimeMillis() - startTime);
+      metricsContext.increment("metadata.mutations.received", batch.getAddedCount());
+      metricsContext.increment("metadata.mutations.applied", applied);
+      LOG.trace("Applied {} metadata mutations coalesced from {}", applied, batch.getAddedCount());
+      batch.clear();
+    }
+
     @Override
     public void processMessage(MetadataMessage message, StructuredTableContext context) throws IOException {
       MetadataOperation operation = message.getPayload(GSON, MetadataOperation.class);
@@ -342,11 +424,11 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
           MetadataOperation.Create create = (MetadataOperation.Create) operation;
           MetadataMutation mutation = new MetadataMutation.Create(
             entity, new Metadata(MetadataScope.SYSTEM, create.getTags(), create.getProperties()), CREATE_DIRECTIVES);
-          metadataStorage.apply(mutation);
+          batch.add(mutation);
           break;
         }
         case DROP: {
-          metadataStorage.apply(new MetadataMutation.Drop(operation.getEntity()));
+          batch.add(new MetadataMutation.Drop(operation.getEntity()));
           break;
         }
         case PUT: {
@@ -358,7 +440,7 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
               validateProperties(entity, props);
               validateTags(entity, tags);
             }
-            metadataStorage.apply(new MetadataMutation.Update(entity, new Metadata(put.getScope(), tags, props)));
+            batch.add(new MetadataMutation.Update(entity, new Metadata(put.getScope(), tags, props)));
           } catch (InvalidMetadataException e) {
             LOG.warn("Ignoring invalid metadata operation {} from TMS: {}", operation,
                      GSON.toJson(message.getRawPayload()), e);
@@ -376,22 +458,22 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
             delete.getTags().forEach(
               name -> toDelete.add(new ScopedNameOfKind(MetadataKind.TAG, delete.getScope(), name)));
           }
-          metadataStorage.apply(new MetadataMutation.Remove(entity, toDelete));
+          batch.add(new MetadataMutation.Remove(entity, toDelete));
           break;
         }
         case DELETE_ALL: {
           MetadataScope scope = ((MetadataOperation.DeleteAll) operation).getScope();
-          metadataStorage.apply(new MetadataMutation.Remove(entity, scope));
+          batch.add(new MetadataMutation.Remove(entity, scope));
           break;
         }
         case DELETE_ALL_PROPERTIES: {
           MetadataScope scope = ((MetadataOperation.DeleteAllProperties) operation).getScope();
-          metadataStorage.apply(new MetadataMutation.Remove(entity, scope, MetadataKind.PROPERTY));
+          batch.add(new MetadataMutation.Remove(entity, scope, MetadataKind.PROPERTY));
           break;
         }
         case DELETE_ALL_TAGS: {
           MetadataScope scope = ((MetadataOperation.DeleteAllTags) operation).getScope();
-          metadataStorage.apply(new MetadataMutation.Remove(entity, scope, MetadataKind.TAG));
+          batch.add(new MetadataMutation.Remove(entity, scope, MetadataKind.TAG));
           break;
         }
         default:
@@ -17,6 +17,8 @@
 package co.cask.cdap.scheduler;
 
 import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.app.store.Store;
 import co.cask.cdap.common.ConflictException;
 import co.cask.cdap.common.conf.CConfiguration;
@@ -27,6 +29,7 @@ import co.cask.cdap.internal.app.runtime.schedule.ScheduleTaskRunner;
 import co.cask.cdap.internal.app.runtime.schedule.constraint.CheckableConstraint;
 import co.cask.cdap.internal.app.runtime.schedule.constraint.ConstraintContext;
 import co.cask.cdap.internal.app.runtime.schedule.constraint.ConstraintResult;
+import co.cask.cdap.internal.app.runtime.schedule.constraint.ProgramRunsCache;
 import co.cask.cdap.internal.app.runtime.schedule.queue.Job;
 import co.cask.cdap.internal.app.runtime.schedule.queue.JobQueue;
 import co.cask.cdap.internal.app.runtime.schedule.queue.JobQueueTable;
@@ -34,10 +37,12 @@ import co.cask.cdap.internal.app.runtime.schedule.store.Schedulers;
 import co.cask.cdap.internal.app.services.ProgramLifecycleService;
 import co.cask.cdap.internal.app.services.PropertiesResolver;
 import co.cask.cdap.internal.schedule.constraint.Constraint;
+import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.spi.data.transaction.TransactionException;
 import co.cask.cdap.spi.data.transaction.TransactionRunner;
 import co.cask.cdap.spi.data.transaction.TransactionRunners;
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -48,8 +53,12 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
@@ -65,6 +74,7 @@ class ConstraintCheckerService extends AbstractIdleService {
   private final NamespaceQueryAdmin namespaceQueryAdmin;
   private final CConfiguration cConf;
   private final TransactionRunner transactionRunner;
+  private final MetricsContext metricsContext;
   private ScheduleTaskRunner taskRunner;
   private ListeningExecutorService taskExecutorService;
   private volatile boolean stopping = false;
@@ -74,13 +84,18 @@ class ConstraintCheckerService extends AbstractIdleService {
                            ProgramLifecycleService lifecycleService, PropertiesResolver propertiesResolver,
                            NamespaceQueryAdmin namespaceQueryAdmin,
                            CConfiguration cConf,
-                           TransactionRunner transactionRunner) {
+                           TransactionRunner transactionRunner,
+                           MetricsCollectionService metricsCollectionService) {
     this.store = store;
     this.lifecycleService = lifecycleService;
     this.propertiesResolver = propertiesResolver;
     this.namespaceQueryAdmin = namespaceQueryAdmin;
     this.cConf = cConf;
     this.transactionRunner = transactionRunner;
+    this.metricsContext = metricsCollectionService.getContext(ImmutableMap.of(
+      Constants.Metrics.Tag.COMPONENT, Constants.Service.MASTER_SERVICES,
+      Constants.Metrics.Tag.INSTANCE_ID, "0",
+      Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace()));
   }
 
   @Override
@@ -90,9 +105,16 @@ class ConstraintCheckerService extends AbstractIdleService {
       Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("constraint-checker-task-%d").build()));
     taskRunner = new ScheduleTaskRunner(store, lifecycleService, propertiesResolver, namespaceQueryAdmin, cConf);
 
+    // Each worker owns a disjoint set of job queue partitions
     int numPartitions = cConf.getInt(Constants.Scheduler.JOB_QUEUE_NUM_PARTITIONS);
-    for (int partition = 0; partition < numPartitions; partition++) {
-      taskExecutorService.submit(new ConstraintCheckerThread(partition));
+    int numWorkers = Math.max(1, Math.min(numPartitions,
+                                          cConf.getInt(Constants.Scheduler.JOB_QUEUE_NUM_WORKERS, numPartitions)));
+    for (int worker = 0; worker < numWorkers; worker++) {
+      List<Integer> partitions = new ArrayList<>();
+      for (int partition = worker; partition < numPartitions; partition += numWorkers) {
+        partitions.add(partition);
+      }
+      taskExecutorService.submit(new ConstraintCheckerThread(partitions));
     }
     LOG.info("Started ConstraintCheckerService. state: " + state());
   }
@@ -117,16 +139,17 @@ class ConstraintCheckerService extends AbstractIdleService {
 
   private class ConstraintCheckerThread implements Runnable {
     private final RetryStrategy scheduleStrategy;
-    private final int partition;
+    private final List<Integer> partitions;
     private final Deque<Job> readyJobs = new ArrayDeque<>();
-    private Job lastConsumed;
+    // the last job consumed from each partition owned by this thread
+    private final Map<Integer, Job> lastConsumed = new HashMap<>();
     private int failureCount;
 
-    ConstraintCheckerThread(int partition) {
+    ConstraintCheckerThread(List<Integer> partitions) {
       // TODO: [CDAP-11370] Need to be configured in cdap-default.xml. Retry with delay ranging from 0.1s to 30s
       scheduleStrategy =
         co.cask.cdap.common.service.RetryStrategies.exponentialDelay(100, 30000, TimeUnit.MILLISECONDS);
-      this.partition = partition;
+      this.partitions = partitions;
     }
 
     @Override
@@ -152,11 +175,16 @@ class ConstraintCheckerService extends AbstractIdleService {
      * @return sleep time in milliseconds before next fetch
      */
     private long checkJobQueue() {
-      boolean emptyFetch = false;
+      boolean emptyFetch = true;
       try {
-        emptyFetch = TransactionRunners.run(transactionRunner, context -> {
-          return checkJobConstraints(JobQueueTable.getJobQueue(context, cConf));
-        });
+        for (int partition : partitions) {
+          if (stopping) {
+            break;
+          }
+          emptyFetch &= TransactionRunners.run(transactionRunner, context -> {
+            return checkJobConstraints(JobQueueTable.getJobQueue(context, cConf), partition);
+          });
+        }
 
         // run any ready jobs
         runReadyJobs();
@@ -176,27 +204,29 @@ class ConstraintCheckerService extends AbstractIdleService {
       return emptyFetch && readyJobs.isEmpty() ? 2000L : 0L;
     }
 
-    private boolean checkJobConstraints(JobQueue jobQueue) throws IOException {
+    private boolean checkJobConstraints(JobQueue jobQueue, int partition) throws IOException {
       boolean emptyScan = true;
+      // Program runs looked up by the constraints are shared by all jobs checked in this transaction
+      ProgramRunsCache runsCache = new ProgramRunsCache(store);
 
-      try (CloseableIterator<Job> jobQueueIter = jobQueue.getJobs(partition, lastConsumed)) {
+      try (CloseableIterator<Job> jobQueueIter = jobQueue.getJobs(partition, lastConsumed.get(partition))) {
         Stopwatch stopWatch = new Stopwatch().start();
         // limit the batches of the scan to 1000ms
         while (!stopping && stopWatch.elapsedMillis() < 1000) {
           if (!jobQueueIter.hasNext()) {
-            lastConsumed = null;
+            lastConsumed.remove(partition);
             return emptyScan;
           }
           Job job = jobQueueIter.next();
-          lastConsumed = job;
+          lastConsumed.put(partition, job);
           emptyScan = false;
-          checkAndUpdateJob(jobQueue, job);
+          checkAndUpdateJob(jobQueue, job, runsCache);
         }
       }
       return emptyScan;
     }
 
-    private void checkAndUpdateJob(JobQueue jobQueue, Job job) throws IOException {
+    private void checkAndUpdateJob(JobQueue jobQueue, Job job, ProgramRunsCache runsCache) throws IOException {
       long now = System.currentTimeMillis();
       if (job.isToBeDeleted()) {
         // only delete jobs that are pending trigger or pending constraint. If pending launch, the launcher will delete
@@ -221,7 +251,7 @@ class ConstraintCheckerService extends AbstractIdleService {
       if (job.getState() != Job.State.PENDING_CONSTRAINT) {
         return;
       }
-      ConstraintResult.SatisfiedState satisfiedState = constraintsSatisfied(job, now);
+      ConstraintResult.SatisfiedState satisfiedState = constraintsSatisfied(job, now, runsCache);
       if (satisfiedState == ConstraintResult.SatisfiedState.NOT_SATISFIED) {
         return;
       }
@@ -271,6 +301,10 @@ class ConstraintCheckerService extends AbstractIdleService {
 
       try {
         taskRunner.launch(job);
+        // the job is created when the first notification that triggers it is received
+        metricsContext.increment(Constants.Metrics.Scheduler.JOBS_LAUNCHED, 1L);
+        metricsContext.gauge(Constants.Metrics.Scheduler.JOB_LAUNCH_DELAY_MILLIS,
+                             System.currentTimeMillis() - job.getCreationTime());
       } catch (ConflictException e) {
         LOG.error("Skip job {} because it was rejected while launching: {}", job.getJobKey(), e.getMessage());
       } catch (Exception e) {
@@ -283,10 +317,10 @@ class ConstraintCheckerService extends AbstractIdleService {
       return true;
     }
 
-    private ConstraintResult.SatisfiedState constraintsSatisfied(Job job, long now) {
+    private ConstraintResult.SatisfiedState constraintsSatisfied(Job job, long now, ProgramRunsCache runsCache) {
       ConstraintResult.SatisfiedState satisfiedState = ConstraintResult.SatisfiedState.SATISFIED;
 
-      ConstraintContext constraintContext = new ConstraintContext(job, now, store);
+      ConstraintContext constraintContext = new ConstraintContext(job, now, store, runsCache);
       for (Constraint constraint : job.getSchedule().getConstraints()) {
         if (!(constraint instanceof CheckableConstraint)) {
           // this shouldn't happen, since implementation of Constraint in ProgramSchedule
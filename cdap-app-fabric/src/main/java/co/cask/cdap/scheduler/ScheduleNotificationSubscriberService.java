@@ -87,7 +87,8 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
   protected void startUp() throws Exception {
     LOG.info("Starting {}", getClass().getSimpleName());
 
-    // Use a shared executor for all different subscribers and only keep one core thread
+    // Use a shared executor for all different subscribers and only keep one core thread. The subscribers all update
+    // the job queue, hence they are processed one at a time instead of on the executor shared by all subscribers.
     subscriberExecutor = Executors.newScheduledThreadPool(
       1, Threads.createDaemonThreadFactory("scheduler-notification-subscriber-%d"));
 
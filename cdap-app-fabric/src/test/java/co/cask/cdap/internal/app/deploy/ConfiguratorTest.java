@@ -28,6 +28,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.guice.ConfigModule;
 import co.cask.cdap.common.id.Id;
+import co.cask.cdap.common.lang.jar.UnpackedJarCache;
 import co.cask.cdap.common.test.AppJarHelper;
 import co.cask.cdap.internal.app.ApplicationSpecificationAdapter;
 import co.cask.cdap.internal.app.deploy.pipeline.AppSpecInfo;
@@ -95,7 +96,9 @@ public class ConfiguratorTest {
     CConfiguration cConf = CConfiguration.create();
     ArtifactRepository baseArtifactRepo = new DefaultArtifactRepository(conf, null, null,
                                                                         new DummyProgramRunnerFactory(),
-                                                                        new DefaultImpersonator(cConf, null));
+                                                                        new DefaultImpersonator(cConf, null),
+                                                                        new UnpackedJarCache(TMP_FOLDER.newFolder(),
+                                                                                             0, TimeUnit.SECONDS));
     ArtifactRepository artifactRepo = new AuthorizationArtifactRepository(baseArtifactRepo,
                                                                           authEnforcer, authenticationContext);
 
@@ -135,7 +138,9 @@ public class ConfiguratorTest {
     CConfiguration cConf = CConfiguration.create();
     ArtifactRepository baseArtifactRepo = new DefaultArtifactRepository(conf, null, null,
                                                                         new DummyProgramRunnerFactory(),
-                                                                        new DefaultImpersonator(cConf, null));
+                                                                        new DefaultImpersonator(cConf, null),
+                                                                        new UnpackedJarCache(TMP_FOLDER.newFolder(),
+                                                                                             0, TimeUnit.SECONDS));
     ArtifactRepository artifactRepo = new AuthorizationArtifactRepository(baseArtifactRepo,
                                                                           authEnforcer, authenticationContext);
 
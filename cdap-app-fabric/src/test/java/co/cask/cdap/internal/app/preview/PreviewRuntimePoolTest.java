@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.preview;
+
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.common.utils.Tasks;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link PreviewRuntimePool}.
+ */
+public class PreviewRuntimePoolTest {
+
+  private static final String POOL_THREAD = "preview-runtime-pool";
+
+  @Test
+  public void testAcquire() throws Exception {
+    AtomicInteger created = new AtomicInteger();
+    List<String> disposed = new CopyOnWriteArrayList<>();
+    PreviewRuntimePool<String> pool = new PreviewRuntimePool<>(
+      2, TimeUnit.SECONDS.toMillis(10), () -> created.getAndIncrement() + "@" + Thread.currentThread().getName(),
+      disposed::add, new NoopMetricsContext());
+
+    // The first acquire fills up the pool and waits for the first runtime
+    Assert.assertEquals("0@" + POOL_THREAD, pool.acquire());
+
+    // The pool is refilled after the runtime is taken
+    Tasks.waitFor(3, created::get, 10, TimeUnit.SECONDS);
+    Assert.assertEquals("1@" + POOL_THREAD, pool.acquire());
+    Assert.assertEquals("2@" + POOL_THREAD, pool.acquire());
+
+    // Runtimes left in the pool are disposed on close
+    Tasks.waitFor(5, created::get, 10, TimeUnit.SECONDS);
+    pool.close();
+    Tasks.waitFor(2, disposed::size, 10, TimeUnit.SECONDS);
+
+    // No more pooling after close
+    Assert.assertEquals("5@" + Thread.currentThread().getName(), pool.acquire());
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    AtomicInteger created = new AtomicInteger();
+    PreviewRuntimePool<String> pool = new PreviewRuntimePool<>(
+      0, TimeUnit.SECONDS.toMillis(10), () -> created.getAndIncrement() + "@" + Thread.currentThread().getName(),
+      runtime -> { }, new NoopMetricsContext());
+
+    // Runtimes are always created by the caller
+    Assert.assertEquals("0@" + Thread.currentThread().getName(), pool.acquire());
+    Assert.assertEquals("1@" + Thread.currentThread().getName(), pool.acquire());
+    pool.close();
+    Assert.assertEquals(2, created.get());
+  }
+
+  @Test
+  public void testWaitTimeout() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    AtomicInteger created = new AtomicInteger();
+    PreviewRuntimePool<String> pool = new PreviewRuntimePool<>(1, 100, () -> {
+      String thread = Thread.currentThread().getName();
+      if (POOL_THREAD.equals(thread)) {
+        // Block the runtime creation in the pool
+        latch.await();
+      }
+      return created.getAndIncrement() + "@" + thread;
+    }, runtime -> { }, new NoopMetricsContext());
+
+    try {
+      // The runtime is created by the caller if no pooled runtime is ready in time
+      Assert.assertEquals("0@" + Thread.currentThread().getName(), pool.acquire());
+
+      // Once the pooled runtime is ready, it is used by the next acquire
+      latch.countDown();
+      Tasks.waitFor(2, created::get, 10, TimeUnit.SECONDS);
+      Assert.assertEquals("1@" + POOL_THREAD, pool.acquire());
+    } finally {
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testCreateFailure() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    PreviewRuntimePool<String> pool = new PreviewRuntimePool<>(1, 100, () -> {
+      if (attempts.getAndIncrement() == 0) {
+        throw new Exception("Failure");
+      }
+      return "runtime";
+    }, runtime -> { }, new NoopMetricsContext());
+
+    try {
+      // The failure in the pool doesn't fail the caller
+      Assert.assertEquals("runtime", pool.acquire());
+    } finally {
+      pool.close();
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.preview;
+
+import co.cask.cdap.api.common.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link TraceReservoir}.
+ */
+public class TraceReservoirTest {
+
+  @Test
+  public void testBelowCapacity() {
+    TraceReservoir reservoir = new TraceReservoir(5);
+    for (int i = 0; i < 3; i++) {
+      Assert.assertTrue(reservoir.add(i, Bytes::toBytes));
+    }
+
+    // All values are kept in the order they were added
+    Map<Integer, byte[]> samples = reservoir.drain();
+    Assert.assertEquals(3, samples.size());
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(i, Bytes.toInt(samples.get(i)));
+    }
+
+    // Nothing more to drain until new values are added
+    Assert.assertTrue(reservoir.drain().isEmpty());
+    Assert.assertTrue(reservoir.add(3, Bytes::toBytes));
+    samples = reservoir.drain();
+    Assert.assertEquals(1, samples.size());
+    Assert.assertEquals(3, Bytes.toInt(samples.get(3)));
+  }
+
+  @Test
+  public void testSampling() {
+    int capacity = 10;
+    int total = 10000;
+    AtomicInteger encoded = new AtomicInteger();
+
+    long sum = 0;
+    int trials = 200;
+    for (int trial = 0; trial < trials; trial++) {
+      TraceReservoir reservoir = new TraceReservoir(capacity);
+      for (int i = 0; i < total; i++) {
+        reservoir.add(i, value -> {
+          encoded.incrementAndGet();
+          return Bytes.toBytes(value);
+        });
+      }
+      Assert.assertEquals(total, reservoir.getCount());
+
+      // The sample never grows beyond the capacity
+      Map<Integer, byte[]> samples = reservoir.drain();
+      Assert.assertEquals(capacity, samples.size());
+      for (byte[] value : samples.values()) {
+        sum += Bytes.toInt(value);
+      }
+    }
+
+    // Only a small fraction of the values are encoded
+    Assert.assertTrue(encoded.get() < trials * total / 10);
+
+    // The sample is uniform, hence the mean of the sampled values is close to the mean of all values
+    double mean = (double) sum / (trials * capacity);
+    Assert.assertEquals((total - 1) / 2.0, mean, total * 0.05);
+  }
+}
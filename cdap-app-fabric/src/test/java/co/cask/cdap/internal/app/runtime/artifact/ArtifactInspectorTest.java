@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015-2017 Cask Data, Inc.
+ * Copyright © 2015-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -18,6 +18,9 @@ package co.cask.cdap.internal.app.runtime.artifact;
 
 import co.cask.cdap.api.artifact.ApplicationClass;
 import co.cask.cdap.api.artifact.ArtifactClasses;
+import co.cask.cdap.api.artifact.ArtifactId;
+import co.cask.cdap.api.artifact.ArtifactScope;
+import co.cask.cdap.api.artifact.ArtifactVersion;
 import co.cask.cdap.api.artifact.CloseableClassLoader;
 import co.cask.cdap.api.dataset.lib.KeyValueTable;
 import co.cask.cdap.api.dataset.table.Table;
@@ -31,6 +34,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.id.Id;
 import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.lang.jar.UnpackedJarCache;
 import co.cask.cdap.common.test.AppJarHelper;
 import co.cask.cdap.common.utils.DirUtils;
 import co.cask.cdap.internal.app.runtime.artifact.app.InvalidConfigApp;
@@ -52,8 +56,11 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.Manifest;
 
 /**
@@ -62,15 +69,18 @@ public class ArtifactInspectorTest {
   @ClassRule
   public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
 
+  private static CConfiguration cConf;
   private static ArtifactClassLoaderFactory classLoaderFactory;
   private static ArtifactInspector artifactInspector;
 
   @BeforeClass
   public static void setup() throws Exception {
-    CConfiguration cConf = CConfiguration.create();
+    cConf = CConfiguration.create();
     cConf.set(Constants.CFG_LOCAL_DATA_DIR, TMP_FOLDER.newFolder().getAbsolutePath());
 
-    classLoaderFactory = new ArtifactClassLoaderFactory(cConf, new DummyProgramRunnerFactory());
+    classLoaderFactory = new ArtifactClassLoaderFactory(cConf, new DummyProgramRunnerFactory(),
+                                                        new UnpackedJarCache(TMP_FOLDER.newFolder(),
+                                                                             0, TimeUnit.SECONDS));
     artifactInspector = new ArtifactInspector(cConf, classLoaderFactory);
   }
 
@@ -154,6 +164,76 @@ public class ArtifactInspectorTest {
     }
   }
 
+  @Test
+  public void testInspectionCache() throws Exception {
+    File appFile = getAppFile();
+    File cacheDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
+                             cConf.get(Constants.AppFabric.ARTIFACT_INSPECTION_CACHE_DIR));
+    Id.Artifact artifactId = Id.Artifact.from(Id.Namespace.DEFAULT, "InspectionApp", "1.0.0");
+    Location artifactLocation = Locations.toLocation(appFile);
+    EntityImpersonator entityImpersonator =
+      new EntityImpersonator(artifactId.toEntityId(), new DefaultImpersonator(CConfiguration.create(), null));
+    try (CloseableClassLoader artifactClassLoader =
+           classLoaderFactory.createClassLoader(ImmutableList.of(artifactLocation).iterator(), entityImpersonator)) {
+
+      ArtifactClasses classes = artifactInspector.inspectArtifact(artifactId, appFile, artifactClassLoader);
+      Assert.assertFalse(classes.getPlugins().isEmpty());
+
+      // Inspecting through the cache should give the same result, and the second inspection is served from the cache
+      List<ArtifactDescriptor> parents = Collections.emptyList();
+      Assert.assertEquals(classes, artifactInspector.inspectArtifact(artifactId, appFile, parents,
+                                                                     entityImpersonator, artifactClassLoader));
+      Assert.assertEquals(1, DirUtils.listFiles(cacheDir, "json").size());
+      Assert.assertEquals(classes, artifactInspector.inspectArtifact(artifactId, appFile, parents,
+                                                                     entityImpersonator, artifactClassLoader));
+      Assert.assertEquals(1, DirUtils.listFiles(cacheDir, "json").size());
+
+      // Inspecting with a parent should not use the cached result
+      File parentFile = createJar(InvalidConfigApp.class, new File(TMP_FOLDER.newFolder(), "parent-1.0.0.jar"),
+                                  new Manifest());
+      ArtifactId parentId = new ArtifactId("parent", new ArtifactVersion("1.0.0"), ArtifactScope.USER);
+      parents = Collections.singletonList(new ArtifactDescriptor(parentId, Locations.toLocation(parentFile)));
+      Assert.assertEquals(classes, artifactInspector.inspectArtifact(artifactId, appFile, parents,
+                                                                     entityImpersonator, artifactClassLoader));
+      Assert.assertEquals(2, DirUtils.listFiles(cacheDir, "json").size());
+      Assert.assertEquals(classes, artifactInspector.inspectArtifact(artifactId, appFile, parents,
+                                                                     entityImpersonator, artifactClassLoader));
+      Assert.assertEquals(2, DirUtils.listFiles(cacheDir, "json").size());
+
+      // Replacing the content of the parent artifact should not use the cached result either
+      long lastModified = parentFile.lastModified();
+      createJar(InspectionApp.class, parentFile, new Manifest());
+      Assert.assertTrue(parentFile.setLastModified(lastModified + 1000));
+      Assert.assertEquals(classes, artifactInspector.inspectArtifact(artifactId, appFile, parents,
+                                                                     entityImpersonator, artifactClassLoader));
+      Assert.assertEquals(3, DirUtils.listFiles(cacheDir, "json").size());
+    }
+  }
+
+  @Test
+  public void testInspectionCacheEviction() throws Exception {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, TMP_FOLDER.newFolder().getAbsolutePath());
+    cConf.setInt(Constants.AppFabric.ARTIFACT_INSPECTION_CACHE_MAX_ENTRIES, 2);
+    File cacheDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
+                             cConf.get(Constants.AppFabric.ARTIFACT_INSPECTION_CACHE_DIR));
+
+    ArtifactInspectionCache cache = new ArtifactInspectionCache(cConf);
+    ArtifactClasses classes = ArtifactClasses.builder().build();
+    cache.put("k1", classes);
+    cache.put("k2", classes);
+    Assert.assertEquals(2, DirUtils.listFiles(cacheDir, "json").size());
+
+    // Make k1 the most recently used entry, so that k2 is removed when the maximum is exceeded
+    Assert.assertTrue(new File(cacheDir, "k1.json").setLastModified(System.currentTimeMillis() + 10000));
+    Assert.assertTrue(new File(cacheDir, "k2.json").setLastModified(System.currentTimeMillis() - 10000));
+    cache.put("k3", classes);
+    Assert.assertEquals(2, DirUtils.listFiles(cacheDir, "json").size());
+    Assert.assertEquals(classes, cache.get("k1"));
+    Assert.assertNull(cache.get("k2"));
+    Assert.assertEquals(classes, cache.get("k3"));
+  }
+
   private File getAppFile() throws IOException {
     Manifest manifest = new Manifest();
     manifest.getMainAttributes().put(ManifestFields.EXPORT_PACKAGE, InspectionApp.class.getPackage().getName());
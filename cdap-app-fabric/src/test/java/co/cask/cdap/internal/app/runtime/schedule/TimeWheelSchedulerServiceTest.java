@@ -0,0 +1,348 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.schedule;
+
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.api.schedule.SchedulableProgramType;
+import co.cask.cdap.common.AlreadyExistsException;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.Tasks;
+import co.cask.cdap.internal.app.runtime.ProgramOptionConstants;
+import co.cask.cdap.internal.app.runtime.schedule.store.ProgramScheduleStoreDataset;
+import co.cask.cdap.internal.app.runtime.schedule.store.Schedulers;
+import co.cask.cdap.internal.app.runtime.schedule.trigger.TimeTrigger;
+import co.cask.cdap.internal.app.services.http.AppFabricTestBase;
+import co.cask.cdap.messaging.MessagingService;
+import co.cask.cdap.messaging.TopicMetadata;
+import co.cask.cdap.messaging.data.RawMessage;
+import co.cask.cdap.proto.Notification;
+import co.cask.cdap.proto.ScheduledRuntime;
+import co.cask.cdap.proto.id.ApplicationId;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.ProgramId;
+import co.cask.cdap.proto.id.ScheduleId;
+import co.cask.cdap.proto.id.TopicId;
+import co.cask.cdap.spi.data.StructuredRow;
+import co.cask.cdap.spi.data.table.field.Fields;
+import co.cask.cdap.spi.data.transaction.TransactionRunner;
+import co.cask.cdap.spi.data.transaction.TransactionRunners;
+import co.cask.cdap.store.StoreDefinition;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for {@link TimeWheelSchedulerService}. The time of the scheduler is controlled by the tests,
+ * and all schedules fire every minute.
+ */
+public class TimeWheelSchedulerServiceTest extends AppFabricTestBase {
+
+  private static final Gson GSON = new Gson();
+  private static final Type STRING_STRING_MAP = new TypeToken<Map<String, String>>() { }.getType();
+  private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+  private static final long MISFIRE_THRESHOLD = TimeUnit.SECONDS.toMillis(10);
+
+  private static final NamespaceId NS_ID = new NamespaceId("timewheeltest");
+  private static final ApplicationId APP_ID = NS_ID.app("app");
+  private static final TopicId TOPIC_ID = NamespaceId.SYSTEM.topic("timeWheelSchedulerTest");
+
+  private static CConfiguration cConf;
+  private static MessagingService messagingService;
+  private static TransactionRunner transactionRunner;
+
+  private final AtomicLong currentTime = new AtomicLong();
+
+  @BeforeClass
+  public static void setup() throws Exception {
+    cConf = CConfiguration.copy(getInjector().getInstance(CConfiguration.class));
+    // Publish to a separate topic so that the notifications are not consumed by the scheduler of app-fabric
+    cConf.set(Constants.Scheduler.TIME_EVENT_TOPIC, TOPIC_ID.getTopic());
+    cConf.setLong(Constants.Scheduler.CFG_SCHEDULER_MISFIRE_THRESHOLD_MS, MISFIRE_THRESHOLD);
+    messagingService = getInjector().getInstance(MessagingService.class);
+    messagingService.createTopic(new TopicMetadata(TOPIC_ID));
+    transactionRunner = getInjector().getInstance(TransactionRunner.class);
+  }
+
+  @Test
+  public void testSuspendResume() throws Exception {
+    // Start half a minute before a minute boundary, so that the schedule next fires at the boundary
+    long start = getStartTime();
+    currentTime.set(start);
+    ProgramSchedule schedule = createSchedule("suspendResume");
+    ProgramId program = schedule.getProgramId();
+
+    TimeWheelSchedulerService scheduler = createScheduler();
+    scheduler.startAndWait();
+    try {
+      // The schedule is suspended after being added
+      scheduler.addProgramSchedule(schedule);
+      Assert.assertTrue(scheduler.nextScheduledRuntime(program, SchedulableProgramType.WORKFLOW).isEmpty());
+      currentTime.set(start + MINUTE);
+      scheduler.tick();
+      Assert.assertTrue(getLogicalStartTimes(schedule.getScheduleId()).isEmpty());
+
+      // Resuming the schedule schedules the next fire after the current time
+      scheduler.resumeProgramSchedule(schedule);
+      long fireTime = start + 2 * MINUTE - MINUTE / 2;
+      Assert.assertEquals(Collections.singletonList(fireTime),
+                          getTimes(scheduler.nextScheduledRuntime(program, SchedulableProgramType.WORKFLOW)));
+      currentTime.set(fireTime);
+      scheduler.tick();
+      waitForLogicalStartTimes(schedule.getScheduleId(), fireTime);
+      // The previous runtime is updated after the notification is published
+      Tasks.waitFor(Collections.singletonList(fireTime),
+                    () -> getTimes(scheduler.previousScheduledRuntime(program, SchedulableProgramType.WORKFLOW)),
+                    10, TimeUnit.SECONDS);
+      Assert.assertEquals(Collections.singletonList(fireTime + MINUTE),
+                          getTimes(scheduler.nextScheduledRuntime(program, SchedulableProgramType.WORKFLOW)));
+
+      // A suspended schedule does not fire
+      scheduler.suspendProgramSchedule(schedule);
+      Assert.assertTrue(scheduler.nextScheduledRuntime(program, SchedulableProgramType.WORKFLOW).isEmpty());
+      Assert.assertTrue(scheduler.getAllScheduledRunTimes(program, SchedulableProgramType.WORKFLOW,
+                                                          TimeUnit.MILLISECONDS.toSeconds(fireTime),
+                                                          TimeUnit.MILLISECONDS.toSeconds(fireTime + 5 * MINUTE))
+                          .isEmpty());
+      currentTime.set(fireTime + MINUTE);
+      scheduler.tick();
+      Assert.assertEquals(Collections.singletonList(fireTime), getLogicalStartTimes(schedule.getScheduleId()));
+
+      // After resuming, the schedule fires again from the next minute
+      scheduler.resumeProgramSchedule(schedule);
+      Assert.assertEquals(5, scheduler.getAllScheduledRunTimes(
+        program, SchedulableProgramType.WORKFLOW, TimeUnit.MILLISECONDS.toSeconds(fireTime + 2 * MINUTE),
+        TimeUnit.MILLISECONDS.toSeconds(fireTime + 7 * MINUTE)).size());
+      currentTime.set(fireTime + 2 * MINUTE);
+      scheduler.tick();
+      waitForLogicalStartTimes(schedule.getScheduleId(), fireTime, fireTime + 2 * MINUTE);
+    } finally {
+      scheduler.stopAndWait();
+    }
+  }
+
+  @Test
+  public void testMisfire() throws Exception {
+    long start = getStartTime();
+    currentTime.set(start);
+    ProgramSchedule schedule = createSchedule("misfire");
+    ProgramId program = schedule.getProgramId();
+
+    TimeWheelSchedulerService scheduler = createScheduler();
+    scheduler.startAndWait();
+    try {
+      scheduler.addProgramSchedule(schedule);
+      scheduler.resumeProgramSchedule(schedule);
+      long fireTime = start + MINUTE / 2;
+
+      // Advancing beyond the misfire threshold of the fire time skips the fire
+      currentTime.set(fireTime + 3 * MISFIRE_THRESHOLD);
+      scheduler.tick();
+      Assert.assertEquals(Collections.singletonList(fireTime + MINUTE),
+                          getTimes(scheduler.nextScheduledRuntime(program, SchedulableProgramType.WORKFLOW)));
+      Assert.assertTrue(getLogicalStartTimes(schedule.getScheduleId()).isEmpty());
+      Assert.assertTrue(scheduler.previousScheduledRuntime(program, SchedulableProgramType.WORKFLOW).isEmpty());
+
+      // A fire within the misfire threshold still happens
+      currentTime.set(fireTime + MINUTE + MISFIRE_THRESHOLD / 2);
+      scheduler.tick();
+      waitForLogicalStartTimes(schedule.getScheduleId(), fireTime + MINUTE);
+    } finally {
+      scheduler.stopAndWait();
+    }
+  }
+
+  @Test
+  public void testCheckpointAndRecovery() throws Exception {
+    long start = getStartTime();
+    currentTime.set(start);
+    ProgramSchedule schedule = createSchedule("recovery");
+    ProgramId program = schedule.getProgramId();
+    String triggerName = AbstractTimeSchedulerService.scheduleIdFor(program, SchedulableProgramType.WORKFLOW,
+                                                                    schedule.getName());
+
+    // Schedules that are enabled in the schedule store are loaded when the scheduler starts
+    TransactionRunners.run(transactionRunner, context -> {
+      ProgramScheduleStoreDataset store = Schedulers.getScheduleStore(context);
+      store.addSchedule(schedule);
+      store.updateScheduleStatus(schedule.getScheduleId(), ProgramScheduleStatus.SCHEDULED);
+    });
+    try {
+      long fireTime = start + MINUTE / 2;
+      TimeWheelSchedulerService scheduler = createScheduler();
+      scheduler.startAndWait();
+      try {
+        Assert.assertEquals(Collections.singletonList(fireTime),
+                            getTimes(scheduler.nextScheduledRuntime(program, SchedulableProgramType.WORKFLOW)));
+        currentTime.set(fireTime);
+        scheduler.tick();
+        waitForLogicalStartTimes(schedule.getScheduleId(), fireTime);
+        // The fire time is checkpointed after publishing the notification
+        Tasks.waitFor(Optional.of(fireTime), () -> getCheckpoint(triggerName), 10, TimeUnit.SECONDS);
+      } finally {
+        scheduler.stopAndWait();
+      }
+
+      // Restart a few minutes later. Only the fire within the misfire threshold is recovered.
+      long restartTime = fireTime + 3 * MINUTE + MISFIRE_THRESHOLD / 2;
+      currentTime.set(restartTime);
+      scheduler = createScheduler();
+      scheduler.startAndWait();
+      try {
+        Assert.assertEquals(Collections.singletonList(fireTime),
+                            getTimes(scheduler.previousScheduledRuntime(program, SchedulableProgramType.WORKFLOW)));
+        scheduler.tick();
+        waitForLogicalStartTimes(schedule.getScheduleId(), fireTime, fireTime + 3 * MINUTE);
+        Tasks.waitFor(Optional.of(fireTime + 3 * MINUTE), () -> getCheckpoint(triggerName), 10, TimeUnit.SECONDS);
+        Assert.assertEquals(Collections.singletonList(fireTime + 4 * MINUTE),
+                            getTimes(scheduler.nextScheduledRuntime(program, SchedulableProgramType.WORKFLOW)));
+      } finally {
+        scheduler.stopAndWait();
+      }
+    } finally {
+      TransactionRunners.run(transactionRunner, context -> {
+        Schedulers.getScheduleStore(context).deleteSchedule(schedule.getScheduleId());
+      });
+    }
+  }
+
+  @Test
+  public void testDelete() throws Exception {
+    long start = getStartTime();
+    currentTime.set(start);
+    ProgramSchedule schedule = createSchedule("delete");
+    ProgramId program = schedule.getProgramId();
+    String triggerName = AbstractTimeSchedulerService.scheduleIdFor(program, SchedulableProgramType.WORKFLOW,
+                                                                    schedule.getName());
+
+    TimeWheelSchedulerService scheduler = createScheduler();
+    scheduler.startAndWait();
+    try {
+      scheduler.addProgramSchedule(schedule);
+      try {
+        scheduler.addProgramSchedule(schedule);
+        Assert.fail("Expected AlreadyExistsException when adding the same schedule twice");
+      } catch (AlreadyExistsException e) {
+        // expected
+      }
+      scheduler.resumeProgramSchedule(schedule);
+      long fireTime = start + MINUTE / 2;
+      currentTime.set(fireTime);
+      scheduler.tick();
+      waitForLogicalStartTimes(schedule.getScheduleId(), fireTime);
+      Tasks.waitFor(Optional.of(fireTime), () -> getCheckpoint(triggerName), 10, TimeUnit.SECONDS);
+
+      // Deleting the schedule removes its triggers and checkpoints
+      scheduler.deleteProgramSchedule(schedule);
+      Assert.assertTrue(scheduler.nextScheduledRuntime(program, SchedulableProgramType.WORKFLOW).isEmpty());
+      Assert.assertTrue(scheduler.previousScheduledRuntime(program, SchedulableProgramType.WORKFLOW).isEmpty());
+      Assert.assertEquals(Optional.empty(), getCheckpoint(triggerName));
+      try {
+        scheduler.deleteProgramSchedule(schedule);
+        Assert.fail("Expected SchedulerException when deleting a schedule that does not exist");
+      } catch (SchedulerException e) {
+        // expected
+      }
+
+      // The fire of the deleted schedule that is still in the wheel is ignored
+      currentTime.set(fireTime + MINUTE);
+      scheduler.tick();
+      Assert.assertEquals(Collections.singletonList(fireTime), getLogicalStartTimes(schedule.getScheduleId()));
+
+      // The schedule can be added again after deletion
+      scheduler.addProgramSchedule(schedule);
+      scheduler.resumeProgramSchedule(schedule);
+      currentTime.set(fireTime + 2 * MINUTE);
+      scheduler.tick();
+      waitForLogicalStartTimes(schedule.getScheduleId(), fireTime, fireTime + 2 * MINUTE);
+    } finally {
+      scheduler.stopAndWait();
+    }
+  }
+
+  private TimeWheelSchedulerService createScheduler() {
+    return new TimeWheelSchedulerService(cConf, messagingService, transactionRunner, currentTime::get);
+  }
+
+  /**
+   * Returns a time that is half a minute before a minute boundary in the future.
+   */
+  private static long getStartTime() {
+    long now = System.currentTimeMillis();
+    return now - now % MINUTE + 2 * MINUTE - MINUTE / 2;
+  }
+
+  private static ProgramSchedule createSchedule(String name) {
+    return new ProgramSchedule(name, "every minute", APP_ID.workflow(name + "Workflow"), ImmutableMap.of(),
+                               new TimeTrigger("* * * * *"), Collections.emptyList());
+  }
+
+  private static List<Long> getTimes(List<ScheduledRuntime> runtimes) {
+    List<Long> times = new ArrayList<>();
+    for (ScheduledRuntime runtime : runtimes) {
+      times.add(runtime.getTime());
+    }
+    return times;
+  }
+
+  private static Optional<Long> getCheckpoint(String triggerName) {
+    return TransactionRunners.run(transactionRunner, context -> {
+      Optional<StructuredRow> row = context.getTable(StoreDefinition.TimeScheduleStore.FIRE_CHECKPOINTS)
+        .read(ImmutableList.of(Fields.stringField(StoreDefinition.TimeScheduleStore.TRIGGER_NAME_FIELD, triggerName)));
+      return row.map(r -> r.getLong(StoreDefinition.TimeScheduleStore.FIRE_TIME_FIELD));
+    });
+  }
+
+  private static void waitForLogicalStartTimes(ScheduleId scheduleId, Long... times) throws Exception {
+    Tasks.waitFor(ImmutableList.copyOf(times), () -> getLogicalStartTimes(scheduleId), 10, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Returns the logical start times of all the notifications published for the given schedule.
+   */
+  private static List<Long> getLogicalStartTimes(ScheduleId scheduleId) throws Exception {
+    String scheduleIdJson = GSON.toJson(scheduleId);
+    List<Long> times = new ArrayList<>();
+    try (CloseableIterator<RawMessage> iterator = messagingService.prepareFetch(TOPIC_ID).fetch()) {
+      while (iterator.hasNext()) {
+        Notification notification = GSON.fromJson(new String(iterator.next().getPayload(), StandardCharsets.UTF_8),
+                                                  Notification.class);
+        Map<String, String> properties = notification.getProperties();
+        if (scheduleIdJson.equals(properties.get(ProgramOptionConstants.SCHEDULE_ID))) {
+          Map<String, String> userOverrides = GSON.fromJson(properties.get(ProgramOptionConstants.USER_OVERRIDES),
+                                                            STRING_STRING_MAP);
+          times.add(Long.parseLong(userOverrides.get(ProgramOptionConstants.LOGICAL_START_TIME)));
+        }
+      }
+    }
+    return times;
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.schedule;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link TimingWheel}.
+ */
+public class TimingWheelTest {
+
+  @Test
+  public void testExpiration() {
+    TimingWheel<String> wheel = new TimingWheel<>(1000L, 60, 0L);
+
+    // expiration in the current tick is already expired
+    Assert.assertFalse(wheel.add("now", 500L));
+
+    Assert.assertTrue(wheel.add("second", 1000L));
+    Assert.assertTrue(wheel.add("minute", TimeUnit.MINUTES.toMillis(1)));
+    Assert.assertTrue(wheel.add("hour", TimeUnit.HOURS.toMillis(1)));
+    Assert.assertTrue(wheel.add("day", TimeUnit.DAYS.toMillis(1) + 1500L));
+    Assert.assertEquals(4, wheel.size());
+
+    List<String> expired = new ArrayList<>();
+    wheel.advance(999L, expired);
+    Assert.assertTrue(expired.isEmpty());
+
+    wheel.advance(1000L, expired);
+    Assert.assertEquals(Collections.singletonList("second"), expired);
+
+    expired.clear();
+    wheel.advance(TimeUnit.MINUTES.toMillis(1) - 1, expired);
+    Assert.assertTrue(expired.isEmpty());
+    wheel.advance(TimeUnit.MINUTES.toMillis(1), expired);
+    Assert.assertEquals(Collections.singletonList("minute"), expired);
+
+    // advancing over a long period expires everything in between
+    expired.clear();
+    wheel.advance(TimeUnit.DAYS.toMillis(1), expired);
+    Assert.assertEquals(Collections.singletonList("hour"), expired);
+    Assert.assertEquals(1, wheel.size());
+
+    // items expire at the start of the tick that contains the expiration time
+    expired.clear();
+    wheel.advance(TimeUnit.DAYS.toMillis(1) + 999L, expired);
+    Assert.assertTrue(expired.isEmpty());
+    wheel.advance(TimeUnit.DAYS.toMillis(1) + 1000L, expired);
+    Assert.assertEquals(Collections.singletonList("day"), expired);
+    Assert.assertEquals(0, wheel.size());
+  }
+
+  @Test
+  public void testCascade() {
+    long start = TimeUnit.DAYS.toMillis(100) + 123L;
+    TimingWheel<Long> wheel = new TimingWheel<>(1000L, 8, start);
+
+    // add items expiring across multiple levels of the wheel
+    List<Long> expirations = new ArrayList<>();
+    for (long offset : Arrays.asList(1000L, 7000L, 8000L, 9000L, 63000L, 64000L, 65000L, 600000L, 3600000L)) {
+      expirations.add(start - start % 1000L + offset);
+    }
+    for (long expiration : expirations) {
+      Assert.assertTrue(wheel.add(expiration, expiration));
+    }
+
+    // advance one tick at a time, and each item should expire exactly in its tick
+    List<Long> expired = new ArrayList<>();
+    long end = expirations.get(expirations.size() - 1) + 1000L;
+    for (long time = start; time < end; time += 1000L) {
+      List<Long> expiredInTick = new ArrayList<>();
+      wheel.advance(time, expiredInTick);
+      for (long expiration : expiredInTick) {
+        Assert.assertTrue(expiration <= time);
+        Assert.assertTrue(time - expiration < 1000L);
+      }
+      expired.addAll(expiredInTick);
+    }
+    Assert.assertEquals(expirations, expired);
+    Assert.assertEquals(0, wheel.size());
+  }
+}
@@ -133,6 +133,22 @@ public class ConcurrencyConstraintTest {
       store.setStop(pid2, System.currentTimeMillis(), ProgramRunStatus.FAILED,
                     AppFabricTestHelper.createSourceId(++sourceId));
       assertSatisfied(true, concurrencyConstraint.check(schedule, constraintContext));
+
+      // with a ProgramRunsCache, the runs are only looked up once for all checks sharing the cache
+      ProgramRunsCache runsCache = new ProgramRunsCache(store);
+      ConstraintContext cachedContext = new ConstraintContext(job, now, store, runsCache);
+      assertSatisfied(true, concurrencyConstraint.check(schedule, cachedContext));
+      ProgramRunId pid4 = WORKFLOW_ID.run(RunIds.generate().getId());
+      ProgramRunId pid5 = WORKFLOW_ID.run(RunIds.generate().getId());
+      setStartAndRunning(store, pid4);
+      setStartAndRunning(store, pid5);
+      assertSatisfied(true, concurrencyConstraint.check(schedule, cachedContext));
+      // a new cache sees the new runs
+      runsCache = new ProgramRunsCache(store);
+      cachedContext = new ConstraintContext(job, now, store, runsCache);
+      assertSatisfied(false, concurrencyConstraint.check(schedule, cachedContext));
+      // a smaller limit is served from the cached runs
+      Assert.assertEquals(1, runsCache.getRuns(WORKFLOW_ID, ProgramRunStatus.RUNNING, 0, Long.MAX_VALUE, 1).size());
     } finally {
       AppFabricTestHelper.shutdown();
     }
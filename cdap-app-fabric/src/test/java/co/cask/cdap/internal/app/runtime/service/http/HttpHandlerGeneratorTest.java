@@ -21,6 +21,7 @@ import co.cask.cdap.api.Transactional;
 import co.cask.cdap.api.Transactionals;
 import co.cask.cdap.api.TxCallable;
 import co.cask.cdap.api.TxRunnable;
+import co.cask.cdap.api.annotation.ReadOnly;
 import co.cask.cdap.api.annotation.TransactionControl;
 import co.cask.cdap.api.annotation.TransactionPolicy;
 import co.cask.cdap.api.app.ApplicationSpecification;
@@ -103,6 +104,7 @@ import javax.ws.rs.PathParam;
 public class HttpHandlerGeneratorTest {
 
   private static final String IN_TX = "in-tx";
+  private static final String IN_READ_ONLY_TX = "in-read-only-tx";
 
   @ClassRule
   public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
@@ -161,6 +163,15 @@ public class HttpHandlerGeneratorTest {
       responder.sendStatus(200, headers);
     }
 
+    @Path("/echo/readOnly")
+    @GET
+    @ReadOnly
+    public void echoReadOnly(HttpServiceRequest request, HttpServiceResponder responder) {
+      Assert.assertNotNull(System.getProperty(IN_TX));
+      Assert.assertNotNull(System.getProperty(IN_READ_ONLY_TX));
+      responder.sendString("Read only");
+    }
+
     @Path("/exception")
     @GET
     public void exception(HttpServiceRequest request, HttpServiceResponder responder) throws Exception {
@@ -564,6 +575,13 @@ public class HttpHandlerGeneratorTest {
       Assert.assertEquals("Hello test",
                           new String(ByteStreams.toByteArray(urlConn.getInputStream()), Charsets.UTF_8));
 
+      // Call to a read-only method
+      urlConn = new URL(String.format("http://%s:%d/prefix/p2/echo/readOnly",
+                                      bindAddress.getHostName(), bindAddress.getPort())).openConnection();
+      urlConn.setReadTimeout(2000);
+
+      Assert.assertEquals("Read only", new String(ByteStreams.toByteArray(urlConn.getInputStream()), Charsets.UTF_8));
+
       // Ensure that even though the handler did not have a class-level annotation, we still prefix the path that it
       // handles by "/prefix"
       urlConn = new URL(String.format("http://%s:%d/prefix/ping", bindAddress.getHostName(), bindAddress.getPort()))
@@ -617,6 +635,16 @@ public class HttpHandlerGeneratorTest {
           }
         }
 
+        @Override
+        public void executeReadOnly(ThrowingRunnable runnable) throws Exception {
+          System.setProperty(IN_READ_ONLY_TX, "true");
+          try {
+            context.execute(datasetContext -> runnable.run());
+          } finally {
+            System.clearProperty(IN_READ_ONLY_TX);
+          }
+        }
+
         @Override
         public <T> T execute(Callable<T> callable, boolean transactional) throws Exception {
           if (transactional) {
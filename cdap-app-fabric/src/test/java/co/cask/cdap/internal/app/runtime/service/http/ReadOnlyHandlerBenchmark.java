@@ -0,0 +1,256 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.service.http;
+
+import co.cask.cdap.api.Transactional;
+import co.cask.cdap.api.annotation.ReadOnly;
+import co.cask.cdap.api.annotation.TransactionControl;
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Table;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.api.service.http.AbstractHttpServiceHandler;
+import co.cask.cdap.api.service.http.HttpServiceRequest;
+import co.cask.cdap.api.service.http.HttpServiceResponder;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTable;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import co.cask.cdap.data2.transaction.ReadOnlyTransactionSystemClient;
+import co.cask.cdap.internal.app.runtime.ThrowingRunnable;
+import com.google.common.io.ByteStreams;
+import com.google.common.reflect.TypeToken;
+import io.cdap.http.HttpHandler;
+import io.cdap.http.NettyHttpService;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.tephra.TransactionContext;
+import org.apache.tephra.TransactionManager;
+import org.apache.tephra.TransactionSystemClient;
+import org.apache.tephra.inmemory.InMemoryTxSystemClient;
+import org.apache.twill.common.Cancellable;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+
+/**
+ * Load test of a service handler that looks up keys in a {@link Table}. It compares handler methods that run in a
+ * short transaction per call with {@link ReadOnly} handler methods that share a snapshot transaction through the
+ * {@link ReadOnlyTransactionSystemClient}. Concurrent clients call the handler through a {@link NettyHttpService}.
+ * The transaction manager runs in the same process, hence the saving of a round trip to the transaction service
+ * is not included. It is not a unit test. Run it with the test classpath of this module, optionally passing the
+ * number of client threads and the number of calls per client thread as arguments.
+ */
+public final class ReadOnlyHandlerBenchmark {
+
+  private static final String TABLE_NAME = "lookup";
+  private static final int KEYS = 1000;
+  private static final int ROUNDS = 3;
+
+  /**
+   * Handler that looks up keys in a table.
+   */
+  @Path("/lookup")
+  public static final class LookupHandler extends AbstractHttpServiceHandler {
+
+    private final Table table;
+
+    LookupHandler(Table table) {
+      this.table = table;
+    }
+
+    @GET
+    @Path("/tx/{key}")
+    public void lookup(HttpServiceRequest request, HttpServiceResponder responder, @PathParam("key") String key) {
+      responder.sendString(Bytes.toString(table.get(Bytes.toBytes(key), Bytes.toBytes("c"))));
+    }
+
+    @GET
+    @Path("/readonly/{key}")
+    @ReadOnly
+    public void lookupReadOnly(HttpServiceRequest request, HttpServiceResponder responder,
+                               @PathParam("key") String key) {
+      responder.sendString(Bytes.toString(table.get(Bytes.toBytes(key), Bytes.toBytes("c"))));
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int clients = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+    int calls = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+
+    TransactionManager txManager = new TransactionManager(new Configuration());
+    txManager.startAndWait();
+    TransactionSystemClient txClient = new InMemoryTxSystemClient(txManager);
+    InMemoryTableService.create(TABLE_NAME);
+    populate(txClient);
+
+    try (ReadOnlyTransactionSystemClient readOnlyTxClient = new ReadOnlyTransactionSystemClient(txClient, 30, 1000)) {
+      HttpHandler handler = new HttpHandlerFactory("", TransactionControl.IMPLICIT).createHttpHandler(
+        TypeToken.of(LookupHandler.class), new TableDelegatorContext(txClient, readOnlyTxClient),
+        new NoopMetricsContext());
+      NettyHttpService service = NettyHttpService.builder("read-only-benchmark")
+        .setHttpHandlers(handler)
+        .setExecThreadPoolSize(clients)
+        .build();
+      service.start();
+      try {
+        InetSocketAddress address = service.getBindAddress();
+        String baseURL = String.format("http://%s:%d/lookup/", address.getHostName(), address.getPort());
+        // The first rounds are for warming up
+        for (int i = 0; i < ROUNDS; i++) {
+          for (String mode : new String[] { "tx", "readonly" }) {
+            long startTime = System.nanoTime();
+            runClients(baseURL + mode + "/", clients, calls);
+            long elapsed = System.nanoTime() - startTime;
+            System.out.printf("Round %d: %s %d calls in %d ms, %d calls/s%n", i, mode, clients * calls,
+                              TimeUnit.NANOSECONDS.toMillis(elapsed),
+                              clients * calls * TimeUnit.SECONDS.toNanos(1) / elapsed);
+          }
+        }
+      } finally {
+        service.stop();
+      }
+    } finally {
+      txManager.stopAndWait();
+    }
+  }
+
+  private static void populate(TransactionSystemClient txClient) throws Exception {
+    InMemoryTable table = new InMemoryTable(TABLE_NAME);
+    TransactionContext txContext = new TransactionContext(txClient, table);
+    txContext.start();
+    for (int i = 0; i < KEYS; i++) {
+      table.put(Bytes.toBytes("key" + i), Bytes.toBytes("c"), Bytes.toBytes("value" + i));
+    }
+    txContext.finish();
+  }
+
+  private static void runClients(String baseURL, int clients, int calls) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(clients);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < clients; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < calls; j++) {
+            URL url = new URL(baseURL + "key" + ThreadLocalRandom.current().nextInt(KEYS));
+            HttpURLConnection urlConn = (HttpURLConnection) url.openConnection();
+            if (urlConn.getResponseCode() != 200) {
+              throw new IllegalStateException("Call to " + url + " failed with " + urlConn.getResponseCode());
+            }
+            // Read the whole response, so that the connection is reused
+            try (InputStream is = urlConn.getInputStream()) {
+              ByteStreams.toByteArray(is);
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * A {@link DelegatorContext} that runs each handler thread with its own table, in transactions started through
+   * either the regular or the read-only transaction client.
+   */
+  private static final class TableDelegatorContext implements DelegatorContext<LookupHandler> {
+
+    private final ThreadLocal<InMemoryTable> table = ThreadLocal.withInitial(() -> new InMemoryTable(TABLE_NAME));
+    private final ThreadLocal<LookupHandler> handler;
+    private final ThreadLocal<ServiceTaskExecutor> taskExecutor;
+
+    private TableDelegatorContext(TransactionSystemClient txClient, TransactionSystemClient readOnlyTxClient) {
+      this.handler = ThreadLocal.withInitial(() -> new LookupHandler(table.get()));
+      this.taskExecutor = ThreadLocal.withInitial(() -> new ServiceTaskExecutor() {
+        @Override
+        public void execute(ThrowingRunnable runnable, boolean transactional) throws Exception {
+          if (transactional) {
+            executeInTx(txClient, runnable);
+          } else {
+            runnable.run();
+          }
+        }
+
+        @Override
+        public void executeReadOnly(ThrowingRunnable runnable) throws Exception {
+          executeInTx(readOnlyTxClient, runnable);
+        }
+
+        @Override
+        public <T> T execute(Callable<T> callable, boolean transactional) throws Exception {
+          throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void releaseCallResources() {
+          // no-op
+        }
+
+        @Override
+        public Transactional getTransactional() {
+          throw new UnsupportedOperationException();
+        }
+
+        private void executeInTx(TransactionSystemClient client, ThrowingRunnable runnable) throws Exception {
+          TransactionContext txContext = new TransactionContext(client, table.get());
+          txContext.start();
+          try {
+            runnable.run();
+          } catch (Exception e) {
+            txContext.abort();
+            throw e;
+          }
+          txContext.finish();
+        }
+      });
+    }
+
+    @Override
+    public LookupHandler getHandler() {
+      return handler.get();
+    }
+
+    @Override
+    public ServiceTaskExecutor getServiceTaskExecutor() {
+      return taskExecutor.get();
+    }
+
+    @Override
+    public Cancellable capture() {
+      return () -> {
+        // no-op
+      };
+    }
+  }
+
+  private ReadOnlyHandlerBenchmark() {
+    // no-op
+  }
+}
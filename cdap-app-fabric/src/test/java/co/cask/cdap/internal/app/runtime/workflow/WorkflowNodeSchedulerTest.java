@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.workflow;
+
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.api.schedule.SchedulableProgramType;
+import co.cask.cdap.api.workflow.ScheduleProgramInfo;
+import co.cask.cdap.api.workflow.WorkflowActionNode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link WorkflowNodeScheduler}.
+ */
+public class WorkflowNodeSchedulerTest {
+
+  @Test
+  public void testMaxParallelism() throws Exception {
+    Assert.assertEquals(2, getMaxRunning(2));
+    // Without a limit, nodes of different branches don't wait for each other
+    Assert.assertTrue(getMaxRunning(0) > 2);
+  }
+
+  @Test
+  public void testFailureReleasesSlot() throws Exception {
+    try (WorkflowNodeScheduler scheduler = new WorkflowNodeScheduler(1, new NoopMetricsContext())) {
+      try {
+        scheduler.execute(createNode("failing"), () -> {
+          throw new IllegalStateException("failure");
+        });
+        Assert.fail("Expected the failure of the node");
+      } catch (IllegalStateException e) {
+        Assert.assertEquals("failure", e.getMessage());
+      }
+
+      // The slot of the failed node is available to the next node
+      AtomicInteger executed = new AtomicInteger();
+      scheduler.execute(createNode("next"), executed::incrementAndGet);
+      Assert.assertEquals(1, executed.get());
+    }
+  }
+
+  @Test(timeout = 10000L)
+  public void testNestedBranches() throws Exception {
+    try (WorkflowNodeScheduler scheduler = new WorkflowNodeScheduler(1, new NoopMetricsContext())) {
+      Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+      List<Integer> results = new ArrayList<>();
+
+      // A fork of forks completes with a single pool thread, with the forking threads running the branches
+      List<Callable<Integer>> branches = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        int branch = i;
+        branches.add(() -> {
+          List<Callable<Integer>> nested = new ArrayList<>();
+          for (int j = 0; j < 3; j++) {
+            int value = branch * 3 + j;
+            nested.add(() -> {
+              threads.add(Thread.currentThread());
+              TimeUnit.MILLISECONDS.sleep(50);
+              return value;
+            });
+          }
+          AtomicInteger sum = new AtomicInteger();
+          scheduler.executeBranches(nested, sum::addAndGet);
+          return sum.get();
+        });
+      }
+      scheduler.executeBranches(branches, results::add);
+
+      Collections.sort(results);
+      Assert.assertEquals(Arrays.asList(3, 12, 21), results);
+      // Only the current thread and the single pool thread run branches
+      Assert.assertTrue(threads.size() <= 2);
+    }
+  }
+
+  @Test(timeout = 10000L)
+  public void testBranchFailure() throws Exception {
+    try (WorkflowNodeScheduler scheduler = new WorkflowNodeScheduler(0, new NoopMetricsContext())) {
+      CountDownLatch started = new CountDownLatch(1);
+      AtomicBoolean interrupted = new AtomicBoolean();
+      List<Callable<Void>> branches = Arrays.asList(
+        () -> {
+          started.countDown();
+          try {
+            TimeUnit.SECONDS.sleep(30);
+          } catch (InterruptedException e) {
+            interrupted.set(true);
+          }
+          return null;
+        },
+        () -> {
+          started.await();
+          throw new IllegalStateException("failure");
+        });
+
+      try {
+        scheduler.executeBranches(branches, result -> { });
+        Assert.fail("Expected the failure of the branch");
+      } catch (IllegalStateException e) {
+        Assert.assertEquals("failure", e.getMessage());
+      }
+      // The running branch is interrupted when the other branch fails
+      Assert.assertTrue(interrupted.get());
+    }
+  }
+
+  /**
+   * Executes nodes from concurrent branches and returns the maximum number of nodes that were running at once.
+   */
+  private int getMaxRunning(int maxParallelism) throws Exception {
+    int numNodes = 8;
+    WorkflowNodeScheduler scheduler = new WorkflowNodeScheduler(maxParallelism, new NoopMetricsContext());
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+
+    ExecutorService executor = Executors.newFixedThreadPool(numNodes);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < numNodes; i++) {
+        WorkflowActionNode node = createNode("node" + i);
+        futures.add(executor.submit(() -> {
+          scheduler.execute(node, () -> {
+            int current = running.incrementAndGet();
+            maxRunning.accumulateAndGet(current, Math::max);
+            TimeUnit.MILLISECONDS.sleep(200);
+            running.decrementAndGet();
+          });
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(10, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+      scheduler.close();
+    }
+    return maxRunning.get();
+  }
+
+  private WorkflowActionNode createNode(String name) {
+    return new WorkflowActionNode(name, new ScheduleProgramInfo(SchedulableProgramType.SPARK, name));
+  }
+}
@@ -39,6 +39,9 @@ import co.cask.cdap.internal.app.runtime.SystemArguments;
 import co.cask.cdap.internal.app.store.AppMetadataStore;
 import co.cask.cdap.internal.app.store.RunRecordMeta;
 import co.cask.cdap.internal.profile.ProfileService;
+import co.cask.cdap.messaging.MessagingService;
+import co.cask.cdap.messaging.client.StoreRequestBuilder;
+import co.cask.cdap.proto.Notification;
 import co.cask.cdap.proto.ProgramRunStatus;
 import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.proto.id.NamespaceId;
@@ -49,8 +52,11 @@ import co.cask.cdap.proto.profile.Profile;
 import co.cask.cdap.reporting.ProgramHeartbeatTable;
 import co.cask.cdap.spi.data.transaction.TransactionRunner;
 import co.cask.cdap.spi.data.transaction.TransactionRunners;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
 import com.google.inject.Injector;
 import org.apache.twill.api.RunId;
 import org.junit.After;
@@ -74,6 +80,7 @@ import java.util.concurrent.TimeoutException;
  */
 public class ProgramNotificationSubscriberServiceTest {
   private static final String SYSTEM_METRIC_PREFIX = "system.";
+  private static final Gson GSON = new Gson();
 
   private static Injector injector;
   private static ProgramStateWriter programStateWriter;
@@ -257,6 +264,115 @@ public class ProgramNotificationSubscriberServiceTest {
     heartbeatDatasetStatusCheck(stopTime, ProgramRunStatus.COMPLETED);
   }
 
+  @Test
+  public void testHeartbeatsInSameBatch() throws Exception {
+    ProgramId programId = NamespaceId.DEFAULT.app("someapp").program(ProgramType.SERVICE, "s");
+    Map<String, String> systemArguments = new HashMap<>();
+    systemArguments.put(ProgramOptionConstants.SKIP_PROVISIONING, Boolean.TRUE.toString());
+    systemArguments.put(SystemArguments.PROFILE_NAME, ProfileId.NATIVE.getScopedName());
+    ProgramOptions programOptions = new SimpleProgramOptions(programId, new BasicArguments(systemArguments),
+                                                             new BasicArguments());
+    ProgramRunId runId = programId.run(RunIds.generate());
+    ArtifactId artifactId = NamespaceId.DEFAULT.artifact("testArtifact", "1.0").toApiArtifactId();
+    ApplicationSpecification appSpec = new DefaultApplicationSpecification(
+      "name", "1.0.0", "desc", null, artifactId,
+      Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(),
+      Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(),
+      Collections.emptyMap());
+    programStateWriter.start(runId, programOptions, null, new ProgramDescriptor(programId, appSpec));
+    programStateWriter.running(runId, null);
+    checkProgramStatus(artifactId, runId, ProgramRunStatus.RUNNING);
+
+    // Publish multiple heart beats in the same store request, so that they are processed in the same batch
+    long heartbeatTime = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+    StoreRequestBuilder requestBuilder = StoreRequestBuilder.of(
+      NamespaceId.SYSTEM.topic(injector.getInstance(CConfiguration.class)
+                                 .get(Constants.AppFabric.PROGRAM_STATUS_EVENT_TOPIC)));
+    for (int i = 0; i < 3; i++) {
+      requestBuilder.addPayload(GSON.toJson(createHeartbeat(runId, heartbeatTime + TimeUnit.MINUTES.toMillis(i))));
+    }
+    injector.getInstance(MessagingService.class).publish(requestBuilder.build());
+
+    // Every heart beat is recorded in the heart beat table
+    for (int i = 0; i < 3; i++) {
+      long heartbeatSeconds = TimeUnit.MILLISECONDS.toSeconds(heartbeatTime + TimeUnit.MINUTES.toMillis(i));
+      Tasks.waitFor(1, () -> TransactionRunners.run(transactionRunner, context -> {
+        return new ProgramHeartbeatTable(context).scan(heartbeatSeconds, heartbeatSeconds + 1,
+                                                       ImmutableSet.of(NamespaceId.DEFAULT.getNamespace())).size();
+      }), 10, TimeUnit.SECONDS);
+    }
+    programStateWriter.completed(runId);
+  }
+
+  @Test
+  public void testCollapseEvents() {
+    ProgramRunId runId = NamespaceId.DEFAULT.app("app").service("s").run(RunIds.generate());
+    List<ProgramNotificationSubscriberService.ProgramStatusEvent> events = new ArrayList<>();
+    events.add(decode(1, createHeartbeat(runId, 1000L)));
+    events.add(decode(2, createStatus(runId, ProgramRunStatus.RUNNING)));
+    events.add(decode(3, createStatus(runId, ProgramRunStatus.RUNNING)));
+    events.add(decode(4, createHeartbeat(runId, 2000L)));
+    events.add(decode(5, createHeartbeat(runId, 3000L)));
+    events.add(decode(6, createStatus(runId, ProgramRunStatus.SUSPENDED)));
+    events.add(decode(7, createStatus(runId, ProgramRunStatus.RUNNING)));
+
+    // Only the duplicated RUNNING is dropped. All the heart beats are kept, in the same order.
+    List<ProgramNotificationSubscriberService.ProgramStatusEvent> collapsed =
+      ProgramNotificationSubscriberService.collapseEvents(events);
+    Assert.assertEquals(ImmutableList.of(events.get(0), events.get(1), events.get(3), events.get(4),
+                                         events.get(5), events.get(6)), collapsed);
+  }
+
+  @Test
+  public void testLazyDecode() {
+    ProgramRunId runId = NamespaceId.DEFAULT.app("app").service("s").run(RunIds.generate());
+    Notification notification = createStatus(runId, ProgramRunStatus.RUNNING);
+    notification.getProperties().put(ProgramOptionConstants.PROGRAM_DESCRIPTOR, "{invalid");
+    notification.getProperties().put(ProgramOptionConstants.USER_OVERRIDES, "[invalid");
+
+    // Decoding a notification with malformed program descriptor and options doesn't fail
+    ProgramNotificationSubscriberService.ProgramStatusEvent event = decode(1, notification);
+    Assert.assertEquals(runId, event.getProgramRunId());
+    Assert.assertEquals(ProgramRunStatus.RUNNING, event.getProgramRunStatus());
+    event.preload();
+
+    // It only fails when they are used
+    try {
+      event.getProgramDescriptor();
+      Assert.fail("Expected failure to decode program descriptor");
+    } catch (JsonSyntaxException e) {
+      // expected
+    }
+    try {
+      event.getProgramOptions();
+      Assert.fail("Expected failure to decode program options");
+    } catch (JsonSyntaxException e) {
+      // expected
+    }
+  }
+
+  private ProgramNotificationSubscriberService.ProgramStatusEvent decode(int messageId, Notification notification) {
+    ProgramNotificationSubscriberService.ProgramStatusEvent event =
+      ProgramNotificationSubscriberService.decodeNotification(AppFabricTestHelper.createSourceId(messageId),
+                                                              notification);
+    Assert.assertNotNull(event);
+    return event;
+  }
+
+  private Notification createHeartbeat(ProgramRunId runId, long heartbeatTimeMillis) {
+    Map<String, String> properties = new HashMap<>();
+    properties.put(ProgramOptionConstants.PROGRAM_RUN_ID, GSON.toJson(runId));
+    properties.put(ProgramOptionConstants.HEART_BEAT_TIME, String.valueOf(heartbeatTimeMillis));
+    return new Notification(Notification.Type.PROGRAM_HEART_BEAT, properties);
+  }
+
+  private Notification createStatus(ProgramRunId runId, ProgramRunStatus status) {
+    Map<String, String> properties = new HashMap<>();
+    properties.put(ProgramOptionConstants.PROGRAM_RUN_ID, GSON.toJson(runId));
+    properties.put(ProgramOptionConstants.PROGRAM_STATUS, status.name());
+    return new Notification(Notification.Type.PROGRAM_STATUS, properties);
+  }
+
   private void checkProgramStatus(ArtifactId artifactId, ProgramRunId runId, ProgramRunStatus expectedStatus)
     throws InterruptedException, ExecutionException, TimeoutException {
     Tasks.waitFor(expectedStatus, () -> TransactionRunners.run(transactionRunner, context -> {
@@ -15,6 +15,7 @@
  */
 package co.cask.cdap.internal.app.store.preview;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.common.app.RunIds;
 import co.cask.cdap.internal.AppFabricTestHelper;
 import co.cask.cdap.proto.NamespaceMeta;
@@ -29,6 +30,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -98,4 +100,29 @@ public class DefaultPreviewStoreTest {
     firstApplicationData = store.get(firstApplicationId, "mytracer");
     Assert.assertEquals(0, firstApplicationData.size());
   }
+
+  @Test
+  public void testPutSamples() {
+    ApplicationId applicationId = new ApplicationId(NamespaceMeta.DEFAULT.getName(), RunIds.generate().getId());
+
+    Map<Integer, byte[]> samples = new HashMap<>();
+    samples.put(0, Bytes.toBytes(GSON.toJson("value0")));
+    samples.put(1, Bytes.toBytes(GSON.toJson("value1")));
+    samples.put(2, Bytes.toBytes(GSON.toJson("value2")));
+    store.putSamples(applicationId, "mytracer", "key1", samples);
+    store.put(applicationId, "mytracer", "key2", "value");
+
+    // Replace the value at position 1
+    store.putSamples(applicationId, "mytracer", "key1",
+                     Collections.singletonMap(1, Bytes.toBytes(GSON.toJson("newValue1"))));
+
+    Map<String, List<JsonElement>> data = store.get(applicationId, "mytracer");
+    Assert.assertEquals(2, data.size());
+    List<JsonElement> values = data.get("key1");
+    Assert.assertEquals(3, values.size());
+    Assert.assertEquals("value0", values.get(0).getAsString());
+    Assert.assertEquals("newValue1", values.get(1).getAsString());
+    Assert.assertEquals("value2", values.get(2).getAsString());
+    Assert.assertEquals("value", data.get("key2").get(0).getAsString());
+  }
 }
@@ -19,6 +19,8 @@ package co.cask.cdap.metadata;
 import co.cask.cdap.api.artifact.ArtifactId;
 import co.cask.cdap.app.store.Store;
 import co.cask.cdap.common.app.RunIds;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data2.metadata.lineage.AccessType;
 import co.cask.cdap.data2.metadata.lineage.DefaultLineageStoreReader;
 import co.cask.cdap.data2.metadata.lineage.Lineage;
@@ -31,6 +33,7 @@ import co.cask.cdap.internal.AppFabricTestHelper;
 import co.cask.cdap.internal.app.runtime.ProgramOptionConstants;
 import co.cask.cdap.internal.app.runtime.SystemArguments;
 import co.cask.cdap.internal.app.services.http.AppFabricTestBase;
+import co.cask.cdap.proto.ProgramRunStatus;
 import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.proto.id.DatasetId;
 import co.cask.cdap.proto.id.NamespaceId;
@@ -103,7 +106,8 @@ public class LineageAdminTest extends AppFabricTestBase {
     LineageWriter lineageWriter = new BasicLineageWriter(transactionRunner);
 
     Store store = getInjector().getInstance(Store.class);
-    LineageAdmin lineageAdmin = new LineageAdmin(lineageReader, store);
+    CConfiguration cConf = getInjector().getInstance(CConfiguration.class);
+    LineageAdmin lineageAdmin = new LineageAdmin(cConf, lineageReader, store);
 
     // Add accesses for D3 -> P2 -> D2 -> P1 -> D1 <-> P3
     // We need to use current time here as metadata store stores access time using current time
@@ -174,7 +178,8 @@ public class LineageAdminTest extends AppFabricTestBase {
     LineageWriter lineageWriter = new BasicLineageWriter(transactionRunner);
 
     Store store = getInjector().getInstance(Store.class);
-    LineageAdmin lineageAdmin = new LineageAdmin(lineageReader, store);
+    CConfiguration cConf = getInjector().getInstance(CConfiguration.class);
+    LineageAdmin lineageAdmin = new LineageAdmin(cConf, lineageReader, store);
 
     // Add access
     addRuns(store, run1, run2, run3, run4, run5);
@@ -236,7 +241,8 @@ public class LineageAdminTest extends AppFabricTestBase {
     LineageWriter lineageWriter = new BasicLineageWriter(transactionRunner);
 
     Store store = getInjector().getInstance(Store.class);
-    LineageAdmin lineageAdmin = new LineageAdmin(lineageReader, store);
+    CConfiguration cConf = getInjector().getInstance(CConfiguration.class);
+    LineageAdmin lineageAdmin = new LineageAdmin(cConf, lineageReader, store);
 
     // Add accesses
     addRuns(store, run1, run2, run3, run4, run5);
@@ -268,7 +274,8 @@ public class LineageAdminTest extends AppFabricTestBase {
     LineageWriter lineageWriter = new BasicLineageWriter(transactionRunner);
 
     Store store = getInjector().getInstance(Store.class);
-    LineageAdmin lineageAdmin = new LineageAdmin(lineageReader, store);
+    CConfiguration cConf = getInjector().getInstance(CConfiguration.class);
+    LineageAdmin lineageAdmin = new LineageAdmin(cConf, lineageReader, store);
 
     // Add accesses
     addRuns(store, run1, run2, run3, run4, run5);
@@ -306,7 +313,8 @@ public class LineageAdminTest extends AppFabricTestBase {
     LineageWriter lineageWriter = new BasicLineageWriter(transactionRunner);
 
     Store store = getInjector().getInstance(Store.class);
-    LineageAdmin lineageAdmin = new LineageAdmin(lineageReader, store);
+    CConfiguration cConf = getInjector().getInstance(CConfiguration.class);
+    LineageAdmin lineageAdmin = new LineageAdmin(cConf, lineageReader, store);
 
     // Add accesses
     addRuns(store, run1, run2, run3, run4, run5);
@@ -374,7 +382,8 @@ public class LineageAdminTest extends AppFabricTestBase {
     LineageWriter lineageWriter = new BasicLineageWriter(transactionRunner);
 
     Store store = getInjector().getInstance(Store.class);
-    LineageAdmin lineageAdmin = new LineageAdmin(lineageReader, store);
+    CConfiguration cConf = getInjector().getInstance(CConfiguration.class);
+    LineageAdmin lineageAdmin = new LineageAdmin(cConf, lineageReader, store);
 
     // Add accesses
     addRuns(store, run1, run2, run3, run4, run5);
@@ -459,7 +468,8 @@ public class LineageAdminTest extends AppFabricTestBase {
     LineageWriter lineageWriter = new BasicLineageWriter(transactionRunner);
 
     Store store = getInjector().getInstance(Store.class);
-    LineageAdmin lineageAdmin = new LineageAdmin(lineageReader, store);
+    CConfiguration cConf = getInjector().getInstance(CConfiguration.class);
+    LineageAdmin lineageAdmin = new LineageAdmin(cConf, lineageReader, store);
 
     // Add accesses for D3 -> P2 -> D2 -> P1 -> D1 <-> P3
     // We need to use current time here as metadata store stores access time using current time
@@ -571,6 +581,109 @@ public class LineageAdminTest extends AppFabricTestBase {
                                                     System.currentTimeMillis() + 10000, 100));
   }
 
+  @Test
+  public void testLineageCache() {
+    // Lineage for D1 -> P1 -> D2 -> P2 -> D3 -> P3 -> D4, with P1 and P2 ran and finished in days that are closed
+    TransactionRunner transactionRunner = getInjector().getInstance(TransactionRunner.class);
+    LineageStoreReader lineageReader = new DefaultLineageStoreReader(transactionRunner);
+    LineageWriter lineageWriter = new BasicLineageWriter(transactionRunner);
+
+    Store store = getInjector().getInstance(Store.class);
+    CConfiguration cConf = CConfiguration.copy(getInjector().getInstance(CConfiguration.class));
+    cConf.setLong(Constants.Metadata.LINEAGE_CACHE_CLOSED_WINDOW_DELAY_SECS, TimeUnit.DAYS.toSeconds(1));
+    LineageAdmin lineageAdmin = new LineageAdmin(cConf, lineageReader, store);
+
+    long now = System.currentTimeMillis();
+    ProgramRunId run1 = program1.run(RunIds.generate(now - TimeUnit.DAYS.toMillis(5)).getId());
+    ProgramRunId run2 = program2.run(RunIds.generate(now - TimeUnit.DAYS.toMillis(3)).getId());
+    ProgramRunId run3 = program3.run(RunIds.generate(now).getId());
+
+    addRuns(store, run1, run2, run3);
+    lineageWriter.addAccess(run1, dataset1, AccessType.READ);
+    lineageWriter.addAccess(run1, dataset2, AccessType.WRITE);
+
+    lineageWriter.addAccess(run2, dataset2, AccessType.READ);
+    lineageWriter.addAccess(run2, dataset3, AccessType.WRITE);
+
+    lineageWriter.addAccess(run3, dataset3, AccessType.READ, null);
+    lineageWriter.addAccess(run3, dataset4, AccessType.WRITE, null);
+    stopRuns(store, run1, run2);
+
+    Set<Relation> closedRelations = ImmutableSet.of(
+      new Relation(dataset1, program1, AccessType.READ, twillRunId(run1)),
+      new Relation(dataset2, program1, AccessType.WRITE, twillRunId(run1)),
+      new Relation(dataset2, program2, AccessType.READ, twillRunId(run2)),
+      new Relation(dataset3, program2, AccessType.WRITE, twillRunId(run2))
+    );
+    Lineage expectedLineage = new Lineage(
+      ImmutableSet.<Relation>builder()
+        .addAll(closedRelations)
+        .add(new Relation(dataset3, program3, AccessType.READ, twillRunId(run3), emptySet()))
+        .add(new Relation(dataset4, program3, AccessType.WRITE, twillRunId(run3), emptySet()))
+        .build()
+    );
+
+    long start = now - TimeUnit.DAYS.toMillis(10);
+    Assert.assertEquals(expectedLineage, lineageAdmin.computeLineage(dataset1, start, now + 10000, 100));
+    // the same query again is served from the cache for the closed days
+    Assert.assertEquals(expectedLineage, lineageAdmin.computeLineage(dataset1, start, now + 10000, 100));
+
+    // After removing all the accesses, relations of the closed days are still served from the cache,
+    // while the relations of the current day are not
+    TransactionRunners.run(transactionRunner, context -> {
+      LineageTable.create(context).deleteAll();
+    });
+    Assert.assertEquals(new Lineage(closedRelations),
+                        lineageAdmin.computeLineage(dataset1, start, now + 10000, 100));
+
+    // Without cache, nothing is returned
+    cConf.setInt(Constants.Metadata.LINEAGE_CACHE_SIZE, 0);
+    Assert.assertEquals(new Lineage(ImmutableSet.of()),
+                        new LineageAdmin(cConf, lineageReader, store).computeLineage(dataset1, start,
+                                                                                     now + 10000, 100));
+  }
+
+  @Test
+  public void testLineageCacheActiveRun() {
+    // Lineage for D1 -> P1 -> D2 -> P2 -> D3, with P1 finished and P2 still running, both started in closed days
+    TransactionRunner transactionRunner = getInjector().getInstance(TransactionRunner.class);
+    LineageStoreReader lineageReader = new DefaultLineageStoreReader(transactionRunner);
+    LineageWriter lineageWriter = new BasicLineageWriter(transactionRunner);
+
+    Store store = getInjector().getInstance(Store.class);
+    CConfiguration cConf = CConfiguration.copy(getInjector().getInstance(CConfiguration.class));
+    cConf.setLong(Constants.Metadata.LINEAGE_CACHE_CLOSED_WINDOW_DELAY_SECS, TimeUnit.DAYS.toSeconds(1));
+    LineageAdmin lineageAdmin = new LineageAdmin(cConf, lineageReader, store);
+
+    long now = System.currentTimeMillis();
+    ProgramRunId run1 = program1.run(RunIds.generate(now - TimeUnit.DAYS.toMillis(5)).getId());
+    ProgramRunId run2 = program4.run(RunIds.generate(now - TimeUnit.DAYS.toMillis(3)).getId());
+
+    addRuns(store, run1, run2);
+    lineageWriter.addAccess(run1, dataset1, AccessType.READ);
+    lineageWriter.addAccess(run1, dataset2, AccessType.WRITE);
+    lineageWriter.addAccess(run2, dataset2, AccessType.READ);
+    lineageWriter.addAccess(run2, dataset3, AccessType.WRITE);
+    stopRuns(store, run1);
+
+    Set<Relation> relations = ImmutableSet.of(
+      new Relation(dataset1, program1, AccessType.READ, twillRunId(run1)),
+      new Relation(dataset2, program1, AccessType.WRITE, twillRunId(run1)),
+      new Relation(dataset2, program4, AccessType.READ, twillRunId(run2)),
+      new Relation(dataset3, program4, AccessType.WRITE, twillRunId(run2))
+    );
+    long start = now - TimeUnit.DAYS.toMillis(10);
+    Assert.assertEquals(new Lineage(relations), lineageAdmin.computeLineage(dataset1, start, now + 10000, 100));
+
+    // The running service adds an access to the day it started in after the lineage is computed
+    lineageWriter.addAccess(run2, dataset4, AccessType.WRITE);
+    Assert.assertEquals(new Lineage(ImmutableSet.<Relation>builder()
+                                      .addAll(relations)
+                                      .add(new Relation(dataset4, program4, AccessType.WRITE, twillRunId(run2)))
+                                      .build()),
+                        lineageAdmin.computeLineage(dataset1, start, now + 10000, 100));
+  }
+
   @Test
   public void testScanRange() {
     Set<RunId> runIds = ImmutableSet.of(
@@ -622,6 +735,13 @@ public class LineageAdminTest extends AppFabricTestBase {
     }
   }
 
+  private void stopRuns(Store store, ProgramRunId... runs) {
+    for (ProgramRunId run : runs) {
+      long stopTime = RunIds.getTime(run.getRun(), TimeUnit.SECONDS) + 10;
+      store.setStop(run, stopTime, ProgramRunStatus.COMPLETED, AppFabricTestHelper.createSourceId(++sourceId));
+    }
+  }
+
   /** Adds runs which have workflows associated with them
    *
    * @param store store instance
@@ -0,0 +1,186 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metadata;
+
+import co.cask.cdap.api.metadata.MetadataEntity;
+import co.cask.cdap.api.metadata.MetadataScope;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.spi.metadata.Metadata;
+import co.cask.cdap.spi.metadata.MetadataDirective;
+import co.cask.cdap.spi.metadata.MetadataKind;
+import co.cask.cdap.spi.metadata.MetadataMutation;
+import co.cask.cdap.spi.metadata.ScopedName;
+import co.cask.cdap.spi.metadata.ScopedNameOfKind;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests for {@link MetadataMutationBatch}.
+ */
+public class MetadataMutationBatchTest {
+
+  private static final MetadataEntity DATASET = NamespaceId.DEFAULT.dataset("ds").toMetadataEntity();
+  private static final MetadataEntity APP = NamespaceId.DEFAULT.app("app").toMetadataEntity();
+
+  @Test
+  public void testMergeUpdates() {
+    MetadataMutationBatch batch = new MetadataMutationBatch();
+    batch.add(new MetadataMutation.Update(DATASET, new Metadata(MetadataScope.SYSTEM, ImmutableSet.of("t1"),
+                                                                ImmutableMap.of("k1", "v1", "k2", "v2"))));
+    MetadataMutation appUpdate = new MetadataMutation.Update(APP, new Metadata(MetadataScope.USER,
+                                                                               ImmutableSet.of("a")));
+    batch.add(appUpdate);
+    batch.add(new MetadataMutation.Update(DATASET, new Metadata(MetadataScope.SYSTEM, ImmutableSet.of("t2"),
+                                                                ImmutableMap.of("k2", "new"))));
+    batch.add(new MetadataMutation.Update(DATASET, new Metadata(MetadataScope.USER, ImmutableSet.of("u"),
+                                                                Collections.emptyMap())));
+
+    Metadata expected = new Metadata(
+      ImmutableSet.<ScopedName>builder()
+        .addAll(new Metadata(MetadataScope.SYSTEM, ImmutableSet.of("t1", "t2")).getTags())
+        .addAll(new Metadata(MetadataScope.USER, ImmutableSet.of("u")).getTags())
+        .build(),
+      new Metadata(MetadataScope.SYSTEM, ImmutableMap.of("k1", "v1", "k2", "new")).getProperties());
+    Assert.assertEquals(4, batch.getAddedCount());
+    Assert.assertEquals(Collections.singletonList(Arrays.asList(new MetadataMutation.Update(DATASET, expected),
+                                                                appUpdate)),
+                        batch.getBatches());
+  }
+
+  @Test
+  public void testNoMergeAcrossOtherMutations() {
+    MetadataMutationBatch batch = new MetadataMutationBatch();
+    MetadataMutation update1 = new MetadataMutation.Update(DATASET, new Metadata(MetadataScope.USER,
+                                                                                 ImmutableSet.of("a")));
+    MetadataMutation remove = new MetadataMutation.Remove(DATASET, MetadataScope.USER);
+    MetadataMutation update2 = new MetadataMutation.Update(DATASET, new Metadata(MetadataScope.USER,
+                                                                                 ImmutableSet.of("b")));
+    MetadataMutation appUpdate = new MetadataMutation.Update(APP, new Metadata(MetadataScope.USER,
+                                                                               ImmutableSet.of("a")));
+    batch.add(update1);
+    batch.add(appUpdate);
+    batch.add(remove);
+    batch.add(update2);
+    // the remove discards the first update, but the update after the remove goes into a separate batch
+    Assert.assertEquals(Arrays.asList(Arrays.asList(remove, appUpdate), Collections.singletonList(update2)),
+                        batch.getBatches());
+  }
+
+  @Test
+  public void testMergeCreateAndUpdate() {
+    MetadataMutationBatch batch = new MetadataMutationBatch();
+    ScopedNameOfKind keep = new ScopedNameOfKind(MetadataKind.PROPERTY, MetadataScope.SYSTEM, "k1");
+    ScopedNameOfKind preserve = new ScopedNameOfKind(MetadataKind.PROPERTY, MetadataScope.SYSTEM, "k2");
+    batch.add(new MetadataMutation.Create(DATASET, new Metadata(MetadataScope.SYSTEM, ImmutableSet.of("t1"),
+                                                                ImmutableMap.of("k1", "v1")),
+                                          ImmutableMap.of(keep, MetadataDirective.KEEP,
+                                                          preserve, MetadataDirective.PRESERVE)));
+    batch.add(new MetadataMutation.Update(DATASET, new Metadata(MetadataScope.SYSTEM, ImmutableSet.of("t2"),
+                                                                ImmutableMap.of("k2", "v2"))));
+    // the directive of the property set by the update is dropped, since the update overwrites it
+    MetadataMutation expected = new MetadataMutation.Create(
+      DATASET, new Metadata(MetadataScope.SYSTEM, ImmutableSet.of("t1", "t2"), ImmutableMap.of("k1", "v1", "k2", "v2")),
+      ImmutableMap.of(keep, MetadataDirective.KEEP));
+    Assert.assertEquals(Collections.singletonList(Collections.singletonList(expected)), batch.getBatches());
+
+    // an update of a scope that the create does not replace is not merged
+    MetadataMutation userUpdate = new MetadataMutation.Update(DATASET, new Metadata(MetadataScope.USER,
+                                                                                    ImmutableSet.of("u")));
+    batch.add(userUpdate);
+    Assert.assertEquals(Arrays.asList(Collections.singletonList(expected), Collections.singletonList(userUpdate)),
+                        batch.getBatches());
+  }
+
+  @Test
+  public void testCreateReplacesUpdate() {
+    MetadataMutationBatch batch = new MetadataMutationBatch();
+    batch.add(new MetadataMutation.Update(DATASET, new Metadata(MetadataScope.SYSTEM, ImmutableSet.of("t1"))));
+    MetadataMutation create = new MetadataMutation.Create(
+      DATASET, new Metadata(MetadataScope.SYSTEM, ImmutableSet.of("t2")), Collections.emptyMap());
+    batch.add(create);
+    Assert.assertEquals(Collections.singletonList(Collections.singletonList(create)), batch.getBatches());
+
+    // a create with a directive for the metadata of the update does not replace the update
+    batch.clear();
+    MetadataMutation update = new MetadataMutation.Update(APP, new Metadata(MetadataScope.SYSTEM,
+                                                                            ImmutableSet.of("t1")));
+    create = new MetadataMutation.Create(
+      APP, new Metadata(MetadataScope.SYSTEM, ImmutableSet.of("t2")),
+      ImmutableMap.of(new ScopedNameOfKind(MetadataKind.TAG, MetadataScope.SYSTEM, "t1"), MetadataDirective.KEEP));
+    batch.add(update);
+    batch.add(create);
+    Assert.assertEquals(Arrays.asList(Collections.singletonList(update), Collections.singletonList(create)),
+                        batch.getBatches());
+  }
+
+  @Test
+  public void testMergeRemoves() {
+    MetadataMutationBatch batch = new MetadataMutationBatch();
+    ScopedNameOfKind tag = new ScopedNameOfKind(MetadataKind.TAG, MetadataScope.USER, "t");
+    ScopedNameOfKind property = new ScopedNameOfKind(MetadataKind.PROPERTY, MetadataScope.USER, "p");
+    batch.add(new MetadataMutation.Remove(DATASET, ImmutableSet.of(tag)));
+    batch.add(new MetadataMutation.Remove(DATASET, ImmutableSet.of(property)));
+    Assert.assertEquals(
+      Collections.singletonList(Collections.singletonList(new MetadataMutation.Remove(DATASET,
+                                                                                      ImmutableSet.of(tag, property)))),
+      batch.getBatches());
+
+    // removing the user scope removes both names
+    MetadataMutation removeScope = new MetadataMutation.Remove(DATASET, MetadataScope.USER);
+    batch.add(removeScope);
+    Assert.assertEquals(Collections.singletonList(Collections.singletonList(removeScope)), batch.getBatches());
+
+    // removing all tags does not remove all user metadata, and the other way around
+    MetadataMutation removeTags = new MetadataMutation.Remove(DATASET, MetadataKind.TAG);
+    batch.add(removeTags);
+    Assert.assertEquals(Arrays.asList(Collections.singletonList(removeScope), Collections.singletonList(removeTags)),
+                        batch.getBatches());
+    Assert.assertEquals(4, batch.getAddedCount());
+  }
+
+  @Test
+  public void testDrop() {
+    MetadataMutationBatch batch = new MetadataMutationBatch();
+    MetadataMutation create = new MetadataMutation.Create(
+      DATASET, new Metadata(MetadataScope.SYSTEM, ImmutableSet.of("a")), Collections.emptyMap());
+    MetadataMutation appUpdate = new MetadataMutation.Update(APP, new Metadata(MetadataScope.USER,
+                                                                               ImmutableSet.of("a")));
+    batch.add(create);
+    batch.add(appUpdate);
+    batch.add(new MetadataMutation.Update(DATASET, new Metadata(MetadataScope.USER, ImmutableSet.of("b"))));
+    MetadataMutation drop = new MetadataMutation.Drop(DATASET);
+    batch.add(drop);
+    // mutations after the drop are kept
+    MetadataMutation recreate = new MetadataMutation.Create(
+      DATASET, new Metadata(MetadataScope.SYSTEM, ImmutableSet.of("c")), Collections.emptyMap());
+    batch.add(recreate);
+
+    Assert.assertEquals(5, batch.getAddedCount());
+    // the create after the drop goes into a separate batch, since the entity can only appear once in a batch
+    Assert.assertEquals(Arrays.asList(Arrays.asList(drop, appUpdate), Collections.singletonList(recreate)),
+                        batch.getBatches());
+
+    batch.clear();
+    Assert.assertTrue(batch.isEmpty());
+    Assert.assertTrue(batch.getBatches().isEmpty());
+  }
+}
@@ -57,6 +57,7 @@ import co.cask.cdap.etl.batch.WorkflowBackedActionContext;
 import co.cask.cdap.etl.batch.condition.PipelineCondition;
 import co.cask.cdap.etl.batch.connector.AlertPublisherSink;
 import co.cask.cdap.etl.batch.connector.AlertReader;
+import co.cask.cdap.etl.batch.connector.ConnectorFormat;
 import co.cask.cdap.etl.batch.connector.ConnectorSource;
 import co.cask.cdap.etl.batch.connector.MultiConnectorSource;
 import co.cask.cdap.etl.batch.customaction.PipelineAction;
@@ -140,6 +141,8 @@ public class SmartWorkflow extends AbstractWorkflow {
   private Map<String, PostAction> postActions;
   private Map<String, AlertPublisher> alertPublishers;
   private Map<String, StageSpec> stageSpecs;
+  // pipeline properties given to each phase
+  private Map<String, String> pipelineProperties;
 
   // injected by cdap
   @SuppressWarnings("unused")
@@ -187,6 +190,14 @@ public class SmartWorkflow extends AbstractWorkflow {
       }
     }
 
+    pipelineProperties = new HashMap<>(spec.getProperties());
+    // the binary connector format is only understood by the mapreduce connectors
+    if (ConnectorFormat.fromProperties(pipelineProperties) != ConnectorFormat.JSON && useSpark) {
+      LOG.warn("Connector format '{}' is only supported when all phases run with MapReduce. Using '{}' instead.",
+               pipelineProperties.get(Constants.Connector.FORMAT), ConnectorFormat.JSON);
+      pipelineProperties.put(Constants.Connector.FORMAT, ConnectorFormat.JSON.name());
+    }
+
     plan = createPlan();
 
     WorkflowProgramAdder programAdder = new TrunkProgramAdder(getConfigurer());
@@ -739,7 +750,7 @@ public class SmartWorkflow extends AbstractWorkflow {
         phaseConnectorDatasets.put(connectorName, datasetName);
         // add the local dataset
         ConnectorSource connectorSource = new MultiConnectorSource(datasetName, null);
-        connectorSource.configure(getConfigurer());
+        connectorSource.configure(getConfigurer(), pipelineProperties);
       } else {
         phaseConnectorDatasets.put(connectorName, connectorDatasets.get(connectorName));
       }
@@ -762,7 +773,7 @@ public class SmartWorkflow extends AbstractWorkflow {
 
     return new BatchPhaseSpec(programName, phase, spec.getResources(), spec.getDriverResources(),
                               spec.getClientResources(), spec.isStageLoggingEnabled(), spec.isProcessTimingEnabled(),
-                              phaseConnectorDatasets, spec.getNumOfRecordsPreview(), spec.getProperties(),
+                              phaseConnectorDatasets, spec.getNumOfRecordsPreview(), pipelineProperties,
                               !plan.getConditionPhaseBranches().isEmpty());
   }
 
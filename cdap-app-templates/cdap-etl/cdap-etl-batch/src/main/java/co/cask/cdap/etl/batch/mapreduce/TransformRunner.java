@@ -26,6 +26,7 @@ import co.cask.cdap.etl.api.batch.BatchJoiner;
 import co.cask.cdap.etl.batch.BatchPhaseSpec;
 import co.cask.cdap.etl.batch.PipeTransformExecutor;
 import co.cask.cdap.etl.batch.PipelinePluginInstantiator;
+import co.cask.cdap.etl.batch.connector.ConnectorFormat;
 import co.cask.cdap.etl.batch.connector.MultiConnectorFactory;
 import co.cask.cdap.etl.common.BasicArguments;
 import co.cask.cdap.etl.common.Constants;
@@ -75,7 +76,8 @@ public class TransformRunner<KEY, VALUE> {
 
     // instantiate and initialize all transformations and setup the TransformExecutor
     PipelinePluginInstantiator pluginInstantiator =
-      new PipelinePluginInstantiator(context, metrics, phaseSpec, new MultiConnectorFactory());
+      new PipelinePluginInstantiator(context, metrics, phaseSpec, new MultiConnectorFactory(
+        ConnectorFormat.fromProperties(phaseSpec.getPipelineProperties())));
     // stage name -> runtime args for that stage
     Map<String, String> runtimeArgs = GSON.fromJson(
       hConf.get(ETLMapReduce.RUNTIME_ARGS_KEY), ETLMapReduce.RUNTIME_ARGS_TYPE);
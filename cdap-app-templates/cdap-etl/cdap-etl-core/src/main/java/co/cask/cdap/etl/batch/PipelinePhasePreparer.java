@@ -28,6 +28,7 @@ import co.cask.cdap.etl.api.batch.BatchSink;
 import co.cask.cdap.etl.api.batch.BatchSinkContext;
 import co.cask.cdap.etl.api.batch.BatchSource;
 import co.cask.cdap.etl.api.batch.BatchSourceContext;
+import co.cask.cdap.etl.batch.connector.ConnectorFormat;
 import co.cask.cdap.etl.batch.connector.MultiConnectorFactory;
 import co.cask.cdap.etl.common.Constants;
 import co.cask.cdap.etl.common.PipelinePhase;
@@ -72,7 +73,8 @@ public abstract class PipelinePhasePreparer {
   public List<Finisher> prepare(BatchPhaseSpec phaseSpec)
     throws TransactionFailureException, InstantiationException, IOException {
     PipelinePluginInstantiator pluginInstantiator =
-      new PipelinePluginInstantiator(pluginContext, metrics, phaseSpec, new MultiConnectorFactory());
+      new PipelinePluginInstantiator(pluginContext, metrics, phaseSpec, new MultiConnectorFactory(
+        ConnectorFormat.fromProperties(phaseSpec.getPipelineProperties())));
     PipelinePhase phase = phaseSpec.getPhase();
 
     List<Finisher> finishers = new ArrayList<>();
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.batch.connector;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import co.cask.cdap.common.io.ByteBufferDecoder;
+import co.cask.cdap.common.io.ByteBufferEncoder;
+import co.cask.cdap.etl.common.RecordInfo;
+import co.cask.cdap.etl.common.RecordType;
+import co.cask.cdap.format.io.StructuredRecordDatumReader;
+import co.cask.cdap.format.io.StructuredRecordDatumWriter;
+import org.apache.hadoop.io.BytesWritable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Encodes and decodes records of the {@link ConnectorFormat#BINARY} connector format. Each encoded record contains:
+ *
+ * <pre>
+ *   flags            1 byte, whether the schema and the stage information are included
+ *   stage name       string, if the stage information is included
+ *   record type      string, if the stage information is included
+ *   schema hash      16 bytes
+ *   schema           json string, if the schema is included
+ *   record           the record fields, binary encoded with the schema
+ * </pre>
+ *
+ * The schema is only included in the first record with that schema encoded by a codec instance, and decoding a record
+ * that only contains the schema hash requires that the record with the schema has been decoded by the same instance.
+ * This holds as long as each instance writes to a single file, and each file is read sequentially by one instance.
+ * Instances of this class are not thread safe.
+ */
+final class BinaryConnectorCodec {
+
+  private static final int SCHEMA_INCLUDED = 0x01;
+  private static final int STAGE_INCLUDED = 0x02;
+
+  private final StructuredRecordDatumWriter recordWriter = new StructuredRecordDatumWriter();
+  private final StructuredRecordDatumReader recordReader = new StructuredRecordDatumReader();
+  private final Set<SchemaHash> encodedSchemas = new HashSet<>();
+  private final Map<SchemaHash, Schema> decodedSchemas = new HashMap<>();
+  private final ByteBufferEncoder encoder = new ByteBufferEncoder();
+  private final ByteBufferDecoder decoder = new ByteBufferDecoder();
+
+  /**
+   * Encodes a record without stage information.
+   */
+  BytesWritable encode(StructuredRecord record) throws IOException {
+    return encode(record, null, null);
+  }
+
+  /**
+   * Encodes a record together with the stage that emitted it.
+   */
+  BytesWritable encode(RecordInfo<StructuredRecord> recordInfo) throws IOException {
+    return encode(recordInfo.getValue(), recordInfo.getFromStage(), recordInfo.getType());
+  }
+
+  /**
+   * Decodes a record. If the record was encoded without stage information,
+   * the returned {@link RecordInfo} has a {@code null} stage name and the {@link RecordType#OUTPUT} type.
+   *
+   * @throws IOException if failed to decode the record
+   * @throws IllegalStateException if the record refers to a schema that has not been decoded by this instance
+   */
+  RecordInfo<StructuredRecord> decode(BytesWritable bytes) throws IOException {
+    // The decoded bytes fields share the buffer, so decode from a copy, since the reader reuses the BytesWritable
+    ByteBuffer buffer = ByteBuffer.wrap(bytes.copyBytes());
+    if (!buffer.hasRemaining()) {
+      throw new EOFException();
+    }
+    int flags = buffer.get();
+    decoder.reset(buffer);
+    String stageName = null;
+    RecordType recordType = RecordType.OUTPUT;
+    if ((flags & STAGE_INCLUDED) != 0) {
+      stageName = decoder.readString();
+      recordType = RecordType.valueOf(decoder.readString());
+    }
+    if (buffer.remaining() < 16) {
+      throw new EOFException();
+    }
+    SchemaHash schemaHash = new SchemaHash(buffer);
+    Schema schema;
+    if ((flags & SCHEMA_INCLUDED) != 0) {
+      schema = Schema.parseJson(decoder.readString());
+      decodedSchemas.put(schemaHash, schema);
+    } else {
+      schema = decodedSchemas.get(schemaHash);
+      if (schema == null) {
+        throw new IllegalStateException(String.format("Schema with hash %s is not found. The connector file must be "
+                                                        + "read sequentially from the beginning.", schemaHash));
+      }
+    }
+    StructuredRecord record = recordReader.read(decoder, schema);
+    return RecordInfo.builder(record, stageName, recordType).build();
+  }
+
+  private BytesWritable encode(StructuredRecord record, @Nullable String stageName,
+                               @Nullable RecordType recordType) throws IOException {
+    Schema schema = record.getSchema();
+    SchemaHash schemaHash = schema.getSchemaHash();
+    boolean includeSchema = encodedSchemas.add(schemaHash);
+
+    encoder.reset();
+    encoder.writeRaw((includeSchema ? SCHEMA_INCLUDED : 0) | (stageName == null ? 0 : STAGE_INCLUDED));
+    if (stageName != null) {
+      encoder.writeString(stageName);
+      encoder.writeString(recordType == null ? RecordType.OUTPUT.name() : recordType.name());
+    }
+    encoder.writeRaw(schemaHash.toByteArray());
+    if (includeSchema) {
+      encoder.writeString(schema.toString());
+    }
+    recordWriter.encode(record, encoder);
+    // copy the bytes, since emitted values may be buffered before they are written
+    return new BytesWritable(encoder.toByteArray());
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.batch.connector;
+
+import co.cask.cdap.api.dataset.DatasetProperties;
+import co.cask.cdap.api.dataset.lib.FileSetProperties;
+import co.cask.cdap.etl.common.Constants;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.mapreduce.lib.input.CombineTextInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+
+import java.util.Arrays;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Format of the data that connectors write between pipeline phases. The format is selected per pipeline with
+ * the {@link Constants.Connector#FORMAT} pipeline property.
+ */
+public enum ConnectorFormat {
+
+  /**
+   * Each record is a line of json that contains the record and its schema.
+   */
+  JSON {
+    @Override
+    public DatasetProperties getDatasetProperties(Map<String, String> pipelineProperties) {
+      return FileSetProperties.builder()
+        .setInputFormat(CombineTextInputFormat.class)
+        .setInputProperty(FileInputFormat.INPUT_DIR_RECURSIVE, "true")
+        .setOutputFormat(TextOutputFormat.class)
+        .build();
+    }
+  },
+
+  /**
+   * Records are binary encoded in block compressed sequence files, with each schema written only once per file.
+   * See {@link BinaryConnectorCodec} for the encoding.
+   */
+  BINARY {
+    @Override
+    public DatasetProperties getDatasetProperties(Map<String, String> pipelineProperties) {
+      String codec = pipelineProperties.get(Constants.Connector.COMPRESSION_CODEC);
+      return FileSetProperties.builder()
+        .setInputFormat(ConnectorSequenceFileInputFormat.class)
+        .setInputProperty(FileInputFormat.INPUT_DIR_RECURSIVE, "true")
+        .setOutputFormat(ConnectorSequenceFileOutputFormat.class)
+        .setOutputProperty(FileOutputFormat.COMPRESS, "true")
+        .setOutputProperty(FileOutputFormat.COMPRESS_TYPE, SequenceFile.CompressionType.BLOCK.name())
+        .setOutputProperty(FileOutputFormat.COMPRESS_CODEC, codec == null ? DefaultCodec.class.getName() : codec)
+        .build();
+    }
+  };
+
+  /**
+   * Returns the properties of the local dataset that connectors of this format write to.
+   *
+   * @param pipelineProperties the pipeline properties
+   */
+  public abstract DatasetProperties getDatasetProperties(Map<String, String> pipelineProperties);
+
+  /**
+   * Returns the connector format set in the given pipeline properties, or {@link #JSON} if none is set.
+   *
+   * @throws IllegalArgumentException if the format set in the properties is invalid
+   */
+  public static ConnectorFormat fromProperties(@Nullable Map<String, String> pipelineProperties) {
+    String format = pipelineProperties == null ? null : pipelineProperties.get(Constants.Connector.FORMAT);
+    if (format == null) {
+      return JSON;
+    }
+    try {
+      return valueOf(format.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+        String.format("Invalid connector format '%s' set in pipeline property '%s'. Must be one of %s.",
+                      format, Constants.Connector.FORMAT, Arrays.toString(values())), e);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.batch.connector;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.IOException;
+
+/**
+ * Output format for writing connector data in the {@link ConnectorFormat#BINARY} format.
+ * Unlike the {@link SequenceFileOutputFormat}, the key and value classes of the files are always
+ * {@link NullWritable} and {@link BytesWritable}, since the output classes of the job are not set for
+ * pipeline phases and can be different for other outputs of the same job.
+ */
+public class ConnectorSequenceFileOutputFormat extends SequenceFileOutputFormat<NullWritable, BytesWritable> {
+
+  @Override
+  public RecordWriter<NullWritable, BytesWritable> getRecordWriter(TaskAttemptContext context) throws IOException {
+    Configuration conf = context.getConfiguration();
+    CompressionCodec codec = null;
+    SequenceFile.CompressionType compressionType = SequenceFile.CompressionType.NONE;
+    if (getCompressOutput(context)) {
+      compressionType = getOutputCompressionType(context);
+      codec = ReflectionUtils.newInstance(getOutputCompressorClass(context, DefaultCodec.class), conf);
+    }
+
+    Path file = getDefaultWorkFile(context, "");
+    FileSystem fs = file.getFileSystem(conf);
+    final SequenceFile.Writer writer = SequenceFile.createWriter(fs, conf, file, NullWritable.class,
+                                                                 BytesWritable.class, compressionType, codec,
+                                                                 context);
+    return new RecordWriter<NullWritable, BytesWritable>() {
+      @Override
+      public void write(NullWritable key, BytesWritable value) throws IOException {
+        writer.append(key, value);
+      }
+
+      @Override
+      public void close(TaskAttemptContext taskContext) throws IOException {
+        writer.close();
+      }
+    };
+  }
+}
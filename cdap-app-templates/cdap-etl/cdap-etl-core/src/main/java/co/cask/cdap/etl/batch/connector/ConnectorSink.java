@@ -22,7 +22,7 @@ import co.cask.cdap.etl.api.batch.BatchSink;
 import co.cask.cdap.etl.api.batch.BatchSinkContext;
 import co.cask.cdap.etl.common.Constants;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -39,11 +39,11 @@ import java.util.Map;
  * This is because we don't want this to show up as a plugin that users can select and use, and also because
  * it uses features not exposed in the etl api (local workflow datasets).
  *
- * TODO: improve storage format. It is currently a json of the record but that is obviously not ideal
+ * Records are written in the {@link ConnectorFormat} of the pipeline, which is json unless configured otherwise.
  *
  * @param <T> type of input object
  */
-public abstract class ConnectorSink<T> extends BatchSink<T, NullWritable, Text> {
+public abstract class ConnectorSink<T> extends BatchSink<T, NullWritable, Writable> {
   private final String datasetName;
   private final String phaseName;
 
@@ -19,17 +19,13 @@ package co.cask.cdap.etl.batch.connector;
 import co.cask.cdap.api.data.batch.Input;
 import co.cask.cdap.api.dataset.lib.FileSet;
 import co.cask.cdap.api.dataset.lib.FileSetArguments;
-import co.cask.cdap.api.dataset.lib.FileSetProperties;
 import co.cask.cdap.api.workflow.WorkflowConfigurer;
 import co.cask.cdap.etl.api.batch.BatchSource;
 import co.cask.cdap.etl.api.batch.BatchSourceContext;
 import co.cask.cdap.etl.common.Constants;
-import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapreduce.lib.input.CombineTextInputFormat;
-import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
-import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.io.Writable;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -45,9 +41,12 @@ import java.util.Map;
  * This is because we don't want this to show up as a plugin that users can select and use, and also because
  * it uses features not exposed in the etl api (local workflow datasets).
  *
+ * The input key and value depend on the {@link ConnectorFormat} of the dataset. Subclasses tell the format of
+ * each record by the type of the value, which is a {@code Text} for json and a {@code BytesWritable} for binary.
+ *
  * @param <T> type of output object
  */
-public class ConnectorSource<T> extends BatchSource<LongWritable, Text, T> {
+public class ConnectorSource<T> extends BatchSource<Writable, Writable, T> {
   // you can't read from the basedir of a FileSet so adding an arbitrary directory where data will be stored/read.
   static final String DATA_DIR = "data";
   private final String datasetName;
@@ -59,12 +58,15 @@ public class ConnectorSource<T> extends BatchSource<LongWritable, Text, T> {
   // not the standard configurePipeline method. Need a workflowConfigurer to create a local dataset
   // we may want to expose local datasets in cdap-etl-api, but that is a separate track.
   public void configure(WorkflowConfigurer workflowConfigurer) {
-    workflowConfigurer.createLocalDataset(datasetName, FileSet.class,
-                                          FileSetProperties.builder()
-                                            .setInputFormat(CombineTextInputFormat.class)
-                                            .setInputProperty(FileInputFormat.INPUT_DIR_RECURSIVE, "true")
-                                            .setOutputFormat(TextOutputFormat.class)
-                                            .build());
+    configure(workflowConfigurer, Collections.emptyMap());
+  }
+
+  /**
+   * Creates the local dataset for the connector, in the {@link ConnectorFormat} set in the pipeline properties.
+   */
+  public void configure(WorkflowConfigurer workflowConfigurer, Map<String, String> pipelineProperties) {
+    ConnectorFormat format = ConnectorFormat.fromProperties(pipelineProperties);
+    workflowConfigurer.createLocalDataset(datasetName, FileSet.class, format.getDatasetProperties(pipelineProperties));
   }
 
   @Override
@@ -20,6 +20,15 @@ package co.cask.cdap.etl.batch.connector;
  * Creates Multi connector sources and sinks.
  */
 public class MultiConnectorFactory implements ConnectorFactory {
+  private final ConnectorFormat format;
+
+  public MultiConnectorFactory() {
+    this(ConnectorFormat.JSON);
+  }
+
+  public MultiConnectorFactory(ConnectorFormat format) {
+    this.format = format;
+  }
 
   @Override
   public ConnectorSource createSource(String datasetName) {
@@ -28,6 +37,6 @@ public class MultiConnectorFactory implements ConnectorFactory {
 
   @Override
   public ConnectorSink createSink(String datasetName, String phaseName) {
-    return new MultiConnectorSink(datasetName, phaseName);
+    return new MultiConnectorSink(datasetName, phaseName, format);
   }
 }
@@ -24,6 +24,7 @@ import co.cask.cdap.etl.common.RecordInfo;
 import co.cask.cdap.format.StructuredRecordStringConverter;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 
 import java.io.IOException;
 
@@ -33,14 +34,24 @@ import java.io.IOException;
  * Connectors store the stage name each record came from in case they are placed in front of a joiner.
  */
 public class MultiConnectorSink extends ConnectorSink<RecordInfo<StructuredRecord>> {
+  private final BinaryConnectorCodec codec;
 
   public MultiConnectorSink(String datasetName, String phaseName) {
+    this(datasetName, phaseName, ConnectorFormat.JSON);
+  }
+
+  public MultiConnectorSink(String datasetName, String phaseName, ConnectorFormat format) {
     super(datasetName, phaseName);
+    this.codec = format == ConnectorFormat.BINARY ? new BinaryConnectorCodec() : null;
   }
 
   @Override
-  public void transform(RecordInfo<StructuredRecord> input, Emitter<KeyValue<NullWritable, Text>> emitter)
+  public void transform(RecordInfo<StructuredRecord> input, Emitter<KeyValue<NullWritable, Writable>> emitter)
     throws Exception {
+    if (codec != null) {
+      emitter.emit(new KeyValue<>(NullWritable.get(), codec.encode(input)));
+      return;
+    }
     StructuredRecord modifiedRecord = modifyRecord(input);
     emitter.emit(new KeyValue<>(NullWritable.get(),
                                 new Text(StructuredRecordStringConverter.toJsonString(modifiedRecord))));
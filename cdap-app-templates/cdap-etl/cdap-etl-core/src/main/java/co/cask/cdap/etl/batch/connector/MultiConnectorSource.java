@@ -23,8 +23,8 @@ import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.common.RecordInfo;
 import co.cask.cdap.etl.common.RecordType;
 import co.cask.cdap.format.StructuredRecordStringConverter;
-import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Writable;
 
 import javax.annotation.Nullable;
 
@@ -40,15 +40,25 @@ public class MultiConnectorSource extends ConnectorSource<RecordInfo<StructuredR
     Schema.Field.of("record", Schema.of(Schema.Type.STRING)));
   @Nullable
   private final Schema schema;
+  private final BinaryConnectorCodec codec;
 
   public MultiConnectorSource(String datasetName, @Nullable Schema schema) {
     super(datasetName);
     this.schema = schema;
+    this.codec = new BinaryConnectorCodec();
   }
 
   @Override
-  public void transform(KeyValue<LongWritable, Text> input,
+  public void transform(KeyValue<Writable, Writable> input,
                         Emitter<RecordInfo<StructuredRecord>> emitter) throws Exception {
+    if (input.getValue() instanceof BytesWritable) {
+      RecordInfo<StructuredRecord> recordInfo = codec.decode((BytesWritable) input.getValue());
+      if (recordInfo.getFromStage() == null) {
+        throw new IllegalStateException("Connector record does not contain the stage it came from.");
+      }
+      emitter.emit(recordInfo);
+      return;
+    }
     StructuredRecord output;
     String inputStr = input.getValue().toString();
     StructuredRecord recordWithSchema =
@@ -23,6 +23,7 @@ import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.format.StructuredRecordStringConverter;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 
 import java.io.IOException;
 
@@ -37,7 +38,7 @@ public class SingleConnectorSink extends ConnectorSink<StructuredRecord> {
   }
 
   @Override
-  public void transform(StructuredRecord input, Emitter<KeyValue<NullWritable, Text>> emitter)
+  public void transform(StructuredRecord input, Emitter<KeyValue<NullWritable, Writable>> emitter)
     throws Exception {
     StructuredRecord modifiedRecord = modifyRecord(input);
     emitter.emit(new KeyValue<>(NullWritable.get(),
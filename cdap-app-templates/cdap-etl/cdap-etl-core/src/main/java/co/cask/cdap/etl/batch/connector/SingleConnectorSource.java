@@ -21,8 +21,7 @@ import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.dataset.lib.KeyValue;
 import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.format.StructuredRecordStringConverter;
-import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 
 import javax.annotation.Nullable;
 
@@ -43,7 +42,7 @@ public class SingleConnectorSource extends ConnectorSource<StructuredRecord> {
   }
 
   @Override
-  public void transform(KeyValue<LongWritable, Text> input,
+  public void transform(KeyValue<Writable, Writable> input,
                         Emitter<StructuredRecord> emitter) throws Exception {
     StructuredRecord output;
     String inputStr = input.getValue().toString();
@@ -46,6 +46,9 @@ public final class Constants {
     public static final String SOURCE_TYPE = "source";
     public static final String SINK_TYPE = "sink";
     public static final String DATA_DIR = "data";
+    // pipeline properties for the format of the data written to connectors
+    public static final String FORMAT = "connector.format";
+    public static final String COMPRESSION_CODEC = "connector.compression.codec";
   }
 
   /**
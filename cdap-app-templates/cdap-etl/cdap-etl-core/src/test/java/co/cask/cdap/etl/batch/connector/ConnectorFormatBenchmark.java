@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.batch.connector;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.dataset.lib.KeyValue;
+import co.cask.cdap.etl.common.DefaultEmitter;
+import co.cask.cdap.etl.common.RecordInfo;
+import co.cask.cdap.etl.common.RecordType;
+import com.google.common.collect.ImmutableMap;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the write time, the read time and the size of the {@link ConnectorFormat#JSON} and the
+ * {@link ConnectorFormat#BINARY} connector formats, through {@link MultiConnectorSink} and
+ * {@link MultiConnectorSource}. It is not a unit test. Run it with the test classpath of this module, optionally
+ * passing the number of records per round as the first argument.
+ */
+public final class ConnectorFormatBenchmark {
+
+  private static final int ROUNDS = 5;
+
+  private static final Schema INNER_SCHEMA = Schema.recordOf(
+    "inner",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("score", Schema.of(Schema.Type.DOUBLE)));
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "rec",
+    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("age", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("weight", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("active", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("data", Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of("tags", Schema.arrayOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("attrs", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("inner", INNER_SCHEMA));
+
+  public static void main(String[] args) throws Exception {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    List<RecordInfo<StructuredRecord>> input = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      input.add(RecordInfo.builder(createRecord(i), "stage", RecordType.OUTPUT).build());
+    }
+
+    // The first rounds are for warming up
+    for (int i = 0; i < ROUNDS; i++) {
+      for (ConnectorFormat format : ConnectorFormat.values()) {
+        long startTime = System.nanoTime();
+        List<KeyValue<NullWritable, Writable>> written = writeRecords(format, input);
+        long writeTime = System.nanoTime() - startTime;
+        long bytes = 0;
+        for (KeyValue<NullWritable, Writable> keyValue : written) {
+          Writable value = keyValue.getValue();
+          bytes += value instanceof Text ? ((Text) value).getLength() : ((BytesWritable) value).getLength();
+        }
+
+        startTime = System.nanoTime();
+        readRecords(written);
+        long readTime = System.nanoTime() - startTime;
+        System.out.printf("Round %d: %s write %d ms, read %d ms, %d bytes%n", i, format,
+                          TimeUnit.NANOSECONDS.toMillis(writeTime), TimeUnit.NANOSECONDS.toMillis(readTime), bytes);
+      }
+    }
+  }
+
+  private static List<KeyValue<NullWritable, Writable>> writeRecords(ConnectorFormat format,
+                                                                     List<RecordInfo<StructuredRecord>> records)
+    throws Exception {
+    MultiConnectorSink sink = new MultiConnectorSink("conn", "phase", format);
+    DefaultEmitter<KeyValue<NullWritable, Writable>> emitter = new DefaultEmitter<>();
+    for (RecordInfo<StructuredRecord> record : records) {
+      sink.transform(record, emitter);
+    }
+    return new ArrayList<>(emitter.getEntries());
+  }
+
+  private static void readRecords(List<KeyValue<NullWritable, Writable>> written) throws Exception {
+    MultiConnectorSource source = new MultiConnectorSource("conn", null);
+    DefaultEmitter<RecordInfo<StructuredRecord>> emitter = new DefaultEmitter<>();
+    long offset = 0;
+    for (KeyValue<NullWritable, Writable> keyValue : written) {
+      // text files are read with the offset as the key
+      Writable key = keyValue.getValue() instanceof Text ? new LongWritable(offset++) : keyValue.getKey();
+      source.transform(new KeyValue<>(key, keyValue.getValue()), emitter);
+    }
+  }
+
+  private static StructuredRecord createRecord(int i) {
+    return StructuredRecord.builder(SCHEMA)
+      .set("name", "name" + i)
+      .set("age", i % 3 == 0 ? null : i)
+      .set("weight", i * 1.5f)
+      .set("active", i % 2 == 0)
+      .set("data", ByteBuffer.wrap(new byte[] { (byte) i, 1, 2, 3 }))
+      .set("tags", Arrays.asList("a" + i, "b", "c"))
+      .set("attrs", ImmutableMap.of("k1", (long) i, "k2", -1L * i))
+      .set("inner", StructuredRecord.builder(INNER_SCHEMA).set("id", (long) i * 1000).set("score", i / 7.0).build())
+      .build();
+  }
+
+  private ConnectorFormatBenchmark() {
+    // no-op
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.batch.connector;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.dataset.lib.KeyValue;
+import co.cask.cdap.etl.common.Constants;
+import co.cask.cdap.etl.common.DefaultEmitter;
+import co.cask.cdap.etl.common.RecordInfo;
+import co.cask.cdap.etl.common.RecordType;
+import com.google.common.collect.ImmutableMap;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for the {@link ConnectorFormat} of {@link MultiConnectorSink} and {@link MultiConnectorSource}.
+ */
+public class ConnectorFormatTest {
+
+  private static final Schema INNER_SCHEMA = Schema.recordOf(
+    "inner",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("score", Schema.of(Schema.Type.DOUBLE)));
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "rec",
+    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("age", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("weight", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("active", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("data", Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of("tags", Schema.arrayOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("attrs", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("inner", INNER_SCHEMA));
+
+  private static final Schema OTHER_SCHEMA = Schema.recordOf(
+    "other",
+    Schema.Field.of("x", Schema.of(Schema.Type.INT)));
+
+  @Test
+  public void testFromProperties() {
+    Assert.assertEquals(ConnectorFormat.JSON, ConnectorFormat.fromProperties(null));
+    Assert.assertEquals(ConnectorFormat.JSON, ConnectorFormat.fromProperties(Collections.emptyMap()));
+    Assert.assertEquals(ConnectorFormat.BINARY,
+                        ConnectorFormat.fromProperties(ImmutableMap.of(Constants.Connector.FORMAT, "binary")));
+    try {
+      ConnectorFormat.fromProperties(ImmutableMap.of(Constants.Connector.FORMAT, "parquet"));
+      Assert.fail("Expected invalid connector format to fail");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    for (ConnectorFormat format : ConnectorFormat.values()) {
+      List<RecordInfo<StructuredRecord>> input = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        input.add(RecordInfo.builder(createRecord(i), "stage" + (i % 2), RecordType.OUTPUT).build());
+        input.add(RecordInfo.builder(StructuredRecord.builder(OTHER_SCHEMA).set("x", i).build(),
+                                     "other", RecordType.ERROR).build());
+      }
+
+      List<RecordInfo<StructuredRecord>> output = readRecords(new MultiConnectorSource("conn", null),
+                                                              writeRecords(format, input));
+      Assert.assertEquals(input.size(), output.size());
+      for (int i = 0; i < input.size(); i++) {
+        Assert.assertEquals(input.get(i).getValue(), output.get(i).getValue());
+        Assert.assertEquals(input.get(i).getFromStage(), output.get(i).getFromStage());
+        Assert.assertEquals(input.get(i).getType(), output.get(i).getType());
+      }
+    }
+  }
+
+  @Test
+  public void testSchemaWrittenOnce() throws Exception {
+    List<RecordInfo<StructuredRecord>> input = Arrays.asList(
+      RecordInfo.builder(createRecord(1), "stage", RecordType.OUTPUT).build(),
+      RecordInfo.builder(createRecord(1), "stage", RecordType.OUTPUT).build());
+    List<KeyValue<NullWritable, Writable>> written = writeRecords(ConnectorFormat.BINARY, input);
+
+    // the second record only refers to the schema by its hash
+    int firstLength = ((BytesWritable) written.get(0).getValue()).getLength();
+    int secondLength = ((BytesWritable) written.get(1).getValue()).getLength();
+    Assert.assertTrue(secondLength + SCHEMA.toString().length() <= firstLength);
+
+    // reading the second record without the first one fails, since the schema is unknown
+    try {
+      readRecords(new MultiConnectorSource("conn", null), written.subList(1, 2));
+      Assert.fail("Expected reading a record with unknown schema to fail");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testReusedBytesWritable() throws Exception {
+    List<RecordInfo<StructuredRecord>> input = Arrays.asList(
+      RecordInfo.builder(createRecord(1), "stage", RecordType.OUTPUT).build(),
+      RecordInfo.builder(createRecord(2), "stage", RecordType.OUTPUT).build());
+    List<KeyValue<NullWritable, Writable>> written = writeRecords(ConnectorFormat.BINARY, input);
+
+    // Readers reuse the same BytesWritable for every record, which must not change the records read before
+    MultiConnectorSource source = new MultiConnectorSource("conn", null);
+    DefaultEmitter<RecordInfo<StructuredRecord>> emitter = new DefaultEmitter<>();
+    BytesWritable value = new BytesWritable();
+    for (KeyValue<NullWritable, Writable> keyValue : written) {
+      value.set((BytesWritable) keyValue.getValue());
+      source.transform(new KeyValue<>(keyValue.getKey(), value), emitter);
+    }
+    Arrays.fill(value.getBytes(), (byte) 0);
+
+    List<RecordInfo<StructuredRecord>> output = new ArrayList<>(emitter.getEntries());
+    Assert.assertEquals(input.size(), output.size());
+    for (int i = 0; i < input.size(); i++) {
+      Assert.assertEquals(input.get(i).getValue(), output.get(i).getValue());
+    }
+  }
+
+  private List<KeyValue<NullWritable, Writable>> writeRecords(ConnectorFormat format,
+                                                              List<RecordInfo<StructuredRecord>> records)
+    throws Exception {
+    MultiConnectorSink sink = new MultiConnectorSink("conn", "phase", format);
+    DefaultEmitter<KeyValue<NullWritable, Writable>> emitter = new DefaultEmitter<>();
+    for (RecordInfo<StructuredRecord> record : records) {
+      sink.transform(record, emitter);
+    }
+    return new ArrayList<>(emitter.getEntries());
+  }
+
+  private List<RecordInfo<StructuredRecord>> readRecords(MultiConnectorSource source,
+                                                         List<KeyValue<NullWritable, Writable>> written)
+    throws Exception {
+    DefaultEmitter<RecordInfo<StructuredRecord>> emitter = new DefaultEmitter<>();
+    long offset = 0;
+    for (KeyValue<NullWritable, Writable> keyValue : written) {
+      // text files are read with the offset as the key
+      Writable key = keyValue.getValue() instanceof Text ? new LongWritable(offset++) : keyValue.getKey();
+      source.transform(new KeyValue<>(key, keyValue.getValue()), emitter);
+    }
+    return new ArrayList<>(emitter.getEntries());
+  }
+
+  private StructuredRecord createRecord(int i) {
+    return StructuredRecord.builder(SCHEMA)
+      .set("name", "name" + i)
+      .set("age", i % 3 == 0 ? null : i)
+      .set("weight", i * 1.5f)
+      .set("active", i % 2 == 0)
+      .set("data", ByteBuffer.wrap(new byte[] { (byte) i, 1, 2, 3 }))
+      .set("tags", Arrays.asList("a" + i, "b", "c"))
+      .set("attrs", ImmutableMap.of("k1", (long) i, "k2", -1L * i))
+      .set("inner", StructuredRecord.builder(INNER_SCHEMA).set("id", (long) i * 1000).set("score", i / 7.0).build())
+      .build();
+  }
+}
@@ -27,6 +27,7 @@ public class ReportGenerationApp extends AbstractApplication {
   public static final String NAME = "ReportGenerationApp";
   public static final String RUN_META_FILESET = "RunMetaFileset";
   public static final String REPORT_FILESET = "ReportFileset";
+  public static final String RUN_ROLLUP_FILESET = "RunRollupFileset";
 
   @Override
   public void configure() {
@@ -36,5 +37,9 @@ public class ReportGenerationApp extends AbstractApplication {
       .setEnableExploreOnCreate(false)
       .setDescription("fileSet")
       .build());
+    createDataset(RUN_ROLLUP_FILESET, FileSet.class, FileSetProperties.builder()
+      .setEnableExploreOnCreate(false)
+      .setDescription("Materialized program run records aggregated from run meta files")
+      .build());
   }
 }
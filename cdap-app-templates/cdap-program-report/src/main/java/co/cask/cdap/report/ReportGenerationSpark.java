@@ -80,10 +80,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
@@ -210,6 +215,11 @@ public class ReportGenerationSpark extends AbstractExtendedSpark {
     private static final String FAILURE_FILE = "_FAILURE";
     private static final String SAVED_FILE = "_SAVED";
 
+    // guards the materialized program run records in the RunRollupFileset from being replaced while being read
+    private final ReadWriteLock rollupLock = new ReentrantReadWriteLock();
+    // allows only one update of the materialized program run records at a time
+    private final Lock rollupUpdateLock = new ReentrantLock();
+
     private int readLimit;
     private SQLContext sqlContext;
     private long reportsExpiryTimeMillis;
@@ -904,9 +914,12 @@ public class ReportGenerationSpark extends AbstractExtendedSpark {
 
     /**
      * Generates report files according to the given request and write them to the given location.
-     * Program run meta files are first filtered to exclude unnecessary files for report generation,
-     * and send the paths of qualified run meta files to {@link ReportGenerationHelper#generateReport}
-     * that actually launches a Spark job to generate reports.
+     * The materialized program run records of each qualified namespace are first brought up to date by
+     * {@link RunRecordRollup#update}, so that only the run meta files written since the last update need to be
+     * aggregated. Program run meta files that are not yet materialized are filtered to exclude unnecessary files
+     * for report generation, and the paths of qualified run meta files together with the paths of materialized
+     * records are sent to {@link ReportGenerationHelper#generateReport} that actually launches a Spark job to
+     * generate reports.
      *
      * @param reportRequest the request to generate report
      * @param reportIdDir the location of the directory where the report files directory, COUNT file,
@@ -914,6 +927,7 @@ public class ReportGenerationSpark extends AbstractExtendedSpark {
      */
     private void generateReport(ReportGenerationRequest reportRequest, Location reportIdDir) throws IOException {
       Location baseLocation = getDatasetBaseLocation(ReportGenerationApp.RUN_META_FILESET);
+      Location rollupBaseLocation = getDatasetBaseLocation(ReportGenerationApp.RUN_ROLLUP_FILESET);
       // Get a list of directories of all namespaces under RunMetaFileset base location
       List<Location> nsLocations;
       nsLocations = baseLocation.list();
@@ -924,29 +938,51 @@ public class ReportGenerationSpark extends AbstractExtendedSpark {
       if (nsFilter != null) {
         filteredNsLocations = nsLocations.stream().filter(nsLocation -> nsFilter.apply(nsLocation.getName()));
       }
-      // Iterate through all qualified namespaces directories to get program run meta files
-      Stream<Location> metaFiles = filteredNsLocations.flatMap(nsLocation -> {
-        try {
-          List<Location> metaFileLocations = nsLocation.list();
-          LOG.debug("Files under namespace {}: {}", nsLocation.getName(), metaFileLocations);
-          return metaFileLocations.stream();
-        } catch (IOException e) {
-          throw new RuntimeException(e);
+      // Get the program run meta files of all qualified namespaces
+      Map<String, List<Location>> nsMetaFiles = new TreeMap<>();
+      for (Location nsLocation : filteredNsLocations.collect(Collectors.toList())) {
+        List<Location> metaFileLocations = nsLocation.list();
+        LOG.debug("Files under namespace {}: {}", nsLocation.getName(), metaFileLocations);
+        nsMetaFiles.put(nsLocation.getName(), metaFileLocations.stream()
+          .filter(metaFile -> metaFile.getName().endsWith(".avro")).collect(Collectors.toList()));
+      }
+      // Materialize the program run records aggregated from closed run meta files. The write lock is only
+      // acquired by the update to commit the new records, so reports can be read while the aggregation runs.
+      rollupUpdateLock.lock();
+      try {
+        for (Map.Entry<String, List<Location>> entry : nsMetaFiles.entrySet()) {
+          RunRecordRollup.update(sqlContext, entry.getValue(), rollupBaseLocation.append(entry.getKey()),
+                                 rollupLock.writeLock());
         }
-      });
-      // Program run meta files are in avro format. Each file is named by the earliest program run meta record
-      // in the file, so exclude the files with no record earlier than the end of query time range.
-      List<String> metaFilePaths = metaFiles.filter(metaFile -> {
-        String fileName = metaFile.getName();
-        return fileName.endsWith(".avro")
-          //file name is of the format <event-time-millis>-<creation-time-millis>.avro
-          && TimeUnit.MILLISECONDS.toSeconds(Long.parseLong(fileName.substring(0, fileName.indexOf("-")))) <
-          reportRequest.getEnd();
-      }).map(location -> location.toURI().toString()).collect(Collectors.toList());
-      LOG.debug("Filtered meta files {}", metaFilePaths);
-      // Generate the report with the request and program run meta files
-      ReportGenerationHelper.generateReport(sqlContext, reportRequest,
-                                            metaFilePaths, reportIdDir, reportsExpiryTimeMillis);
+      } finally {
+        rollupUpdateLock.unlock();
+      }
+      // Hold the read lock till the report is generated, so that the pending records being read
+      // will not be removed by a concurrent update
+      rollupLock.readLock().lock();
+      try {
+        List<String> metaFilePaths = new ArrayList<>();
+        List<String> recordPaths = new ArrayList<>();
+        for (Map.Entry<String, List<Location>> entry : nsMetaFiles.entrySet()) {
+          Location rollupLocation = rollupBaseLocation.append(entry.getKey());
+          // Program run meta files are in avro format. Each file is named by the earliest program run meta record
+          // in the file, so exclude the files with no record earlier than the end of query time range.
+          List<Location> metaFiles = entry.getValue().stream().filter(metaFile -> {
+            String fileName = metaFile.getName();
+            //file name is of the format <event-time-millis>-<creation-time-millis>.avro
+            return TimeUnit.MILLISECONDS.toSeconds(Long.parseLong(fileName.substring(0, fileName.indexOf("-")))) <
+              reportRequest.getEnd();
+          }).collect(Collectors.toList());
+          metaFilePaths.addAll(RunRecordRollup.getRawInputs(rollupLocation, metaFiles));
+          recordPaths.addAll(RunRecordRollup.getRecordInputs(rollupLocation, reportRequest.getStart()));
+        }
+        LOG.debug("Filtered meta files {} and materialized records {}", metaFilePaths, recordPaths);
+        // Generate the report with the request, program run meta files and materialized records
+        ReportGenerationHelper.generateReport(sqlContext, reportRequest, metaFilePaths, recordPaths,
+                                              reportIdDir, reportsExpiryTimeMillis);
+      } finally {
+        rollupLock.readLock().unlock();
+      }
     }
 
     /**
@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.report.util;
+
+import javax.annotation.Nullable;
+
+/**
+ * Represents the state of the materialized program run records of a namespace. It keeps track of the
+ * run meta files that have already been aggregated, the latest committed generation of materialized records,
+ * and the generation of raw run meta records belonging to program runs that have not finished yet.
+ * Generations are increasing, and the records of a day in a generation include the records of that day in all
+ * the earlier generations, hence only the latest committed generation of each day needs to be read.
+ *
+ * Run meta files are named in the format of {@code <event-time-millis>-<creation-time-millis>.avro} and are created
+ * one after another, hence the aggregated files are tracked by the creation time of the newest aggregated file
+ * instead of by their names.
+ */
+public class RollupCheckpoint {
+  private final long mergedUntil;
+  private final long generation;
+  @Nullable
+  private final String pendingGeneration;
+
+  public RollupCheckpoint() {
+    this(-1L, -1L, null);
+  }
+
+  public RollupCheckpoint(long mergedUntil, long generation, @Nullable String pendingGeneration) {
+    this.mergedUntil = mergedUntil;
+    this.generation = generation;
+    this.pendingGeneration = pendingGeneration;
+  }
+
+  /**
+   * @return the creation time in milliseconds of the newest run meta file that has been aggregated into
+   *         materialized records, or {@code -1} if no file has been aggregated
+   */
+  public long getMergedUntil() {
+    return mergedUntil;
+  }
+
+  /**
+   * @return {@code true} if the run meta file of the given name has been aggregated into materialized records
+   */
+  public boolean isMerged(String metaFileName) {
+    return getCreationTime(metaFileName) <= mergedUntil;
+  }
+
+  /**
+   * @return the latest committed generation of materialized records of finished program runs,
+   *         or {@code -1} if no generation has been committed
+   */
+  public long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * @return {@code true} if the generation of the given name has been committed
+   */
+  public boolean isCommitted(String generationName) {
+    return Long.parseLong(generationName) <= generation;
+  }
+
+  /**
+   * @return the generation of raw run meta records of unfinished program runs, or {@code null} if there is none
+   */
+  @Nullable
+  public String getPendingGeneration() {
+    return pendingGeneration;
+  }
+
+  /**
+   * Returns the creation time of a run meta file from its name.
+   *
+   * @param metaFileName name of the run meta file in the format of
+   *                     {@code <event-time-millis>-<creation-time-millis>.avro}
+   * @return the creation time in milliseconds
+   * @throws IllegalArgumentException if the name is not in the expected format
+   */
+  public static long getCreationTime(String metaFileName) {
+    int start = metaFileName.indexOf('-');
+    int end = metaFileName.lastIndexOf('.');
+    if (start < 0 || end <= start) {
+      throw new IllegalArgumentException("Invalid run meta file name " + metaFileName);
+    }
+    try {
+      return Long.parseLong(metaFileName.substring(start + 1, end));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid run meta file name " + metaFileName, e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "RollupCheckpoint{" +
+      "mergedUntil=" + mergedUntil +
+      ", generation=" + generation +
+      ", pendingGeneration='" + pendingGeneration + '\'' +
+      '}';
+  }
+}
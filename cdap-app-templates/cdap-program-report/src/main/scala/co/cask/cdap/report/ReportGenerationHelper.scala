@@ -88,25 +88,32 @@ object ReportGenerationHelper {
     * @param sql the SQL context to run report generation with
     * @param request the report generation request
     * @param inputURIs URIs of the avro files containing program run meta records
+    * @param recordURIs URIs of the avro files containing program run records already aggregated
+    *                   by [[RunRecordRollup]], which have the same columns as the aggregated
+    *                   [[org.apache.spark.sql.DataFrame]]
     * @param reportIdDir location of the directory where the report files directory, COUNT file,
     *                    and _SUCCESS file will be created.
     * @throws java.io.IOException when fails to write to the COUNT or _SUCCESS file
     */
   @throws(classOf[IOException])
   def generateReport(sql: SQLContext, request: ReportGenerationRequest, inputURIs: java.util.List[String],
-                     reportIdDir: Location, reportExpiryDurationMillis : Long): Unit = {
-    if (inputURIs.isEmpty) {
+                     recordURIs: java.util.List[String], reportIdDir: Location,
+                     reportExpiryDurationMillis : Long): Unit = {
+    if (inputURIs.isEmpty && recordURIs.isEmpty) {
       writeEmptySummaryFile(request, reportIdDir, reportExpiryDurationMillis);
       return
     }
-    val df = SparkCompat.readAvroFiles(sql, inputURIs)
     // Get the fields to be included in the final report and additional fields required for filtering and sorting
     val (reportFields: Set[String], additionalFields: Set[String]) = getReportAndAdditionalFields(request)
 
     // TODO: configure partitions. The default number of partitions is 200
     // Group the program run meta records by program runId's and aggregate the grouped data to get an
     // aggregated DataFrame with two columns: column "run" with runId's and column "record" with aggregation results
-    val initAggDf = SparkCompat.aggregate(sql, df)
+    val rawAggDf = if (inputURIs.isEmpty) None else Some(SparkCompat.aggregate(sql,
+      SparkCompat.readAvroFiles(sql, inputURIs)))
+    // Combine with the program run records materialized from earlier run meta files
+    val recordDf = if (recordURIs.isEmpty) None else Some(SparkCompat.readAvroFiles(sql, recordURIs))
+    val initAggDf = (rawAggDf ++ recordDf).reduce((df1, df2) => df1.union(df2.select(df1.columns.map(df2(_)): _*)))
     // With every unique field in reportFields and additionalFields, construct and add new columns from record column
     // in aggregated DataFrame, in addition to the two initial columns "run" and "record"
     val aggDf = (reportFields ++ additionalFields).foldLeft(initAggDf)((df, fieldName) =>
@@ -0,0 +1,235 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.report
+
+import java.io.{InputStreamReader, OutputStreamWriter, PrintWriter}
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.Lock
+
+import co.cask.cdap.report.util.{Constants, RollupCheckpoint}
+import com.google.gson.Gson
+import org.apache.spark.sql.functions.floor
+import org.apache.spark.sql.SQLContext
+import org.apache.twill.filesystem.Location
+import org.slf4j.LoggerFactory
+
+import scala.collection.JavaConversions._
+
+/**
+  * Maintains incrementally updated, materialized program run records of a namespace, so that report generation
+  * only needs to aggregate the run meta files written since the last update instead of the whole history.
+  *
+  * The rollup directory of a namespace has the following layout:
+  * {{{
+  *   <rollupDir>/_CHECKPOINT                        the RollupCheckpoint in JSON
+  *   <rollupDir>/days/<epoch-day>/<generation>/     aggregated records of runs that ended in that day
+  *   <rollupDir>/pending/<generation>/              raw run meta records of runs that have not finished yet
+  * }}}
+  * Records of finished runs are immutable, so they are bucketed by the day the run ended and never recomputed.
+  * Only the raw records of runs that are still open are carried over and aggregated again in the next update.
+  * An update merges the new records of each day with the latest generation of that day into a new generation,
+  * and deletes the generations it replaces once the new one is committed, so every day has a single generation.
+  * Readers only read the latest generation of each day that is committed in the checkpoint, so a failed update
+  * leaves no visible state. Run meta files are tracked by the creation time of the newest aggregated file, since
+  * they are created one after another by a single writer, so the checkpoint stays the same size no matter how many
+  * files and updates have been aggregated.
+  */
+object RunRecordRollup {
+
+  val LOG = LoggerFactory.getLogger(RunRecordRollup.getClass)
+  val GSON = new Gson()
+  val CHECKPOINT = "_CHECKPOINT"
+  val DAYS_DIR = "days"
+  val PENDING_DIR = "pending"
+  val STAGING_DIR = "staging"
+  val DAY_COL = "day"
+  val AVRO_FORMAT = "com.databricks.spark.avro"
+  val SECONDS_PER_DAY = TimeUnit.DAYS.toSeconds(1)
+
+  /**
+    * Aggregates the closed run meta files that are not yet included in the materialized records of a namespace.
+    * The most recently created run meta file may still be written to, so it is always left for the next update.
+    * Updates of the same namespace must not run concurrently. The aggregation runs without holding the given commit
+    * lock, which is only held while the new checkpoint is written and the records it replaces are deleted.
+    *
+    * @param sql the SQL context to run the aggregation with
+    * @param metaFiles all run meta files of the namespace
+    * @param rollupDir the rollup directory of the namespace
+    * @param commitLock the lock to hold while committing the update
+    */
+  def update(sql: SQLContext, metaFiles: java.util.List[Location], rollupDir: Location, commitLock: Lock): Unit = {
+    val checkpoint = readCheckpoint(rollupDir)
+    val newFiles = getClosedFiles(metaFiles).filterNot(file => checkpoint.isMerged(file.getName))
+    if (newFiles.isEmpty) {
+      LOG.trace("No new run meta files to roll up in {}", rollupDir)
+      return
+    }
+    val generation = math.max(System.currentTimeMillis(), checkpoint.getGeneration + 1).toString
+    val prevPendingDir = Option(checkpoint.getPendingGeneration).map(rollupDir.append(PENDING_DIR).append(_))
+    var rawDf = SparkCompat.readAvroFiles(sql, newFiles.map(_.toURI.toString))
+    prevPendingDir.foreach(dir => {
+      val pendingDf = SparkCompat.readAvroFiles(sql, Seq(dir.toURI.toString))
+      rawDf = rawDf.union(pendingDf.select(rawDf.columns.map(pendingDf(_)): _*))
+    })
+    rawDf.persist()
+    try {
+      val aggDf = SparkCompat.aggregate(sql, rawDf)
+      val endCol = aggDf(ReportGenerationHelper.RECORD_COL).getField(Constants.END)
+
+      // Write the records of finished runs partitioned by the day they ended, then merge each day partition with
+      // the latest generation of that day into a new generation under the days directory
+      val stagingDir = rollupDir.append(STAGING_DIR).append(generation)
+      aggDf.filter(endCol.isNotNull).withColumn(DAY_COL, floor(endCol / SECONDS_PER_DAY))
+        .write.partitionBy(DAY_COL).format(AVRO_FORMAT).save(stagingDir.toURI.toString)
+      val daysDir = rollupDir.append(DAYS_DIR)
+      val replacedDirs = stagingDir.list.filter(_.getName.startsWith(DAY_COL + "=")).flatMap(partitionDir => {
+        val dayDir = daysDir.append(partitionDir.getName.substring(DAY_COL.length + 1))
+        dayDir.mkdirs()
+        // Remove the generations left by failed updates
+        dayDir.list.filterNot(generationDir => checkpoint.isCommitted(generationDir.getName)).foreach(deleteQuietly)
+        val committedDirs = getCommittedGenerations(dayDir, checkpoint)
+        val generationDir = dayDir.append(generation)
+        committedDirs.lastOption match {
+          case Some(latestDir) =>
+            SparkCompat.readAvroFiles(sql, Seq(latestDir.toURI.toString, partitionDir.toURI.toString))
+              .write.format(AVRO_FORMAT).save(generationDir.toURI.toString)
+          case None =>
+            if (partitionDir.renameTo(generationDir) == null) {
+              throw new IllegalStateException(s"Failed to move $partitionDir to $generationDir")
+            }
+        }
+        committedDirs
+      })
+
+      // Carry over the raw records of the runs that have not finished yet
+      val unfinishedRuns = aggDf.filter(endCol.isNull).select(Constants.RUN)
+      val pendingDf = rawDf.join(unfinishedRuns, Seq(Constants.RUN), "leftsemi")
+        .select(rawDf.columns.map(rawDf(_)): _*)
+      val pendingGeneration = if (pendingDf.head(1).isEmpty) None else {
+        pendingDf.write.format(AVRO_FORMAT).save(rollupDir.append(PENDING_DIR).append(generation).toURI.toString)
+        Some(generation)
+      }
+
+      val mergedUntil = (newFiles.map(file => RollupCheckpoint.getCreationTime(file.getName)) :+
+        checkpoint.getMergedUntil).max
+      commitLock.lock()
+      try {
+        writeCheckpoint(rollupDir, new RollupCheckpoint(mergedUntil, generation.toLong, pendingGeneration.orNull))
+        // The previous pending records and the replaced generations are now part of the new generation
+        prevPendingDir.foreach(deleteQuietly)
+        replacedDirs.foreach(deleteQuietly)
+      } finally {
+        commitLock.unlock()
+      }
+      LOG.debug("Rolled up run meta files {} into generation {} in {}", newFiles, generation, rollupDir)
+      deleteQuietly(stagingDir)
+    } finally {
+      rawDf.unpersist()
+    }
+  }
+
+  /**
+    * Gets the URIs of the materialized records of the runs that ended at or after the given time.
+    *
+    * @param rollupDir the rollup directory of the namespace
+    * @param startSeconds the start of the report time range in seconds
+    * @return URIs of directories containing avro files with the columns "run" and "record"
+    */
+  def getRecordInputs(rollupDir: Location, startSeconds: Long): java.util.List[String] = {
+    val checkpoint = readCheckpoint(rollupDir)
+    val daysDir = rollupDir.append(DAYS_DIR)
+    if (!daysDir.exists) {
+      return new java.util.ArrayList[String]()
+    }
+    // runs that ended before the start of the time range will be filtered out anyway, so skip their days
+    val startDay = startSeconds / SECONDS_PER_DAY
+    daysDir.list.filter(_.getName.toLong >= startDay)
+      .flatMap(dayDir => getCommittedGenerations(dayDir, checkpoint).lastOption)
+      .map(_.toURI.toString)
+  }
+
+  /**
+    * Gets the run meta files which are not included in the materialized records, together with the raw records
+    * of the runs that have not finished at the time of the last update.
+    *
+    * @param rollupDir the rollup directory of the namespace
+    * @param metaFiles all run meta files of the namespace
+    * @return URIs of avro files or directories containing raw run meta records
+    */
+  def getRawInputs(rollupDir: Location, metaFiles: java.util.List[Location]): java.util.List[String] = {
+    val checkpoint = readCheckpoint(rollupDir)
+    (metaFiles.filterNot(file => checkpoint.isMerged(file.getName)) ++
+      Option(checkpoint.getPendingGeneration).map(rollupDir.append(PENDING_DIR).append(_))).map(_.toURI.toString)
+  }
+
+  /**
+    * Excludes the run meta files with the latest creation time, which may still be open for appending.
+    * Run meta files are named in the format of <event-time-millis>-<creation-time-millis>.avro
+    */
+  private def getClosedFiles(metaFiles: Seq[Location]): Seq[Location] = {
+    if (metaFiles.isEmpty) {
+      return metaFiles
+    }
+    val latest = metaFiles.map(file => RollupCheckpoint.getCreationTime(file.getName)).max
+    metaFiles.filter(file => RollupCheckpoint.getCreationTime(file.getName) < latest)
+  }
+
+  /**
+    * Gets the committed generations of a day ordered from the oldest to the newest. Older generations are only left
+    * if deleting them failed, and their records are all included in the newest generation.
+    */
+  private def getCommittedGenerations(dayDir: Location, checkpoint: RollupCheckpoint): Seq[Location] = {
+    dayDir.list.filter(generationDir => checkpoint.isCommitted(generationDir.getName)).sortBy(_.getName.toLong)
+  }
+
+  private def readCheckpoint(rollupDir: Location): RollupCheckpoint = {
+    val checkpointLocation = rollupDir.append(CHECKPOINT)
+    if (!checkpointLocation.exists) {
+      return new RollupCheckpoint()
+    }
+    val reader = new InputStreamReader(checkpointLocation.getInputStream, StandardCharsets.UTF_8)
+    try {
+      GSON.fromJson(reader, classOf[RollupCheckpoint])
+    } finally {
+      reader.close()
+    }
+  }
+
+  private def writeCheckpoint(rollupDir: Location, checkpoint: RollupCheckpoint): Unit = {
+    val checkpointLocation = rollupDir.append(CHECKPOINT)
+    val tmpLocation = checkpointLocation.getTempFile(CHECKPOINT)
+    try {
+      val writer = new PrintWriter(new OutputStreamWriter(tmpLocation.getOutputStream, StandardCharsets.UTF_8))
+      try {
+        GSON.toJson(checkpoint, writer)
+      } finally {
+        writer.close()
+      }
+      tmpLocation.renameTo(checkpointLocation)
+    } finally {
+      deleteQuietly(tmpLocation)
+    }
+  }
+
+  private def deleteQuietly(location: Location): Unit = {
+    try {
+      location.delete(true)
+    } catch {
+      case e: Exception => LOG.warn("Failed to delete location {}", location, e)
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2018 Cask Data, Inc.
+ * Copyright © 2018-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -54,6 +54,7 @@ import co.cask.cdap.report.util.Constants;
 import co.cask.cdap.report.util.ReportContentDeserializer;
 import co.cask.cdap.report.util.ReportField;
 import co.cask.cdap.report.util.ReportIds;
+import co.cask.cdap.report.util.RollupCheckpoint;
 import co.cask.cdap.test.ApplicationManager;
 import co.cask.cdap.test.DataSetManager;
 import co.cask.cdap.test.SparkManager;
@@ -85,6 +86,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.net.URISyntaxException;
@@ -364,6 +367,125 @@ public class ReportGenerationAppTest extends TestBase {
     getNamespaceAdmin().delete(testNamespace);
   }
 
+  @Test
+  public void testIncrementalRollup() throws Exception {
+    NamespaceId testNamespace = new NamespaceId("rollup");
+    getNamespaceAdmin().create(new NamespaceMeta.Builder()
+                                 .setName(testNamespace)
+                                 .setDescription("Namespace used to test materialized run records")
+                                 .build());
+    long currentTimeMillis = System.currentTimeMillis();
+    DatasetId metaFileset = createAndInitializeDataset(testNamespace, currentTimeMillis);
+    Location ns1Location = this.<FileSet>getDataset(metaFileset).get().getBaseLocation().append("ns1");
+
+    Map<String, String> runTimeArguments = new HashMap<>();
+    runTimeArguments.put(Constants.DISABLE_TMS_SUBSCRIBER_THREAD, "true");
+    SparkManager sparkManager = deployAndStartReportingApplication(testNamespace, runTimeArguments);
+    URL url = sparkManager.getServiceURL(1, TimeUnit.MINUTES);
+    Assert.assertNotNull(url);
+    URL reportURL = url.toURI().resolve("reports/").toURL();
+    Location rollupLocation = this.<FileSet>getDataset(testNamespace.dataset(ReportGenerationApp.RUN_ROLLUP_FILESET))
+      .get().getBaseLocation().append("ns1");
+
+    long startSecs = TimeUnit.MILLISECONDS.toSeconds(currentTimeMillis);
+    ReportGenerationRequest request =
+      new ReportGenerationRequest("ns1_ns2_report", startSecs, startSecs + 30,
+                                  new ArrayList<>(ReportField.FIELD_NAME_MAP.keySet()),
+                                  ImmutableList.of(new Sort(Constants.DURATION, Sort.Order.DESCENDING)),
+                                  ImmutableList.of(
+                                    new ValueFilter<>(Constants.NAMESPACE, ImmutableSet.of("ns1", "ns2"), null),
+                                    new RangeFilter<>(Constants.DURATION, new RangeFilter.Range<>(null, 500L))));
+    Assert.assertEquals(ImmutableSet.of(new NamespaceAggregate("ns1", 1), new NamespaceAggregate("ns2", 1)),
+                        new HashSet<>(generateReportSummary(reportURL, request).getNamespaces()));
+    // Add a run that starts in one run meta file and finishes in the next one
+    ProgramStartInfo startInfo =
+      new ProgramStartInfo(ImmutableMap.of(), new ArtifactId(TEST_ARTIFACT_NAME, new ArtifactVersion("1.0.0"),
+                                                              ArtifactScope.USER), USER_ALICE, ImmutableMap.of());
+    String run = ReportIds.generate().toString();
+    long runStart = currentTimeMillis + TimeUnit.SECONDS.toMillis(10);
+    writeMetaFile(ns1Location, runStart, currentTimeMillis + TimeUnit.MINUTES.toMillis(1),
+                  createRecord("ns1", "Pipeline", "-SNAPSHOT", "WORKFLOW", "SmartWorkflow_3", run,
+                               "STARTING", runStart, startInfo, "100"));
+    writeMetaFile(ns1Location, runStart, currentTimeMillis + TimeUnit.MINUTES.toMillis(2),
+                  createRecord("ns1", "Pipeline", "-SNAPSHOT", "WORKFLOW", "SmartWorkflow_3", run,
+                               "FAILED", runStart + TimeUnit.MINUTES.toMillis(4), null, "101"));
+
+    // The run is aggregated from the raw records of the unfinished run and the newest run meta file
+    Assert.assertEquals(ImmutableSet.of(new NamespaceAggregate("ns1", 2), new NamespaceAggregate("ns2", 1)),
+                        new HashSet<>(generateReportSummary(reportURL, request).getNamespaces()));
+    RollupCheckpoint checkpoint = readRollupCheckpoint(rollupLocation);
+    Assert.assertNotNull(checkpoint.getPendingGeneration());
+
+    // Add a run outside of the report time range, so that the run meta file with the finished run gets materialized
+    String otherRun = ReportIds.generate().toString();
+    long otherRunStart = currentTimeMillis + TimeUnit.HOURS.toMillis(10);
+    writeMetaFile(ns1Location, otherRunStart, currentTimeMillis + TimeUnit.MINUTES.toMillis(3),
+                  createRecord("ns1", "Pipeline", "-SNAPSHOT", "WORKFLOW", "SmartWorkflow_3", otherRun,
+                               "STARTING", otherRunStart, startInfo, "102"));
+    Assert.assertEquals(ImmutableSet.of(new NamespaceAggregate("ns1", 2), new NamespaceAggregate("ns2", 1)),
+                        new HashSet<>(generateReportSummary(reportURL, request).getNamespaces()));
+    checkpoint = readRollupCheckpoint(rollupLocation);
+    Assert.assertNull(checkpoint.getPendingGeneration());
+    Assert.assertEquals(currentTimeMillis + TimeUnit.MINUTES.toMillis(2), checkpoint.getMergedUntil());
+    // Every day only has the latest committed generation after the updates
+    for (Location dayLocation : rollupLocation.append("days").list()) {
+      List<Location> generations = dayLocation.list();
+      Assert.assertEquals(1, generations.size());
+      Assert.assertTrue(checkpoint.isCommitted(generations.get(0).getName()));
+    }
+
+    sparkManager.stop();
+    sparkManager.waitForStopped(2, TimeUnit.MINUTES);
+    deleteDatasetInstance(metaFileset);
+    getNamespaceAdmin().delete(testNamespace);
+  }
+
+  private ReportSummary generateReportSummary(URL reportURL, ReportGenerationRequest request) throws Exception {
+    HttpURLConnection urlConn = (HttpURLConnection) reportURL.openConnection();
+    urlConn.setDoOutput(true);
+    urlConn.setRequestMethod("POST");
+    urlConn.getOutputStream().write(GSON.toJson(request).getBytes(StandardCharsets.UTF_8));
+    if (urlConn.getErrorStream() != null) {
+      Assert.fail(Bytes.toString(ByteStreams.toByteArray(urlConn.getErrorStream())));
+    }
+    Assert.assertEquals(200, urlConn.getResponseCode());
+    String reportId = getResponseObject(urlConn, STRING_STRING_MAP).get("id");
+    Assert.assertNotNull(reportId);
+    URL reportIdURL = reportURL.toURI().resolve("info?report-id=" + reportId).toURL();
+    Tasks.waitFor(ReportStatus.COMPLETED, () -> {
+      ReportGenerationInfo reportGenerationInfo = getResponseObject(reportIdURL.openConnection(),
+                                                                    REPORT_GEN_INFO_TYPE);
+      if (ReportStatus.FAILED.equals(reportGenerationInfo.getStatus())) {
+        Assert.fail("Report generation failed");
+      }
+      return reportGenerationInfo.getStatus();
+    }, 5, TimeUnit.MINUTES, 2, TimeUnit.SECONDS);
+    ReportGenerationInfo reportGenerationInfo = getResponseObject(reportIdURL.openConnection(), REPORT_GEN_INFO_TYPE);
+    Assert.assertNotNull(reportGenerationInfo.getSummary());
+    return reportGenerationInfo.getSummary();
+  }
+
+  private static RollupCheckpoint readRollupCheckpoint(Location rollupLocation) throws IOException {
+    try (Reader reader = new InputStreamReader(rollupLocation.append("_CHECKPOINT").getInputStream(),
+                                               StandardCharsets.UTF_8)) {
+      return GSON.fromJson(reader, RollupCheckpoint.class);
+    }
+  }
+
+  private static void writeMetaFile(Location nsLocation, long eventTime, long creationTime,
+                                    GenericRecord... records) throws IOException {
+    //file name is of the format <event-time-millis>-<creation-time-millis>.avro
+    Location location = nsLocation.append(String.format("%d-%d.avro", eventTime, creationTime));
+    location.createNew();
+    try (DataFileWriter<GenericRecord> dataFileWriter =
+           new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(ProgramRunInfoSerializer.SCHEMA))) {
+      dataFileWriter.create(ProgramRunInfoSerializer.SCHEMA, location.getOutputStream());
+      for (GenericRecord record : records) {
+        dataFileWriter.append(record);
+      }
+    }
+  }
+
   private int getReportsList(URL url) throws IOException, URISyntaxException {
     URL reportURL = url.toURI().resolve("reports/").toURL();
     HttpURLConnection reportsUrl = (HttpURLConnection) reportURL.openConnection();
@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.report.util;
+
+import com.google.gson.Gson;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link RollupCheckpoint}.
+ */
+public class RollupCheckpointTest {
+
+  private static final Gson GSON = new Gson();
+
+  @Test
+  public void testIsMerged() {
+    RollupCheckpoint checkpoint = new RollupCheckpoint();
+    Assert.assertFalse(checkpoint.isMerged("100-200.avro"));
+
+    checkpoint = new RollupCheckpoint(200L, 1000L, null);
+    Assert.assertTrue(checkpoint.isMerged("100-150.avro"));
+    Assert.assertTrue(checkpoint.isMerged("300-200.avro"));
+    Assert.assertFalse(checkpoint.isMerged("100-201.avro"));
+  }
+
+  @Test
+  public void testIsCommitted() {
+    RollupCheckpoint checkpoint = new RollupCheckpoint();
+    Assert.assertFalse(checkpoint.isCommitted("1000"));
+
+    checkpoint = new RollupCheckpoint(200L, 1000L, null);
+    Assert.assertTrue(checkpoint.isCommitted("999"));
+    Assert.assertTrue(checkpoint.isCommitted("1000"));
+    Assert.assertFalse(checkpoint.isCommitted("1001"));
+  }
+
+  @Test
+  public void testGetCreationTime() {
+    Assert.assertEquals(1525000000000L, RollupCheckpoint.getCreationTime("1524999990000-1525000000000.avro"));
+    for (String name : new String[] { "", "12345.avro", "123-.avro", "123-abc.avro", "123-456" }) {
+      try {
+        RollupCheckpoint.getCreationTime(name);
+        Assert.fail("Expected IllegalArgumentException for " + name);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testSerialization() {
+    RollupCheckpoint checkpoint = new RollupCheckpoint(200L, 2000L, "2000");
+    RollupCheckpoint deserialized = GSON.fromJson(GSON.toJson(checkpoint), RollupCheckpoint.class);
+    Assert.assertEquals(200L, deserialized.getMergedUntil());
+    Assert.assertEquals(2000L, deserialized.getGeneration());
+    Assert.assertEquals("2000", deserialized.getPendingGeneration());
+  }
+}
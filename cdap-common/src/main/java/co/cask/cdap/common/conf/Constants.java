@@ -186,6 +186,7 @@ public final class Constants {
     public static final String APP_SCHEDULER_QUEUE = "apps.scheduler.queue";
     public static final String STATUS_EVENT_FETCH_SIZE = "app.program.status.event.fetch.size";
     public static final String STATUS_EVENT_POLL_DELAY_MILLIS = "app.program.status.event.poll.delay.millis";
+    public static final String STATUS_EVENT_DECODE_PARALLELISM = "app.program.status.event.decode.parallelism";
     public static final String MAPREDUCE_JOB_CLIENT_CONNECT_MAX_RETRIES = "mapreduce.jobclient.connect.max.retries";
     public static final String MAPREDUCE_INCLUDE_CUSTOM_CLASSES = "mapreduce.include.custom.format.classes";
     public static final String MAPREDUCE_STATUS_REPORT_INTERVAL_SECONDS = "mapreduce.status.report.interval.seconds";
@@ -195,6 +196,9 @@ public final class Constants {
     public static final String LOCAL_DATASET_DELETER_INITIAL_DELAY_SECONDS
       = "app.program.local.dataset.deleter.initial.delay";
     public static final String SYSTEM_ARTIFACTS_DIR = "app.artifact.dir";
+    public static final String ARTIFACT_INSPECTION_CACHE_DIR = "app.artifact.inspection.cache.dir";
+    public static final String ARTIFACT_INSPECTION_CACHE_MAX_ENTRIES = "app.artifact.inspection.cache.max.entries";
+    public static final String ARTIFACT_UNPACK_CACHE_IDLE_SECONDS = "app.artifact.unpack.cache.idle.seconds";
     public static final String PROGRAM_EXTRA_CLASSPATH = "app.program.extra.classpath";
     public static final String SPARK_YARN_CLIENT_REWRITE = "app.program.spark.yarn.client.rewrite.enabled";
     public static final String SPARK_COMPAT = "app.program.spark.compat";
@@ -205,6 +209,7 @@ public final class Constants {
       "app.program.yarn.attempt.failures.validity.interval";
 
     public static final String PROGRAM_TRANSACTION_CONTROL = "app.program.transaction.control";
+    public static final String PROGRAM_READ_ONLY_TX_REFRESH_MS = "app.program.transaction.read.only.refresh.ms";
     public static final String MAX_CONCURRENT_RUNS = "app.max.concurrent.runs";
 
     /**
@@ -248,6 +253,11 @@ public final class Constants {
      */
     public static final String WORKFLOW_TOKEN_MAX_SIZE_MB = "workflow.token.max.size.mb";
 
+    /**
+     * Configuration setting for the maximum number of actions that a workflow run executes concurrently
+     */
+    public static final String WORKFLOW_MAX_PARALLELISM = "workflow.max.parallelism";
+
     /**
      * Name of the property used to identify whether the dataset is local or not.
      */
@@ -336,6 +346,10 @@ public final class Constants {
     public static final String WORKER_THREADS = "preview.worker.threads";
 
     public static final String PREVIEW_CACHE_SIZE = "preview.cache.size";
+    public static final String RUNTIME_POOL_SIZE = "preview.runtime.pool.size";
+    public static final String RUNTIME_POOL_WAIT_MILLIS = "preview.runtime.pool.wait.ms";
+    public static final String TRACER_MAX_RECORDS = "preview.tracer.max.records";
+    public static final String TRACER_FLUSH_INTERVAL_MILLIS = "preview.tracer.flush.interval.ms";
   }
 
   /**
@@ -356,6 +370,18 @@ public final class Constants {
     public static final String PROGRAM_STATUS_EVENT_FETCH_SIZE = "scheduler.program.status.event.fetch.size";
 
     public static final String JOB_QUEUE_NUM_PARTITIONS = "scheduler.job.queue.num.partitions";
+    public static final String JOB_QUEUE_NUM_WORKERS = "scheduler.job.queue.num.workers";
+
+    /**
+     * Engine that fires time schedules, either {@link #TIME_ENGINE_QUARTZ} or {@link #TIME_ENGINE_WHEEL}
+     */
+    public static final String TIME_ENGINE = "scheduler.time.engine";
+    public static final String TIME_ENGINE_QUARTZ = "quartz";
+    public static final String TIME_ENGINE_WHEEL = "wheel";
+
+    public static final String TIME_WHEEL_TICK_MILLIS = "scheduler.time.wheel.tick.millis";
+    public static final String TIME_WHEEL_SIZE = "scheduler.time.wheel.size";
+    public static final String TIME_WHEEL_PUBLISH_BATCH_SIZE = "scheduler.time.wheel.publish.batch.size";
   }
 
   /**
@@ -588,6 +614,8 @@ public final class Constants {
     public static final String SERVICE_DESCRIPTION = "Service to handle metrics requests.";
     public static final String PROCESSOR_MAX_DELAY_MS = "metrics.processor.max.delay.ms";
     public static final String QUEUE_SIZE = "metrics.processor.queue.size";
+    public static final String ROLLUP_INTERVAL_SECONDS = "metrics.rollup.interval.seconds";
+    public static final String ROLLUP_DELAY_SECONDS = "metrics.rollup.delay.seconds";
 
     public static final String ENTITY_TABLE_NAME = "metrics.data.entity.tableName";
     public static final String METRICS_TABLE_PREFIX = "metrics.data.table.prefix";
@@ -757,6 +785,30 @@ public final class Constants {
       public static final String PROGRAM_NODE_MINUTES = "program.node.minutes";
     }
 
+    /**
+     * Workflow metrics
+     */
+    public static final class Workflow {
+      public static final String NODE_QUEUE_WAIT_MILLIS = "workflow.node.queue.wait.ms";
+      public static final String NODES_QUEUED = "workflow.nodes.queued";
+    }
+
+    /**
+     * Preview metrics
+     */
+    public static final class Preview {
+      public static final String RUNTIMES_AVAILABLE = "preview.runtimes.available";
+      public static final String RUNTIME_WAIT_MILLIS = "preview.runtime.wait.ms";
+    }
+
+    /**
+     * Scheduler metrics
+     */
+    public static final class Scheduler {
+      public static final String JOBS_LAUNCHED = "scheduler.jobs.launched";
+      public static final String JOB_LAUNCH_DELAY_MILLIS = "scheduler.job.launch.delay.ms";
+    }
+
     /**
      * Structured table metrics
      */
@@ -884,9 +936,11 @@ public final class Constants {
     public static final String PIPELINE_CONFIG_DIR = "log.process.pipeline.config.dir";
     public static final String PIPELINE_LIBRARY_DIR = "log.process.pipeline.lib.dir";
     public static final String PIPELINE_AUTO_BUFFER_RATIO = "log.process.pipeline.auto.buffer.ratio";
+    public static final String PIPELINE_SPILL_DIR = "log.process.pipeline.spill.dir";
 
     // The following properties can be defined in cdap-site and overridden in individual pipeline config xml
     public static final String PIPELINE_BUFFER_SIZE = "log.process.pipeline.buffer.size";
+    public static final String PIPELINE_MEMORY_BUFFER_SIZE = "log.process.pipeline.memory.buffer.size";
     public static final String PIPELINE_EVENT_DELAY_MS = "log.process.pipeline.event.delay.ms";
     public static final String PIPELINE_KAFKA_FETCH_SIZE = "log.process.pipeline.kafka.fetch.size";
     public static final String PIPELINE_CHECKPOINT_INTERVAL_MS = "log.process.pipeline.checkpoint.interval.ms";
@@ -1278,9 +1332,16 @@ public final class Constants {
     public static final String MESSAGING_FETCH_SIZE = "metadata.messaging.fetch.size";
     public static final String MESSAGING_POLL_DELAY_MILLIS = "metadata.messaging.poll.delay.millis";
 
+    public static final String LINEAGE_CACHE_SIZE = "metadata.lineage.cache.size";
+    public static final String LINEAGE_CACHE_CLOSED_WINDOW_DELAY_SECS =
+      "metadata.lineage.cache.closed.window.delay.secs";
+
     public static final String STORAGE_PROVIDER_IMPLEMENTATION = "metadata.storage.implementation";
     public static final String STORAGE_PROVIDER_NOSQL = "nosql";
     public static final String STORAGE_PROVIDER_ELASTICSEARCH = "elastic";
+    public static final String STORAGE_PROVIDER_LOCAL = "local";
+
+    public static final String STORAGE_LOCAL_DATA_DIR = "metadata.storage.local.data.dir";
   }
 
   /**
@@ -1308,6 +1369,7 @@ public final class Constants {
     public static final String MESSAGE_TABLE_HBASE_SPLITS = "messaging.message.table.hbase.splits";
     public static final String PAYLOAD_TABLE_NAME = "messaging.payload.table.name";
     public static final String PAYLOAD_TABLE_HBASE_SPLITS = "messaging.payload.table.hbase.splits";
+    public static final String SUBSCRIBER_THREADS = "messaging.subscriber.threads";
     public static final String SYSTEM_TOPICS = "messaging.system.topics";
     public static final String TABLE_CACHE_EXPIRATION_SECONDS = "messaging.table.expiration.seconds";
     public static final String TABLE_HBASE_SPLIT_POLICY = "messaging.table.hbase.split.policy";
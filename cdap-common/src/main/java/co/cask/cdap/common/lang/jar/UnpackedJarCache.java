@@ -0,0 +1,295 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.lang.jar;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.DirUtils;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.twill.common.Threads;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A cache of jar files unpacked to local directories, so that concurrent users of the same jar file share one
+ * unpacked directory instead of each expanding the jar. Entries are keyed by the jar location together with its
+ * modification time and size, so that a jar that is replaced at the same location is unpacked again.
+ *
+ * Each {@link #acquire(Location)} call returns a {@link Reference} that must be closed when the directory is no
+ * longer needed. A directory is deleted once it has not been referenced for the idle timeout. The unpacked
+ * directories are shared, hence they must not be modified by the users.
+ *
+ * When created through Guice, there is one instance per injector, shared by the program runtime service and the
+ * artifact repository, so that the same artifact is only unpacked once.
+ *
+ * The first cache created for a base directory in a process deletes the directories left in it by a previous
+ * process that didn't close its cache, for example because it was killed.
+ */
+@ThreadSafe
+@Singleton
+public final class UnpackedJarCache implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(UnpackedJarCache.class);
+
+  // A single daemon thread shared by all caches for deleting idle directories. The thread exits when there is
+  // no pending eviction, so that caches that are never closed don't keep a thread around.
+  private static final ScheduledThreadPoolExecutor EVICTION_EXECUTOR = createEvictionExecutor();
+  // The base directories that stale directories were deleted from by this process
+  private static final Set<File> CLEANED_BASE_DIRS = new HashSet<>();
+
+  private final File baseDir;
+  private final long idleTimeoutNanos;
+  private final Map<String, Entry> entries;
+  private boolean closed;
+
+  @Inject
+  UnpackedJarCache(CConfiguration cConf) {
+    this(new File(new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR), cConf.get(Constants.AppFabric.TEMP_DIR)),
+                  "unpacked-jars").getAbsoluteFile(),
+         cConf.getLong(Constants.AppFabric.ARTIFACT_UNPACK_CACHE_IDLE_SECONDS), TimeUnit.SECONDS);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param baseDir the directory for creating the unpacked directories in
+   * @param idleTimeout the time an unpacked directory is kept after the last reference to it is closed
+   * @param unit the unit of the idle timeout
+   */
+  public UnpackedJarCache(File baseDir, long idleTimeout, TimeUnit unit) {
+    this.baseDir = baseDir;
+    this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+    this.entries = new HashMap<>();
+
+    // Other caches in this process may already use the base directory, so only the first one deletes its content.
+    // Concurrent creations wait for the deletion to complete before unpacking anything.
+    synchronized (CLEANED_BASE_DIRS) {
+      if (CLEANED_BASE_DIRS.add(baseDir.getAbsoluteFile())) {
+        deleteStaleDirectories(baseDir);
+      }
+    }
+  }
+
+  /**
+   * Returns a {@link Reference} to the directory that the given jar is unpacked to. The jar is unpacked if there
+   * is no unpacked directory for it yet.
+   *
+   * @param jarLocation the location of the jar file
+   * @return a {@link Reference} to the unpacked directory, which must be closed after use
+   * @throws IOException if failed to unpack the jar
+   */
+  public Reference acquire(Location jarLocation) throws IOException {
+    String key = jarLocation.toURI() + "@" + jarLocation.lastModified() + ":" + jarLocation.length();
+
+    Entry entry;
+    synchronized (this) {
+      entry = entries.computeIfAbsent(key, k -> new Entry());
+      entry.refCount++;
+    }
+
+    // Unpack outside of the cache lock, so that unpacking different jars doesn't block each other
+    Reference reference = new Reference(key, entry);
+    try {
+      synchronized (entry) {
+        if (entry.dir == null) {
+          File dir = DirUtils.createTempDir(baseDir);
+          try {
+            entry.dir = BundleJarUtil.unJar(jarLocation, dir);
+          } catch (IOException | RuntimeException e) {
+            try {
+              DirUtils.deleteDirectoryContents(dir);
+            } catch (IOException ex) {
+              e.addSuppressed(ex);
+            }
+            throw e;
+          }
+          LOG.debug("Unpacked {} to {}", jarLocation, entry.dir);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      reference.close();
+      throw e;
+    }
+    return reference;
+  }
+
+  /**
+   * Deletes the unpacked directories that are not referenced and have been idle for longer than the idle timeout.
+   */
+  public void evictIdle() {
+    List<Entry> evicted = new ArrayList<>();
+    synchronized (this) {
+      long now = System.nanoTime();
+      Iterator<Entry> iterator = entries.values().iterator();
+      while (iterator.hasNext()) {
+        Entry entry = iterator.next();
+        if (entry.refCount == 0 && now - entry.idleSinceNanos >= idleTimeoutNanos) {
+          iterator.remove();
+          evicted.add(entry);
+        }
+      }
+    }
+    evicted.forEach(this::delete);
+  }
+
+  /**
+   * Deletes all unpacked directories. References that are still open stay valid until they are closed, after which
+   * their directories are deleted. The cache can still be used after it is closed, but directories are no longer
+   * kept after the last reference to them is released.
+   */
+  @Override
+  public void close() {
+    List<Entry> evicted = new ArrayList<>();
+    synchronized (this) {
+      closed = true;
+      Iterator<Entry> iterator = entries.values().iterator();
+      while (iterator.hasNext()) {
+        Entry entry = iterator.next();
+        if (entry.refCount == 0) {
+          iterator.remove();
+          evicted.add(entry);
+        }
+      }
+    }
+    evicted.forEach(this::delete);
+  }
+
+  private void release(String key, Entry entry) {
+    boolean delete = false;
+    boolean scheduleEviction = false;
+    synchronized (this) {
+      if (--entry.refCount == 0) {
+        entry.idleSinceNanos = System.nanoTime();
+        // Delete right away if the cache is closed, or if the entry failed to unpack
+        if (closed || entry.dir == null || idleTimeoutNanos <= 0) {
+          entries.remove(key, entry);
+          delete = true;
+        } else {
+          scheduleEviction = true;
+        }
+      }
+    }
+    if (delete) {
+      delete(entry);
+    }
+    if (scheduleEviction) {
+      // Evict the entry once it has been idle for the timeout, even if there is no other release by then
+      EVICTION_EXECUTOR.schedule(this::evictIdle, idleTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+    evictIdle();
+  }
+
+  private void delete(Entry entry) {
+    File dir;
+    synchronized (entry) {
+      dir = entry.dir;
+      entry.dir = null;
+    }
+    if (dir == null) {
+      return;
+    }
+    try {
+      DirUtils.deleteDirectoryContents(dir);
+      LOG.debug("Deleted unpacked directory {}", dir);
+    } catch (IOException e) {
+      LOG.warn("Failed to delete unpacked directory {}", dir, e);
+    }
+  }
+
+  private static void deleteStaleDirectories(File baseDir) {
+    for (File dir : DirUtils.listFiles(baseDir, File::isDirectory)) {
+      try {
+        DirUtils.deleteDirectoryContents(dir);
+        LOG.debug("Deleted stale unpacked directory {}", dir);
+      } catch (IOException e) {
+        LOG.warn("Failed to delete stale unpacked directory {}", dir, e);
+      }
+    }
+  }
+
+  private static ScheduledThreadPoolExecutor createEvictionExecutor() {
+    ScheduledThreadPoolExecutor executor =
+      new ScheduledThreadPoolExecutor(1, Threads.createDaemonThreadFactory("unpacked-jar-cache-eviction"));
+    executor.setKeepAliveTime(1, TimeUnit.MINUTES);
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * A reference to an unpacked directory.
+   */
+  public final class Reference implements Closeable {
+
+    private final String key;
+    private final Entry entry;
+    private final AtomicBoolean released;
+
+    private Reference(String key, Entry entry) {
+      this.key = key;
+      this.entry = entry;
+      this.released = new AtomicBoolean();
+    }
+
+    /**
+     * Returns the directory that the jar is unpacked to.
+     */
+    public File getDirectory() {
+      synchronized (entry) {
+        if (released.get() || entry.dir == null) {
+          throw new IllegalStateException("Reference is already released");
+        }
+        return entry.dir;
+      }
+    }
+
+    /**
+     * Releases this reference. The unpacked directory may be deleted after all references to it are released.
+     */
+    @Override
+    public void close() {
+      if (released.compareAndSet(false, true)) {
+        release(key, entry);
+      }
+    }
+  }
+
+  /**
+   * An unpacked directory and the number of references to it.
+   */
+  private static final class Entry {
+    private File dir;
+    private int refCount;
+    private long idleSinceNanos;
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.lang.jar;
+
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.utils.Tasks;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link UnpackedJarCache}.
+ */
+public class UnpackedJarCacheTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testShareAndRelease() throws IOException {
+    Location jarLocation = createJar("content");
+
+    try (UnpackedJarCache cache = new UnpackedJarCache(TEMP_FOLDER.newFolder(), 0, TimeUnit.SECONDS)) {
+      UnpackedJarCache.Reference ref1 = cache.acquire(jarLocation);
+      UnpackedJarCache.Reference ref2 = cache.acquire(jarLocation);
+
+      // Both references share the same unpacked directory
+      File dir = ref1.getDirectory();
+      Assert.assertEquals(dir, ref2.getDirectory());
+      Assert.assertEquals("content", Files.toString(new File(dir, "file"), Charsets.UTF_8));
+
+      // The directory is kept while there is a reference to it
+      ref1.close();
+      // Closing again shouldn't release the other reference
+      ref1.close();
+      Assert.assertTrue(dir.isDirectory());
+
+      // With zero idle timeout, the directory is deleted when the last reference is released
+      ref2.close();
+      Assert.assertFalse(dir.exists());
+
+      try {
+        ref2.getDirectory();
+        Assert.fail("Expected released reference to fail");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testIdleEviction() throws Exception {
+    Location jarLocation = createJar("content");
+
+    UnpackedJarCache cache = new UnpackedJarCache(TEMP_FOLDER.newFolder(), 1, TimeUnit.HOURS);
+    File dir;
+    try (UnpackedJarCache.Reference ref = cache.acquire(jarLocation)) {
+      dir = ref.getDirectory();
+    }
+
+    // The directory is kept after the reference is released, and reused by the next user
+    cache.evictIdle();
+    Assert.assertTrue(dir.isDirectory());
+    try (UnpackedJarCache.Reference ref = cache.acquire(jarLocation)) {
+      Assert.assertEquals(dir, ref.getDirectory());
+    }
+
+    // Closing the cache deletes all unreferenced directories
+    cache.close();
+    Assert.assertFalse(dir.exists());
+
+    // The cache is still usable after closing, but directories are deleted once released
+    try (UnpackedJarCache.Reference ref = cache.acquire(jarLocation)) {
+      dir = ref.getDirectory();
+      Assert.assertTrue(dir.isDirectory());
+    }
+    Assert.assertFalse(dir.exists());
+  }
+
+  @Test
+  public void testTimedEviction() throws Exception {
+    Location jarLocation = createJar("content");
+
+    try (UnpackedJarCache cache = new UnpackedJarCache(TEMP_FOLDER.newFolder(), 100, TimeUnit.MILLISECONDS)) {
+      File dir;
+      try (UnpackedJarCache.Reference ref = cache.acquire(jarLocation)) {
+        dir = ref.getDirectory();
+      }
+
+      // The directory is deleted after the idle timeout without any further use of the cache
+      Tasks.waitFor(false, dir::exists, 10, TimeUnit.SECONDS, 50, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Test
+  public void testModifiedJar() throws Exception {
+    Location jarLocation = createJar("content");
+
+    try (UnpackedJarCache cache = new UnpackedJarCache(TEMP_FOLDER.newFolder(), 1, TimeUnit.HOURS)) {
+      try (UnpackedJarCache.Reference ref = cache.acquire(jarLocation)) {
+        File dir = ref.getDirectory();
+
+        // Replace the jar with a different one at the same location. It should be unpacked again.
+        File jarFile = new File(jarLocation.toURI());
+        Files.copy(new File(createJar("modified content").toURI()), jarFile);
+        try (UnpackedJarCache.Reference newRef = cache.acquire(jarLocation)) {
+          Assert.assertNotEquals(dir, newRef.getDirectory());
+          Assert.assertEquals("modified content",
+                              Files.toString(new File(newRef.getDirectory(), "file"), Charsets.UTF_8));
+        }
+
+        // The old directory is still valid for the existing reference
+        Assert.assertEquals("content", Files.toString(new File(dir, "file"), Charsets.UTF_8));
+      }
+    }
+  }
+
+  @Test
+  public void testDeleteStaleDirectories() throws IOException {
+    Location jarLocation = createJar("content");
+
+    // A directory left by a previous process is deleted when the first cache for the base directory is created
+    File baseDir = TEMP_FOLDER.newFolder();
+    File staleDir = new File(baseDir, "stale");
+    Assert.assertTrue(staleDir.mkdirs());
+    Files.write("content", new File(staleDir, "file"), Charsets.UTF_8);
+
+    try (UnpackedJarCache cache = new UnpackedJarCache(baseDir, 1, TimeUnit.HOURS)) {
+      Assert.assertFalse(staleDir.exists());
+
+      // Another cache for the same base directory in the same process keeps the directories in use
+      try (UnpackedJarCache.Reference ref = cache.acquire(jarLocation)) {
+        new UnpackedJarCache(baseDir, 1, TimeUnit.HOURS).close();
+        Assert.assertEquals("content", Files.toString(new File(ref.getDirectory(), "file"), Charsets.UTF_8));
+      }
+    }
+  }
+
+  private Location createJar(String content) throws IOException {
+    File dir = TEMP_FOLDER.newFolder();
+    Files.write(content, new File(dir, "file"), Charsets.UTF_8);
+    File jarFile = new File(TEMP_FOLDER.newFolder(), "test.jar");
+    BundleJarUtil.createJar(dir, jarFile);
+    return Locations.toLocation(jarFile);
+  }
+}
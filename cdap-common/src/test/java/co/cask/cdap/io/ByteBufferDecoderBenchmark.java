@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.io.Encoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the decoding time and the allocation of {@link ByteBufferDecoder} with {@link BinaryDecoder}.
+ * It is not a unit test. Run it with the test classpath of this module, optionally passing the number of
+ * decodes per round as the first argument.
+ */
+public final class ByteBufferDecoderBenchmark {
+
+  private static final int ROUNDS = 5;
+  private static final String STRING = "This is a testing message " +
+    Character.toString((char) 200) + Character.toString((char) 20000) + Character.toString((char) 40000);
+
+  public static void main(String[] args) throws IOException {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    byte[] encoded = encode();
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    // The first rounds are for warming up
+    for (int i = 0; i < ROUNDS; i++) {
+      long startBytes = getAllocatedBytes(threadMXBean);
+      long startTime = System.nanoTime();
+      for (int j = 0; j < count; j++) {
+        decode(new BinaryDecoder(new ByteArrayInputStream(encoded)));
+      }
+      long binaryTime = System.nanoTime() - startTime;
+      long binaryBytes = getAllocatedBytes(threadMXBean) - startBytes;
+
+      ByteBufferDecoder bufferDecoder = new ByteBufferDecoder();
+      startBytes = getAllocatedBytes(threadMXBean);
+      startTime = System.nanoTime();
+      for (int j = 0; j < count; j++) {
+        decode(bufferDecoder.reset(ByteBuffer.wrap(encoded)));
+      }
+      long bufferTime = System.nanoTime() - startTime;
+      long bufferBytes = getAllocatedBytes(threadMXBean) - startBytes;
+
+      System.out.printf("Round %d: BinaryDecoder %d ms, %d bytes/decode; ByteBufferDecoder %d ms, %d bytes/decode%n",
+                        i, TimeUnit.NANOSECONDS.toMillis(binaryTime), binaryBytes / count,
+                        TimeUnit.NANOSECONDS.toMillis(bufferTime), bufferBytes / count);
+    }
+  }
+
+  /**
+   * Encodes a record of the shape of a metric message, with a few tags, a name, a timestamp and a value.
+   */
+  private static byte[] encode() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    Encoder encoder = new BinaryEncoder(os);
+    encoder.writeInt(4);
+    for (int i = 0; i < 4; i++) {
+      encoder.writeString("tag" + i).writeString(STRING);
+    }
+    encoder.writeInt(0);
+    encoder.writeString("system.process.events.processed");
+    encoder.writeLong(System.currentTimeMillis());
+    encoder.writeLong(Long.MAX_VALUE);
+    encoder.writeDouble(Math.E);
+    encoder.writeBytes(new byte[64]);
+    return os.toByteArray();
+  }
+
+  private static void decode(Decoder decoder) throws IOException {
+    for (int size = decoder.readInt(); size > 0; size = decoder.readInt()) {
+      for (int i = 0; i < size; i++) {
+        decoder.readString();
+        decoder.readString();
+      }
+    }
+    decoder.readString();
+    decoder.readLong();
+    decoder.readLong();
+    decoder.readDouble();
+    decoder.readBytes();
+  }
+
+  private static long getAllocatedBytes(ThreadMXBean threadMXBean) {
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0L;
+  }
+
+  private ByteBufferDecoderBenchmark() {
+    // no-op
+  }
+}
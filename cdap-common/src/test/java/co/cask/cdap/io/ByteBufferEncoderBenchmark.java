@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.ByteBufferEncoder;
+import co.cask.cdap.common.io.Encoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the encoding time and the allocation of a reused {@link ByteBufferEncoder} with a {@link BinaryEncoder}
+ * writing to a reused {@link ByteArrayOutputStream}. Both produce a {@code byte[]} per encode, as the messaging
+ * payloads require. It is not a unit test. Run it with the test classpath of this module, optionally passing the
+ * number of encodes per round as the first argument.
+ */
+public final class ByteBufferEncoderBenchmark {
+
+  private static final int ROUNDS = 5;
+  private static final String STRING = "This is a testing message " +
+    Character.toString((char) 200) + Character.toString((char) 20000) + Character.toString((char) 40000);
+
+  public static void main(String[] args) throws IOException {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    long timestamp = System.currentTimeMillis();
+
+    // The first rounds are for warming up
+    for (int i = 0; i < ROUNDS; i++) {
+      ByteArrayOutputStream os = new ByteArrayOutputStream(1024);
+      BinaryEncoder binaryEncoder = new BinaryEncoder(os);
+      long startBytes = getAllocatedBytes(threadMXBean);
+      long startTime = System.nanoTime();
+      for (int j = 0; j < count; j++) {
+        os.reset();
+        encode(binaryEncoder, timestamp);
+        os.toByteArray();
+      }
+      long binaryTime = System.nanoTime() - startTime;
+      long binaryBytes = getAllocatedBytes(threadMXBean) - startBytes;
+
+      ByteBufferEncoder bufferEncoder = new ByteBufferEncoder();
+      startBytes = getAllocatedBytes(threadMXBean);
+      startTime = System.nanoTime();
+      for (int j = 0; j < count; j++) {
+        bufferEncoder.reset();
+        encode(bufferEncoder, timestamp);
+        bufferEncoder.toByteArray();
+      }
+      long bufferTime = System.nanoTime() - startTime;
+      long bufferBytes = getAllocatedBytes(threadMXBean) - startBytes;
+
+      System.out.printf("Round %d: BinaryEncoder %d ms, %d bytes/encode; ByteBufferEncoder %d ms, %d bytes/encode%n",
+                        i, TimeUnit.NANOSECONDS.toMillis(binaryTime), binaryBytes / count,
+                        TimeUnit.NANOSECONDS.toMillis(bufferTime), bufferBytes / count);
+    }
+  }
+
+  /**
+   * Encodes a record of the shape of a metric message, with a few tags, a name, a timestamp and a value.
+   */
+  private static void encode(Encoder encoder, long timestamp) throws IOException {
+    encoder.writeInt(4);
+    encoder.writeString("namespace").writeString(STRING);
+    encoder.writeString("app").writeString(STRING);
+    encoder.writeString("program").writeString(STRING);
+    encoder.writeString("run").writeString(STRING);
+    encoder.writeInt(0);
+    encoder.writeString("system.process.events.processed");
+    encoder.writeLong(timestamp);
+    encoder.writeLong(Long.MAX_VALUE);
+    encoder.writeDouble(Math.E);
+  }
+
+  private static long getAllocatedBytes(ThreadMXBean threadMXBean) {
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0L;
+  }
+
+  private ByteBufferEncoderBenchmark() {
+    // no-op
+  }
+}
@@ -40,6 +40,7 @@ import co.cask.cdap.metadata.elastic.ElasticsearchMetadataStorage;
 import co.cask.cdap.security.impersonation.OwnerStore;
 import co.cask.cdap.spi.metadata.MetadataStorage;
 import co.cask.cdap.spi.metadata.dataset.DatasetMetadataStorage;
+import co.cask.cdap.spi.metadata.local.LocalMetadataStorage;
 import co.cask.cdap.spi.metadata.noop.NoopMetadataStorage;
 import co.cask.cdap.store.DefaultOwnerStore;
 import com.google.inject.Inject;
@@ -181,8 +182,12 @@ class MetadataStorageProvider implements Provider<MetadataStorage> {
     if (Constants.Metadata.STORAGE_PROVIDER_ELASTICSEARCH.equalsIgnoreCase(config)) {
       return injector.getInstance(ElasticsearchMetadataStorage.class);
     }
+    if (Constants.Metadata.STORAGE_PROVIDER_LOCAL.equalsIgnoreCase(config)) {
+      return injector.getInstance(LocalMetadataStorage.class);
+    }
     throw new IllegalArgumentException("Unsupported MetadataStorage '" + config + "'. Only '" +
-                                         Constants.Metadata.STORAGE_PROVIDER_NOSQL + "' and '" +
-                                         Constants.Metadata.STORAGE_PROVIDER_ELASTICSEARCH + "' are allowed.");
+                                         Constants.Metadata.STORAGE_PROVIDER_NOSQL + "', '" +
+                                         Constants.Metadata.STORAGE_PROVIDER_ELASTICSEARCH + "' and '" +
+                                         Constants.Metadata.STORAGE_PROVIDER_LOCAL + "' are allowed.");
   }
 }
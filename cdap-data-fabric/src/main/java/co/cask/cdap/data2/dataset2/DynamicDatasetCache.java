@@ -236,7 +236,19 @@ public abstract class DynamicDatasetCache implements DatasetContext, AutoCloseab
    * @return a new transaction context
    */
   @Override
-  public abstract TransactionContext newTransactionContext() throws TransactionFailureException;
+  public TransactionContext newTransactionContext() throws TransactionFailureException {
+    return newTransactionContext(txClient);
+  }
+
+  /**
+   * Same as {@link #newTransactionContext()}, except that the transactions of the returned context are started and
+   * completed through the given transaction system client instead of the one of this cache.
+   *
+   * @param txClient the transaction system client to use for the new transaction context
+   * @return a new transaction context
+   */
+  public abstract TransactionContext newTransactionContext(TransactionSystemClient txClient)
+    throws TransactionFailureException;
 
   /**
    * Dismiss the current transaction context. This releases the references to the context's
@@ -120,8 +120,9 @@ public class MultiThreadDatasetCache extends DynamicDatasetCache {
   }
 
   @Override
-  public TransactionContext newTransactionContext() throws TransactionFailureException {
-    return entryForCurrentThread().newTransactionContext();
+  public TransactionContext newTransactionContext(TransactionSystemClient txClient)
+    throws TransactionFailureException {
+    return entryForCurrentThread().newTransactionContext(txClient);
   }
 
   @Override
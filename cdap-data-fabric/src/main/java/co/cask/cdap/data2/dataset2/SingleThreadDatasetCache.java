@@ -279,7 +279,8 @@ public class SingleThreadDatasetCache extends DynamicDatasetCache {
   }
 
   @Override
-  public TransactionContext newTransactionContext() throws TransactionFailureException {
+  public TransactionContext newTransactionContext(TransactionSystemClient txClient)
+    throws TransactionFailureException {
     if (txContext != null && txContext.getCurrentTransaction() != null) {
       throw new TransactionFailureException("Attempted to start a transaction within active transaction " +
                                               txContext.getCurrentTransaction().getTransactionId());
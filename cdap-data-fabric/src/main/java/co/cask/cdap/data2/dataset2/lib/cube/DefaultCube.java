@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 Cask Data, Inc.
+ * Copyright 2015-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -33,8 +33,10 @@ import co.cask.cdap.data2.dataset2.lib.timeseries.FactScan;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanResult;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanner;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -54,7 +56,10 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -73,7 +78,9 @@ public class DefaultCube implements Cube, MeteredDataset {
   // hard-limit on max records to scan
   private static final int MAX_RECORDS_TO_SCAN = 100 * 1000;
 
-  private final Map<Integer, FactTable> resolutionToFactTable;
+  private final NavigableMap<Integer, FactTable> resolutionToFactTable;
+  // resolutions that are computed by rollup() instead of being written by add()
+  private final Set<Integer> rollupResolutions;
   private final Map<String, ? extends Aggregation> aggregations;
   private final Map<String, AggregationAlias> aggregationAliasMap;
   private final ExecutorService executorService;
@@ -84,11 +91,30 @@ public class DefaultCube implements Cube, MeteredDataset {
   public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
                      Map<String, ? extends Aggregation> aggregations,
                      Map<String, AggregationAlias> aggregationAliasMap) {
+    this(resolutions, factTableSupplier, aggregations, aggregationAliasMap, Collections.emptySet());
+  }
+
+  /**
+   * Creates a cube where some of the resolutions are not written when facts are added. Those resolutions are
+   * computed from the next finer resolution by calling {@link #rollup(int, long, long)} instead.
+   *
+   * @param rollupResolutions resolutions computed by rollup, which must not include the finest resolution
+   */
+  public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
+                     Map<String, ? extends Aggregation> aggregations,
+                     Map<String, AggregationAlias> aggregationAliasMap,
+                     Set<Integer> rollupResolutions) {
     this.aggregations = aggregations;
-    this.resolutionToFactTable = Maps.newHashMap();
+    this.resolutionToFactTable = new TreeMap<>();
     for (int resolution : resolutions) {
       resolutionToFactTable.put(resolution, factTableSupplier.get(resolution, 3600));
     }
+    for (int resolution : rollupResolutions) {
+      Preconditions.checkArgument(resolutionToFactTable.lowerKey(resolution) != null,
+                                  "Resolution %s is not a resolution that can be rolled up from %s",
+                                  resolution, resolutionToFactTable.keySet());
+    }
+    this.rollupResolutions = ImmutableSet.copyOf(rollupResolutions);
     this.aggregationAliasMap = aggregationAliasMap;
     this.executorService = new ThreadPoolExecutor(0, resolutions.length, 30, TimeUnit.SECONDS,
                                                   new LinkedBlockingQueue<>(),
@@ -128,7 +154,9 @@ public class DefaultCube implements Cube, MeteredDataset {
 
     Map<Integer, Future<?>> futures = new HashMap<>();
     for (Map.Entry<Integer, FactTable> table : resolutionToFactTable.entrySet()) {
-      futures.put(table.getKey(), executorService.submit(() -> table.getValue().add(toWrite)));
+      if (!rollupResolutions.contains(table.getKey())) {
+        futures.put(table.getKey(), executorService.submit(() -> table.getValue().add(toWrite)));
+      }
     }
 
     boolean failed = false;
@@ -160,7 +188,32 @@ public class DefaultCube implements Cube, MeteredDataset {
     incrementMetric("cube.cubeFact.added.count", facts.size());
     incrementMetric("cube.tsFact.created.count", toWrite.size());
     incrementMetric("cube.tsFact.created.dimValues.count", dimValuesCount);
-    incrementMetric("cube.tsFact.added.count", toWrite.size() * resolutionToFactTable.size());
+    incrementMetric("cube.tsFact.added.count", toWrite.size() * futures.size());
+  }
+
+  /**
+   * Recomputes the given resolution in the given time range from the next finer resolution of this cube, for all
+   * aggregations. Recomputing the same time range more than once is safe. To have up to date values, the time
+   * range of a resolution should be recomputed only after the same time range of the next finer resolution.
+   *
+   * @param resolution a resolution that is computed by rollup
+   * @param startTs start of the time range, in seconds
+   * @param endTs end of the time range, in seconds
+   */
+  public void rollup(int resolution, long startTs, long endTs) {
+    Preconditions.checkArgument(rollupResolutions.contains(resolution),
+                                "Resolution %s is not computed by rollup", resolution);
+    FactTable table = resolutionToFactTable.get(resolution);
+    FactTable source = resolutionToFactTable.lowerEntry(resolution).getValue();
+    for (Aggregation agg : aggregations.values()) {
+      List<DimensionValue> dimensionValues = Lists.newArrayList();
+      for (String dimensionName : agg.getDimensionNames()) {
+        // null means any value
+        dimensionValues.add(new DimensionValue(dimensionName, null));
+      }
+      table.rollup(source, dimensionValues, startTs, endTs);
+    }
+    incrementMetric("cube.rollup.res." + resolution + ".count", 1);
   }
 
   @Override
@@ -279,6 +332,25 @@ public class DefaultCube implements Cube, MeteredDataset {
     }
   }
 
+  /**
+   * Deletes all facts of the given resolution with timestamp before the given timestamp in every aggregation. Unlike
+   * {@link #delete(CubeDeleteQuery)}, the expired rows are removed with range deletes, without scanning them.
+   *
+   * @param resolution the resolution to delete from
+   * @param timestamp the timestamp in seconds, facts before it are deleted
+   * @return the approximate number of bytes deleted
+   */
+  public long deleteBefore(int resolution, long timestamp) {
+    FactTable factTable = resolutionToFactTable.get(resolution);
+    Preconditions.checkArgument(factTable != null, "Resolution %s is not supported", resolution);
+    long bytes = 0L;
+    for (Aggregation agg : aggregations.values()) {
+      bytes += factTable.deleteBefore(agg.getDimensionNames(), timestamp);
+    }
+    incrementMetric("cube.compaction.res." + resolution + ".bytes", bytes);
+    return bytes;
+  }
+
   @Override
   public Collection<DimensionValue> findDimensionValues(CubeExploreQuery query) {
     LOG.trace("Searching for next-level context, query: {}", query);
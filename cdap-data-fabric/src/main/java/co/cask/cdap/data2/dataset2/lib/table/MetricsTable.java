@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -17,6 +17,7 @@
 package co.cask.cdap.data2.dataset2.lib.table;
 
 import co.cask.cdap.api.dataset.Dataset;
+import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
 
 import java.util.Map;
@@ -83,6 +84,30 @@ public interface MetricsTable extends Dataset {
    */
   void delete(byte[] row, byte[][] columns);
 
+  /**
+   * Deletes all rows in the given range. The default implementation scans the range and deletes the rows one by one.
+   * Implementations should override it if the range can be deleted in bulk.
+   *
+   * @param start the row key of the first row to delete. If null, deletes from the first row of the table.
+   * @param stop the row key to stop at, exclusive. If null, deletes to the last row of the table.
+   * @return the approximate number of bytes deleted, which is the total size of the row keys, columns and values
+   */
+  default long deleteRange(@Nullable byte[] start, @Nullable byte[] stop) {
+    long bytes = 0L;
+    try (Scanner scanner = scan(start, stop, null)) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        Map<byte[], byte[]> columns = row.getColumns();
+        bytes += row.getRow().length;
+        for (Map.Entry<byte[], byte[]> column : columns.entrySet()) {
+          bytes += column.getKey().length + column.getValue().length;
+        }
+        delete(row.getRow(), columns.keySet().toArray(new byte[columns.size()][]));
+      }
+    }
+    return bytes;
+  }
+
   /**
    * Get a scanner for a table.
    * @param start the row key of the first row to scan. If null, the scan begins at the first row of the table.
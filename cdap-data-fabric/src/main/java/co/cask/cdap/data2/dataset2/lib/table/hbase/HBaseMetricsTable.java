@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2017 Cask Data, Inc.
+ * Copyright © 2014-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -53,6 +53,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -71,6 +72,7 @@ import javax.annotation.Nullable;
 public class HBaseMetricsTable implements MetricsTable {
 
   private static final Logger LOG = LoggerFactory.getLogger(HBaseMetricsTable.class);
+  private static final int DELETE_BATCH_SIZE = 1000;
   // Exponentially log less on executor rejected execution due to limit threads
   private static final Logger REJECTION_LOG = Loggers.sampling(LOG, LogSamplers.exponentialLimit(1, 1024, 2.0d));
 
@@ -298,6 +300,35 @@ public class HBaseMetricsTable implements MetricsTable {
     }
   }
 
+  @Override
+  public long deleteRange(@Nullable byte[] startRow, @Nullable byte[] stopRow) {
+    ScanBuilder scanBuilder = tableUtil.buildScan();
+    configureRangeScan(scanBuilder, startRow, stopRow, null);
+    long bytes = 0L;
+    try (ResultScanner resultScanner = getScanner(scanBuilder)) {
+      List<Delete> deletes = new ArrayList<>(DELETE_BATCH_SIZE);
+      Result result;
+      while ((result = resultScanner.next()) != null) {
+        // The row key from the scanner is the distributed key, hence can be deleted as is
+        bytes += result.getRow().length;
+        for (Map.Entry<byte[], byte[]> column : HBaseTable.getRowMap(result, columnFamily).entrySet()) {
+          bytes += column.getKey().length + column.getValue().length;
+        }
+        deletes.add(tableUtil.buildDelete(result.getRow()).build());
+        if (deletes.size() >= DELETE_BATCH_SIZE) {
+          hTable.delete(deletes);
+          deletes = new ArrayList<>(DELETE_BATCH_SIZE);
+        }
+      }
+      if (!deletes.isEmpty()) {
+        hTable.delete(deletes);
+      }
+    } catch (IOException e) {
+      throw new DataSetException("Delete range failed on table " + tableId, e);
+    }
+    return bytes;
+  }
+
   @Override
   public Scanner scan(@Nullable byte[] startRow, @Nullable byte[] stopRow,
                       @Nullable FuzzyRowFilter filter) {
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -114,6 +114,11 @@ public class InMemoryMetricsTable implements MetricsTable {
     }
   }
 
+  @Override
+  public long deleteRange(@Nullable byte[] start, @Nullable byte[] stop) {
+    return InMemoryTableService.deleteRange(tableName, start, stop);
+  }
+
   @Override
   public Scanner scan(@Nullable byte[] start, @Nullable byte[] stop,
                       @Nullable FuzzyRowFilter filter) {
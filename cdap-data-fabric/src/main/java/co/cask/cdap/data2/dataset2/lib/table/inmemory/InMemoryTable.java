@@ -51,6 +51,10 @@ public class InMemoryTable extends BufferingTable {
    */
   public static final String TYPE = "memoryTable";
 
+  // the transaction registered with the InMemoryTableService for pruning old versions
+  @Nullable
+  private Transaction registeredTx;
+
   /**
    * To be used in tests which do not need namespaces
    */
@@ -85,6 +89,35 @@ public class InMemoryTable extends BufferingTable {
           false, spec.getProperties());
   }
 
+  @Override
+  public void startTx(Transaction tx) {
+    unregisterTx();
+    super.startTx(tx);
+    InMemoryTableService.transactionStarted(tx);
+    registeredTx = tx;
+  }
+
+  @Override
+  public void postTxCommit() {
+    super.postTxCommit();
+    unregisterTx();
+  }
+
+  @Override
+  public boolean rollbackTx() throws Exception {
+    try {
+      return super.rollbackTx();
+    } finally {
+      unregisterTx();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    unregisterTx();
+    super.close();
+  }
+
   @WriteOnly
   @Override
   public void increment(byte[] row, byte[][] columns, long[] amounts) {
@@ -102,7 +135,7 @@ public class InMemoryTable extends BufferingTable {
 
   @WriteOnly
   private void persistUpdates(NavigableMap<byte[], NavigableMap<byte[], Update>> updates) {
-    InMemoryTableService.merge(getTableName(), updates, tx.getWritePointer());
+    InMemoryTableService.merge(getTableName(), updates, tx);
   }
 
   @Override
@@ -274,6 +307,13 @@ public class InMemoryTable extends BufferingTable {
     return iterator.next();
   }
 
+  private void unregisterTx() {
+    if (registeredTx != null) {
+      InMemoryTableService.transactionFinished(registeredTx);
+      registeredTx = null;
+    }
+  }
+
   private <T> Iterator<T> wrapIterator(final Iterator<T> iterator) {
     return new AbstractIterator<T>() {
       @Override
@@ -22,7 +22,6 @@ import co.cask.cdap.data2.dataset2.lib.table.PutValue;
 import co.cask.cdap.data2.dataset2.lib.table.Update;
 import co.cask.cdap.data2.dataset2.lib.table.Updates;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
@@ -32,193 +31,276 @@ import org.apache.tephra.Transaction;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
 import javax.annotation.Nullable;
 
 /**
  * Holds all in-memory tables for {@link InMemoryTable}.
+ *
+ * Each column of a row keeps its versions in an immutable {@link Cell}, which is replaced on every change. Changes to
+ * a row are serialized by locking the row, while reads don't lock at all and see the cells as of the time they are
+ * visited. Old versions are pruned on write once no transaction registered through
+ * {@link #transactionStarted(Transaction)} can see them anymore. For non-transactional writes, only the latest
+ * version of a column is kept.
  */
-// todo: use locks instead of synchronize
 // todo: consider using SortedMap instead of NavigableMap in APIs
 public class InMemoryTableService {
-  private static Map<String, ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>>> tables =
-    Maps.newHashMap();
 
-  public static synchronized boolean exists(String tableName) {
+  private static final ConcurrentMap<String, ConcurrentNavigableMap<byte[], VersionedRow>> tables =
+    new ConcurrentHashMap<>();
+
+  // Transactions that are using in-memory tables, by transaction id. Guarded by itself.
+  private static final Map<Long, ActiveTransaction> activeTransactions = new HashMap<>();
+
+  public static boolean exists(String tableName) {
     return tables.containsKey(tableName);
   }
 
-  public static synchronized void create(String tableName) {
-    if (!tables.containsKey(tableName)) {
-      tables.put(tableName, new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR));
-    }
+  public static void create(String tableName) {
+    tables.putIfAbsent(tableName, new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR));
   }
 
-  public static synchronized void truncate(String tableName) {
+  public static void truncate(String tableName) {
     tables.get(tableName).clear();
   }
 
-  public static synchronized void drop(String tableName) {
+  public static void drop(String tableName) {
     tables.remove(tableName);
   }
 
-  public static synchronized void reset() {
+  public static void reset() {
     tables.clear();
+    synchronized (activeTransactions) {
+      activeTransactions.clear();
+    }
   }
 
-  // no nulls
-  public static synchronized void merge(String tableName,
-                                        SortedMap<byte[], ? extends SortedMap<byte[], ? extends Update>> changes,
-                                        long version) {
-    // todo: handle nulls
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    SortedMap<byte[], ? extends SortedMap<byte[], Update>> changesCopy = deepCopyUpdates(changes);
-    for (Map.Entry<byte[], ? extends SortedMap<byte[], Update>> change : changesCopy.entrySet()) {
-      merge(table, change.getKey(), change.getValue(), version);
+  /**
+   * Registers a transaction that uses in-memory tables. Versions that are visible to a registered transaction are
+   * not pruned. Each call must be followed by a call to {@link #transactionFinished(Transaction)}.
+   */
+  public static void transactionStarted(Transaction tx) {
+    synchronized (activeTransactions) {
+      activeTransactions.computeIfAbsent(tx.getTransactionId(),
+                                         id -> new ActiveTransaction(tx.getVisibilityUpperBound())).refCount++;
     }
   }
 
-  private static void merge(ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table,
-                            byte[] row, Map<byte[], Update> changes, long version) {
-    // get the correct row from the table, create it if it doesn't exist
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    if (rowMap == null) {
-      rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      table.put(row, rowMap);
-    }
-    // now merge the changes into the row, one by one
-    for (Map.Entry<byte[], Update> keyVal : changes.entrySet()) {
-      // create the column in the row if it does not exist
-      NavigableMap<Long, Update> colMap = rowMap.get(keyVal.getKey());
-      if (colMap == null) {
-        colMap = Maps.newTreeMap();
-        rowMap.put(keyVal.getKey(), colMap);
+  /**
+   * Unregisters a transaction registered by {@link #transactionStarted(Transaction)}.
+   */
+  public static void transactionFinished(Transaction tx) {
+    synchronized (activeTransactions) {
+      ActiveTransaction activeTx = activeTransactions.get(tx.getTransactionId());
+      if (activeTx != null && --activeTx.refCount == 0) {
+        activeTransactions.remove(tx.getTransactionId());
       }
-      // put into the column with given version
-      Update merged = Updates.mergeUpdates(colMap.get(version), keyVal.getValue());
-      colMap.put(version, merged);
+    }
+  }
+
+  /**
+   * Merges the changes of a transaction at its write pointer, and prunes the versions of the changed columns that are
+   * not visible to any transaction anymore.
+   */
+  public static void merge(String tableName,
+                           SortedMap<byte[], ? extends SortedMap<byte[], ? extends Update>> changes,
+                           Transaction tx) {
+    merge(tableName, changes, tx.getWritePointer(), getPruneUpperBound(tx), tx);
+  }
+
+  // no nulls
+  public static void merge(String tableName,
+                           SortedMap<byte[], ? extends SortedMap<byte[], ? extends Update>> changes,
+                           long version) {
+    // non-transactional writes are only read at the latest version
+    merge(tableName, changes, version, Long.MAX_VALUE, null);
+  }
+
+  private static void merge(String tableName,
+                            SortedMap<byte[], ? extends SortedMap<byte[], ? extends Update>> changes,
+                            long version, long pruneUpperBound, @Nullable Transaction tx) {
+    // todo: handle nulls
+    ConcurrentNavigableMap<byte[], VersionedRow> table = tables.get(tableName);
+    for (Map.Entry<byte[], ? extends SortedMap<byte[], ? extends Update>> change : changes.entrySet()) {
+      mutateRow(table, change.getKey(), rowData -> {
+        // merge the changes into the row, one by one
+        for (Map.Entry<byte[], ? extends Update> keyVal : change.getValue().entrySet()) {
+          Cell cell = rowData.columns.get(keyVal.getKey());
+          Update update = keyVal.getValue().deepCopy();
+          if (cell == null) {
+            rowData.columns.put(copy(keyVal.getKey()), new Cell(version, update));
+          } else {
+            Update merged = Updates.mergeUpdates(cell.get(version), update);
+            rowData.columns.put(keyVal.getKey(), cell.put(version, merged).prune(pruneUpperBound, tx));
+          }
+        }
+        return null;
+      });
     }
   }
 
   // todo: remove it from here: only used by "system" metrics table, which should be revised
   @Deprecated
-  public static synchronized Map<byte[], Long> increment(String tableName, byte[] row, Map<byte[], Long> increments) {
+  public static Map<byte[], Long> increment(String tableName, byte[] row, Map<byte[], Long> increments) {
     Map<byte[], Long> resultMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    // get the correct row from the table, create it if it doesn't exist
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    if (rowMap == null) {
-      rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      table.put(row, rowMap);
-    }
-    // now increment each column, one by one
-    long versionForWrite = System.currentTimeMillis();
-    for (Map.Entry<byte[], Long> inc : increments.entrySet()) {
-      IncrementValue increment = new IncrementValue(inc.getValue());
-      // create the column in the row if it does not exist
-      NavigableMap<Long, Update> colMap = rowMap.get(inc.getKey());
-      Update last = null;
-      if (colMap == null) {
-        colMap = Maps.newTreeMap();
-        rowMap.put(inc.getKey(), colMap);
-      } else {
-        last = colMap.lastEntry().getValue();
+    mutateRow(tables.get(tableName), row, rowData -> {
+      // increment each column, one by one
+      for (Map.Entry<byte[], Long> inc : increments.entrySet()) {
+        Cell cell = rowData.columns.get(inc.getKey());
+        Update merged = Updates.mergeUpdates(cell == null ? null : cell.getLatest(),
+                                             new IncrementValue(inc.getValue()));
+        resultMap.put(inc.getKey(), Bytes.toLong(merged.getBytes()));
+        if (cell == null) {
+          rowData.columns.put(copy(inc.getKey()), new Cell(System.currentTimeMillis(), merged));
+        } else {
+          rowData.columns.put(inc.getKey(), cell.put(getVersionForWrite(cell), merged).prune(Long.MAX_VALUE, null));
+        }
       }
-      Update merged = Updates.mergeUpdates(last, increment);
-      // put into the column with given version
-      long newValue = Bytes.toLong(merged.getBytes());
-      resultMap.put(inc.getKey(), newValue);
-      colMap.put(versionForWrite, merged);
-    }
+      return null;
+    });
     return resultMap;
   }
 
-  public static synchronized boolean swap(String tableName, byte[] row, byte[] column,
-                                          byte[] oldValue, byte[] newValue) {
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    // get the correct row from the table, create it if it doesn't exist
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    Update existingValue = null;
-    if (rowMap != null) {
-      NavigableMap<Long, Update> columnMap = rowMap.get(column);
-      if (columnMap != null) {
-        existingValue = columnMap.lastEntry().getValue();
+  public static boolean swap(String tableName, byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
+    ConcurrentNavigableMap<byte[], VersionedRow> table = tables.get(tableName);
+    if (newValue == null) {
+      // deleting the column never creates the row
+      VersionedRow rowData = table.get(row);
+      if (rowData == null) {
+        return oldValue == null;
+      }
+      synchronized (rowData) {
+        if (!matches(rowData.columns.get(column), oldValue)) {
+          return false;
+        }
+        rowData.columns.remove(column);
+        return true;
       }
     }
-    // verify existing value matches
-    if (oldValue == null && existingValue != null) {
-      return false;
-    }
-    if (oldValue != null && (existingValue == null || !Bytes.equals(oldValue, existingValue.getBytes()))) {
+    if (oldValue != null && !table.containsKey(row)) {
       return false;
     }
-    // write new value
-    if (newValue == null) {
-      if (rowMap != null) {
-        rowMap.remove(column);
-      }
-    } else {
-      if (rowMap == null) {
-        rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-        table.put(row, rowMap);
-      }
-      NavigableMap<Long, Update> columnMap = rowMap.get(column);
-      if (columnMap == null) {
-        columnMap = Maps.newTreeMap();
-        rowMap.put(column, columnMap);
+    return mutateRow(table, row, rowData -> {
+      Cell cell = rowData.columns.get(column);
+      // verify existing value matches
+      if (!matches(cell, oldValue)) {
+        return false;
       }
+      // write new value
       PutValue newPut = new PutValue(newValue);
-      columnMap.put(System.currentTimeMillis(), newPut);
-    }
-    return true;
+      if (cell == null) {
+        rowData.columns.put(copy(column), new Cell(System.currentTimeMillis(), newPut));
+      } else {
+        rowData.columns.put(column, cell.put(getVersionForWrite(cell), newPut).prune(Long.MAX_VALUE, null));
+      }
+      return true;
+    });
   }
 
-  public static synchronized void undo(String tableName,
-                                       NavigableMap<byte[], NavigableMap<byte[], Update>> changes,
-                                       long version) {
+  public static void undo(String tableName,
+                          NavigableMap<byte[], NavigableMap<byte[], Update>> changes,
+                          long version) {
     // todo: handle nulls
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
+    ConcurrentNavigableMap<byte[], VersionedRow> table = tables.get(tableName);
     for (Map.Entry<byte[], NavigableMap<byte[], Update>> change : changes.entrySet()) {
-      byte[] row = change.getKey();
-      NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-      if (rowMap != null) {
+      VersionedRow rowData = table.get(change.getKey());
+      if (rowData == null) {
+        continue;
+      }
+      synchronized (rowData) {
         for (byte[] column : change.getValue().keySet()) {
-          NavigableMap<Long, Update> values = rowMap.get(column);
-          values.remove(version);
+          Cell cell = rowData.columns.get(column);
+          if (cell == null) {
+            continue;
+          }
+          Cell newCell = cell.remove(version);
+          if (newCell == null) {
+            rowData.columns.remove(column);
+          } else {
+            rowData.columns.put(column, newCell);
+          }
         }
       }
     }
   }
 
-  public static synchronized void delete(String tableName, Iterable<byte[]> rows) {
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
+  public static void delete(String tableName, Iterable<byte[]> rows) {
+    ConcurrentNavigableMap<byte[], VersionedRow> table = tables.get(tableName);
     for (byte[] row : rows) {
-      table.remove(row);
+      VersionedRow rowData = table.get(row);
+      if (rowData != null) {
+        removeRow(table, row, rowData);
+      }
     }
   }
 
-  public static synchronized void deleteColumns(String tableName, byte[] row, byte[] column) {
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    NavigableMap<byte[], NavigableMap<Long, Update>> columnValues = table.get(row);
-    columnValues.remove(column);
+  public static void deleteColumns(String tableName, byte[] row, byte[] column) {
+    VersionedRow rowData = tables.get(tableName).get(row);
+    if (rowData != null) {
+      synchronized (rowData) {
+        rowData.columns.remove(column);
+      }
+    }
   }
 
-  public static synchronized void delete(String tableName, byte[] rowPrefix) {
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
+  public static void delete(String tableName, byte[] rowPrefix) {
+    ConcurrentNavigableMap<byte[], VersionedRow> table = tables.get(tableName);
+    NavigableMap<byte[], VersionedRow> rows;
     if (rowPrefix.length == 0) {
-      table.clear();
+      rows = table;
     } else {
       byte[] rowAfter = rowAfterPrefix(rowPrefix);
-      if (rowAfter == null) {
-        table.tailMap(rowPrefix).clear();
-      } else {
-        table.subMap(rowPrefix, rowAfter).clear();
+      rows = rowAfter == null ? table.tailMap(rowPrefix, true) : table.subMap(rowPrefix, true, rowAfter, false);
+    }
+    for (Map.Entry<byte[], VersionedRow> row : rows.entrySet()) {
+      removeRow(table, row.getKey(), row.getValue());
+    }
+  }
+
+  /**
+   * Deletes all rows in the given range.
+   *
+   * @return the number of bytes of the row keys, columns and values of all versions deleted
+   */
+  public static long deleteRange(String tableName, @Nullable byte[] startRow, @Nullable byte[] stopRow) {
+    ConcurrentNavigableMap<byte[], VersionedRow> table = tables.get(tableName);
+    NavigableMap<byte[], VersionedRow> rows;
+    if (startRow == null && stopRow == null) {
+      rows = table;
+    } else if (startRow == null) {
+      rows = table.headMap(stopRow, false);
+    } else if (stopRow == null) {
+      rows = table.tailMap(startRow, true);
+    } else {
+      rows = table.subMap(startRow, true, stopRow, false);
+    }
+
+    long bytes = 0L;
+    for (Map.Entry<byte[], VersionedRow> row : rows.entrySet()) {
+      VersionedRow rowData = row.getValue();
+      synchronized (rowData) {
+        if (!table.remove(row.getKey(), rowData)) {
+          continue;
+        }
+        bytes += row.getKey().length;
+        for (Map.Entry<byte[], Cell> column : rowData.columns.entrySet()) {
+          bytes += column.getKey().length;
+          for (Update value : column.getValue().values) {
+            byte[] valueBytes = value == null ? null : value.getBytes();
+            bytes += valueBytes == null ? 0 : valueBytes.length;
+          }
+        }
       }
     }
+    return bytes;
   }
 
   /**
@@ -238,24 +320,25 @@ public class InMemoryTableService {
     return null;
   }
 
-  public static synchronized NavigableMap<byte[], NavigableMap<Long, byte[]>> get(String tableName,
-                                                                                  byte[] row,
-                                                                                  @Nullable Transaction tx) {
+  @Nullable
+  public static NavigableMap<byte[], NavigableMap<Long, byte[]>> get(String tableName,
+                                                                     byte[] row,
+                                                                     @Nullable Transaction tx) {
     // todo: handle nulls
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
+    ConcurrentNavigableMap<byte[], VersionedRow> table = tables.get(tableName);
     Preconditions.checkArgument(table != null, "table not found: " + tableName);
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    return deepCopy(Updates.rowToBytes(getVisible(rowMap, tx)));
+    VersionedRow rowData = table.get(row);
+    return rowData == null ? null : getVisible(rowData, tx);
   }
 
-  public static synchronized NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>>
-                             getRowRange(String tableName,
-                                         byte[] startRow,
-                                         byte[] stopRow,
-                                         @Nullable Transaction tx) {
+  public static NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>>
+                getRowRange(String tableName,
+                            byte[] startRow,
+                            byte[] stopRow,
+                            @Nullable Transaction tx) {
     // todo: handle nulls
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> tableData = tables.get(tableName);
-    NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> rows;
+    ConcurrentNavigableMap<byte[], VersionedRow> tableData = tables.get(tableName);
+    NavigableMap<byte[], VersionedRow> rows;
     if (startRow == null && stopRow == null) {
       rows = tableData;
     } else if (startRow == null) {
@@ -268,86 +351,105 @@ public class InMemoryTableService {
 
     NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> result =
       Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> rowMap : rows.entrySet()) {
-      NavigableMap<byte[], NavigableMap<Long, Update>> columns =
-        tx == null ? rowMap.getValue() : getVisible(rowMap.getValue(), tx);
-      result.put(copy(rowMap.getKey()), deepCopy(Updates.rowToBytes(columns)));
+    for (Map.Entry<byte[], VersionedRow> rowData : rows.entrySet()) {
+      result.put(copy(rowData.getKey()), getVisible(rowData.getValue(), tx));
     }
 
     return result;
   }
 
-  public static synchronized Collection<String> list() {
+  public static Collection<String> list() {
     return ImmutableList.copyOf(tables.keySet());
   }
 
-  private static NavigableMap<byte[], NavigableMap<Long, Update>> getVisible(
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap, final Transaction tx) {
-
-    if (rowMap == null) {
-      return null;
-    }
-    NavigableMap<byte[], NavigableMap<Long, Update>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], NavigableMap<Long, Update>> column : rowMap.entrySet()) {
-      SortedMap<Long, Update> visbleValues = column.getValue();
-      if (tx != null) {
-        visbleValues = Maps.filterKeys(visbleValues, new Predicate<Long>() {
-          @Override
-          public boolean apply(Long version) {
-            return tx.isVisible(version);
-          }
-        });
+  /**
+   * Applies a change to a row while holding the lock of the row. The row is created if it doesn't exist.
+   */
+  private static <T> T mutateRow(ConcurrentNavigableMap<byte[], VersionedRow> table, byte[] row,
+                                 Function<VersionedRow, T> mutation) {
+    while (true) {
+      VersionedRow rowData = table.get(row);
+      if (rowData == null) {
+        VersionedRow newRow = new VersionedRow();
+        rowData = table.putIfAbsent(copy(row), newRow);
+        if (rowData == null) {
+          rowData = newRow;
+        }
       }
-      if (visbleValues.size() > 0) {
-        NavigableMap<Long, Update> colMap = createVersionedValuesMap(visbleValues);
-        result.put(column.getKey(), colMap);
+      synchronized (rowData) {
+        // if the row got deleted concurrently, apply the change to a new row
+        if (table.get(row) == rowData) {
+          return mutation.apply(rowData);
+        }
       }
     }
-    return result;
   }
 
-  private static NavigableMap<Long, Update> createVersionedValuesMap(SortedMap<Long, Update> copy) {
-    NavigableMap<Long, Update> map = Maps.newTreeMap(VERSIONED_VALUE_MAP_COMPARATOR);
-    map.putAll(copy);
-    return map;
+  /**
+   * Removes a row while holding the lock of the row, so that a concurrent change to the row either completes before
+   * the removal or is applied to a new row by {@link #mutateRow(ConcurrentNavigableMap, byte[], Function)}.
+   */
+  private static void removeRow(ConcurrentNavigableMap<byte[], VersionedRow> table, byte[] row,
+                                VersionedRow rowData) {
+    synchronized (rowData) {
+      table.remove(row, rowData);
+    }
   }
 
-  private static SortedMap<byte[], SortedMap<byte[], Update>> deepCopyUpdates(
-    SortedMap<byte[], ? extends SortedMap<byte[], ? extends Update>> src) {
-
-    SortedMap<byte[], SortedMap<byte[], Update>> copy = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], ? extends SortedMap<byte[], ? extends Update>> entry : src.entrySet()) {
-      byte[] key = copy(entry.getKey());
-      SortedMap<byte[], Update> columnUpdates = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      copy.put(key, columnUpdates);
-      for (Map.Entry<byte[], ? extends Update> updateEntry : entry.getValue().entrySet()) {
-        byte[] col = copy(updateEntry.getKey());
-        columnUpdates.put(col, updateEntry.getValue().deepCopy());
+  /**
+   * Returns the upper bound for pruning versions written by the given transaction. For each column, only the latest
+   * visible version at or below the bound needs to be kept, since that bound is not above the visibility upper bound
+   * of any transaction that can still read the tables.
+   */
+  private static long getPruneUpperBound(Transaction tx) {
+    synchronized (activeTransactions) {
+      for (long inProgress : tx.getInProgress()) {
+        // an unknown transaction that started earlier may still read older versions
+        if (!activeTransactions.containsKey(inProgress)) {
+          return Long.MIN_VALUE;
+        }
+      }
+      long upperBound = tx.getVisibilityUpperBound();
+      for (ActiveTransaction activeTx : activeTransactions.values()) {
+        upperBound = Math.min(upperBound, activeTx.visibilityUpperBound);
       }
+      return upperBound;
     }
-
-    return copy;
   }
 
-  @Nullable
-  private static NavigableMap<byte[], NavigableMap<Long, byte[]>> deepCopy(
-    @Nullable NavigableMap<byte[], NavigableMap<Long, byte[]>> src) {
+  /**
+   * Returns the version for a non-transactional write to the given cell. It is never older than the latest version,
+   * so that the write doesn't get hidden by an earlier write with a later timestamp.
+   */
+  private static long getVersionForWrite(Cell cell) {
+    return Math.max(System.currentTimeMillis(), cell.versions[0]);
+  }
 
-    if (src == null) {
-      return null;
+  private static boolean matches(@Nullable Cell cell, @Nullable byte[] value) {
+    Update existingValue = cell == null ? null : cell.getLatest();
+    if (value == null) {
+      return existingValue == null;
     }
+    return existingValue != null && Bytes.equals(value, existingValue.getBytes());
+  }
 
-    NavigableMap<byte[], NavigableMap<Long, byte[]>> copy = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], NavigableMap<Long, byte[]>> entry : src.entrySet()) {
-      byte[] key = copy(entry.getKey());
-      NavigableMap<Long, byte[]> columnValues = Maps.newTreeMap(VERSIONED_VALUE_MAP_COMPARATOR);
-      copy.put(key, columnValues);
-      for (Map.Entry<Long, byte[]> valueEntry : entry.getValue().entrySet()) {
-        columnValues.put(valueEntry.getKey(), copy(valueEntry.getValue()));
+  private static NavigableMap<byte[], NavigableMap<Long, byte[]>> getVisible(VersionedRow rowData,
+                                                                             @Nullable Transaction tx) {
+    NavigableMap<byte[], NavigableMap<Long, byte[]>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<byte[], Cell> column : rowData.columns.entrySet()) {
+      Cell cell = column.getValue();
+      NavigableMap<Long, byte[]> colMap = null;
+      for (int i = 0; i < cell.versions.length; i++) {
+        if (tx == null || tx.isVisible(cell.versions[i])) {
+          if (colMap == null) {
+            colMap = Maps.newTreeMap(VERSIONED_VALUE_MAP_COMPARATOR);
+            result.put(copy(column.getKey()), colMap);
+          }
+          colMap.put(cell.versions[i], copy(cell.values[i].getBytes()));
+        }
       }
     }
-
-    return copy;
+    return result;
   }
 
   @Nullable
@@ -364,4 +466,139 @@ public class InMemoryTableService {
       return Longs.compare(right, left);
     }
   };
+
+  /**
+   * The columns of a row. Changes are done while holding the lock of the instance.
+   */
+  private static final class VersionedRow {
+    private final ConcurrentNavigableMap<byte[], Cell> columns = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+  }
+
+  /**
+   * The versions of a column, from the latest to the oldest. Instances are immutable, so that they can be read
+   * without locking.
+   */
+  private static final class Cell {
+    private final long[] versions;
+    private final Update[] values;
+
+    Cell(long version, Update value) {
+      this(new long[] { version }, new Update[] { value });
+    }
+
+    private Cell(long[] versions, Update[] values) {
+      this.versions = versions;
+      this.values = values;
+    }
+
+    Update getLatest() {
+      return values[0];
+    }
+
+    @Nullable
+    Update get(long version) {
+      int idx = indexOf(version);
+      return idx < 0 ? null : values[idx];
+    }
+
+    /**
+     * Returns a cell with the given value set at the given version.
+     */
+    Cell put(long version, Update value) {
+      int idx = indexOf(version);
+      if (idx >= 0) {
+        Update[] newValues = values.clone();
+        newValues[idx] = value;
+        return new Cell(versions, newValues);
+      }
+      idx = -idx - 1;
+      long[] newVersions = new long[versions.length + 1];
+      Update[] newValues = new Update[values.length + 1];
+      System.arraycopy(versions, 0, newVersions, 0, idx);
+      System.arraycopy(values, 0, newValues, 0, idx);
+      newVersions[idx] = version;
+      newValues[idx] = value;
+      System.arraycopy(versions, idx, newVersions, idx + 1, versions.length - idx);
+      System.arraycopy(values, idx, newValues, idx + 1, values.length - idx);
+      return new Cell(newVersions, newValues);
+    }
+
+    /**
+     * Returns a cell without the given version, or {@code null} if no version is left.
+     */
+    @Nullable
+    Cell remove(long version) {
+      int idx = indexOf(version);
+      if (idx < 0) {
+        return this;
+      }
+      if (versions.length == 1) {
+        return null;
+      }
+      long[] newVersions = new long[versions.length - 1];
+      Update[] newValues = new Update[values.length - 1];
+      System.arraycopy(versions, 0, newVersions, 0, idx);
+      System.arraycopy(values, 0, newValues, 0, idx);
+      System.arraycopy(versions, idx + 1, newVersions, idx, newVersions.length - idx);
+      System.arraycopy(values, idx + 1, newValues, idx, newValues.length - idx);
+      return new Cell(newVersions, newValues);
+    }
+
+    /**
+     * Returns a cell that only keeps the latest version at or below the given bound that is visible to the given
+     * transaction, and all versions above the bound. Without transaction, the latest version at or below the bound
+     * is kept.
+     */
+    Cell prune(long upperBound, @Nullable Transaction tx) {
+      int first = 0;
+      while (first < versions.length && versions[first] > upperBound) {
+        first++;
+      }
+      int keep = first;
+      while (keep < versions.length && tx != null && !tx.isVisible(versions[keep])) {
+        keep++;
+      }
+      int length = keep < versions.length ? first + 1 : first;
+      if (length == versions.length) {
+        return this;
+      }
+      long[] newVersions = Arrays.copyOf(versions, length);
+      Update[] newValues = Arrays.copyOf(values, length);
+      if (keep < versions.length) {
+        newVersions[first] = versions[keep];
+        newValues[first] = values[keep];
+      }
+      return new Cell(newVersions, newValues);
+    }
+
+    private int indexOf(long version) {
+      // binary search over the versions in descending order
+      int low = 0;
+      int high = versions.length - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (versions[mid] > version) {
+          low = mid + 1;
+        } else if (versions[mid] < version) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -(low + 1);
+    }
+  }
+
+  /**
+   * The visibility upper bound of a transaction registered through {@link #transactionStarted(Transaction)} and the
+   * number of registrations.
+   */
+  private static final class ActiveTransaction {
+    private final long visibilityUpperBound;
+    private int refCount;
+
+    ActiveTransaction(long visibilityUpperBound) {
+      this.visibilityUpperBound = visibilityUpperBound;
+    }
+  }
 }
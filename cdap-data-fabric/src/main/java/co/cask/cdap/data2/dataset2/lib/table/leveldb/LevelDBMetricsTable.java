@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -126,6 +126,15 @@ public class LevelDBMetricsTable implements MetricsTable {
     }
   }
 
+  @Override
+  public long deleteRange(@Nullable byte[] start, @Nullable byte[] stop) {
+    try {
+      return core.deleteRowRange(start, stop);
+    } catch (IOException e) {
+      throw new DataSetException("Delete range failed on table " + tableName, e);
+    }
+  }
+
   @Override
   public Scanner scan(@Nullable byte[] start, @Nullable byte[] stop,
                       @Nullable FuzzyRowFilter filter) {
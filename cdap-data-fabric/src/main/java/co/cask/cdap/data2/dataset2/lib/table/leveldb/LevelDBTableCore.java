@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -422,6 +422,50 @@ public class LevelDBTableCore {
     }
   }
 
+  /**
+   * Deletes all versions of all columns of the rows in the given range. Unlike
+   * {@link #deleteRange(byte[], byte[], FuzzyRowFilter, byte[][])}, it doesn't decode the rows, but simply deletes
+   * every key in the range in batches.
+   *
+   * @param startRow the first row to delete, or {@code null} to delete from the first row
+   * @param stopRow the row to stop at, exclusive, or {@code null} to delete to the last row
+   * @return the number of bytes of the keys and values deleted
+   */
+  public long deleteRowRange(@Nullable byte[] startRow, @Nullable byte[] stopRow) throws IOException {
+    DB db = getDB();
+    byte[] endKey = stopRow == null ? null : createEndKey(stopRow);
+    final int deletesPerRound = 1024;
+    long bytes = 0L;
+
+    DBIterator iterator = db.iterator();
+    seekToStart(iterator, startRow);
+    try {
+      WriteBatch batch = db.createWriteBatch();
+      int deletesInBatch = 0;
+
+      while (iterator.hasNext()) {
+        Map.Entry<byte[], byte[]> entry = iterator.next();
+        if (endKey != null && KeyValue.KEY_COMPARATOR.compare(entry.getKey(), endKey) >= 0) {
+          break;
+        }
+        batch.delete(entry.getKey());
+        bytes += entry.getKey().length + entry.getValue().length;
+        if (++deletesInBatch >= deletesPerRound) {
+          db.write(batch, getWriteOptions());
+          batch = db.createWriteBatch();
+          deletesInBatch = 0;
+        }
+      }
+
+      if (deletesInBatch > 0) {
+        db.write(batch, getWriteOptions());
+      }
+    } finally {
+      iterator.close();
+    }
+    return bytes;
+  }
+
   public void deleteColumn(byte[] row, byte[] column) throws IOException {
     DB db = getDB();
     WriteBatch batch = db.createWriteBatch();
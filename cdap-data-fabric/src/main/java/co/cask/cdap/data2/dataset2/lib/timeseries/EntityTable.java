@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -101,6 +101,29 @@ public final class EntityTable implements Closeable {
     return entityCache.getUnchecked(new EntityName(type, name)) % maxId;
   }
 
+  /**
+   * Returns the unique id for the given name if one has been assigned. Unlike {@link #getId(String, String)},
+   * this method never assigns a new id.
+   *
+   * @param type The type of the entity.
+   * @param name The name of the entity.
+   * @return The unique ID or {@code null} if no ID has been assigned to the given name.
+   */
+  @Nullable
+  public Long findId(String type, String name) {
+    EntityName entityName = new EntityName(type, name);
+    Long id = entityCache.getIfPresent(entityName);
+    if (id == null) {
+      byte[] result = table.get(Bytes.toBytes(type + '.' + name), ID);
+      if (result == null) {
+        return null;
+      }
+      id = Bytes.toLong(result);
+      entityCache.put(entityName, id);
+    }
+    return id % maxId;
+  }
+
   /**
    * Returns the entity name for the given id and type.
    * @param id The id to lookup
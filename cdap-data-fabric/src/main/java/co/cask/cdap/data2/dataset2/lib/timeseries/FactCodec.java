@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 Cask Data, Inc.
+ * Copyright 2015-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -96,6 +96,27 @@ public class FactCodec {
     return createRowKey(dimensionValues, measureName, ts, true, anyAggGroup);
   }
 
+  /**
+   * Builds the prefix of the row keys of the given aggregation group, up to the time base of the given timestamp.
+   * All rows of the aggregation group with an earlier time base sort before the returned key.
+   *
+   * @param dimensionNames the dimension names of the aggregation group
+   * @param ts timestamp
+   * @return row key prefix, or {@code null} if no fact has ever been written for the aggregation group
+   */
+  @Nullable
+  public byte[] createAggGroupRowKeyPrefix(List<String> dimensionNames, long ts) {
+    Long aggGroupId = entityTable.findId(TYPE_DIMENSIONS_GROUP, getAggGroupName(dimensionNames));
+    if (aggGroupId == null) {
+      return null;
+    }
+    byte[] rowKey = new byte[VERSION.length + entityTable.getIdSize() + Bytes.SIZEOF_INT];
+    int offset = writeVersion(rowKey);
+    offset = writeEncoded(rowKey, offset, aggGroupId, entityTable.getIdSize());
+    Bytes.putInt(rowKey, offset, getTimeBase(roundToResolution(ts)));
+    return rowKey;
+  }
+
   /**
    * for the given measureName return the id from entity table
    * @param measureName
@@ -300,6 +321,18 @@ public class FactCodec {
     return writeEncoded(TYPE_DIMENSIONS_GROUP, sb.toString(), rowKey, offset);
   }
 
+  /**
+   * Returns the name of the aggregation group with the given dimension names, in the same format as
+   * {@link #writeEncodedAggGroup(List, byte[], int)}.
+   */
+  private static String getAggGroupName(List<String> dimensionNames) {
+    StringBuilder sb = new StringBuilder();
+    for (String dimensionName : dimensionNames) {
+      sb.append(dimensionName).append(".");
+    }
+    return sb.toString();
+  }
+
   /**
    * @return incremented offset
    */
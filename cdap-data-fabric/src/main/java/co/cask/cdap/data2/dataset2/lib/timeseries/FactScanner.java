@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -125,8 +125,10 @@ public final class FactScanner implements Iterator<FactScanResult> {
             timeValues.add(timeValue);
           }
 
+          // Rows are ordered by time base before dimensions, hence other rows with the same time base may still
+          // have values in range when this row doesn't
           if (timeValues.isEmpty() && exhausted) {
-            break;
+            continue;
           }
 
           // todo: can return empty list, if all data is < startTs or > endTs
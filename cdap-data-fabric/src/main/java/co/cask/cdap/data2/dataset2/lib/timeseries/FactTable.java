@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2018 Cask Data, Inc.
+ * Copyright © 2014-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -19,6 +19,7 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
 import co.cask.cdap.api.dataset.lib.cube.MeasureType;
 import co.cask.cdap.api.dataset.lib.cube.Measurement;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.metrics.MetricsCollector;
@@ -61,6 +62,8 @@ import javax.annotation.Nullable;
 public final class FactTable implements Closeable {
   private static final Logger LOG = LoggerFactory.getLogger(FactTable.class);
   private static final int MAX_ROLL_TIME = 0xfffe;
+  // entity type for recording the names of gauge measures, which is needed for rollup
+  private static final String GAUGE_ENTITY_TYPE = "measureType.gauge";
 
   // hard limits on some ops to stay on safe side
   private static final int MAX_RECORDS_TO_SCAN_DURING_SEARCH = 10 * 1000 * 1000;
@@ -158,6 +161,8 @@ public final class FactTable implements Closeable {
           gaugesTable
             .computeIfAbsent(rowKey, k -> Maps.newTreeMap(Bytes.BYTES_COMPARATOR))
             .put(column, measurement.getValue());
+          // remember that the measure is a gauge, so that rollup can tell gauges and counters apart
+          entityTable.getId(GAUGE_ENTITY_TYPE, measurement.getName());
         }
       }
     }
@@ -175,6 +180,63 @@ public final class FactTable implements Closeable {
     }
   }
 
+  /**
+   * Recomputes the values of this table in the given time range from a table with a finer resolution. Within each
+   * interval of the resolution of this table, counters are summed and gauges take the latest value. The values
+   * are put instead of incremented, hence recomputing the same interval again gives the same result.
+   *
+   * @param source the table to read values from, which must have a resolution that divides the one of this table
+   * @param dimensionValues dimension values of the aggregation to recompute, {@code null} values match any value
+   * @param startTs start of the time range, in seconds, which is rounded down to the resolution of this table
+   * @param endTs end of the time range, in seconds, which is rounded up to the resolution of this table
+   */
+  public void rollup(FactTable source, List<DimensionValue> dimensionValues, long startTs, long endTs) {
+    Preconditions.checkArgument(source.resolution < resolution && resolution % source.resolution == 0,
+                                "Cannot rollup resolution %s to resolution %s", source.resolution, resolution);
+
+    long start = startTs / resolution * resolution;
+    long end = endTs / resolution * resolution + resolution - 1;
+
+    // row -> column -> {value, timestamp of the value}
+    NavigableMap<byte[], NavigableMap<byte[], long[]>> rollups = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    Map<String, Boolean> gauges = new HashMap<>();
+    FactScanner scanner = source.scan(new FactScan(start, end, Collections.emptyList(), dimensionValues));
+    try {
+      while (scanner.hasNext()) {
+        FactScanResult result = scanner.next();
+        boolean gauge = gauges.computeIfAbsent(result.getMeasureName(),
+                                               name -> entityTable.findId(GAUGE_ENTITY_TYPE, name) != null);
+        for (TimeValue timeValue : result) {
+          long ts = timeValue.getTimestamp();
+          byte[] rowKey = codec.createRowKey(result.getDimensionValues(), result.getMeasureName(), ts);
+          long[] rollup = rollups.computeIfAbsent(rowKey, k -> Maps.newTreeMap(Bytes.BYTES_COMPARATOR))
+            .computeIfAbsent(codec.createColumn(ts), k -> new long[] { 0L, Long.MIN_VALUE });
+          if (!gauge) {
+            rollup[0] += timeValue.getValue();
+          } else if (ts >= rollup[1]) {
+            rollup[0] = timeValue.getValue();
+            rollup[1] = ts;
+          }
+        }
+      }
+    } finally {
+      scanner.close();
+    }
+
+    NavigableMap<byte[], NavigableMap<byte[], Long>> puts = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<byte[], NavigableMap<byte[], long[]>> row : rollups.entrySet()) {
+      NavigableMap<byte[], Long> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      for (Map.Entry<byte[], long[]> column : row.getValue().entrySet()) {
+        columns.put(column.getKey(), column.getValue()[0]);
+      }
+      puts.put(row.getKey(), columns);
+    }
+    timeSeriesTable.put(puts);
+    if (metrics != null) {
+      metrics.increment(putCountMetric, puts.size());
+    }
+  }
+
   private class MeasureNameComparator implements Comparator<String> {
     private final Map<String, Long> measureNameToEntityIdMap;
 
@@ -245,34 +307,78 @@ public final class FactTable implements Closeable {
    * @param scan specifies deletion criteria
    */
   public void delete(FactScan scan) {
+    deleteColumns(scan);
+  }
+
+  /**
+   * Deletes all facts of the given aggregation with timestamp before the given timestamp. Rows that only contain
+   * facts before the timestamp are removed with a single range delete, without reading them first. Only the row
+   * that contains the timestamp is scanned, to delete the columns before the timestamp.
+   *
+   * @param dimensionNames the dimension names of the aggregation
+   * @param timestamp the timestamp in seconds, facts before it are deleted
+   * @return the approximate number of bytes deleted
+   */
+  public long deleteBefore(List<String> dimensionNames, long timestamp) {
+    if (timestamp <= 0) {
+      return 0L;
+    }
+    byte[] startRow = codec.createAggGroupRowKeyPrefix(dimensionNames, 0L);
+    if (startRow == null) {
+      // Nothing was ever written for the aggregation
+      return 0L;
+    }
+    byte[] stopRow = codec.createAggGroupRowKeyPrefix(dimensionNames, timestamp);
+    long bytes = timeSeriesTable.deleteRange(startRow, stopRow);
+
+    // The rows with the time base of the timestamp can contain facts both before and after the timestamp
+    long rowStartTs = Bytes.toInt(stopRow, stopRow.length - Bytes.SIZEOF_INT) & 0xffffffffL;
+    if (rowStartTs < timestamp) {
+      List<DimensionValue> dimensionValues = Lists.newArrayListWithCapacity(dimensionNames.size());
+      for (String dimensionName : dimensionNames) {
+        // null means any value
+        dimensionValues.add(new DimensionValue(dimensionName, null));
+      }
+      bytes += deleteColumns(new FactScan(rowStartTs, timestamp - 1, dimensionValues));
+    }
+    return bytes;
+  }
+
+  /**
+   * Deletes the columns that match the given scan.
+   *
+   * @return the approximate number of bytes deleted
+   */
+  private long deleteColumns(FactScan scan) {
+    long bytes = 0L;
     try (Scanner scanner = getScanner(scan)) {
       Row row;
       while ((row = scanner.next()) != null) {
         List<byte[]> columns = Lists.newArrayList();
 
-        boolean exhausted = false;
-        for (byte[] column : row.getColumns().keySet()) {
-          long ts = codec.getTimestamp(row.getRow(), column);
+        for (Map.Entry<byte[], byte[]> column : row.getColumns().entrySet()) {
+          long ts = codec.getTimestamp(row.getRow(), column.getKey());
           if (ts < scan.getStartTs()) {
             continue;
           }
 
+          // Columns are sorted by time. Later rows can have different dimension values, hence keep scanning.
           if (ts > scan.getEndTs()) {
-            exhausted = true;
             break;
           }
 
-          columns.add(column);
+          columns.add(column.getKey());
+          bytes += column.getKey().length + column.getValue().length;
         }
 
-        // todo: do deletes efficiently, in batches, not one-by-one
-        timeSeriesTable.delete(row.getRow(), columns.toArray(new byte[columns.size()][]));
-
-        if (exhausted) {
-          break;
+        // An empty delete removes the whole row in some implementations
+        if (!columns.isEmpty()) {
+          // todo: do deletes efficiently, in batches, not one-by-one
+          timeSeriesTable.delete(row.getRow(), columns.toArray(new byte[columns.size()][]));
         }
       }
     }
+    return bytes;
   }
 
   /**
@@ -26,6 +26,9 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Inject;
 import org.apache.tephra.TransactionExecutor;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
 
@@ -80,6 +83,24 @@ public class DefaultLineageStoreReader implements LineageStoreReader {
     return execute(input -> input.getRelations(program, start, end, filter));
   }
 
+  @Override
+  public Map<NamespacedEntityId, Set<Relation>> getRelations(Collection<? extends NamespacedEntityId> entities,
+                                                             long start, long end, Predicate<Relation> filter) {
+    return execute(input -> {
+      Map<NamespacedEntityId, Set<Relation>> relations = new HashMap<>();
+      for (NamespacedEntityId entity : entities) {
+        if (entity instanceof DatasetId) {
+          relations.put(entity, input.getRelations((DatasetId) entity, start, end, filter));
+        } else if (entity instanceof ProgramId) {
+          relations.put(entity, input.getRelations((ProgramId) entity, start, end, filter));
+        } else {
+          throw new IllegalArgumentException("Unsupported entity type for lineage " + entity);
+        }
+      }
+      return relations;
+    });
+  }
+
   private <T> T execute(TransactionExecutor.Function<LineageTable, T> func) {
     return TransactionRunners.run(transactionRunner, context -> {
       LineageTable lineageTable = LineageTable.create(context);
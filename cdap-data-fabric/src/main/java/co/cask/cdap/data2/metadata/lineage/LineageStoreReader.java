@@ -21,6 +21,8 @@ import co.cask.cdap.proto.id.NamespacedEntityId;
 import co.cask.cdap.proto.id.ProgramId;
 import co.cask.cdap.proto.id.ProgramRunId;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
 
@@ -56,4 +58,18 @@ public interface LineageStoreReader {
    * @return program-dataset access information
    */
   Set<Relation> getRelations(ProgramId program, long start, long end, Predicate<Relation> filter);
+
+  /**
+   * Fetch program-dataset access information for multiple datasets and programs for a given period
+   * with a single transaction.
+   *
+   * @param entities the {@link DatasetId}s and {@link ProgramId}s for which to fetch access information
+   * @param start start time period
+   * @param end end time period
+   * @param filter filter to be applied on result set
+   * @return a {@link Map} from each of the given entities to its program-dataset access information
+   * @throws IllegalArgumentException if any of the entities is neither a dataset nor a program
+   */
+  Map<NamespacedEntityId, Set<Relation>> getRelations(Collection<? extends NamespacedEntityId> entities,
+                                                      long start, long end, Predicate<Relation> filter);
 }
@@ -32,9 +32,12 @@ import com.google.gson.GsonBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -307,70 +310,117 @@ public class FieldLineageInfo {
     return destinationFields;
   }
 
+  /**
+   * Computes the incoming summary with a single pass over the operations in topological order. Each source
+   * field is interned to an index, and for every transform operation the set of source fields it originates
+   * from is kept as a {@link BitSet}, computed from the sets of the operations providing its inputs. The incoming
+   * summary of a destination field is then the set of the operation which provided that field to the write
+   * operation, so no part of the graph is traversed more than once. A transform operation originates from all
+   * the source fields reaching any of its inputs, and a field written directly from a read operation originates
+   * from all the fields that the write operation takes from that read operation.
+   */
   private Map<EndPointField, Set<EndPointField>> computeIncomingSummary() {
     if (writeOperations == null) {
       computeAndValidateFieldLineageInfo(this.operations);
     }
 
-    Map<EndPointField, Set<EndPointField>> summary = new HashMap<>();
+    // source fields interned to the index of the bit representing them
+    List<EndPointField> sourceFields = new ArrayList<>();
+    Map<EndPointField, Integer> sourceFieldIndexes = new HashMap<>();
+
+    // only the operations reachable from the read operations can originate from a source field
+    Map<String, BitSet> transformOrigins = new HashMap<>();
+    for (Operation operation : getTopologicallySortedOperations(getOperationsReachableFromReads())) {
+      if (OperationType.TRANSFORM != operation.getType()) {
+        continue;
+      }
+      BitSet origins = new BitSet();
+      for (InputField input : ((TransformOperation) operation).getInputs()) {
+        addOrigins(input, sourceFields, sourceFieldIndexes, transformOrigins, origins);
+      }
+      transformOrigins.put(operation.getName(), origins);
+    }
+
+    Map<EndPointField, BitSet> summaryOrigins = new HashMap<>();
     for (WriteOperation write : writeOperations) {
-      List<InputField> inputs = write.getInputs();
-      for (InputField input : inputs) {
-        computeIncomingSummaryHelper(new EndPointField(write.getDestination(), input.getName()),
-                                     operationsMap.get(input.getOrigin()), write, summary);
+      // origins of the fields written directly from read operations, keyed by the read operation name
+      Map<String, BitSet> readOrigins = new HashMap<>();
+      for (InputField input : write.getInputs()) {
+        Operation origin = operationsMap.get(input.getOrigin());
+        if (OperationType.READ == origin.getType()) {
+          addOrigins(input, sourceFields, sourceFieldIndexes, transformOrigins,
+                     readOrigins.computeIfAbsent(origin.getName(), k -> new BitSet()));
+        }
+      }
+
+      for (InputField input : write.getInputs()) {
+        Operation origin = operationsMap.get(input.getOrigin());
+        BitSet origins = OperationType.READ == origin.getType()
+          ? readOrigins.get(origin.getName()) : transformOrigins.get(origin.getName());
+        if (origins == null || origins.isEmpty()) {
+          continue;
+        }
+        summaryOrigins.computeIfAbsent(new EndPointField(write.getDestination(), input.getName()),
+                                       k -> new BitSet()).or(origins);
       }
     }
+
+    Map<EndPointField, Set<EndPointField>> summary = new HashMap<>();
+    for (Map.Entry<EndPointField, BitSet> entry : summaryOrigins.entrySet()) {
+      Set<EndPointField> fields = new HashSet<>();
+      BitSet origins = entry.getValue();
+      for (int i = origins.nextSetBit(0); i >= 0; i = origins.nextSetBit(i + 1)) {
+        fields.add(sourceFields.get(i));
+      }
+      summary.put(entry.getKey(), fields);
+    }
     return summary;
   }
 
   /**
-   * Helper method to compute the incoming summary
+   * Adds the source fields that the given input field originates from to the given {@link BitSet}.
    *
-   * @param field the {@link EndPointField} whose summary needs to be calculated
-   * @param currentOperation the operation being processed. Since we are processing incoming this operation is on the
-   * left side if graph is imagined in horizontal orientation or this operation is the input to the to
-   * previousOperation
-   * @param previousOperation the previous operation which is processed and reside on right to the current operation if
-   * the graph is imagined to be in horizontal orientation.
-   * @param summary a {@link Map} of {@link EndPointField} to {@link Set} of {@link EndPointField} which represents all
-   * the fields which have incoming connection the key field
+   * @param input the input field of a transform or write operation
+   * @param sourceFields list of the interned source fields, indexed by their bit
+   * @param sourceFieldIndexes map from the interned source fields to their bit
+   * @param transformOrigins the source fields of the transform operations computed so far
+   * @param origins the {@link BitSet} to add the source fields to
    */
-  private void computeIncomingSummaryHelper(EndPointField field, Operation currentOperation,
-                                            Operation previousOperation,
-                                            Map<EndPointField, Set<EndPointField>> summary) {
-    if (currentOperation.getType() == OperationType.READ) {
-      // if current operation is of type READ, previous operation must be of type TRANSFORM or WRITE
-      // get only the input fields from the previous operations for which the origin is current READ operation
-      Set<InputField> inputFields = new HashSet<>();
-      if (OperationType.WRITE == previousOperation.getType()) {
-        WriteOperation previousWrite = (WriteOperation) previousOperation;
-        inputFields = new HashSet<>(previousWrite.getInputs());
-      } else if (OperationType.TRANSFORM == previousOperation.getType()) {
-        TransformOperation previousTransform = (TransformOperation) previousOperation;
-        inputFields = new HashSet<>(previousTransform.getInputs());
-      }
-      Set<EndPointField> sourceEndPointFields = summary.computeIfAbsent(field, k -> new HashSet<>());
-
-      // for all the input fields of the previous operation if the origin was current operation (remember we are
-      // traversing backward)
-      ReadOperation read = (ReadOperation) currentOperation;
-      EndPoint source = read.getSource();
-      for (InputField inputField : inputFields) {
-        if (inputField.getOrigin().equals(currentOperation.getName())) {
-          sourceEndPointFields.add(new EndPointField(source, inputField.getName()));
-        }
+  private void addOrigins(InputField input, List<EndPointField> sourceFields,
+                          Map<EndPointField, Integer> sourceFieldIndexes, Map<String, BitSet> transformOrigins,
+                          BitSet origins) {
+    Operation origin = operationsMap.get(input.getOrigin());
+    if (OperationType.READ == origin.getType()) {
+      EndPointField sourceField = new EndPointField(((ReadOperation) origin).getSource(), input.getName());
+      int index = sourceFieldIndexes.computeIfAbsent(sourceField, k -> {
+        sourceFields.add(k);
+        return sourceFields.size() - 1;
+      });
+      origins.set(index);
+    } else if (OperationType.TRANSFORM == origin.getType()) {
+      // absent if the transform is not reachable from any read operation
+      BitSet transformOrigin = transformOrigins.get(origin.getName());
+      if (transformOrigin != null) {
+        origins.or(transformOrigin);
       }
-      // reached the end of graph unwind the recursive calls
-      return;
     }
+  }
 
-    // for transform we traverse backward in graph further through the inputs of the transform
-    if (currentOperation.getType() == OperationType.TRANSFORM) {
-      TransformOperation transform = (TransformOperation) currentOperation;
-      for (InputField inputField : transform.getInputs()) {
-        computeIncomingSummaryHelper(field, operationsMap.get(inputField.getOrigin()), currentOperation, summary);
+  /**
+   * Returns the operations which can be reached from the read operations by following the input fields.
+   * Transform operations without any input and operations depending only on them are excluded.
+   */
+  private Set<Operation> getOperationsReachableFromReads() {
+    Set<Operation> reachable = new HashSet<>(readOperations);
+    Deque<Operation> queue = new ArrayDeque<>(readOperations);
+    while (!queue.isEmpty()) {
+      for (Operation next : operationOutgoingConnections.get(queue.poll().getName())) {
+        if (reachable.add(next)) {
+          queue.add(next);
+        }
       }
     }
+    return reachable;
   }
 
   private Map<EndPointField, Set<EndPointField>> computeOutgoingSummary() {
@@ -676,7 +726,8 @@ public class FieldLineageInfo {
         orderedOperations.add(operationMap.get(current));
       }
 
-      Iterator<String> outgoingsIter = outgoingOperations.get(current).iterator();
+      // operations whose outputs are not used by any other operation have no outgoing entry
+      Iterator<String> outgoingsIter = outgoingOperations.getOrDefault(current, new HashSet<>()).iterator();
       while (outgoingsIter.hasNext()) {
         String next = outgoingsIter.next();
         outgoingsIter.remove();
@@ -0,0 +1,321 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.transaction;
+
+import org.apache.tephra.InvalidTruncateTimeException;
+import org.apache.tephra.Transaction;
+import org.apache.tephra.TransactionCouldNotTakeSnapshotException;
+import org.apache.tephra.TransactionFailureException;
+import org.apache.tephra.TransactionNotInProgressException;
+import org.apache.tephra.TransactionSystemClient;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link TransactionSystemClient} for executing read-only transactions. Instead of starting a new transaction for
+ * every call to {@link #startShort()}, it hands out a snapshot transaction that is shared by all callers, and that
+ * is replaced by a new snapshot once it is older than the refresh interval. Readers therefore may not see changes
+ * committed within the last refresh interval, but they don't need a round trip to the transaction service.
+ *
+ * Since a snapshot is never committed, completing a transaction with either {@link #commitOrThrow(Transaction)} or
+ * {@link #abort(Transaction)} only releases the snapshot. A transaction that has changes fails in
+ * {@link #canCommitOrThrow(Transaction, Collection)}, before any change is persisted. A snapshot is ended in the
+ * transaction service after it has been replaced and released by all its users.
+ *
+ * A dataset that writes to storage without buffering until commit may have persisted changes with the write pointer
+ * of the snapshot before the transaction fails. If rolling back such changes fails, {@link #invalidate(long)} stops
+ * handing out the snapshot, and the snapshot is invalidated instead of aborted in the transaction service once it is
+ * released by all its users, so that the changes are never visible to other transactions. Until then, the other
+ * users of the snapshot may see those changes, as they share the same write pointer.
+ */
+public final class ReadOnlyTransactionSystemClient implements TransactionSystemClient, AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReadOnlyTransactionSystemClient.class);
+
+  private final TransactionSystemClient delegate;
+  private final int timeout;
+  private final long refreshIntervalNanos;
+  private final ScheduledExecutorService refresher;
+  // Snapshots handed out and not yet ended, by transaction id. Guarded by this.
+  private final Map<Long, Snapshot> snapshots = new HashMap<>();
+  // The snapshot handed out to new transactions. Guarded by this.
+  private Snapshot current;
+  private boolean closed;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param delegate the client for starting and ending the snapshot transactions
+   * @param timeout the timeout in seconds of the snapshot transactions
+   * @param refreshIntervalMillis the interval in milliseconds after which a snapshot is replaced. It must be
+   *                              smaller than the timeout, so that snapshots are ended before they time out
+   */
+  public ReadOnlyTransactionSystemClient(TransactionSystemClient delegate, int timeout, long refreshIntervalMillis) {
+    if (refreshIntervalMillis <= 0 || refreshIntervalMillis >= TimeUnit.SECONDS.toMillis(timeout)) {
+      throw new IllegalArgumentException(String.format(
+        "The refresh interval of %d milliseconds must be positive and smaller than the transaction timeout " +
+          "of %d seconds", refreshIntervalMillis, timeout));
+    }
+    this.delegate = delegate;
+    this.timeout = timeout;
+    this.refreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(refreshIntervalMillis);
+    this.refresher = Executors.newSingleThreadScheduledExecutor(
+      Threads.createDaemonThreadFactory("read-only-tx-refresher"));
+    // Retires idle snapshots, so that they don't time out in the transaction service
+    this.refresher.scheduleWithFixedDelay(this::retireExpired, refreshIntervalMillis, refreshIntervalMillis,
+                                          TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns the current snapshot transaction, starting a new one if there is none or the current one is expired.
+   */
+  @Override
+  public Transaction startShort() {
+    Snapshot retired = null;
+    Transaction tx;
+    synchronized (this) {
+      if (closed) {
+        throw new IllegalStateException("Client is already closed");
+      }
+      if (current != null && current.isExpired(System.nanoTime())) {
+        retired = retire();
+      }
+      if (current == null) {
+        // Only one thread starts the next snapshot, the others wait for it instead of starting their own.
+        current = new Snapshot(delegate.startShort(timeout), System.nanoTime());
+        snapshots.put(current.tx.getTransactionId(), current);
+      }
+      current.refCount++;
+      tx = current.tx;
+    }
+    end(retired);
+    return tx;
+  }
+
+  /**
+   * Same as {@link #startShort()}. The timeout is ignored, since the snapshot transaction is shared.
+   */
+  @Override
+  public Transaction startShort(int timeout) {
+    return startShort();
+  }
+
+  @Override
+  public Transaction startLong() {
+    throw new UnsupportedOperationException("Long transactions are not supported by a read-only client");
+  }
+
+  @Override
+  public boolean canCommit(Transaction tx, Collection<byte[]> changeIds) {
+    return changeIds.isEmpty();
+  }
+
+  @Override
+  public void canCommitOrThrow(Transaction tx, Collection<byte[]> changeIds) throws TransactionFailureException {
+    if (!changeIds.isEmpty()) {
+      throw new TransactionFailureException(String.format("Read-only transaction %d cannot have %d changes",
+                                                          tx.getTransactionId(), changeIds.size()));
+    }
+  }
+
+  @Override
+  public boolean commit(Transaction tx) {
+    release(tx.getTransactionId(), false);
+    return true;
+  }
+
+  @Override
+  public void commitOrThrow(Transaction tx) {
+    release(tx.getTransactionId(), false);
+  }
+
+  @Override
+  public void abort(Transaction tx) {
+    release(tx.getTransactionId(), false);
+  }
+
+  /**
+   * Releases the snapshot transaction after changes failed to roll back. The snapshot is no longer handed out, and it
+   * is invalidated in the transaction service once it is released by all its users.
+   */
+  @Override
+  public boolean invalidate(long tx) {
+    return release(tx, true);
+  }
+
+  @Override
+  public Transaction checkpoint(Transaction tx) throws TransactionNotInProgressException {
+    throw new UnsupportedOperationException("Checkpoint is not supported by a read-only client");
+  }
+
+  @Override
+  public InputStream getSnapshotInputStream() throws TransactionCouldNotTakeSnapshotException {
+    return delegate.getSnapshotInputStream();
+  }
+
+  @Override
+  public String status() {
+    return delegate.status();
+  }
+
+  @Override
+  public void resetState() {
+    delegate.resetState();
+  }
+
+  @Override
+  public boolean truncateInvalidTx(Set<Long> invalidTxIds) {
+    return delegate.truncateInvalidTx(invalidTxIds);
+  }
+
+  @Override
+  public boolean truncateInvalidTxBefore(long time) throws InvalidTruncateTimeException {
+    return delegate.truncateInvalidTxBefore(time);
+  }
+
+  @Override
+  public int getInvalidSize() {
+    return delegate.getInvalidSize();
+  }
+
+  @Override
+  public void pruneNow() {
+    delegate.pruneNow();
+  }
+
+  /**
+   * Stops refreshing and ends the current snapshot if it is not in use. Snapshots that are still in use are ended
+   * when they are released.
+   */
+  @Override
+  public void close() {
+    refresher.shutdownNow();
+    Snapshot retired;
+    synchronized (this) {
+      closed = true;
+      retired = retire();
+    }
+    end(retired);
+  }
+
+  /**
+   * Releases a snapshot transaction.
+   *
+   * @param txId the id of the transaction to release
+   * @param invalidate {@code true} to invalidate the snapshot instead of aborting it when it is ended
+   * @return {@code true} if the transaction is a snapshot handed out by this client
+   */
+  private boolean release(long txId, boolean invalidate) {
+    Snapshot ended = null;
+    synchronized (this) {
+      Snapshot snapshot = snapshots.get(txId);
+      if (snapshot == null) {
+        LOG.warn("Ignoring release of unknown read-only transaction {}", txId);
+        return false;
+      }
+      if (invalidate) {
+        snapshot.invalid = true;
+        if (snapshot == current) {
+          current = null;
+        }
+      }
+      if (--snapshot.refCount == 0 && snapshot != current) {
+        snapshots.remove(txId);
+        ended = snapshot;
+      }
+    }
+    end(ended);
+    return true;
+  }
+
+  private void retireExpired() {
+    Snapshot retired = null;
+    synchronized (this) {
+      if (current != null && current.isExpired(System.nanoTime())) {
+        retired = retire();
+      }
+    }
+    end(retired);
+  }
+
+  /**
+   * Stops handing out the current snapshot. Must be called while holding the lock of this object.
+   *
+   * @return the current snapshot if it can be ended right away, or {@code null} if it is still in use
+   */
+  @Nullable
+  private Snapshot retire() {
+    Snapshot snapshot = current;
+    current = null;
+    if (snapshot == null || snapshot.refCount > 0) {
+      return null;
+    }
+    snapshots.remove(snapshot.tx.getTransactionId());
+    return snapshot;
+  }
+
+  /**
+   * Ends the given snapshot in the transaction service. Unless it is invalid, it has no changes, hence aborting it
+   * is sufficient.
+   */
+  private void end(@Nullable Snapshot snapshot) {
+    if (snapshot == null) {
+      return;
+    }
+    try {
+      if (snapshot.invalid) {
+        delegate.invalidate(snapshot.tx.getTransactionId());
+      } else {
+        delegate.abort(snapshot.tx);
+      }
+    } catch (Throwable t) {
+      // The transaction will time out in the transaction service
+      LOG.warn("Failed to end read-only transaction {}", snapshot.tx.getTransactionId(), t);
+    }
+  }
+
+  /**
+   * A snapshot transaction and the number of transactions using it.
+   */
+  private final class Snapshot {
+    private final Transaction tx;
+    private final long startTime;
+    private int refCount;
+    // Whether changes made with the snapshot failed to roll back
+    private boolean invalid;
+
+    private Snapshot(Transaction tx, long startTime) {
+      this.tx = tx;
+      this.startTime = startTime;
+    }
+
+    private boolean isExpired(long now) {
+      return now - startTime >= refreshIntervalNanos;
+    }
+  }
+}
@@ -189,6 +189,26 @@ public final class Transactions {
     };
   }
 
+  /**
+   * Creates a new instance of {@link Transactional} for {@link TxRunnable} execution using the
+   * given {@link DynamicDatasetCache}, with transactions started and completed through the given
+   * {@link TransactionSystemClient}.
+   *
+   * @param datasetCache The {@link DynamicDatasetCache} to use for transaction context creation as well as provided
+   *                     to the {@link TxRunnable} for access to dataset
+   * @param txClient The {@link TransactionSystemClient} for starting and completing transactions
+   * @return a new instance of {@link Transactional}
+   */
+  public static Transactional createTransactional(final DynamicDatasetCache datasetCache,
+                                                  final TransactionSystemClient txClient) {
+    return new CacheBasedTransactional(datasetCache) {
+      @Override
+      protected TransactionContext newTransactionContext() throws TransactionFailureException {
+        return datasetCache.newTransactionContext(txClient);
+      }
+    };
+  }
+
   private static class CacheBasedTransactional implements Transactional {
 
     private final DynamicDatasetCache datasetCache;
@@ -204,16 +224,24 @@ public final class Transactions {
       txContext.start();
     }
 
+    /**
+     * Creates the transaction context for executing a {@link TxRunnable}. Subclasses can override this to
+     * change how transactions are started and completed.
+     */
+    protected TransactionContext newTransactionContext() throws TransactionFailureException {
+      return datasetCache.newTransactionContext();
+    }
+
     @Override
     public void execute(TxRunnable runnable) throws TransactionFailureException {
-      TransactionContext txContext = datasetCache.newTransactionContext();
+      TransactionContext txContext = newTransactionContext();
       startTransaction(txContext);
       finishExecute(txContext, runnable);
     }
 
     @Override
     public void execute(int timeout, TxRunnable runnable) throws TransactionFailureException {
-      TransactionContext txContext = datasetCache.newTransactionContext();
+      TransactionContext txContext = newTransactionContext();
       txContext.start(timeout);
       finishExecute(txContext, runnable);
     }
@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.spi.metadata.local;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * An in-memory inverted index over {@link MetadataDocument}s. For every field, it maps each term to the ids of
+ * the documents that contain the term in that field. The terms of a field are kept sorted, so that wildcard
+ * terms with a literal prefix only need to look at the terms that start with that prefix.
+ *
+ * This class is not thread safe.
+ */
+final class InvertedIndex {
+
+  private final Map<String, MetadataDocument> documents = new HashMap<>();
+  private final Map<String, NavigableMap<String, Set<String>>> fields = new HashMap<>();
+  private final NavigableMap<Long, Set<String>> ttls = new TreeMap<>();
+
+  @Nullable
+  MetadataDocument get(String id) {
+    return documents.get(id);
+  }
+
+  Collection<MetadataDocument> getDocuments() {
+    return Collections.unmodifiableCollection(documents.values());
+  }
+
+  /**
+   * Adds a document to the index, replacing the existing document with the same id.
+   */
+  void add(MetadataDocument document) {
+    remove(document.getId());
+    documents.put(document.getId(), document);
+    for (Map.Entry<String, Set<String>> entry : document.getTerms().entrySet()) {
+      NavigableMap<String, Set<String>> terms = fields.computeIfAbsent(entry.getKey(), f -> new TreeMap<>());
+      for (String term : entry.getValue()) {
+        terms.computeIfAbsent(term, t -> new HashSet<>()).add(document.getId());
+      }
+    }
+    if (document.getTtl() != null) {
+      ttls.computeIfAbsent(document.getTtl(), t -> new HashSet<>()).add(document.getId());
+    }
+  }
+
+  /**
+   * Removes the document with the given id from the index, if it exists.
+   */
+  void remove(String id) {
+    MetadataDocument document = documents.remove(id);
+    if (document == null) {
+      return;
+    }
+    for (Map.Entry<String, Set<String>> entry : document.getTerms().entrySet()) {
+      NavigableMap<String, Set<String>> terms = fields.get(entry.getKey());
+      for (String term : entry.getValue()) {
+        removePosting(terms, term, id);
+      }
+      if (terms.isEmpty()) {
+        fields.remove(entry.getKey());
+      }
+    }
+    if (document.getTtl() != null) {
+      removePosting(ttls, document.getTtl(), id);
+    }
+  }
+
+  void clear() {
+    documents.clear();
+    fields.clear();
+    ttls.clear();
+  }
+
+  /**
+   * Returns the ids of all documents that match a term in any of the given fields. If the term contains the
+   * wildcards '*' or '?', it must match a single indexed term. Otherwise the term is tokenized, and every
+   * token must occur in one of the fields. The term must be lowercase.
+   *
+   * @return a new set that the caller can modify
+   */
+  Set<String> match(Collection<String> fieldNames, String term) {
+    Set<String> result = new HashSet<>();
+    if (term.contains("*") || term.contains("?")) {
+      int wildcard = indexOfWildcard(term);
+      String prefix = term.substring(0, wildcard);
+      Pattern pattern = toPattern(term);
+      for (String field : fieldNames) {
+        NavigableMap<String, Set<String>> terms = fields.get(field);
+        if (terms == null) {
+          continue;
+        }
+        for (Map.Entry<String, Set<String>> entry : terms.tailMap(prefix, true).entrySet()) {
+          if (!entry.getKey().startsWith(prefix)) {
+            break;
+          }
+          if (pattern.matcher(entry.getKey()).matches()) {
+            result.addAll(entry.getValue());
+          }
+        }
+      }
+      return result;
+    }
+
+    List<String> tokens = MetadataDocument.tokenize(term);
+    boolean first = true;
+    for (String token : tokens) {
+      Set<String> ids = new HashSet<>();
+      for (String field : fieldNames) {
+        NavigableMap<String, Set<String>> terms = fields.get(field);
+        Set<String> posting = terms == null ? null : terms.get(token);
+        if (posting != null) {
+          ids.addAll(posting);
+        }
+      }
+      if (first) {
+        result = ids;
+        first = false;
+      } else {
+        result.retainAll(ids);
+      }
+      if (result.isEmpty()) {
+        break;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the ids of all documents that have the given numeric ttl.
+   *
+   * @return a new set that the caller can modify
+   */
+  Set<String> matchTtl(double ttl) {
+    if (ttl != Math.rint(ttl) || ttl < Long.MIN_VALUE || ttl > Long.MAX_VALUE) {
+      return new HashSet<>();
+    }
+    Set<String> ids = ttls.get((long) ttl);
+    return ids == null ? new HashSet<>() : new HashSet<>(ids);
+  }
+
+  private static <K> void removePosting(Map<K, Set<String>> postings, K key, String id) {
+    Set<String> ids = postings.get(key);
+    if (ids != null) {
+      ids.remove(id);
+      if (ids.isEmpty()) {
+        postings.remove(key);
+      }
+    }
+  }
+
+  private static int indexOfWildcard(String term) {
+    int star = term.indexOf('*');
+    int question = term.indexOf('?');
+    return star < 0 ? question : question < 0 ? star : Math.min(star, question);
+  }
+
+  private static Pattern toPattern(String wildcardTerm) {
+    StringBuilder regex = new StringBuilder();
+    StringBuilder literal = new StringBuilder();
+    for (char c : wildcardTerm.toCharArray()) {
+      if (c == '*' || c == '?') {
+        if (literal.length() > 0) {
+          regex.append(Pattern.quote(literal.toString()));
+          literal.setLength(0);
+        }
+        regex.append(c == '*' ? ".*" : ".");
+      } else {
+        literal.append(c);
+      }
+    }
+    if (literal.length() > 0) {
+      regex.append(Pattern.quote(literal.toString()));
+    }
+    return Pattern.compile(regex.toString(), Pattern.DOTALL);
+  }
+}
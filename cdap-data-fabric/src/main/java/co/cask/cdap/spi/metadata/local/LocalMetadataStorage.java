@@ -0,0 +1,616 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.spi.metadata.local;
+
+import co.cask.cdap.api.metadata.MetadataEntity;
+import co.cask.cdap.api.metadata.MetadataScope;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.metadata.Cursor;
+import co.cask.cdap.spi.metadata.Metadata;
+import co.cask.cdap.spi.metadata.MetadataChange;
+import co.cask.cdap.spi.metadata.MetadataConstants;
+import co.cask.cdap.spi.metadata.MetadataDirective;
+import co.cask.cdap.spi.metadata.MetadataKind;
+import co.cask.cdap.spi.metadata.MetadataMutation;
+import co.cask.cdap.spi.metadata.MetadataRecord;
+import co.cask.cdap.spi.metadata.MetadataStorage;
+import co.cask.cdap.spi.metadata.Read;
+import co.cask.cdap.spi.metadata.ScopedName;
+import co.cask.cdap.spi.metadata.ScopedNameOfKind;
+import co.cask.cdap.spi.metadata.SearchRequest;
+import co.cask.cdap.spi.metadata.SearchResponse;
+import co.cask.cdap.spi.metadata.Sorting;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.inject.Inject;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.Options;
+import org.iq80.leveldb.WriteBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
+
+/**
+ * A Metadata SPI implementation that is backed by an embedded inverted index on the local disk.
+ * It is meant for the CDAP Local Sandbox and for tests, where it avoids the overhead of transactional
+ * datasets and the need for an external Elasticsearch cluster.
+ *
+ * The metadata of all entities is stored in a LevelDB database under the directory configured by
+ * {@link Constants.Metadata#STORAGE_LOCAL_DATA_DIR}, and is loaded into an {@link InvertedIndex} in
+ * memory when the storage is initialized with {@link #createIndex()}. Every batch of mutations is
+ * written to disk with a single write batch before the index is updated. Mutations are serialized
+ * with each other, while searches and reads run concurrently.
+ *
+ * The mutation and search semantics are the same as for the Elasticsearch-based storage: query terms
+ * are tokenized in the same way and combined with OR, they can have a field qualifier and wildcards,
+ * and results can be sorted by entity name or creation time. The cursor of a search response contains
+ * the position of the last result, so that the next page continues after that result even if entities
+ * were added or removed in the meantime.
+ */
+public class LocalMetadataStorage implements MetadataStorage {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LocalMetadataStorage.class);
+
+  private static final boolean KEEP = true;
+  private static final boolean DISCARD = false;
+
+  // used to split the query string into its terms
+  private static final Pattern SPACE_SEPARATOR_PATTERN = Pattern.compile("\\s+");
+
+  // these are the only keys that are supported for sorting
+  private static final Set<String> SORT_KEYS = ImmutableSet.of(MetadataConstants.ENTITY_NAME_KEY,
+                                                               MetadataConstants.CREATION_TIME_KEY);
+  private static final String SUPPORTED_SORT_KEYS = String.join(", ", SORT_KEYS);
+
+  private static final Collection<String> ALL_TEXT_FIELDS = MetadataScope.ALL.stream()
+    .map(MetadataDocument::textField).collect(Collectors.toList());
+
+  private final File dataDir;
+  private final InvertedIndex index = new InvertedIndex();
+  private final Lock readLock;
+  private final Lock writeLock;
+  private DB db;
+
+  @Inject
+  public LocalMetadataStorage(CConfiguration cConf) {
+    this.dataDir = new File(cConf.get(Constants.Metadata.STORAGE_LOCAL_DATA_DIR));
+    ReadWriteLock lock = new ReentrantReadWriteLock();
+    this.readLock = lock.readLock();
+    this.writeLock = lock.writeLock();
+  }
+
+  @Override
+  public void createIndex() throws IOException {
+    writeLock.lock();
+    try {
+      if (db != null) {
+        return;
+      }
+      if (!dataDir.isDirectory() && !dataDir.mkdirs() && !dataDir.isDirectory()) {
+        throw new IOException("Failed to create directory " + dataDir + " for the metadata index");
+      }
+      Options options = new Options().createIfMissing(true).errorIfExists(false);
+      DB db = factory.open(dataDir, options);
+      try (DBIterator iterator = db.iterator()) {
+        for (iterator.seekToFirst(); iterator.hasNext(); ) {
+          index.add(MetadataDocument.decode(iterator.next().getValue()));
+        }
+      } catch (Exception e) {
+        index.clear();
+        db.close();
+        throw e;
+      }
+      this.db = db;
+      LOG.debug("Loaded metadata of {} entities from {}", index.getDocuments().size(), dataDir);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void dropIndex() throws IOException {
+    writeLock.lock();
+    try {
+      closeDB();
+      if (dataDir.exists()) {
+        factory.destroy(dataDir, new Options());
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    writeLock.lock();
+    try {
+      closeDB();
+    } catch (IOException e) {
+      LOG.warn("Failed to close the metadata index in {}", dataDir, e);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private void closeDB() throws IOException {
+    index.clear();
+    if (db != null) {
+      try {
+        db.close();
+      } finally {
+        db = null;
+      }
+    }
+  }
+
+  @Override
+  public MetadataChange apply(MetadataMutation mutation) throws IOException {
+    return batch(Collections.singletonList(mutation)).get(0);
+  }
+
+  @Override
+  public List<MetadataChange> batch(List<? extends MetadataMutation> mutations) throws IOException {
+    if (mutations.isEmpty()) {
+      return Collections.emptyList();
+    }
+    writeLock.lock();
+    try {
+      DB db = getDB();
+      // the documents changed by this batch, with null for dropped entities. Mutations of the same
+      // entity must see the result of the previous mutations in the batch.
+      Map<String, MetadataDocument> changed = new LinkedHashMap<>();
+      List<MetadataChange> changes = new ArrayList<>(mutations.size());
+      try (WriteBatch writeBatch = db.createWriteBatch()) {
+        for (MetadataMutation mutation : mutations) {
+          MetadataEntity entity = MetadataDocument.toStoredEntity(mutation.getEntity());
+          String id = MetadataDocument.toDocumentId(entity);
+          MetadataDocument existing = changed.containsKey(id) ? changed.get(id) : index.get(id);
+          Metadata before = existing == null ? Metadata.EMPTY : existing.getMetadata();
+          Metadata after = applyMutation(existing != null, before, mutation);
+          byte[] key = id.getBytes(StandardCharsets.UTF_8);
+          if (after == null) {
+            writeBatch.delete(key);
+            changed.put(id, null);
+            after = Metadata.EMPTY;
+          } else {
+            MetadataDocument document = MetadataDocument.of(entity, after);
+            writeBatch.put(key, document.encode());
+            changed.put(id, document);
+          }
+          changes.add(new MetadataChange(mutation.getEntity(), before, after));
+        }
+        db.write(writeBatch);
+      }
+      changed.forEach((id, document) -> {
+        if (document == null) {
+          index.remove(id);
+        } else {
+          index.add(document);
+        }
+      });
+      return changes;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public Metadata read(Read read) throws IOException {
+    readLock.lock();
+    try {
+      getDB();
+      MetadataDocument document =
+        index.get(MetadataDocument.toDocumentId(MetadataDocument.toStoredEntity(read.getEntity())));
+      if (document == null) {
+        return Metadata.EMPTY;
+      }
+      return filterMetadata(document.getMetadata(), KEEP, read.getKinds(), read.getScopes(), read.getSelection());
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public SearchResponse search(SearchRequest originalRequest) throws IOException {
+    SearchRequest request = originalRequest;
+    Cursor cursor = null;
+    if (request.getCursor() != null && !request.getCursor().isEmpty()) {
+      cursor = Cursor.fromString(request.getCursor());
+      request = createRequestFromCursor(request, cursor);
+    }
+    Comparator<Hit> comparator = createComparator(request.getSorting());
+
+    List<Hit> hits;
+    readLock.lock();
+    try {
+      getDB();
+      hits = findHits(request);
+    } finally {
+      readLock.unlock();
+    }
+    hits.sort(comparator);
+
+    int offset = request.getOffset();
+    int start = offset;
+    if (cursor != null && !cursor.getActualCursor().isEmpty()) {
+      // continue after the last result of the previous page
+      int position = Collections.binarySearch(hits, Hit.decode(cursor.getActualCursor()), comparator);
+      start = position >= 0 ? position + 1 : -position - 1;
+    }
+    int end = (int) Math.min((long) start + request.getLimit(), hits.size());
+    List<MetadataRecord> results = start >= end ? Collections.emptyList() : hits.subList(start, end).stream()
+      .map(hit -> new MetadataRecord(hit.document.getEntity(), hit.document.getMetadata()))
+      .collect(Collectors.toList());
+
+    String newCursor = null;
+    int newOffset = offset + results.size();
+    if (request.isCursorRequested() && !results.isEmpty() && newOffset < hits.size()) {
+      newCursor = new Cursor(newOffset, request.getLimit(), request.isShowHidden(), request.getScope(),
+                             request.getNamespaces(), request.getTypes(),
+                             request.getSorting() == null ? null : request.getSorting().toString(),
+                             hits.get(end - 1).encode(), request.getQuery()).toString();
+    }
+    return new SearchResponse(originalRequest, newCursor, offset, request.getLimit(), hits.size(), results);
+  }
+
+  private DB getDB() {
+    if (db == null) {
+      throw new IllegalStateException("The metadata index in " + dataDir + " has not been created.");
+    }
+    return db;
+  }
+
+  /**
+   * Applies a mutation to the existing metadata of an entity.
+   *
+   * @param exists whether the entity exists
+   * @param before the metadata of the entity before the mutation
+   *
+   * @return the metadata after the mutation, or null if the entity is dropped
+   */
+  @Nullable
+  private static Metadata applyMutation(boolean exists, Metadata before, MetadataMutation mutation) {
+    switch (mutation.getType()) {
+      case CREATE:
+        return create(exists, before, (MetadataMutation.Create) mutation);
+      case DROP:
+        return null;
+      case UPDATE:
+        return update(before, ((MetadataMutation.Update) mutation).getUpdates());
+      case REMOVE:
+        MetadataMutation.Remove remove = (MetadataMutation.Remove) mutation;
+        return filterMetadata(before, DISCARD, remove.getKinds(), remove.getScopes(), remove.getRemovals());
+      default:
+        throw new IllegalStateException(
+          String.format("Unknown mutation type '%s' for %s", mutation.getType(), mutation));
+    }
+  }
+
+  /**
+   * Computes the metadata after an entity creation. See {@link MetadataMutation.Create} for detailed semantics.
+   */
+  private static Metadata create(boolean exists, Metadata before, MetadataMutation.Create create) {
+    // if the entity did not exist before, none of the directives apply and this is equivalent to update()
+    if (!exists) {
+      return update(before, create.getMetadata());
+    }
+    Metadata meta = create.getMetadata();
+    Map<ScopedNameOfKind, MetadataDirective> directives = create.getDirectives();
+    // determine the scopes that this mutation applies to (scopes that do not occur in the metadata are no changed)
+    Set<MetadataScope> scopes = Stream.concat(meta.getTags().stream(), meta.getProperties().keySet().stream())
+      .map(ScopedName::getScope).collect(Collectors.toSet());
+    // compute what previously existing tags and properties have to be preserved (all others are replaced)
+    Set<ScopedName> existingTagsToKeep = new HashSet<>();
+    Map<ScopedName, String> existingPropertiesToKeep = new HashMap<>();
+    // all tags and properties that are in a scope not affected by this mutation
+    Sets.difference(MetadataScope.ALL, scopes).forEach(
+      scope -> {
+        before.getTags().stream()
+          .filter(tag -> tag.getScope().equals(scope))
+          .forEach(existingTagsToKeep::add);
+        before.getProperties().entrySet().stream()
+          .filter(entry -> entry.getKey().getScope().equals(scope))
+          .forEach(entry -> existingPropertiesToKeep.put(entry.getKey(), entry.getValue()));
+      });
+    // tags and properties in affected scopes that must be kept or preserved
+    directives.entrySet().stream()
+      .filter(entry -> scopes.contains(entry.getKey().getScope()))
+      .forEach(entry -> {
+        ScopedNameOfKind key = entry.getKey();
+        if (key.getKind() == MetadataKind.TAG
+          && (entry.getValue() == MetadataDirective.PRESERVE || entry.getValue() == MetadataDirective.KEEP)) {
+          ScopedName tag = new ScopedName(key.getScope(), key.getName());
+          if (!meta.getTags().contains(tag) && before.getTags().contains(tag)) {
+            existingTagsToKeep.add(tag);
+          }
+        } else if (key.getKind() == MetadataKind.PROPERTY) {
+          ScopedName property = new ScopedName(key.getScope(), key.getName());
+          String existingValue = before.getProperties().get(property);
+          String newValue = meta.getProperties().get(property);
+          if (existingValue != null
+            && (entry.getValue() == MetadataDirective.PRESERVE && !existingValue.equals(newValue)
+            || entry.getValue() == MetadataDirective.KEEP && newValue == null)) {
+            existingPropertiesToKeep.put(property, existingValue);
+          }
+        }
+      });
+    // compute the new tags and properties
+    Set<ScopedName> newTags = new HashSet<>(meta.getTags());
+    newTags.addAll(existingTagsToKeep);
+    Map<ScopedName, String> newProperties = new HashMap<>(meta.getProperties());
+    newProperties.putAll(existingPropertiesToKeep);
+    return new Metadata(newTags, newProperties);
+  }
+
+  private static Metadata update(Metadata before, Metadata updates) {
+    Set<ScopedName> tags = new HashSet<>(before.getTags());
+    tags.addAll(updates.getTags());
+    Map<ScopedName, String> properties = new HashMap<>(before.getProperties());
+    properties.putAll(updates.getProperties());
+    return new Metadata(tags, properties);
+  }
+
+  /**
+   * Filter the metadata based on the given scopes, kinds, and selection.
+   * Based on the value of {@param keep}, this can be used to keep or to
+   * discard the matching tags and properties.
+   *
+   * @param keep if true, only matching metadata elements are kept; otherwise only non-matching elements are kept.
+   */
+  @SuppressWarnings("ConstantConditions")
+  private static Metadata filterMetadata(Metadata metadata, boolean keep, Set<MetadataKind> kinds,
+                                         Set<MetadataScope> scopes, @Nullable Set<ScopedNameOfKind> selection) {
+    if (selection != null) {
+      return new Metadata(
+        new HashSet<>(Sets.filter(metadata.getTags(), tag ->
+          keep == selection.contains(new ScopedNameOfKind(MetadataKind.TAG, tag.getScope(), tag.getName())))),
+        new HashMap<>(Maps.filterKeys(metadata.getProperties(), key ->
+          keep == selection.contains(new ScopedNameOfKind(MetadataKind.PROPERTY, key.getScope(), key.getName())))));
+    }
+    return new Metadata(
+      new HashSet<>(Sets.filter(metadata.getTags(), tag ->
+        keep == (kinds.contains(MetadataKind.TAG) && scopes.contains(tag.getScope())))),
+      new HashMap<>(Maps.filterKeys(metadata.getProperties(), key ->
+        keep == (kinds.contains(MetadataKind.PROPERTY) && scopes.contains(key.getScope())))));
+  }
+
+  private static SearchRequest createRequestFromCursor(SearchRequest request, Cursor cursor) {
+    SearchRequest.Builder builder = SearchRequest.of(cursor.getQuery())
+      .setOffset(cursor.getOffset())
+      .setLimit(cursor.getLimit())
+      .setShowHidden(cursor.isShowHidden())
+      .setScope(cursor.getScope())
+      .setCursorRequested(request.isCursorRequested());
+    if (cursor.getSorting() != null) {
+      builder.setSorting(Sorting.of(cursor.getSorting()));
+    }
+    if (cursor.getNamespaces() != null) {
+      cursor.getNamespaces().forEach(builder::addNamespace);
+    }
+    if (cursor.getTypes() != null) {
+      cursor.getTypes().forEach(builder::addType);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Creates the comparator that determines the order of the search results. Without sorting, results
+   * are ordered by descending relevance. Ties are always broken by the document id, so that the order
+   * is total and a cursor can identify the position after the last result of a page.
+   */
+  private static Comparator<Hit> createComparator(@Nullable Sorting sorting) {
+    if (sorting == null) {
+      return Comparator.<Hit>comparingDouble(hit -> hit.score).reversed().thenComparing(hit -> hit.id);
+    }
+    String key = sorting.getKey().toLowerCase();
+    if (!SORT_KEYS.contains(key)) {
+      throw new IllegalArgumentException(String.format(
+        "Field '%s' cannot be used as a sort key. Only the following are supported: %s.",
+        key, SUPPORTED_SORT_KEYS));
+    }
+    Comparator<Hit> comparator;
+    if (MetadataConstants.CREATION_TIME_KEY.equals(key)) {
+      // entities without a creation time are always last
+      Comparator<Long> order = sorting.getOrder() == Sorting.Order.ASC
+        ? Comparator.naturalOrder() : Comparator.reverseOrder();
+      comparator = Comparator.comparing(hit -> hit.created, Comparator.nullsLast(order));
+    } else {
+      comparator = Comparator.comparing(hit -> hit.name);
+      if (sorting.getOrder() == Sorting.Order.DESC) {
+        comparator = comparator.reversed();
+      }
+    }
+    return comparator.thenComparing(hit -> hit.id);
+  }
+
+  /**
+   * Finds all documents that match the query of a search request and pass its filters. In essence:
+   *
+   * <pre>
+   *   (field1:term1 OR ... OR propertyK:termK ...)
+   * [ AND (namespace IN (ns1, ..., nsK)) ]
+   * [ AND (type IN (type1, ..., typeM)) ]
+   * [ AND NOT hidden ]
+   * </pre>
+   *
+   * The score of each hit is the number of query terms that it matches.
+   */
+  private List<Hit> findHits(SearchRequest request) {
+    Map<String, Integer> scores = new HashMap<>();
+    List<String> terms = "*".equals(request.getQuery()) ? Collections.emptyList()
+      : ImmutableList.copyOf(Splitter.on(SPACE_SEPARATOR_PATTERN).omitEmptyStrings().trimResults()
+                               .split(request.getQuery()));
+    Collection<MetadataDocument> candidates;
+    if (terms.isEmpty()) {
+      candidates = index.getDocuments();
+    } else {
+      for (String term : terms) {
+        for (String id : matchTerm(term, request.getScope())) {
+          scores.merge(id, 1, Integer::sum);
+        }
+      }
+      candidates = scores.keySet().stream().map(index::get).collect(Collectors.toList());
+    }
+
+    Set<String> types = request.getTypes() == null || request.getTypes().isEmpty() ? null
+      : request.getTypes().stream().map(String::toLowerCase).collect(Collectors.toSet());
+    Set<String> namespaces = request.getNamespaces() == null || request.getNamespaces().isEmpty() ? null
+      : request.getNamespaces().stream().map(String::toLowerCase).collect(Collectors.toSet());
+    List<Hit> hits = new ArrayList<>();
+    for (MetadataDocument document : candidates) {
+      if (types != null && !types.contains(document.getType())) {
+        continue;
+      }
+      if (namespaces != null && !namespaces.contains(document.getNamespace())) {
+        continue;
+      }
+      if (!request.isShowHidden() && document.isHidden()) {
+        continue;
+      }
+      hits.add(new Hit(document, scores.getOrDefault(document.getId(), 1)));
+    }
+    return hits;
+  }
+
+  /**
+   * Finds the ids of all documents that match a single term of the query string.
+   *
+   * @param term the term as it appears in the query, possibly with a field qualifier
+   * @param scope the scope to search in, or null for all scopes
+   */
+  private Set<String> matchTerm(String term, @Nullable MetadataScope scope) {
+    term = term.trim().toLowerCase();
+    // Match the term as is, in the plain text. This includes a field: prefix if the term has one.
+    // This is important for the case of schema search: If the schema contains a field f of type t,
+    // then we index "f:t" in the plain text as well as in the "schema" property. If the query is
+    // just "f:t", we must search the plain text for that.
+    Collection<String> textFields = scope == null
+      ? ALL_TEXT_FIELDS : Collections.singleton(MetadataDocument.textField(scope));
+    int separator = term.indexOf(MetadataConstants.KEYVALUE_SEPARATOR);
+    if (separator < 0) {
+      return index.match(textFields, term);
+    }
+    // split the search term in two parts on first occurrence of KEYVALUE_SEPARATOR and trim the key and value
+    String field = term.substring(0, separator).trim();
+    String value = term.substring(separator + 1).trim();
+    if (MetadataConstants.TTL_KEY.equals(field) && (scope == null || MetadataScope.SYSTEM == scope)) {
+      try {
+        // ttl is matched numerically, to allow for any numeric format of the value
+        return index.matchTtl(Double.parseDouble(value));
+      } catch (NumberFormatException e) {
+        // ignore - the follow-on code will match the value as a regular term
+      }
+    }
+    // match either a plain term of the form "f:t" or the word "t" in property "f"
+    Set<String> result = index.match(textFields, term);
+    for (MetadataScope propertyScope : scope == null ? MetadataScope.ALL : EnumSet.of(scope)) {
+      result.addAll(index.match(Collections.singleton(MetadataDocument.propertyField(propertyScope, field)), value));
+    }
+    return result;
+  }
+
+  /**
+   * A search hit, along with the values it is sorted by.
+   */
+  private static final class Hit {
+    private final MetadataDocument document;
+    private final String id;
+    private final String name;
+    private final Long created;
+    private final double score;
+
+    private Hit(MetadataDocument document, double score) {
+      this(document, document.getId(), document.getName(), document.getCreated(), score);
+    }
+
+    private Hit(@Nullable MetadataDocument document, String id, String name, @Nullable Long created, double score) {
+      this.document = document;
+      this.id = id;
+      this.name = name;
+      this.created = created;
+      this.score = score;
+    }
+
+    /**
+     * Encodes the sort values of this hit into a string that can be used as the actual cursor.
+     * The encoding does not contain the ':' used as a separator by {@link Cursor}.
+     */
+    private String encode() {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      try (DataOutputStream output = new DataOutputStream(bos)) {
+        output.writeUTF(id);
+        output.writeUTF(name);
+        output.writeBoolean(created != null);
+        output.writeLong(created == null ? 0L : created);
+        output.writeDouble(score);
+      } catch (IOException e) {
+        // cannot happen with a byte array stream
+        throw new IllegalStateException("Unable to encode cursor for " + id, e);
+      }
+      return Base64.getUrlEncoder().encodeToString(bos.toByteArray());
+    }
+
+    /**
+     * Decodes a hit without a document from the actual cursor returned by {@link #encode()}.
+     */
+    private static Hit decode(String actualCursor) {
+      try (DataInputStream input = new DataInputStream(
+        new ByteArrayInputStream(Base64.getUrlDecoder().decode(actualCursor)))) {
+        String id = input.readUTF();
+        String name = input.readUTF();
+        boolean hasCreated = input.readBoolean();
+        long created = input.readLong();
+        return new Hit(null, id, name, hasCreated ? created : null, input.readDouble());
+      } catch (IOException | IllegalArgumentException e) {
+        throw new IllegalArgumentException("Invalid cursor '" + actualCursor + "'", e);
+      }
+    }
+  }
+}
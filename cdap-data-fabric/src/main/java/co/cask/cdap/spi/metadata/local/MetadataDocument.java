@@ -0,0 +1,401 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.spi.metadata.local;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.SchemaWalker;
+import co.cask.cdap.api.metadata.MetadataEntity;
+import co.cask.cdap.api.metadata.MetadataScope;
+import co.cask.cdap.common.metadata.MetadataUtil;
+import co.cask.cdap.spi.metadata.Metadata;
+import co.cask.cdap.spi.metadata.MetadataConstants;
+import co.cask.cdap.spi.metadata.ScopedName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * The metadata of an entity along with everything that is indexed for it in the {@link InvertedIndex}.
+ *
+ * The indexed terms mirror the documents of the Elasticsearch-based storage: the plain text of each scope
+ * contains the entity type and name (in the system scope), all tags and all property values. Each property
+ * is also indexed as its own field, along with a property for the entity type that holds the entity name,
+ * and the synthetic properties "tags" and "properties" that contain the names of the tags and properties
+ * in each scope. All text is lowercased and tokenized the same way as in the other storage providers.
+ */
+final class MetadataDocument {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MetadataDocument.class);
+
+  // this reflects the tokenization performed by the MetadataDataset and the Elasticsearch text analyzer
+  private static final Pattern TOKEN_SEPARATOR_PATTERN = Pattern.compile("[-_,;.\\s]+");
+
+  private static final ScopedName SCHEMA_KEY = new ScopedName(MetadataScope.SYSTEM, MetadataConstants.SCHEMA_KEY);
+  private static final ScopedName TTL_KEY = new ScopedName(MetadataScope.SYSTEM, MetadataConstants.TTL_KEY);
+  private static final ScopedName CREATION_TIME_KEY = new ScopedName(MetadataScope.SYSTEM,
+                                                                     MetadataConstants.CREATION_TIME_KEY);
+
+  private final String id;
+  private final MetadataEntity entity;
+  private final Metadata metadata;
+  private final String namespace;
+  private final String type;
+  private final String name;
+  private final Long created;
+  private final Long ttl;
+  private final Map<String, Set<String>> terms;
+
+  private MetadataDocument(String id, MetadataEntity entity, Metadata metadata,
+                           @Nullable String namespace, String type, String name,
+                           @Nullable Long created, @Nullable Long ttl, Map<String, Set<String>> terms) {
+    this.id = id;
+    this.entity = entity;
+    this.metadata = metadata;
+    this.namespace = namespace;
+    this.type = type;
+    this.name = name;
+    this.created = created;
+    this.ttl = ttl;
+    this.terms = terms;
+  }
+
+  /**
+   * Creates the document for an entity and its metadata.
+   *
+   * @param entity the entity, as returned by {@link #toStoredEntity(MetadataEntity)}
+   */
+  static MetadataDocument of(MetadataEntity entity, Metadata metadata) {
+    return new Builder(entity).addMetadata(metadata).build();
+  }
+
+  /**
+   * Returns the id of the document for an entity. Versioned entities are identified without their version.
+   */
+  static String toDocumentId(MetadataEntity entity) {
+    StringBuilder builder = new StringBuilder(entity.getType());
+    char sep = ':';
+    for (MetadataEntity.KeyValue kv : entity) {
+      // TODO (CDAP-13597): Handle versioning of metadata entities in a better way
+      // if it is a versioned entity then ignore the version
+      if (MetadataUtil.isVersionedEntityType(entity.getType()) &&
+        MetadataEntity.VERSION.equalsIgnoreCase(kv.getKey())) {
+        continue;
+      }
+      builder.append(sep).append(kv.getKey()).append('=').append(kv.getValue());
+      sep = ',';
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Returns the entity as it is stored and returned in search results: versioned entities always
+   * have the default version, since their metadata is shared by all versions.
+   */
+  static MetadataEntity toStoredEntity(MetadataEntity entity) {
+    if (!MetadataUtil.isVersionedEntityType(entity.getType()) || !entity.containsKey(MetadataEntity.VERSION)) {
+      return MetadataUtil.addVersionIfNeeded(entity);
+    }
+    MetadataEntity.Builder builder = MetadataEntity.builder();
+    for (MetadataEntity.KeyValue kv : entity) {
+      if (!MetadataEntity.VERSION.equalsIgnoreCase(kv.getKey())) {
+        append(builder, entity.getType(), kv.getKey(), kv.getValue());
+      }
+    }
+    return MetadataUtil.addVersionIfNeeded(builder.build());
+  }
+
+  /**
+   * Splits a text into the lowercase terms that are indexed for it.
+   */
+  static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    for (String token : TOKEN_SEPARATOR_PATTERN.split(text.toLowerCase())) {
+      if (!token.isEmpty()) {
+        tokens.add(token);
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * Returns the name of the field that contains the plain text of a scope.
+   */
+  static String textField(MetadataScope scope) {
+    return scope.name().toLowerCase();
+  }
+
+  /**
+   * Returns the name of the field that contains the value of a property. This never clashes with a text field.
+   */
+  static String propertyField(MetadataScope scope, String name) {
+    return scope.name() + MetadataConstants.KEYVALUE_SEPARATOR + name;
+  }
+
+  String getId() {
+    return id;
+  }
+
+  MetadataEntity getEntity() {
+    return entity;
+  }
+
+  Metadata getMetadata() {
+    return metadata;
+  }
+
+  @Nullable
+  String getNamespace() {
+    return namespace;
+  }
+
+  String getType() {
+    return type;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  boolean isHidden() {
+    return name.startsWith("_");
+  }
+
+  @Nullable
+  Long getCreated() {
+    return created;
+  }
+
+  @Nullable
+  Long getTtl() {
+    return ttl;
+  }
+
+  /**
+   * Returns the indexed terms of this document, by field.
+   */
+  Map<String, Set<String>> getTerms() {
+    return terms;
+  }
+
+  /**
+   * Encodes the entity and the metadata of this document for storing it on disk.
+   */
+  byte[] encode() throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bos);
+    writeString(output, entity.getType());
+    List<MetadataEntity.KeyValue> parts = new ArrayList<>();
+    entity.forEach(parts::add);
+    output.writeInt(parts.size());
+    for (MetadataEntity.KeyValue kv : parts) {
+      writeString(output, kv.getKey());
+      writeString(output, kv.getValue());
+    }
+    output.writeInt(metadata.getTags().size());
+    for (ScopedName tag : metadata.getTags()) {
+      output.writeBoolean(MetadataScope.USER == tag.getScope());
+      writeString(output, tag.getName());
+    }
+    output.writeInt(metadata.getProperties().size());
+    for (Map.Entry<ScopedName, String> property : metadata.getProperties().entrySet()) {
+      output.writeBoolean(MetadataScope.USER == property.getKey().getScope());
+      writeString(output, property.getKey().getName());
+      writeString(output, property.getValue());
+    }
+    output.close();
+    return bos.toByteArray();
+  }
+
+  /**
+   * Decodes a document from the bytes returned by {@link #encode()}.
+   */
+  static MetadataDocument decode(byte[] bytes) throws IOException {
+    DataInput input = new DataInputStream(new ByteArrayInputStream(bytes));
+    String type = readString(input);
+    MetadataEntity.Builder builder = MetadataEntity.builder();
+    for (int i = input.readInt(); i > 0; i--) {
+      append(builder, type, readString(input), readString(input));
+    }
+    int numTags = input.readInt();
+    Set<ScopedName> tags = new HashSet<>(numTags);
+    for (int i = 0; i < numTags; i++) {
+      tags.add(new ScopedName(readScope(input), readString(input)));
+    }
+    int numProperties = input.readInt();
+    Map<ScopedName, String> properties = new HashMap<>(numProperties);
+    for (int i = 0; i < numProperties; i++) {
+      properties.put(new ScopedName(readScope(input), readString(input)), readString(input));
+    }
+    return of(builder.build(), new Metadata(tags, properties));
+  }
+
+  private static void append(MetadataEntity.Builder builder, String type, String key, String value) {
+    if (key.equals(type)) {
+      builder.appendAsType(key, value);
+    } else {
+      builder.append(key, value);
+    }
+  }
+
+  private static MetadataScope readScope(DataInput input) throws IOException {
+    return input.readBoolean() ? MetadataScope.USER : MetadataScope.SYSTEM;
+  }
+
+  // strings are written with their length, because DataOutput.writeUTF() is limited to 64k, which is too short
+  // for large schemas or descriptions
+  private static void writeString(DataOutput output, String str) throws IOException {
+    byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static String readString(DataInput input) throws IOException {
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * A builder for MetadataDocuments.
+   */
+  private static final class Builder {
+
+    private final MetadataEntity entity;
+    private final String namespace;
+    private final String type;
+    private final String name;
+    private final Map<String, Set<String>> terms = new HashMap<>();
+    private final Map<MetadataScope, List<String>> tagNames = new LinkedHashMap<>();
+    private final Map<MetadataScope, List<String>> propertyNames = new LinkedHashMap<>();
+    private Metadata metadata = Metadata.EMPTY;
+    private Long created;
+    private Long ttl;
+
+    private Builder(MetadataEntity entity) {
+      this.entity = entity;
+      //noinspection ConstantConditions
+      this.namespace = entity.containsKey(MetadataEntity.NAMESPACE)
+        ? entity.getValue(MetadataEntity.NAMESPACE).toLowerCase() : null;
+      this.type = entity.getType().toLowerCase();
+      //noinspection ConstantConditions
+      this.name = entity.getValue(entity.getType()).toLowerCase();
+      for (MetadataScope scope : MetadataScope.ALL) {
+        tagNames.put(scope, new ArrayList<>());
+        propertyNames.put(scope, new ArrayList<>());
+      }
+      addText(MetadataScope.SYSTEM, type);
+      addText(MetadataScope.SYSTEM, name);
+      addTerms(propertyField(MetadataScope.SYSTEM, type), name);
+    }
+
+    private void addText(MetadataScope scope, String text) {
+      addTerms(textField(scope), text);
+    }
+
+    private void addTerms(String field, String text) {
+      List<String> tokens = tokenize(text);
+      if (!tokens.isEmpty()) {
+        terms.computeIfAbsent(field, f -> new HashSet<>()).addAll(tokens);
+      }
+    }
+
+    private void addTag(ScopedName tag) {
+      String name = tag.getName().toLowerCase();
+      addText(tag.getScope(), name);
+      tagNames.get(tag.getScope()).add(name);
+    }
+
+    private void addProperty(ScopedName key, String value) {
+      String name = key.getName().toLowerCase();
+      value = value.toLowerCase();
+      if (SCHEMA_KEY.equals(key)) {
+        value = parseSchema(entity, value);
+      }
+      addText(key.getScope(), value);
+      addTerms(propertyField(key.getScope(), name), value);
+      propertyNames.get(key.getScope()).add(name);
+      if (CREATION_TIME_KEY.equals(key)) {
+        created = parseLong(key, value);
+      } else if (TTL_KEY.equals(key)) {
+        ttl = parseLong(key, value);
+      }
+    }
+
+    @Nullable
+    private Long parseLong(ScopedName key, String value) {
+      try {
+        return Long.parseLong(value);
+      } catch (NumberFormatException e) {
+        LOG.warn("Unable to parse property {} as long. Skipping indexing of {} for entity {}.",
+                 key, key.getName(), entity, e);
+        return null;
+      }
+    }
+
+    private static String parseSchema(MetadataEntity entity, String schemaStr) {
+      try {
+        Schema schema = Schema.parseJson(schemaStr);
+        StringBuilder builder = new StringBuilder();
+        SchemaWalker.walk(schema, (field, subSchema) -> {
+          if (field != null) {
+            String type = (subSchema.isNullable() ? subSchema.getNonNullable() : subSchema).getType().toString();
+            builder.append(field).append(' ')
+              .append(field).append(MetadataConstants.KEYVALUE_SEPARATOR).append(type).append(' ');
+          }
+        });
+        return builder.toString();
+      } catch (Exception e) {
+        LOG.warn("Unable to parse schema '{}' for entity {}. Indexing as plain text.", schemaStr, entity);
+        return schemaStr;
+      }
+    }
+
+    private Builder addMetadata(Metadata metadata) {
+      this.metadata = metadata;
+      metadata.getTags().forEach(this::addTag);
+      metadata.getProperties().forEach(this::addProperty);
+      return this;
+    }
+
+    private MetadataDocument build() {
+      for (MetadataScope scope : MetadataScope.ALL) {
+        addTerms(propertyField(scope, MetadataConstants.TAGS_KEY), String.join(" ", tagNames.get(scope)));
+        addTerms(propertyField(scope, MetadataConstants.PROPERTIES_KEY), String.join(" ", propertyNames.get(scope)));
+      }
+      return new MetadataDocument(toDocumentId(entity), entity, metadata, namespace, type, name, created, ttl,
+                                  Collections.unmodifiableMap(terms));
+    }
+  }
+}
@@ -820,11 +820,27 @@ public final class StoreDefinition {
         .withPrimaryKeys(TYPE_FIELD, NAME_FIELD)
         .build();
 
+    public static final StructuredTableId FIRE_CHECKPOINTS = new StructuredTableId("schedule_fire_checkpoints");
+
+    public static final String TRIGGER_NAME_FIELD = "trigger_name";
+    public static final String FIRE_TIME_FIELD = "fire_time";
+
+    public static final StructuredTableSpecification FIRE_CHECKPOINTS_SPEC =
+      new StructuredTableSpecification.Builder()
+        .withId(FIRE_CHECKPOINTS)
+        .withFields(Fields.stringType(TRIGGER_NAME_FIELD),
+                    Fields.longType(FIRE_TIME_FIELD))
+        .withPrimaryKeys(TRIGGER_NAME_FIELD)
+        .build();
+
     public static void createTables(StructuredTableAdmin tableAdmin,
                                     boolean overWrite) throws IOException, TableAlreadyExistsException {
       if (overWrite || tableAdmin.getSpecification(SCHEDULES) == null) {
         tableAdmin.create(SCHEDULES_SPEC);
       }
+      if (overWrite || tableAdmin.getSpecification(FIRE_CHECKPOINTS) == null) {
+        tableAdmin.create(FIRE_CHECKPOINTS_SPEC);
+      }
     }
   }
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 Cask Data, Inc.
+ * Copyright 2015-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,14 +16,23 @@
 
 package co.cask.cdap.data2.dataset2.lib.cube;
 
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
 import co.cask.cdap.api.dataset.lib.cube.Cube;
+import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
 import co.cask.cdap.data2.dataset2.lib.timeseries.EntityTable;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  *
@@ -32,6 +41,105 @@ public class DefaultCubeTest extends AbstractCubeTest {
 
   @Override
   protected Cube getCube(final String name, int[] resolutions, Map<String, ? extends Aggregation> aggregations) {
+    return getCube(name, resolutions, aggregations, ImmutableSet.of());
+  }
+
+  @Test
+  public void testRollup() throws Exception {
+    Aggregation agg = new DefaultAggregation(ImmutableList.of("dim1", "dim2"));
+    DefaultCube cube = getCube("myRollupCube", new int[] {1, 60, 3600, Integer.MAX_VALUE},
+                               ImmutableMap.of("agg", agg), ImmutableSet.of(60, 3600));
+
+    writeInc(cube, "metric1", 1, 1, "1", "1");
+    writeInc(cube, "metric1", 30, 2, "1", "1");
+    writeInc(cube, "metric1", 61, 3, "1", "1");
+    writeInc(cube, "metric1", 100, 4, "1", "2");
+    writeInc(cube, "metric1", 3601, 5, "1", "1");
+    writeGauge(cube, "gauge1", 5, 10, "1", "1");
+    writeGauge(cube, "gauge1", 50, 20, "1", "1");
+    writeGauge(cube, "gauge1", 70, 30, "1", "1");
+
+    // Only the finest resolution and totals are written when adding
+    verifyCountQuery(cube, 0, 7200, 1, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<>(),
+                     ImmutableList.of(new TimeSeries("metric1", new HashMap<>(),
+                                                     timeValues(1, 1, 30, 2, 61, 3, 100, 4, 3601, 5))));
+    verifyCountQuery(cube, 0, 7200, Integer.MAX_VALUE, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<>(),
+                     ImmutableList.of(new TimeSeries("metric1", new HashMap<>(), timeValues(0, 15))));
+    verifyCountQuery(cube, 0, 7200, 60, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<>(), ImmutableList.of());
+
+    // Rollup twice, which should give the same result
+    for (int i = 0; i < 2; i++) {
+      cube.rollup(60, 0, 7199);
+      cube.rollup(3600, 0, 7199);
+
+      verifyRollup(cube, 3, 10);
+    }
+
+    // Adding to a rolled up interval and rollup again
+    writeInc(cube, "metric1", 2, 1, "1", "1");
+    cube.rollup(60, 0, 59);
+    cube.rollup(3600, 0, 3599);
+
+    verifyRollup(cube, 4, 11);
+  }
+
+  @Test
+  public void testDeleteBefore() throws Exception {
+    Aggregation agg1 = new DefaultAggregation(ImmutableList.of("dim1", "dim2"));
+    Aggregation agg2 = new DefaultAggregation(ImmutableList.of("dim2"));
+    DefaultCube cube = getCube("myDeleteBeforeCube", new int[] {1, 60, Integer.MAX_VALUE},
+                               ImmutableMap.of("agg1", agg1, "agg2", agg2), ImmutableSet.of(60));
+
+    // Rows of the finest resolution span an hour
+    writeInc(cube, "metric1", 10, 1, "1", "1");
+    writeInc(cube, "metric1", 3610, 2, "1", "1");
+    writeInc(cube, "metric1", 7210, 3, "1", "1");
+    writeInc(cube, "metric1", 7290, 4, "1", "1");
+
+    // Downsample to minutes, then delete the expired seconds, which ends in the middle of the last row
+    cube.rollup(60, 0, 7319);
+    Assert.assertTrue(cube.deleteBefore(1, 7250) > 0);
+
+    verifyCountQuery(cube, 0, 7320, 1, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<>(),
+                     ImmutableList.of(new TimeSeries("metric1", new HashMap<>(), timeValues(7290, 4))));
+    verifyCountQuery(cube, 0, 7320, 1, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim2", "1"), new ArrayList<>(),
+                     ImmutableList.of(new TimeSeries("metric1", new HashMap<>(), timeValues(7290, 4))));
+    // The history is kept in the coarser resolution
+    verifyCountQuery(cube, 0, 7320, 60, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<>(),
+                     ImmutableList.of(new TimeSeries("metric1", new HashMap<>(),
+                                                     timeValues(0, 1, 3600, 2, 7200, 3, 7260, 4))));
+
+    // Nothing left to delete
+    Assert.assertEquals(0L, cube.deleteBefore(1, 7250));
+  }
+
+  private void verifyRollup(Cube cube, long firstMinute, long firstHour) throws Exception {
+    // Counters are summed
+    verifyCountQuery(cube, 0, 7200, 60, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<>(),
+                     ImmutableList.of(new TimeSeries("metric1", new HashMap<>(),
+                                                     timeValues(0, firstMinute, 60, 7, 3600, 5))));
+    verifyCountQuery(cube, 0, 7200, 3600, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<>(),
+                     ImmutableList.of(new TimeSeries("metric1", new HashMap<>(),
+                                                     timeValues(0, firstHour, 3600, 5))));
+    // Gauges take the latest value
+    verifyCountQuery(cube, 0, 7200, 60, "gauge1", AggregationFunction.LATEST,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<>(),
+                     ImmutableList.of(new TimeSeries("gauge1", new HashMap<>(), timeValues(0, 20, 60, 30))));
+    verifyCountQuery(cube, 0, 7200, 3600, "gauge1", AggregationFunction.LATEST,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<>(),
+                     ImmutableList.of(new TimeSeries("gauge1", new HashMap<>(), timeValues(0, 30))));
+  }
+
+  private DefaultCube getCube(final String name, int[] resolutions, Map<String, ? extends Aggregation> aggregations,
+                              Set<Integer> rollupResolutions) {
     FactTableSupplier supplier = new FactTableSupplier() {
       @Override
       public FactTable get(int resolution, int rollTime) {
@@ -46,6 +154,7 @@ public class DefaultCubeTest extends AbstractCubeTest {
       }
     };
 
-    return new DefaultCube(resolutions, supplier, aggregations, ImmutableMap.<String, AggregationAlias>of());
+    return new DefaultCube(resolutions, supplier, aggregations, ImmutableMap.<String, AggregationAlias>of(),
+                           rollupResolutions);
   }
 }
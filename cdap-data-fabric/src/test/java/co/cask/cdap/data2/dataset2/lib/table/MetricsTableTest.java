@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -261,6 +261,37 @@ public abstract class MetricsTableTest {
     Assert.assertEquals(1021, countRange(table, null, null));
   }
 
+  @Test
+  public void testDeleteRange() throws Exception {
+    MetricsTable table = getTable("testDeleteRange");
+    NavigableMap<byte[], SortedMap<byte[], Long>> writes = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (int i = 0; i < 1024; i++) {
+      writes.put(Bytes.toBytes(i << 22), mapOf(A, Bytes.toLong(X), B, Bytes.toLong(Y)));
+    }
+    table.put(writes);
+
+    // delete a range in the middle, the stop row is exclusive
+    long bytes = table.deleteRange(Bytes.toBytes(0x10000000), Bytes.toBytes(0x20000000));
+    // each row has a 4 bytes key and two columns, each with 8 bytes name and 8 bytes value
+    Assert.assertTrue("Unexpected bytes deleted " + bytes, bytes >= 64 * (4 + 2 * (8 + 8)));
+    Assert.assertNull(table.get(Bytes.toBytes(0x10000000), A));
+    Assert.assertNull(table.get(Bytes.toBytes(0x1fc00000), B));
+    Assert.assertArrayEquals(X, table.get(Bytes.toBytes(0x0fc00000), A));
+    Assert.assertArrayEquals(Y, table.get(Bytes.toBytes(0x20000000), B));
+    Assert.assertEquals(0, countRange(table, 0x10000000, 0x20000000));
+    Assert.assertEquals(960, countRange(table, null, null));
+
+    // delete from the start and to the end
+    table.deleteRange(null, Bytes.toBytes(0x08000000));
+    table.deleteRange(Bytes.toBytes(0xf0000000), null);
+    Assert.assertEquals(1024 - 64 - 32 - 64, countRange(table, null, null));
+    Assert.assertEquals(0, table.deleteRange(Bytes.toBytes(0x10000000), Bytes.toBytes(0x20000000)));
+
+    // the rows can be written again after the delete
+    table.increment(Bytes.toBytes(0x10000000), ImmutableMap.of(A, 3L));
+    Assert.assertEquals(3L, Bytes.toLong(table.get(Bytes.toBytes(0x10000000), A)));
+  }
+
   @Test
   public void testDeleteIncrements() throws Exception {
     // note: this is pretty important test case for tables with counters, e.g. metrics
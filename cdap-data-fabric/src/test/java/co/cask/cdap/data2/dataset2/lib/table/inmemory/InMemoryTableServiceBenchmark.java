@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table.inmemory;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.data2.dataset2.lib.table.PutValue;
+import co.cask.cdap.data2.dataset2.lib.table.Update;
+import com.google.common.collect.ImmutableSortedMap;
+import org.apache.tephra.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs concurrent readers and writers on the same table of {@link InMemoryTableService}, and reports the read and
+ * write throughput and the number of versions kept for a row. Writers register their transactions, so that the old
+ * versions are pruned. Readers alternate between single row reads and full table scans. It is not a unit test. Run it
+ * with the test classpath of this module, optionally passing the number of writers, the number of readers and the
+ * number of seconds per round as arguments.
+ */
+public final class InMemoryTableServiceBenchmark {
+
+  private static final String TABLE_NAME = "benchmark";
+  private static final byte[] COLUMN = { 2 };
+  private static final int ROWS = 1000;
+  private static final int SCAN_INTERVAL = 100;
+  private static final int ROUNDS = 3;
+
+  public static void main(String[] args) throws Exception {
+    int writers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int readers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    long durationMillis = TimeUnit.SECONDS.toMillis(args.length > 2 ? Long.parseLong(args[2]) : 10);
+
+    // The first rounds are for warming up
+    for (int i = 0; i < ROUNDS; i++) {
+      InMemoryTableService.reset();
+      InMemoryTableService.create(TABLE_NAME);
+      runRound(i, writers, readers, durationMillis);
+    }
+  }
+
+  private static void runRound(int round, int writers, int readers, long durationMillis) throws Exception {
+    AtomicBoolean stopped = new AtomicBoolean();
+    AtomicLong writePointer = new AtomicLong();
+    ExecutorService executor = Executors.newFixedThreadPool(writers + readers);
+    try {
+      List<Future<Long>> writerFutures = new ArrayList<>();
+      for (int i = 0; i < writers; i++) {
+        writerFutures.add(executor.submit(() -> {
+          long count = 0;
+          while (!stopped.get()) {
+            long version = writePointer.incrementAndGet();
+            Transaction tx = createTx(version);
+            InMemoryTableService.transactionStarted(tx);
+            try {
+              InMemoryTableService.merge(TABLE_NAME, createUpdates(Bytes.toBytes((int) (version % ROWS)), version), tx);
+            } finally {
+              InMemoryTableService.transactionFinished(tx);
+            }
+            count++;
+          }
+          return count;
+        }));
+      }
+      List<Future<Long>> readerFutures = new ArrayList<>();
+      for (int i = 0; i < readers; i++) {
+        readerFutures.add(executor.submit(() -> {
+          long count = 0;
+          while (!stopped.get()) {
+            Transaction tx = createTx(writePointer.get() + 1);
+            InMemoryTableService.transactionStarted(tx);
+            try {
+              if (count % SCAN_INTERVAL == 0) {
+                InMemoryTableService.getRowRange(TABLE_NAME, null, null, tx);
+              } else {
+                InMemoryTableService.get(TABLE_NAME, Bytes.toBytes((int) (count % ROWS)), tx);
+              }
+            } finally {
+              InMemoryTableService.transactionFinished(tx);
+            }
+            count++;
+          }
+          return count;
+        }));
+      }
+
+      TimeUnit.MILLISECONDS.sleep(durationMillis);
+      stopped.set(true);
+      long writes = 0;
+      for (Future<Long> future : writerFutures) {
+        writes += future.get();
+      }
+      long reads = 0;
+      for (Future<Long> future : readerFutures) {
+        reads += future.get();
+      }
+
+      NavigableMap<byte[], NavigableMap<Long, byte[]>> row = InMemoryTableService.get(TABLE_NAME, Bytes.toBytes(0),
+                                                                                      null);
+      int versions = row == null ? 0 : row.get(COLUMN).size();
+      System.out.printf("Round %d: %d writers %d writes/s, %d readers %d reads/s, %d of %d versions of row 0 kept%n",
+                        round, writers, writes * 1000 / durationMillis, readers, reads * 1000 / durationMillis,
+                        versions, writes / ROWS);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static SortedMap<byte[], SortedMap<byte[], Update>> createUpdates(byte[] row, long value) {
+    SortedMap<byte[], Update> columns = ImmutableSortedMap.<byte[], Update>orderedBy(Bytes.BYTES_COMPARATOR)
+      .put(COLUMN, new PutValue(Bytes.toBytes(value)))
+      .build();
+    return ImmutableSortedMap.<byte[], SortedMap<byte[], Update>>orderedBy(Bytes.BYTES_COMPARATOR)
+      .put(row, columns)
+      .build();
+  }
+
+  private static Transaction createTx(long writePointer) {
+    return new Transaction(writePointer - 1, writePointer, new long[0], new long[0], Transaction.NO_TX_IN_PROGRESS);
+  }
+
+  private InMemoryTableServiceBenchmark() {
+    // no-op
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014 Cask Data, Inc.
+ * Copyright © 2014-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -19,12 +19,22 @@ package co.cask.cdap.data2.dataset2.lib.table.inmemory;
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.data2.dataset2.lib.table.PutValue;
 import co.cask.cdap.data2.dataset2.lib.table.Update;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Maps;
 import org.apache.tephra.Transaction;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -97,6 +107,100 @@ public class InMemoryTableServiceTest {
     verify123();
   }
 
+  @Test
+  public void testVersionPruning() {
+    InMemoryTableService.create("pruning");
+    byte[] row = new byte[] {1};
+
+    // each write prunes the versions that are older than the latest version visible to all transactions
+    for (long i = 1; i <= 5; i++) {
+      write("pruning", row, i, createTx(i, new long[0], new long[0]));
+    }
+    Assert.assertEquals(ImmutableList.of(5L, 4L), getVersions("pruning", row));
+
+    // a registered long running transaction keeps the versions visible to it
+    Transaction longTx = createTx(6, new long[0], new long[0]);
+    InMemoryTableService.transactionStarted(longTx);
+    write("pruning", row, 7, createTx(7, new long[0], new long[] {6}));
+    write("pruning", row, 8, createTx(8, new long[0], new long[] {6}));
+    Assert.assertEquals(ImmutableList.of(8L, 7L, 5L), getVersions("pruning", row));
+
+    // nothing is pruned if there is a transaction in progress that is not known
+    write("pruning", row, 9, createTx(9, new long[0], new long[] {3, 6}));
+    Assert.assertEquals(ImmutableList.of(9L, 8L, 7L, 5L), getVersions("pruning", row));
+
+    // once the long running transaction is finished, older versions are pruned
+    InMemoryTableService.transactionFinished(longTx);
+    write("pruning", row, 10, createTx(10, new long[0], new long[0]));
+    Assert.assertEquals(ImmutableList.of(10L, 9L), getVersions("pruning", row));
+
+    // versions of invalid transactions are never kept
+    write("pruning", row, 12, createTx(12, new long[] {10}, new long[0]));
+    Assert.assertEquals(ImmutableList.of(12L, 9L), getVersions("pruning", row));
+
+    // non-transactional writes only keep the latest version
+    InMemoryTableService.create("pruningNoTx");
+    for (long i = 1; i <= 5; i++) {
+      InMemoryTableService.merge("pruningNoTx", createUpdates(row, i), i);
+    }
+    Assert.assertEquals(ImmutableList.of(5L), getVersions("pruningNoTx", row));
+  }
+
+  @Test
+  public void testConcurrentIncrements() throws Exception {
+    InMemoryTableService.create("increments");
+    byte[] row = new byte[] {1};
+    byte[] column = new byte[] {2};
+    int threads = 8;
+    int increments = 1000;
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < increments; j++) {
+            InMemoryTableService.increment("increments", row, ImmutableMap.of(column, 1L));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Assert.assertEquals((long) threads * increments,
+                        (long) InMemoryTableService.increment("increments", row, ImmutableMap.of(column, 0L))
+                          .get(column));
+  }
+
+  private void write(String table, byte[] row, long version, Transaction tx) {
+    Assert.assertEquals(version, tx.getWritePointer());
+    InMemoryTableService.merge(table, createUpdates(row, version), tx);
+  }
+
+  private SortedMap<byte[], SortedMap<byte[], Update>> createUpdates(byte[] row, long value) {
+    SortedMap<byte[], Update> columns = ImmutableSortedMap.<byte[], Update>orderedBy(Bytes.BYTES_COMPARATOR)
+      .put(new byte[] {2}, new PutValue(Bytes.toBytes(value)))
+      .build();
+    return ImmutableSortedMap.<byte[], SortedMap<byte[], Update>>orderedBy(Bytes.BYTES_COMPARATOR)
+      .put(row, columns)
+      .build();
+  }
+
+  private List<Long> getVersions(String table, byte[] row) {
+    NavigableMap<byte[], NavigableMap<Long, byte[]>> rowMap = InMemoryTableService.get(table, row, null);
+    Assert.assertNotNull(rowMap);
+    return ImmutableList.copyOf(rowMap.get(new byte[] {2}).keySet());
+  }
+
+  private Transaction createTx(long writePointer, long[] invalids, long[] inProgress) {
+    return new Transaction(writePointer - 1, writePointer, invalids, inProgress,
+                           inProgress.length == 0 ? Transaction.NO_TX_IN_PROGRESS : inProgress[0]);
+  }
+
   private void verify123() {
     NavigableMap<byte[], NavigableMap<Long, byte[]>> rowFromGet =
       InMemoryTableService.get("table", new byte[]{1}, new Transaction(1L, 2L, new long[0], new long[0], 1L));
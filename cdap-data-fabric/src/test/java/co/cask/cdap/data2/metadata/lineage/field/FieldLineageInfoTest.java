@@ -33,6 +33,7 @@ import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -148,6 +149,8 @@ public class FieldLineageInfoTest {
     Set<Operation> operationsFromJson = GSON.fromJson(operationsJson, setType);
     FieldLineageInfo info2 = new FieldLineageInfo(operationsFromJson);
     Assert.assertEquals(info1, info2);
+    // The checksum is persisted, hence it must not change for the same operations
+    Assert.assertEquals(-5626872332678998634L, info1.getChecksum());
 
     // Create lineage info with different ordering of same operations. Checksum should still be same.
     operations.clear();
@@ -793,6 +796,46 @@ public class FieldLineageInfoTest {
     assertBefore(topologicallySortedOperations, read2, write2);
   }
 
+  @Test
+  public void testSummaryWithUnusedOperations() {
+    // read1: file1 -> (offset, body)
+    // read2: file2 -> (offset, body), not used by any operation
+    // generate: () -> (id)
+    // parse: (read1.body, generate.id) -> (id, name)
+    // drop: (parse.name) -> (), not used by any operation
+    // write: (read1.offset, parse.id, generate.id) -> file3
+    EndPoint file1 = EndPoint.of("ns", "file1");
+    EndPoint file2 = EndPoint.of("ns", "file2");
+    EndPoint file3 = EndPoint.of("ns", "file3");
+    ReadOperation read1 = new ReadOperation("read1", "read", file1, "offset", "body");
+    ReadOperation read2 = new ReadOperation("read2", "read", file2, "offset", "body");
+    TransformOperation generate = new TransformOperation("generate", "generate", Collections.emptyList(), "id");
+    TransformOperation parse = new TransformOperation("parse", "parse",
+                                                      Arrays.asList(InputField.of("read1", "body"),
+                                                                    InputField.of("generate", "id")),
+                                                      "id", "name");
+    TransformOperation drop = new TransformOperation("drop", "drop",
+                                                     Collections.singletonList(InputField.of("parse", "name")));
+    WriteOperation write = new WriteOperation("write", "write", file3,
+                                              Arrays.asList(InputField.of("read1", "offset"),
+                                                            InputField.of("parse", "id"),
+                                                            InputField.of("generate", "id")));
+
+    FieldLineageInfo info = new FieldLineageInfo(Arrays.asList(read1, read2, generate, parse, drop, write));
+
+    Map<EndPointField, Set<EndPointField>> expectedIncoming = new HashMap<>();
+    expectedIncoming.put(new EndPointField(file3, "offset"),
+                         Collections.singleton(new EndPointField(file1, "offset")));
+    expectedIncoming.put(new EndPointField(file3, "id"), Collections.singleton(new EndPointField(file1, "body")));
+    Assert.assertEquals(expectedIncoming, info.getIncomingSummary());
+
+    Map<EndPointField, Set<EndPointField>> expectedOutgoing = new HashMap<>();
+    expectedOutgoing.put(new EndPointField(file1, "offset"),
+                         Collections.singleton(new EndPointField(file3, "offset")));
+    expectedOutgoing.put(new EndPointField(file1, "body"), Collections.singleton(new EndPointField(file3, "id")));
+    Assert.assertEquals(expectedOutgoing, info.getOutgoingSummary());
+  }
+
   private void assertBefore(List<Operation> list, Operation a, Operation b) {
     int aIndex = list.indexOf(a);
     int bIndex = list.indexOf(b);
@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.transaction;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.tephra.Transaction;
+import org.apache.tephra.TransactionContext;
+import org.apache.tephra.TransactionFailureException;
+import org.apache.tephra.TransactionManager;
+import org.apache.tephra.TransactionSystemClient;
+import org.apache.tephra.inmemory.InMemoryTxSystemClient;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit test for {@link ReadOnlyTransactionSystemClient}.
+ */
+public class ReadOnlyTransactionSystemClientTest {
+
+  private static final byte[] A = { 'a' };
+
+  private static TransactionManager txManager;
+  private static TransactionSystemClient txClient;
+
+  @BeforeClass
+  public static void setup() {
+    txManager = new TransactionManager(new Configuration());
+    txManager.startAndWait();
+    txClient = new InMemoryTxSystemClient(txManager);
+  }
+
+  @AfterClass
+  public static void finish() {
+    txManager.stopAndWait();
+  }
+
+  @Test
+  public void testSharedSnapshot() throws Exception {
+    try (ReadOnlyTransactionSystemClient client = new ReadOnlyTransactionSystemClient(txClient, 30, 1000)) {
+      Transaction tx1 = client.startShort();
+      Transaction tx2 = client.startShort();
+      Assert.assertSame(tx1, tx2);
+      Assert.assertTrue(isInProgress(tx1));
+      client.commitOrThrow(tx1);
+      client.abort(tx2);
+
+      // The current snapshot stays in progress until it is refreshed
+      Assert.assertTrue(isInProgress(tx1));
+
+      // A transaction committed after the snapshot is not visible until the snapshot is refreshed
+      Transaction writeTx = txClient.startShort();
+      txClient.commitOrThrow(writeTx);
+      Transaction tx3 = client.startShort();
+      Assert.assertSame(tx1, tx3);
+      Assert.assertFalse(tx3.isVisible(writeTx.getWritePointer()));
+
+      // The snapshot is ended once it is expired and released by all users
+      TimeUnit.MILLISECONDS.sleep(1100);
+      Transaction tx4 = client.startShort();
+      Assert.assertNotEquals(tx1.getTransactionId(), tx4.getTransactionId());
+      Assert.assertTrue(tx4.isVisible(writeTx.getWritePointer()));
+      Assert.assertTrue(isInProgress(tx1));
+      client.commitOrThrow(tx3);
+      Assert.assertFalse(isInProgress(tx1));
+      client.commitOrThrow(tx4);
+
+      // An idle snapshot is ended by the refresher
+      long startTime = System.currentTimeMillis();
+      while (isInProgress(tx4) && System.currentTimeMillis() - startTime < 10000) {
+        TimeUnit.MILLISECONDS.sleep(50);
+      }
+      Assert.assertFalse(isInProgress(tx4));
+    }
+  }
+
+  @Test
+  public void testChangesFail() throws Exception {
+    TransactionContextTest.DummyTxAware txAware = new TransactionContextTest.DummyTxAware();
+    try (ReadOnlyTransactionSystemClient client = new ReadOnlyTransactionSystemClient(txClient, 30, 10000)) {
+      // A transaction without changes succeeds
+      TransactionContext context = new TransactionContext(client, txAware);
+      context.start();
+      context.finish();
+      Assert.assertTrue(txAware.committed);
+      Transaction tx = txAware.tx;
+
+      // A transaction with changes fails, without persisting the changes
+      context.start();
+      txAware.addChange(A);
+      try {
+        context.finish();
+        Assert.fail("Read-only transaction with changes must fail");
+      } catch (TransactionFailureException e) {
+        // expected
+      }
+      Assert.assertFalse(txAware.committed);
+      Assert.assertTrue(txAware.rolledBack);
+
+      // Both transactions shared the same snapshot, which is still usable
+      Assert.assertSame(tx, txAware.tx);
+      Assert.assertTrue(isInProgress(tx));
+    }
+    Assert.assertFalse(isInProgress(txAware.tx));
+  }
+
+  @Test
+  public void testRollbackFailure() throws Exception {
+    TransactionContextTest.DummyTxAware txAware = new TransactionContextTest.DummyTxAware();
+    try (ReadOnlyTransactionSystemClient client = new ReadOnlyTransactionSystemClient(txClient, 30, 10000)) {
+      // Another user of the same snapshot
+      Transaction tx = client.startShort();
+
+      // Changes that cannot be rolled back cause the snapshot to be invalidated
+      TransactionContext context = new TransactionContext(client, txAware);
+      context.start();
+      Assert.assertSame(tx, txAware.tx);
+      txAware.addChange(A);
+      txAware.failRollbackTxOnce = TransactionContextTest.InduceFailure.ThrowException;
+      try {
+        context.finish();
+        Assert.fail("Read-only transaction with changes must fail");
+      } catch (TransactionFailureException e) {
+        // expected
+      }
+
+      // The snapshot is no longer handed out, and it is invalidated once released by all its users
+      Transaction nextTx = client.startShort();
+      Assert.assertNotEquals(tx.getTransactionId(), nextTx.getTransactionId());
+      Assert.assertTrue(isInProgress(tx));
+      client.commitOrThrow(tx);
+      Assert.assertFalse(isInProgress(tx));
+      Assert.assertTrue(txManager.getCurrentState().getInvalid().contains(tx.getTransactionId()));
+      client.commitOrThrow(nextTx);
+    }
+  }
+
+  private static boolean isInProgress(Transaction tx) {
+    return txManager.getCurrentState().getInProgress().containsKey(tx.getTransactionId());
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.spi.metadata.local;
+
+import co.cask.cdap.api.metadata.MetadataEntity;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.metadata.Cursor;
+import co.cask.cdap.spi.metadata.Metadata;
+import co.cask.cdap.spi.metadata.MetadataConstants;
+import co.cask.cdap.spi.metadata.MetadataMutation.Drop;
+import co.cask.cdap.spi.metadata.MetadataMutation.Update;
+import co.cask.cdap.spi.metadata.MetadataRecord;
+import co.cask.cdap.spi.metadata.MetadataStorage;
+import co.cask.cdap.spi.metadata.MetadataStorageTest;
+import co.cask.cdap.spi.metadata.Read;
+import co.cask.cdap.spi.metadata.SearchRequest;
+import co.cask.cdap.spi.metadata.SearchResponse;
+import co.cask.cdap.spi.metadata.Sorting;
+import com.google.common.collect.ImmutableList;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static co.cask.cdap.api.metadata.MetadataScope.SYSTEM;
+import static co.cask.cdap.api.metadata.MetadataScope.USER;
+
+/**
+ * Tests for {@link LocalMetadataStorage}, running the common {@link MetadataStorageTest} tests and the tests
+ * that are specific to the local storage.
+ */
+public class LocalMetadataStorageTest extends MetadataStorageTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static CConfiguration cConf;
+  private static LocalMetadataStorage storage;
+
+  @BeforeClass
+  public static void setup() throws IOException {
+    cConf = CConfiguration.create();
+    cConf.set(Constants.Metadata.STORAGE_LOCAL_DATA_DIR, TEMP_FOLDER.newFolder().getAbsolutePath());
+    storage = new LocalMetadataStorage(cConf);
+    storage.createIndex();
+  }
+
+  @AfterClass
+  public static void teardown() throws IOException {
+    storage.dropIndex();
+    storage.close();
+  }
+
+  @Override
+  protected MetadataStorage getMetadataStorage() {
+    return storage;
+  }
+
+  @Override
+  protected void validateCursor(String cursor, int expectedOffset, int expectedPageSize) {
+    Cursor c = Cursor.fromString(cursor);
+    Assert.assertEquals(expectedOffset, c.getOffset());
+    Assert.assertEquals(expectedPageSize, c.getLimit());
+  }
+
+  @Test
+  public void testReopen() throws IOException {
+    MetadataEntity dataset = MetadataEntity.ofDataset("ns1", "ds1");
+    MetadataEntity program = MetadataEntity.builder(MetadataEntity.ofNamespace("ns1"))
+      .append(MetadataEntity.APPLICATION, "app1").append(MetadataEntity.VERSION, "-SNAPSHOT")
+      .append(MetadataEntity.TYPE, "Service").appendAsType(MetadataEntity.PROGRAM, "svc").build();
+    MetadataRecord datasetRecord = new MetadataRecord(
+      dataset, new Metadata(USER, tags("t1", "t2"), props("k1", "some value")));
+    MetadataRecord programRecord = new MetadataRecord(
+      program, new Metadata(SYSTEM, tags("t1"), props(MetadataConstants.SCHEMA_KEY, "not a schema")));
+    storage.batch(ImmutableList.of(new Update(dataset, datasetRecord.getMetadata()),
+                                   new Update(program, programRecord.getMetadata())));
+
+    // a new storage on the same directory sees the same metadata and index
+    LocalMetadataStorage reopened = new LocalMetadataStorage(cConf);
+    storage.close();
+    try {
+      reopened.createIndex();
+      Assert.assertEquals(datasetRecord.getMetadata(), reopened.read(new Read(dataset)));
+      Assert.assertEquals(programRecord.getMetadata(), reopened.read(new Read(program)));
+      assertResults(reopened, SearchRequest.of("t1").build(), datasetRecord, programRecord);
+      assertResults(reopened, SearchRequest.of("k1:value").build(), datasetRecord);
+      assertResults(reopened, SearchRequest.of("schema:schema").build(), programRecord);
+      reopened.batch(ImmutableList.of(new Drop(dataset), new Drop(program)));
+    } finally {
+      reopened.close();
+      storage.createIndex();
+    }
+    Assert.assertEquals(Metadata.EMPTY, storage.read(new Read(dataset)));
+    Assert.assertEquals(Metadata.EMPTY, storage.read(new Read(program)));
+  }
+
+  @Test
+  public void testCursorContinuesAfterChanges() throws IOException {
+    List<MetadataRecord> records = IntStream.range(0, 6)
+      .mapToObj(i -> new MetadataRecord(MetadataEntity.ofDataset("ns", "ds" + i),
+                                        new Metadata(SYSTEM, props(MetadataConstants.ENTITY_NAME_KEY, "ds" + i))))
+      .collect(Collectors.toList());
+    storage.batch(records.stream().map(record -> new Update(record.getEntity(), record.getMetadata()))
+                    .collect(Collectors.toList()));
+
+    SearchRequest request = SearchRequest.of("*").addNamespace("ns").setLimit(2).setCursorRequested(true)
+      .setSorting(new Sorting(MetadataConstants.ENTITY_NAME_KEY, Sorting.Order.ASC)).build();
+    SearchResponse response = assertInOrder(storage, request, records.subList(0, 2));
+
+    // dropping a result of the first page does not cause the next page to skip a result
+    storage.apply(new Drop(records.get(0).getEntity()));
+    assertInOrder(storage, SearchRequest.of("*").setCursor(response.getCursor()).setCursorRequested(true).build(),
+                  records.subList(2, 4));
+
+    // clean up
+    storage.batch(records.stream().map(MetadataRecord::getEntity).map(Drop::new).collect(Collectors.toList()));
+  }
+}
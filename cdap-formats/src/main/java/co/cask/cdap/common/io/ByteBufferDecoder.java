@@ -0,0 +1,235 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.io;
+
+import com.google.common.base.Charsets;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A {@link Decoder} for binary-format data that reads from a {@link ByteBuffer}. It decodes the same format as the
+ * {@code BinaryDecoder}, but reads from the buffer directly instead of one byte at a time through an
+ * {@link java.io.InputStream}. Strings are decoded from the buffer content without copying it first, and
+ * {@link #readBytes()} returns a slice of the buffer instead of a copy.
+ *
+ * Decoding advances the position of the buffer. The same instance can be used to decode multiple buffers by calling
+ * {@link #reset(ByteBuffer)}. Instances of this class are not thread safe.
+ */
+public final class ByteBufferDecoder implements Decoder {
+
+  // Maximum number of bytes of a varint encoded int and long
+  private static final int MAX_INT_BYTES = 5;
+  private static final int MAX_LONG_BYTES = 10;
+  private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+  private ByteBuffer buffer;
+  // For decoding strings from buffers that are not backed by an array
+  private byte[] scratch;
+
+  /**
+   * Creates a decoder without a buffer. The {@link #reset(ByteBuffer)} method must be called before decoding.
+   */
+  public ByteBufferDecoder() {
+    this(EMPTY_BUFFER);
+  }
+
+  public ByteBufferDecoder(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /**
+   * Sets the buffer to decode from.
+   *
+   * @param buffer the buffer to decode from, starting at its current position
+   * @return this decoder
+   */
+  public ByteBufferDecoder reset(ByteBuffer buffer) {
+    this.buffer = buffer;
+    return this;
+  }
+
+  @Override
+  public Object readNull() throws IOException {
+    // No-op
+    return null;
+  }
+
+  @Override
+  public boolean readBool() throws IOException {
+    ensureRemaining(1);
+    return buffer.get() == 1;
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    int val = 0;
+    int shift = 0;
+    int b;
+    if (buffer.hasArray() && buffer.remaining() >= MAX_INT_BYTES) {
+      // Fast path that reads from the array without bound checks on every byte
+      byte[] array = buffer.array();
+      int start = buffer.arrayOffset() + buffer.position();
+      int pos = start;
+      do {
+        b = array[pos++];
+        val |= (b & 0x7f) << shift;
+        shift += 7;
+      } while (b < 0 && shift < MAX_INT_BYTES * 7);
+      buffer.position(buffer.position() + pos - start);
+    } else {
+      do {
+        ensureRemaining(1);
+        b = buffer.get();
+        val |= (b & 0x7f) << shift;
+        shift += 7;
+      } while (b < 0 && shift < MAX_INT_BYTES * 7);
+    }
+    if (b < 0) {
+      throw new IOException("Invalid int encoding");
+    }
+    return (val >>> 1) ^ -(val & 1);
+  }
+
+  @Override
+  public long readLong() throws IOException {
+    long val = 0;
+    int shift = 0;
+    int b;
+    if (buffer.hasArray() && buffer.remaining() >= MAX_LONG_BYTES) {
+      // Fast path that reads from the array without bound checks on every byte
+      byte[] array = buffer.array();
+      int start = buffer.arrayOffset() + buffer.position();
+      int pos = start;
+      do {
+        b = array[pos++];
+        val |= (long) (b & 0x7f) << shift;
+        shift += 7;
+      } while (b < 0 && shift < MAX_LONG_BYTES * 7);
+      buffer.position(buffer.position() + pos - start);
+    } else {
+      do {
+        ensureRemaining(1);
+        b = buffer.get();
+        val |= (long) (b & 0x7f) << shift;
+        shift += 7;
+      } while (b < 0 && shift < MAX_LONG_BYTES * 7);
+    }
+    if (b < 0) {
+      throw new IOException("Invalid long encoding");
+    }
+    return (val >>> 1) ^ -(val & 1);
+  }
+
+  @Override
+  public float readFloat() throws IOException {
+    ensureRemaining(4);
+    // Floats are encoded in little endian
+    int bits = buffer.getInt();
+    if (buffer.order() != ByteOrder.LITTLE_ENDIAN) {
+      bits = Integer.reverseBytes(bits);
+    }
+    return Float.intBitsToFloat(bits);
+  }
+
+  @Override
+  public double readDouble() throws IOException {
+    ensureRemaining(8);
+    // Doubles are encoded in little endian
+    long bits = buffer.getLong();
+    if (buffer.order() != ByteOrder.LITTLE_ENDIAN) {
+      bits = Long.reverseBytes(bits);
+    }
+    return Double.longBitsToDouble(bits);
+  }
+
+  @Override
+  public String readString() throws IOException {
+    int len = readLength();
+    int pos = buffer.position();
+    if (buffer.hasArray()) {
+      String str = new String(buffer.array(), buffer.arrayOffset() + pos, len, Charsets.UTF_8);
+      buffer.position(pos + len);
+      return str;
+    }
+    if (scratch == null || scratch.length < len) {
+      scratch = new byte[Math.max(len, 64)];
+    }
+    buffer.get(scratch, 0, len);
+    return new String(scratch, 0, len, Charsets.UTF_8);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The returned {@link ByteBuffer} shares the content with the buffer being decoded, hence the content must not be
+   * modified while the returned buffer is in use.
+   */
+  @Override
+  public ByteBuffer readBytes() throws IOException {
+    int len = readLength();
+    ByteBuffer slice = buffer.slice();
+    slice.limit(len);
+    buffer.position(buffer.position() + len);
+    return slice;
+  }
+
+  @Override
+  public void skipFloat() throws IOException {
+    skip(4);
+  }
+
+  @Override
+  public void skipDouble() throws IOException {
+    skip(8);
+  }
+
+  @Override
+  public void skipString() throws IOException {
+    skipBytes();
+  }
+
+  @Override
+  public void skipBytes() throws IOException {
+    skip(readLength());
+  }
+
+  private void skip(int len) throws IOException {
+    ensureRemaining(len);
+    buffer.position(buffer.position() + len);
+  }
+
+  /**
+   * Reads the length of a string or bytes and verifies that the buffer has that many bytes remaining.
+   */
+  private int readLength() throws IOException {
+    int len = readInt();
+    if (len < 0) {
+      throw new IOException("Invalid length " + len);
+    }
+    ensureRemaining(len);
+    return len;
+  }
+
+  private void ensureRemaining(int len) throws EOFException {
+    if (buffer.remaining() < len) {
+      throw new EOFException();
+    }
+  }
+}
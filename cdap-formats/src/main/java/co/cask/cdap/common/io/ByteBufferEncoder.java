@@ -0,0 +1,319 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An {@link Encoder} for binary-format data that writes to a growable in memory buffer. It produces the same bytes as
+ * the {@code BinaryEncoder}, but writes to the buffer directly instead of one byte at a time through an
+ * {@link OutputStream}. Varints are written after a single capacity check, and strings are encoded as UTF-8 directly
+ * into the buffer without creating an intermediate byte array.
+ *
+ * The same instance is meant to be reused for encoding multiple values by calling {@link #reset()}, which keeps the
+ * buffer unless it has grown larger than the maximum retained capacity. Instances of this class are not thread safe.
+ */
+public final class ByteBufferEncoder implements Encoder {
+
+  private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+  private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+  // Maximum number of bytes of a varint encoded int and long
+  private static final int MAX_INT_BYTES = 5;
+  private static final int MAX_LONG_BYTES = 10;
+
+  private final int initialCapacity;
+  private byte[] buffer;
+  private int size;
+
+  public ByteBufferEncoder() {
+    this(DEFAULT_INITIAL_CAPACITY);
+  }
+
+  public ByteBufferEncoder(int initialCapacity) {
+    if (initialCapacity <= 0) {
+      throw new IllegalArgumentException("Initial capacity must be positive: " + initialCapacity);
+    }
+    this.initialCapacity = initialCapacity;
+    this.buffer = new byte[initialCapacity];
+  }
+
+  /**
+   * Discards all the bytes written so far. The buffer is kept for reuse, unless it has grown beyond the larger of
+   * the initial capacity and the maximum retained capacity, in which case it is released.
+   *
+   * @return this encoder
+   */
+  public ByteBufferEncoder reset() {
+    size = 0;
+    if (buffer.length > Math.max(initialCapacity, MAX_RETAINED_CAPACITY)) {
+      buffer = new byte[initialCapacity];
+    }
+    return this;
+  }
+
+  /**
+   * Returns the number of bytes written since the last {@link #reset()}.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns a copy of the bytes written since the last {@link #reset()}.
+   */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buffer, size);
+  }
+
+  /**
+   * Returns a {@link ByteBuffer} of the bytes written since the last {@link #reset()}. The returned buffer shares
+   * the content with this encoder, hence it is only valid until the next write or {@link #reset()}.
+   */
+  public ByteBuffer toByteBuffer() {
+    return ByteBuffer.wrap(buffer, 0, size);
+  }
+
+  /**
+   * Writes all the bytes written since the last {@link #reset()} to the given {@link OutputStream}.
+   *
+   * @param out the output stream to write to
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(buffer, 0, size);
+  }
+
+  /**
+   * Writes a single raw byte to the buffer without encoding.
+   *
+   * @param b the byte to write. Only the lowest eight bits are written.
+   */
+  public ByteBufferEncoder writeRaw(int b) {
+    ensureCapacity(1);
+    buffer[size++] = (byte) b;
+    return this;
+  }
+
+  /**
+   * Writes raw bytes to the buffer without encoding. Same as calling
+   *
+   * {@link #writeRaw(byte[], int, int) writeRaw(rawBytes, 0, rawBytes.length)}.
+   */
+  public ByteBufferEncoder writeRaw(byte[] rawBytes) {
+    return writeRaw(rawBytes, 0, rawBytes.length);
+  }
+
+  /**
+   * Writes raw bytes to the buffer without encoding.
+   *
+   * @param rawBytes The bytes to write.
+   * @param off Offset to start in the byte array.
+   * @param len Number of bytes to write starting from the offset.
+   */
+  public ByteBufferEncoder writeRaw(byte[] rawBytes, int off, int len) {
+    ensureCapacity(len);
+    System.arraycopy(rawBytes, off, buffer, size, len);
+    size += len;
+    return this;
+  }
+
+  @Override
+  public Encoder writeNull() {
+    // No-op
+    return this;
+  }
+
+  @Override
+  public Encoder writeBool(boolean b) {
+    return writeRaw(b ? 1 : 0);
+  }
+
+  @Override
+  public Encoder writeInt(int i) {
+    ensureCapacity(MAX_INT_BYTES);
+
+    // Compute the zig-zag value. First double the value and flip the bit if the input is negative.
+    int val = (i << 1) ^ (i >> 31);
+    byte[] buf = buffer;
+    int pos = size;
+    while ((val & ~0x7f) != 0) {
+      buf[pos++] = (byte) (0x80 | val & 0x7f);
+      val >>>= 7;
+    }
+    buf[pos++] = (byte) val;
+    size = pos;
+    return this;
+  }
+
+  @Override
+  public Encoder writeLong(long l) {
+    ensureCapacity(MAX_LONG_BYTES);
+
+    // Compute the zig-zag value. First double the value and flip the bit if the input is negative.
+    long val = (l << 1) ^ (l >> 63);
+    byte[] buf = buffer;
+    int pos = size;
+    while ((val & ~0x7fL) != 0) {
+      buf[pos++] = (byte) (0x80 | val & 0x7f);
+      val >>>= 7;
+    }
+    buf[pos++] = (byte) val;
+    size = pos;
+    return this;
+  }
+
+  @Override
+  public Encoder writeFloat(float f) {
+    ensureCapacity(4);
+    writeLittleEndian(Float.floatToIntBits(f));
+    return this;
+  }
+
+  @Override
+  public Encoder writeDouble(double d) {
+    ensureCapacity(8);
+    long bits = Double.doubleToLongBits(d);
+    writeLittleEndian((int) bits);
+    writeLittleEndian((int) (bits >> 32));
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The UTF-8 length of the string is computed first, followed by encoding the characters directly into the buffer.
+   * Same as {@link java.nio.charset.Charset#encode(String)}, unpaired surrogates are encoded as {@code '?'}.
+   */
+  @Override
+  public Encoder writeString(String s) {
+    int len = s.length();
+    int utf8Length = utf8Length(s);
+    writeInt(utf8Length);
+    ensureCapacity(utf8Length);
+
+    byte[] buf = buffer;
+    int pos = size;
+    int i = 0;
+
+    // Fast path for the leading ASCII characters
+    for (char c; i < len && (c = s.charAt(i)) < 0x80; i++) {
+      buf[pos++] = (byte) c;
+    }
+    for (; i < len; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        buf[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        buf[pos++] = (byte) (0xc0 | (c >> 6));
+        buf[pos++] = (byte) (0x80 | (c & 0x3f));
+      } else if (!Character.isSurrogate(c)) {
+        buf[pos++] = (byte) (0xe0 | (c >> 12));
+        buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        buf[pos++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, s.charAt(++i));
+        buf[pos++] = (byte) (0xf0 | (codePoint >> 18));
+        buf[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+        buf[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        buf[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+      } else {
+        buf[pos++] = '?';
+      }
+    }
+    size = pos;
+    return this;
+  }
+
+  @Override
+  public Encoder writeBytes(byte[] bytes) {
+    return writeBytes(bytes, 0, bytes.length);
+  }
+
+  @Override
+  public Encoder writeBytes(byte[] bytes, int off, int len) {
+    writeInt(len);
+    return writeRaw(bytes, off, len);
+  }
+
+  @Override
+  public Encoder writeBytes(ByteBuffer bytes) {
+    int len = bytes.remaining();
+    writeInt(len);
+    if (bytes.hasArray()) {
+      return writeRaw(bytes.array(), bytes.arrayOffset() + bytes.position(), len);
+    }
+    ensureCapacity(len);
+    int pos = bytes.position();
+    bytes.get(buffer, size, len);
+    bytes.position(pos);
+    size += len;
+    return this;
+  }
+
+  /**
+   * Writes an int in little endian. The caller must have ensured the capacity.
+   */
+  private void writeLittleEndian(int bits) {
+    byte[] buf = buffer;
+    int pos = size;
+    buf[pos++] = (byte) bits;
+    buf[pos++] = (byte) (bits >> 8);
+    buf[pos++] = (byte) (bits >> 16);
+    buf[pos++] = (byte) (bits >> 24);
+    size = pos;
+  }
+
+  private void ensureCapacity(int len) {
+    int required = size + len;
+    if (required < 0) {
+      throw new OutOfMemoryError("Required buffer size is too large");
+    }
+    if (required > buffer.length) {
+      // Double the capacity. If doubling overflows, the new capacity will be less than the required size.
+      int capacity = buffer.length << 1;
+      buffer = Arrays.copyOf(buffer, capacity < required ? required : capacity);
+    }
+  }
+
+  /**
+   * Returns the number of bytes of the given string when encoded as UTF-8.
+   */
+  private static int utf8Length(String s) {
+    int len = s.length();
+    int utf8Length = len;
+    for (int i = 0; i < len; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        continue;
+      }
+      if (c < 0x800) {
+        utf8Length++;
+      } else if (!Character.isSurrogate(c)) {
+        utf8Length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+        // A surrogate pair takes two chars and is encoded in four bytes
+        utf8Length += 2;
+        i++;
+      }
+      // An unpaired surrogate is encoded as '?'
+    }
+    return utf8Length;
+  }
+}
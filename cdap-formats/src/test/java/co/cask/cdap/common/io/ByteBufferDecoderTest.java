@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.io;
+
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link ByteBufferDecoder}. The binary format is the same as the Avro binary encoding, hence the
+ * input is encoded with the Avro binary encoder.
+ */
+public class ByteBufferDecoderTest {
+
+  private static final long[] LONGS = {
+    0L, 1L, -1L, 63L, -64L, 64L, 1234L, -1234L, Short.MAX_VALUE, Short.MIN_VALUE,
+    Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE
+  };
+  private static final String STRING = "This is a testing message " +
+    Character.toString((char) 200) + Character.toString((char) 20000) + Character.toString((char) 40000);
+
+  @Test
+  public void testDecode() throws IOException {
+    byte[] encoded = encode();
+
+    // Heap buffer
+    verifyDecode(new ByteBufferDecoder(ByteBuffer.wrap(encoded)));
+
+    // Heap buffer with an array offset and trailing bytes
+    byte[] padded = new byte[encoded.length + 20];
+    System.arraycopy(encoded, 0, padded, 10, encoded.length);
+    ByteBuffer buffer = ByteBuffer.wrap(padded, 10, encoded.length).slice();
+    verifyDecode(new ByteBufferDecoder(buffer));
+
+    // Direct buffer, in both byte orders
+    for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+      buffer = ByteBuffer.allocateDirect(encoded.length).order(order);
+      buffer.put(encoded).flip();
+      verifyDecode(new ByteBufferDecoder(buffer));
+    }
+  }
+
+  @Test
+  public void testReuse() throws IOException {
+    ByteBufferDecoder decoder = new ByteBufferDecoder();
+    for (int i = 0; i < 10; i++) {
+      ByteBufferEncoder encoder = new ByteBufferEncoder();
+      encoder.writeInt(i).writeString("message" + i);
+      ByteBuffer buffer = encoder.toByteBuffer();
+
+      decoder.reset(buffer);
+      Assert.assertEquals(i, decoder.readInt());
+      Assert.assertEquals("message" + i, decoder.readString());
+      Assert.assertFalse(buffer.hasRemaining());
+    }
+  }
+
+  @Test
+  public void testTruncated() throws IOException {
+    byte[] encoded = encode();
+    for (int len = 0; len < encoded.length; len++) {
+      ByteBuffer buffer = ByteBuffer.wrap(Arrays.copyOf(encoded, len));
+      try {
+        verifyDecode(new ByteBufferDecoder(buffer));
+        Assert.fail("Expected EOFException for length " + len);
+      } catch (EOFException e) {
+        // Expected
+      }
+    }
+  }
+
+  private byte[] encode() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
+    encoder.writeNull();
+    encoder.writeBoolean(true);
+    encoder.writeBoolean(false);
+    for (long l : LONGS) {
+      encoder.writeInt((int) l);
+      encoder.writeLong(l);
+    }
+    encoder.writeFloat(3.14f);
+    encoder.writeFloat(Float.MIN_VALUE);
+    encoder.writeDouble(Math.E);
+    encoder.writeDouble(Double.MAX_VALUE);
+    encoder.writeString("");
+    encoder.writeString(STRING);
+    encoder.writeBytes(new byte[] { 1, 2, 3 });
+    // Values to be skipped
+    encoder.writeFloat(1.0f);
+    encoder.writeDouble(2.0d);
+    encoder.writeString(STRING);
+    encoder.writeBytes(new byte[] { 4, 5 });
+    encoder.writeInt(Integer.MAX_VALUE);
+    encoder.flush();
+    return os.toByteArray();
+  }
+
+  private void verifyDecode(Decoder decoder) throws IOException {
+    Assert.assertNull(decoder.readNull());
+    Assert.assertTrue(decoder.readBool());
+    Assert.assertFalse(decoder.readBool());
+    for (long l : LONGS) {
+      Assert.assertEquals((int) l, decoder.readInt());
+      Assert.assertEquals(l, decoder.readLong());
+    }
+    Assert.assertEquals(3.14f, decoder.readFloat(), 0.0000001f);
+    Assert.assertEquals(Float.MIN_VALUE, decoder.readFloat(), 0.0000001f);
+    Assert.assertEquals(Math.E, decoder.readDouble(), 0.0000001f);
+    Assert.assertEquals(Double.MAX_VALUE, decoder.readDouble(), 0.0000001f);
+    Assert.assertEquals("", decoder.readString());
+    Assert.assertEquals(STRING, decoder.readString());
+    Assert.assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), decoder.readBytes());
+    decoder.skipFloat();
+    decoder.skipDouble();
+    decoder.skipString();
+    decoder.skipBytes();
+    Assert.assertEquals(Integer.MAX_VALUE, decoder.readInt());
+  }
+}
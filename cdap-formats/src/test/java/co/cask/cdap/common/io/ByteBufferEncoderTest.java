@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.io;
+
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Unit tests for {@link ByteBufferEncoder}. The binary format is the same as the Avro binary encoding, hence the
+ * results are verified with the Avro binary encoder and decoder.
+ */
+public class ByteBufferEncoderTest {
+
+  private static final long[] LONGS = {
+    0L, 1L, -1L, 63L, -64L, 64L, 1234L, -1234L, Short.MAX_VALUE, Short.MIN_VALUE,
+    Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE
+  };
+  private static final String[] STRINGS = {
+    "", "ascii only", "latin éè", "cjk 中文", "emoji 😀 pair",
+    "unpaired high \ud83d", "unpaired low \ude00 in the middle", "\ud83d😀", "￿ࠀ߿\u0080\u007f"
+  };
+
+  @Test
+  public void testSameAsAvro() throws IOException {
+    ByteBufferEncoder encoder = new ByteBufferEncoder(1);
+    encoder.writeNull();
+    encoder.writeBool(true);
+    encoder.writeBool(false);
+    for (long l : LONGS) {
+      encoder.writeInt((int) l);
+      encoder.writeLong(l);
+    }
+    encoder.writeFloat(3.14f);
+    encoder.writeFloat(Float.MIN_VALUE);
+    encoder.writeDouble(Math.E);
+    encoder.writeDouble(Double.MAX_VALUE);
+    for (String str : STRINGS) {
+      encoder.writeString(str);
+    }
+    encoder.writeBytes(new byte[] { 1, 2, 3 });
+    encoder.writeBytes(new byte[] { 1, 2, 3, 4, 5 }, 1, 3);
+    encoder.writeBytes(ByteBuffer.wrap(new byte[] { 4, 5 }));
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder avroEncoder = EncoderFactory.get().directBinaryEncoder(os, null);
+    avroEncoder.writeNull();
+    avroEncoder.writeBoolean(true);
+    avroEncoder.writeBoolean(false);
+    for (long l : LONGS) {
+      avroEncoder.writeInt((int) l);
+      avroEncoder.writeLong(l);
+    }
+    avroEncoder.writeFloat(3.14f);
+    avroEncoder.writeFloat(Float.MIN_VALUE);
+    avroEncoder.writeDouble(Math.E);
+    avroEncoder.writeDouble(Double.MAX_VALUE);
+    for (String str : STRINGS) {
+      avroEncoder.writeString(str);
+    }
+    avroEncoder.writeBytes(new byte[] { 1, 2, 3 });
+    avroEncoder.writeBytes(new byte[] { 1, 2, 3, 4, 5 }, 1, 3);
+    avroEncoder.writeBytes(ByteBuffer.wrap(new byte[] { 4, 5 }));
+    avroEncoder.flush();
+
+    Assert.assertArrayEquals(os.toByteArray(), encoder.toByteArray());
+    Assert.assertEquals(os.size(), encoder.size());
+  }
+
+  @Test
+  public void testDecode() throws IOException {
+    ByteBufferEncoder encoder = new ByteBufferEncoder();
+    for (long l : LONGS) {
+      encoder.writeInt((int) l).writeLong(l);
+    }
+    for (String str : STRINGS) {
+      encoder.writeString(str);
+    }
+    encoder.writeFloat(3.14f).writeDouble(Math.E);
+
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(encoder.toByteArray(), null);
+    for (long l : LONGS) {
+      Assert.assertEquals((int) l, decoder.readInt());
+      Assert.assertEquals(l, decoder.readLong());
+    }
+    for (String str : STRINGS) {
+      Assert.assertEquals(new String(str.getBytes("UTF-8"), "UTF-8"), decoder.readString(null).toString());
+    }
+    Assert.assertEquals(3.14f, decoder.readFloat(), 0.0000001f);
+    Assert.assertEquals(Math.E, decoder.readDouble(), 0.0000001f);
+  }
+
+  @Test
+  public void testReset() throws IOException {
+    ByteBufferEncoder encoder = new ByteBufferEncoder(16);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder avroEncoder = EncoderFactory.get().directBinaryEncoder(os, null);
+    for (int i = 0; i < 10; i++) {
+      encoder.reset();
+      encoder.writeInt(i).writeString("message" + i);
+
+      os.reset();
+      avroEncoder.writeInt(i);
+      avroEncoder.writeString("message" + i);
+      avroEncoder.flush();
+      Assert.assertArrayEquals(os.toByteArray(), encoder.toByteArray());
+
+      os.reset();
+      encoder.writeTo(os);
+      Assert.assertArrayEquals(encoder.toByteArray(), os.toByteArray());
+    }
+
+    // A large write grows the buffer, and it is released on reset
+    encoder.reset().writeBytes(new byte[2 * 1024 * 1024]);
+    Assert.assertEquals(2 * 1024 * 1024 + 4, encoder.size());
+    encoder.reset();
+    Assert.assertEquals(0, encoder.size());
+    Assert.assertEquals(0, encoder.toByteArray().length);
+  }
+
+  @Test
+  public void testByteBuffer() throws IOException {
+    byte[] bytes = { 1, 2, 3, 4, 5 };
+    ByteBuffer heapBuffer = ByteBuffer.wrap(bytes, 1, 3);
+    ByteBuffer directBuffer = ByteBuffer.allocateDirect(bytes.length);
+    directBuffer.put(bytes).position(1);
+
+    ByteBufferEncoder encoder = new ByteBufferEncoder();
+    encoder.writeBytes(heapBuffer).writeBytes(directBuffer);
+
+    // The buffer positions are not changed
+    Assert.assertEquals(1, heapBuffer.position());
+    Assert.assertEquals(1, directBuffer.position());
+
+    ByteBuffer buffer = encoder.toByteBuffer();
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                                                               buffer.remaining(), null);
+    Assert.assertEquals(ByteBuffer.wrap(bytes, 1, 3), decoder.readBytes(null));
+    Assert.assertEquals(ByteBuffer.wrap(bytes, 1, 4), decoder.readBytes(null));
+  }
+}
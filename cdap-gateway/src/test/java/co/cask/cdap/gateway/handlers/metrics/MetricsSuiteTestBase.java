@@ -119,6 +119,8 @@ public abstract class MetricsSuiteTestBase {
     conf.setBoolean(Constants.Dangerous.UNRECOVERABLE_RESET, true);
     conf.setBoolean(Constants.Metrics.CONFIG_AUTHENTICATION_REQUIRED, true);
     conf.set(Constants.Metrics.CLUSTER_NAME, CLUSTER);
+    // Tests query all resolutions right after adding metrics, hence write all of them without rollup
+    conf.setInt(Constants.Metrics.ROLLUP_INTERVAL_SECONDS, 0);
 
     Injector injector = startMetricsService(conf);
     store = injector.getInstance(Store.class);
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -19,9 +19,14 @@ package co.cask.cdap.messaging;
 import co.cask.cdap.proto.id.TopicId;
 import com.google.common.collect.ImmutableMap;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.regex.Pattern;
 
 /**
  * Represents metadata about a messaging topic.
@@ -30,6 +35,10 @@ public class TopicMetadata {
 
   public static final String GENERATION_KEY = MessagingUtils.Constants.GENERATION_KEY;
   public static final String TTL_KEY = MessagingUtils.Constants.TTL_KEY;
+  public static final String PARTITIONS_KEY = "partitions";
+
+  private static final String PARTITION_SEPARATOR = "__p";
+  private static final Pattern PARTITION_TOPIC_PATTERN = Pattern.compile(".*" + PARTITION_SEPARATOR + "\\d+");
 
   private final TopicId topicId;
   private final Map<String, String> properties;
@@ -109,6 +118,70 @@ public class TopicMetadata {
     return Integer.parseInt(properties.get(TTL_KEY));
   }
 
+  /**
+   * Returns the number of partitions of the topic. A topic without the partitions property has a single partition,
+   * which is the topic itself.
+   */
+  public int getPartitions() {
+    if (!validated) {
+      validatePartitions();
+    }
+    String partitions = properties.get(PARTITIONS_KEY);
+    return partitions == null ? 1 : Integer.parseInt(partitions);
+  }
+
+  /**
+   * Returns the {@link TopicId} of the given partition of the topic. Each partition of a topic with multiple
+   * partitions is stored as a separate topic.
+   *
+   * @param partition the partition number, starting from {@code 0}
+   * @throws IllegalArgumentException if the partition number is not valid for the topic
+   */
+  public TopicId getPartitionTopicId(int partition) {
+    int partitions = getPartitions();
+    if (partition < 0 || partition >= partitions) {
+      throw new IllegalArgumentException(String.format("Invalid partition %d for topic %s with %d partitions",
+                                                       partition, topicId, partitions));
+    }
+    if (partitions == 1) {
+      return topicId;
+    }
+    return new TopicId(topicId.getNamespace(), topicId.getTopic() + PARTITION_SEPARATOR + partition);
+  }
+
+  /**
+   * Returns the {@link TopicId} of the partition that messages with the given key are published to. Messages with the
+   * same key always go to the same partition, hence are consumed in the order they were published.
+   *
+   * @param key the partitioning key
+   */
+  public TopicId getPartitionTopicId(byte[] key) {
+    return getPartitionTopicId(Math.floorMod(Arrays.hashCode(key), getPartitions()));
+  }
+
+  /**
+   * Returns the {@link TopicId} of all partitions of the topic, ordered by the partition number.
+   */
+  public List<TopicId> getPartitionTopicIds() {
+    int partitions = getPartitions();
+    if (partitions == 1) {
+      return Collections.singletonList(topicId);
+    }
+    List<TopicId> topicIds = new ArrayList<>(partitions);
+    for (int i = 0; i < partitions; i++) {
+      topicIds.add(getPartitionTopicId(i));
+    }
+    return topicIds;
+  }
+
+  /**
+   * Returns {@code true} if the name of the given topic has the suffix reserved for the partitions of topics with
+   * multiple partitions.
+   */
+  public static boolean isPartitionTopic(TopicId topicId) {
+    return PARTITION_TOPIC_PATTERN.matcher(topicId.getTopic()).matches();
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -142,6 +215,7 @@ public class TopicMetadata {
   private void validateProperties() {
     validateTTL();
     validateGeneration();
+    validatePartitions();
   }
 
   /**
@@ -183,6 +257,26 @@ public class TopicMetadata {
     }
   }
 
+  /**
+   * Validates the optional "partitions" property of the given topic.
+   *
+   * @throws IllegalArgumentException if the partitions value is not a number or <= 0.
+   */
+  private void validatePartitions() {
+    String partitions = properties.get(PARTITIONS_KEY);
+    if (partitions == null) {
+      return;
+    }
+    try {
+      if (Integer.parseInt(partitions) <= 0) {
+        throw new IllegalArgumentException("The partitions property must be greater than zero for topic " + topicId);
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("The partitions property must be a number greater than zero for topic "
+                                           + topicId, e);
+    }
+  }
+
   /**
    * Turns a list of {@link Object} into a {@link Map} by using even index objects as keys and the following odd index
    * objects as values. The {@link Object#toString()} method will be used to convert {@link Object} to {@link String}.
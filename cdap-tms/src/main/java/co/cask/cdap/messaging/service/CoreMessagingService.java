@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.messaging.service;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.messaging.TopicAlreadyExistsException;
 import co.cask.cdap.api.messaging.TopicNotFoundException;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
@@ -54,6 +55,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -65,6 +68,8 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -85,6 +90,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   private final TimeProvider timeProvider;
   private final MetricsCollectionService metricsCollectionService;
   private final long txMaxLifeTimeInMillis;
+  private final AtomicInteger partitionCounter;
 
   @Inject
   CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
@@ -114,34 +120,71 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     this.metricsCollectionService = metricsCollectionService;
     this.txMaxLifeTimeInMillis = TimeUnit.SECONDS.toMillis(cConf.getLong(TxConstants.Manager.CFG_TX_MAX_LIFETIME,
                                                                          TxConstants.Manager.DEFAULT_TX_MAX_LIFETIME));
+    this.partitionCounter = new AtomicInteger();
   }
 
   @Override
   public void createTopic(TopicMetadata topicMetadata) throws TopicAlreadyExistsException, IOException {
+    checkNotPartitionTopic(topicMetadata.getTopicId());
     try (MetadataTable metadataTable = createMetadataTable()) {
       Map<String, String> properties = createDefaultProperties();
       properties.putAll(topicMetadata.getProperties());
-      metadataTable.createTopic(new TopicMetadata(topicMetadata.getTopicId(), properties, true));
+      TopicMetadata metadata = new TopicMetadata(topicMetadata.getTopicId(), properties, true);
+      metadataTable.createTopic(metadata);
+
+      // Each partition is stored as a separate topic, so that it has its own writer, cache and sequence
+      for (TopicMetadata partitionMetadata : getPartitionMetadata(metadata)) {
+        try {
+          metadataTable.createTopic(partitionMetadata);
+        } catch (TopicAlreadyExistsException e) {
+          // Left over from a failed topic deletion. Just update the properties.
+          metadataTable.updateTopic(partitionMetadata);
+        }
+      }
     }
   }
 
   @Override
   public void updateTopic(TopicMetadata topicMetadata) throws TopicNotFoundException, IOException {
+    checkNotPartitionTopic(topicMetadata.getTopicId());
     try (MetadataTable metadataTable = createMetadataTable()) {
+      TopicMetadata existing = metadataTable.getMetadata(topicMetadata.getTopicId());
       Map<String, String> properties = createDefaultProperties();
+      if (existing.getPartitions() > 1) {
+        properties.put(TopicMetadata.PARTITIONS_KEY, Integer.toString(existing.getPartitions()));
+      }
       properties.putAll(topicMetadata.getProperties());
-      metadataTable.updateTopic(new TopicMetadata(topicMetadata.getTopicId(), properties, true));
-      topicCache.invalidate(topicMetadata.getTopicId());
+      TopicMetadata metadata = new TopicMetadata(topicMetadata.getTopicId(), properties, true);
+      if (metadata.getPartitions() != existing.getPartitions()) {
+        throw new IllegalArgumentException("The number of partitions cannot be changed for topic "
+                                             + topicMetadata.getTopicId());
+      }
+
+      metadataTable.updateTopic(metadata);
+      topicCache.invalidate(metadata.getTopicId());
+      for (TopicMetadata partitionMetadata : getPartitionMetadata(metadata)) {
+        metadataTable.updateTopic(partitionMetadata);
+        topicCache.invalidate(partitionMetadata.getTopicId());
+      }
     }
   }
 
   @Override
   public void deleteTopic(TopicId topicId) throws TopicNotFoundException, IOException {
+    checkNotPartitionTopic(topicId);
     try (MetadataTable metadataTable = createMetadataTable()) {
+      TopicMetadata metadata = metadataTable.getMetadata(topicId);
       metadataTable.deleteTopic(topicId);
-      topicCache.invalidate(topicId);
-      messageTableWriterCache.invalidate(topicId);
-      payloadTableWriterCache.invalidate(topicId);
+      invalidateTopic(topicId);
+
+      for (TopicMetadata partitionMetadata : getPartitionMetadata(metadata)) {
+        try {
+          metadataTable.deleteTopic(partitionMetadata.getTopicId());
+        } catch (TopicNotFoundException e) {
+          // Ignore partitions that are already deleted
+        }
+        invalidateTopic(partitionMetadata.getTopicId());
+      }
     }
   }
 
@@ -159,27 +202,37 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   @Override
   public List<TopicId> listTopics(NamespaceId namespaceId) throws IOException {
     try (MetadataTable metadataTable = createMetadataTable()) {
-      return metadataTable.listTopics(namespaceId);
+      // The partitions of topics are internal
+      return metadataTable.listTopics(namespaceId).stream()
+        .filter(topicId -> !TopicMetadata.isPartitionTopic(topicId))
+        .collect(Collectors.toList());
     }
   }
 
   @Override
   public MessageFetcher prepareFetch(final TopicId topicId) throws TopicNotFoundException, IOException {
     final TopicMetadata metadata = getTopic(topicId);
-    return new CoreMessageFetcher(metadata,
-                                  () -> createMessageTable(metadata),
-                                  () -> createPayloadTable(metadata));
+    if (metadata.getPartitions() == 1) {
+      return createMessageFetcher(metadata);
+    }
+
+    // Fetching from a topic with multiple partitions merges the messages from all partitions
+    List<MessageFetcher> fetchers = new ArrayList<>();
+    for (TopicId partitionId : metadata.getPartitionTopicIds()) {
+      fetchers.add(createMessageFetcher(getTopic(partitionId)));
+    }
+    return new PartitionMergingMessageFetcher(metadata, fetchers);
   }
 
   @Nullable
   @Override
   public RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException {
     try {
-      TopicMetadata metadata = topicCache.get(request.getTopicId());
+      TopicMetadata metadata = getPartitionMetadata(topicCache.get(request.getTopicId()), request);
       if (request.isTransactional()) {
         ensureValidTxLifetime(request.getTransactionWritePointer());
       }
-      return messageTableWriterCache.get(request.getTopicId()).persist(request, metadata);
+      return messageTableWriterCache.get(metadata.getTopicId()).persist(request, metadata);
     } catch (ExecutionException e) {
       Throwable cause = Objects.firstNonNull(e.getCause(), e);
       Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
@@ -190,8 +243,8 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   @Override
   public void storePayload(StoreRequest request) throws TopicNotFoundException, IOException {
     try {
-      TopicMetadata metadata = topicCache.get(request.getTopicId());
-      payloadTableWriterCache.get(request.getTopicId()).persist(request, metadata);
+      TopicMetadata metadata = getPartitionMetadata(topicCache.get(request.getTopicId()), request);
+      payloadTableWriterCache.get(metadata.getTopicId()).persist(request, metadata);
     } catch (ExecutionException e) {
       Throwable cause = Objects.firstNonNull(e.getCause(), e);
       Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
@@ -202,6 +255,9 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   @Override
   public void rollback(TopicId topicId, RollbackDetail rollbackDetail) throws TopicNotFoundException, IOException {
     TopicMetadata metadata = getTopic(topicId);
+    if (metadata.getPartitions() > 1) {
+      metadata = getTopic(getTransactionPartition(metadata, rollbackDetail.getTransactionWritePointer()));
+    }
     Exception failure = null;
     try (MessageTable messageTable = createMessageTable(metadata)) {
       messageTable.rollback(metadata, rollbackDetail);
@@ -370,6 +426,72 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       });
   }
 
+  /**
+   * Creates a {@link MessageFetcher} for fetching from a single topic partition.
+   */
+  private MessageFetcher createMessageFetcher(TopicMetadata metadata) {
+    return new CoreMessageFetcher(metadata,
+                                  () -> createMessageTable(metadata),
+                                  () -> createPayloadTable(metadata));
+  }
+
+  /**
+   * Returns the {@link TopicMetadata} of the partition that the given {@link StoreRequest} should be written to.
+   * A transactional request is always written to the same partition for the same transaction, so that the payload
+   * and message table entries, as well as the rollback, go to the same partition. Other requests are spread across
+   * the partitions in round robin. Publishers that need ordering by key should publish to the partition topic
+   * returned by {@link TopicMetadata#getPartitionTopicId(byte[])} instead.
+   */
+  private TopicMetadata getPartitionMetadata(TopicMetadata metadata,
+                                             StoreRequest request) throws ExecutionException {
+    if (metadata.getPartitions() == 1) {
+      return metadata;
+    }
+    TopicId partitionId = request.isTransactional()
+      ? getTransactionPartition(metadata, request.getTransactionWritePointer())
+      : metadata.getPartitionTopicId(Math.floorMod(partitionCounter.getAndIncrement(), metadata.getPartitions()));
+    return topicCache.get(partitionId);
+  }
+
+  private TopicId getTransactionPartition(TopicMetadata metadata, long transactionWritePointer) {
+    return metadata.getPartitionTopicId(Bytes.toBytes(transactionWritePointer));
+  }
+
+  /**
+   * Returns the {@link TopicMetadata} of the partitions of the given topic, or an empty list if the topic is not
+   * partitioned.
+   */
+  private List<TopicMetadata> getPartitionMetadata(TopicMetadata metadata) {
+    if (metadata.getPartitions() == 1) {
+      return Collections.emptyList();
+    }
+    Map<String, String> properties = new HashMap<>(metadata.getProperties());
+    properties.remove(TopicMetadata.PARTITIONS_KEY);
+
+    List<TopicMetadata> result = new ArrayList<>();
+    for (TopicId partitionId : metadata.getPartitionTopicIds()) {
+      result.add(new TopicMetadata(partitionId, properties, true));
+    }
+    return result;
+  }
+
+  /**
+   * Throws {@link IllegalArgumentException} if the given topic has the name reserved for the partitions of topics,
+   * which are only managed through their topic.
+   */
+  private void checkNotPartitionTopic(TopicId topicId) {
+    if (TopicMetadata.isPartitionTopic(topicId)) {
+      throw new IllegalArgumentException("Invalid topic name " + topicId
+                                           + ". Topic names ending with '__p<number>' are reserved for partitions.");
+    }
+  }
+
+  private void invalidateTopic(TopicId topicId) {
+    topicCache.invalidate(topicId);
+    messageTableWriterCache.invalidate(topicId);
+    payloadTableWriterCache.invalidate(topicId);
+  }
+
   /**
    * Creates a new instance of {@link MetadataTable}.
    */
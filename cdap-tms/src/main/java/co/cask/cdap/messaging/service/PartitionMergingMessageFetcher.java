@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.AbstractCloseableIterator;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.api.messaging.TopicNotFoundException;
+import co.cask.cdap.messaging.MessageFetcher;
+import co.cask.cdap.messaging.TopicMetadata;
+import co.cask.cdap.messaging.data.RawMessage;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import org.apache.tephra.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A {@link MessageFetcher} for a topic with multiple partitions. It fetches from every partition and merges the
+ * messages in the order of message id, which is ordered by publish time first.
+ *
+ * Message ids are only unique within a partition, hence a merged fetch must start from a publish time and fetching
+ * from a message id is not supported. Requiring the start time makes a subscriber that resumes from the last message id
+ * fail on its first fetch, rather than after it has consumed messages. Such subscribers should fetch from the
+ * individual partition topics instead.
+ */
+final class PartitionMergingMessageFetcher extends MessageFetcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PartitionMergingMessageFetcher.class);
+  private static final Comparator<PeekingIterator<RawMessage>> COMPARATOR =
+    (o1, o2) -> Bytes.compareTo(o1.peek().getId(), o2.peek().getId());
+
+  private final TopicMetadata metadata;
+  private final List<MessageFetcher> partitionFetchers;
+
+  PartitionMergingMessageFetcher(TopicMetadata metadata, List<MessageFetcher> partitionFetchers) {
+    this.metadata = metadata;
+    this.partitionFetchers = partitionFetchers;
+  }
+
+  @Override
+  public CloseableIterator<RawMessage> fetch() throws TopicNotFoundException, IOException {
+    Long startTime = getStartTime();
+    if (getStartOffset() != null || startTime == null) {
+      throw new IllegalArgumentException(String.format(
+        "Topic %s has %d partitions and can only be fetched from a start time, since message ids are only unique "
+          + "within a partition. To resume from a message id, fetch from the partition topics %s instead.",
+        metadata.getTopicId(), metadata.getPartitions(), metadata.getPartitionTopicIds()));
+    }
+
+    Transaction transaction = getTransaction();
+    int limit = getLimit();
+
+    List<CloseableIterator<RawMessage>> iterators = new ArrayList<>(partitionFetchers.size());
+    PriorityQueue<PeekingIterator<RawMessage>> queue = new PriorityQueue<>(partitionFetchers.size(), COMPARATOR);
+    try {
+      for (MessageFetcher fetcher : partitionFetchers) {
+        // Each partition is fetched up to the limit, since the messages could all come from the same partition
+        fetcher.setStartTime(startTime).setTransaction(transaction).setLimit(limit);
+        CloseableIterator<RawMessage> iterator = fetcher.fetch();
+        iterators.add(iterator);
+        PeekingIterator<RawMessage> peekingIterator = Iterators.peekingIterator(iterator);
+        if (peekingIterator.hasNext()) {
+          queue.add(peekingIterator);
+        }
+      }
+    } catch (Throwable t) {
+      closeAll(iterators);
+      throw t;
+    }
+
+    return new AbstractCloseableIterator<RawMessage>() {
+
+      private int count;
+
+      @Override
+      protected RawMessage computeNext() {
+        if (count >= limit || queue.isEmpty()) {
+          return endOfData();
+        }
+        PeekingIterator<RawMessage> iterator = queue.poll();
+        RawMessage message = iterator.next();
+        if (iterator.hasNext()) {
+          queue.add(iterator);
+        }
+        count++;
+        return message;
+      }
+
+      @Override
+      public void close() {
+        closeAll(iterators);
+      }
+    };
+  }
+
+  private void closeAll(List<CloseableIterator<RawMessage>> iterators) {
+    for (CloseableIterator<RawMessage> iterator : iterators) {
+      try {
+        iterator.close();
+      } catch (Throwable t) {
+        LOG.warn("Exception raised when closing iterator for topic {}", metadata.getTopicId(), t);
+      }
+    }
+  }
+}
@@ -31,7 +31,10 @@ import co.cask.cdap.common.service.RetryStrategy;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.messaging.data.MessageId;
 import co.cask.cdap.proto.id.TopicId;
+import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
+import org.apache.twill.common.Threads;
+import org.apache.twill.internal.ServiceListenerAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,12 +42,21 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.xml.ws.handler.MessageContext;
 
 /**
  * Abstract base class for implementing message polling logic for reading messages from TMS.
  *
+ * The polling loops of all the services run on an executor shared within the process. While a full batch of
+ * messages is being processed, the next batch is fetched in the background. The number of messages fetched in each
+ * batch is adjusted based on the processing time, up to the fetch size given to the constructor.
+ *
  * @param <T> the type that each message will be decoded to.
  */
 public abstract class AbstractMessagingPollingService<T> extends AbstractRetryableScheduledService {
@@ -56,16 +68,50 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
   private final MetricsContext metricsContext;
   private final int fetchSize;
   private final long emptyFetchDelayMillis;
+  private final int subscriberThreads;
   private boolean messageIdInitialized;
   private String messageId;
+  private int fetchLimit;
+  // The shared executors acquired by this service. The polling executor is only acquired if executor() is not
+  // overridden, while the prefetch executor is acquired on the first prefetch, so that it always exists for it.
+  private volatile ScheduledExecutorService pollingExecutor;
+  private volatile ScheduledExecutorService prefetchExecutor;
+  private Future<List<Message>> prefetch;
+  private String prefetchMessageId;
 
+  /**
+   * Constructor.
+   *
+   * @param topicId the topic to consume from
+   * @param metricsContext the {@link MetricsContext} for emitting metrics about the message consumption
+   * @param fetchSize maximum number of messages to fetch in each batch
+   * @param emptyFetchDelayMillis number of milliseconds to sleep after a fetch returns empty result
+   * @param retryStrategy the {@link RetryStrategy} to determine retry on failure
+   * @param subscriberThreads number of threads of the executor shared by the subscribers in the process, which is
+   *                          used if the executor is created by this service. A non-positive value uses the number
+   *                          of processors, with a minimum of 4
+   */
   protected AbstractMessagingPollingService(TopicId topicId, MetricsContext metricsContext, int fetchSize,
-                                            long emptyFetchDelayMillis, RetryStrategy retryStrategy) {
+                                            long emptyFetchDelayMillis, RetryStrategy retryStrategy,
+                                            int subscriberThreads) {
     super(retryStrategy);
     this.topicId = topicId;
     this.metricsContext = metricsContext;
     this.fetchSize = fetchSize;
     this.emptyFetchDelayMillis = emptyFetchDelayMillis;
+    this.subscriberThreads = subscriberThreads;
+    this.fetchLimit = fetchSize;
+    addListener(new ServiceListenerAdapter() {
+      @Override
+      public void terminated(State from) {
+        releaseExecutor();
+      }
+
+      @Override
+      public void failed(State from, Throwable failure) {
+        releaseExecutor();
+      }
+    }, Threads.SAME_THREAD_EXECUTOR);
   }
 
   /**
@@ -122,6 +168,14 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
     // no-op
   }
 
+  /**
+   * Returns the target number of milliseconds for processing one batch of messages. The number of messages to fetch
+   * is reduced when processing takes longer than this, and increased up to the fetch size when processing is fast.
+   */
+  protected long getTargetProcessingMillis() {
+    return TimeUnit.SECONDS.toMillis(5);
+  }
+
   @Override
   protected boolean shouldRetry(Exception ex) {
     // Log the exception
@@ -138,6 +192,13 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
     return true;
   }
 
+  @Override
+  protected ScheduledExecutorService executor() {
+    // Use the shared executor instead of having a thread per service
+    pollingExecutor = SubscriberExecutor.acquire(subscriberThreads);
+    return pollingExecutor;
+  }
+
   @Override
   protected final long runTask() throws Exception {
     long delayMillis = fetchAndProcessMessages();
@@ -153,11 +214,16 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
    * Fetching messages from TMS.
    */
   protected List<Message> fetchMessages(@Nullable String messageId) throws TopicNotFoundException, IOException {
+    return fetchMessages(messageId, fetchLimit);
+  }
+
+  private List<Message> fetchMessages(@Nullable String messageId,
+                                      int limit) throws TopicNotFoundException, IOException {
     List<Message> messages = new ArrayList<>();
     LOG.trace("Fetching from topic '{}' with messageId '{}'", topicId, messageId);
     MessageFetcher messageFetcher = getMessagingContext().getMessageFetcher();
     try (CloseableIterator<Message> iterator = messageFetcher.fetch(getTopicId().getNamespace(),
-                                                                    getTopicId().getTopic(), fetchSize, messageId)) {
+                                                                    getTopicId().getTopic(), limit, messageId)) {
       while (iterator.hasNext() && state() == State.RUNNING) {
         messages.add(iterator.next());
       }
@@ -180,15 +246,33 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
     long startTime = System.currentTimeMillis();
 
     // Collects batch of messages for processing.
-    List<Message> messages = fetchMessages(messageId);
+    List<Message> messages = takePrefetch();
+    if (messages == null) {
+      messages = fetchMessages(messageId);
+    }
     metricsContext.gauge("tms.fetch.time.ms", System.currentTimeMillis() - startTime);
     metricsContext.increment("tms.fetch.messages", messages.size());
 
     // Return if stopping or request to sleep for configured number of milliseconds if there is no message fetched.
     if (messages.isEmpty() || state() != State.RUNNING) {
+      // All published messages are consumed
+      metricsContext.gauge("process.lag.ms", 0L);
       return Math.max(0L, emptyFetchDelayMillis - (System.currentTimeMillis() - startTime));
     }
 
+    // If there could be more messages, fetch the next batch while processing the current one.
+    // The prefetched batch is only used if all messages in the current batch are processed.
+    boolean fullBatch = messages.size() >= fetchLimit;
+    String lastMessageId = messages.get(messages.size() - 1).getId();
+    if (fullBatch) {
+      if (prefetchExecutor == null) {
+        prefetchExecutor = SubscriberExecutor.acquire(subscriberThreads);
+      }
+      int limit = fetchLimit;
+      prefetchMessageId = lastMessageId;
+      prefetch = prefetchExecutor.submit(() -> fetchMessages(lastMessageId, limit));
+    }
+
     startTime = System.currentTimeMillis();
 
     MessageIterator iterator = new MessageIterator(messages.iterator());
@@ -201,13 +285,81 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
 
     // Calculate the delay
     if (messageId != null) {
-      metricsContext.gauge("process.delay.ms", endTime - getMessagePublishTime(messageId));
+      long delay = endTime - getMessagePublishTime(messageId);
+      metricsContext.gauge("process.delay.ms", delay);
+      // There is a lag only if there are messages after the ones processed
+      metricsContext.gauge("process.lag.ms", fullBatch || !lastMessageId.equals(messageId) ? delay : 0L);
     }
 
+    adjustFetchLimit(endTime - startTime, fullBatch && lastMessageId.equals(messageId));
+    metricsContext.gauge("tms.fetch.limit", fetchLimit);
+
     // Poll again immediately
     return 0L;
   }
 
+  /**
+   * Returns the prefetched batch of messages if it was fetched from the current message id, otherwise returns
+   * {@code null}.
+   */
+  @Nullable
+  private List<Message> takePrefetch() throws TopicNotFoundException, IOException, InterruptedException {
+    Future<List<Message>> prefetch = this.prefetch;
+    String prefetchMessageId = this.prefetchMessageId;
+    this.prefetch = null;
+    this.prefetchMessageId = null;
+
+    if (prefetch == null) {
+      return null;
+    }
+    if (!Objects.equals(messageId, prefetchMessageId)) {
+      prefetch.cancel(true);
+      return null;
+    }
+    // Fetch in the current thread if the prefetch hasn't started. This avoids waiting for a task that is queued in
+    // the shared executor, which can be occupied by other services waiting for their prefetches.
+    if (prefetch.cancel(false)) {
+      return null;
+    }
+    try {
+      return prefetch.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
+      throw Throwables.propagate(cause);
+    }
+  }
+
+  /**
+   * Adjusts the number of messages to fetch in the next batch based on the time took to process the current batch.
+   *
+   * @param processMillis the time in milliseconds took to process the current batch
+   * @param canGrow {@code true} to allow increasing the fetch limit
+   */
+  private void adjustFetchLimit(long processMillis, boolean canGrow) {
+    long targetMillis = getTargetProcessingMillis();
+    if (processMillis > targetMillis) {
+      fetchLimit = Math.max(1, fetchLimit / 2);
+    } else if (canGrow && processMillis < targetMillis / 2) {
+      fetchLimit = (int) Math.min(fetchSize, fetchLimit * 2L);
+    }
+  }
+
+  private void releaseExecutor() {
+    Future<List<Message>> prefetch = this.prefetch;
+    if (prefetch != null) {
+      prefetch.cancel(true);
+    }
+    if (pollingExecutor != null) {
+      pollingExecutor = null;
+      SubscriberExecutor.release();
+    }
+    if (prefetchExecutor != null) {
+      prefetchExecutor = null;
+      SubscriberExecutor.release();
+    }
+  }
+
   /**
    * Returns the publish time encoded in the given message id.
    *
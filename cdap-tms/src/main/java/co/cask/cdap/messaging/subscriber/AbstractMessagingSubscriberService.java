@@ -53,11 +53,13 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractMess
    * @param emptyFetchDelayMillis number of milliseconds to sleep after a fetch returns empty result
    * @param retryStrategy the {@link RetryStrategy} to determine retry on failure
    * @param metricsContext the {@link MetricsContext} for emitting metrics about the message consumption.
+   * @param subscriberThreads number of threads of the executor shared by the subscribers in the process
    */
   protected AbstractMessagingSubscriberService(TopicId topicId, int fetchSize,
                                                int txTimeoutSeconds, long emptyFetchDelayMillis,
-                                               RetryStrategy retryStrategy, MetricsContext metricsContext) {
-    super(topicId, metricsContext, fetchSize, emptyFetchDelayMillis, retryStrategy);
+                                               RetryStrategy retryStrategy, MetricsContext metricsContext,
+                                               int subscriberThreads) {
+    super(topicId, metricsContext, fetchSize, emptyFetchDelayMillis, retryStrategy, subscriberThreads);
     this.txTimeoutSeconds = txTimeoutSeconds;
   }
 
@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.subscriber;
+
+import org.apache.twill.common.Threads;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import javax.annotation.Nullable;
+
+/**
+ * Holds the {@link ScheduledExecutorService} that is shared by all the messaging subscribers in the same process,
+ * so that the polling loops of many topic subscriptions are multiplexed over a small thread pool instead of each
+ * having its own thread. The executor is created when the first subscriber acquires it and is shut down after the
+ * last subscriber releases it.
+ */
+final class SubscriberExecutor {
+
+  /**
+   * Default number of threads in the shared pool. The subscribers spend most of the time blocking on TMS and
+   * transactions, hence it is not bounded by the number of cores.
+   */
+  static final int DEFAULT_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+  @Nullable
+  private static ScheduledExecutorService executor;
+  private static int refCount;
+
+  private SubscriberExecutor() {
+    // no-op
+  }
+
+  /**
+   * Returns the shared executor. Every call must be paired with a call to {@link #release()}. The returned executor
+   * must not be shut down by the caller.
+   *
+   * @param threads number of threads of the executor if it is created by this call. A non-positive value uses
+   *                {@link #DEFAULT_THREADS}
+   */
+  static synchronized ScheduledExecutorService acquire(int threads) {
+    if (executor == null) {
+      ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+        threads > 0 ? threads : DEFAULT_THREADS, Threads.createDaemonThreadFactory("messaging-subscriber-%d"));
+      executor.setRemoveOnCancelPolicy(true);
+      SubscriberExecutor.executor = executor;
+    }
+    refCount++;
+    return executor;
+  }
+
+  /**
+   * Releases the shared executor acquired through {@link #acquire()}.
+   */
+  static synchronized void release() {
+    if (refCount > 0 && --refCount == 0 && executor != null) {
+      executor.shutdown();
+      executor = null;
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016-2018 Cask Data, Inc.
+ * Copyright © 2016-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -26,6 +26,7 @@ import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.guice.ConfigModule;
 import co.cask.cdap.common.guice.InMemoryDiscoveryModule;
 import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
+import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.MessagingService;
 import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.StoreRequest;
@@ -596,4 +597,125 @@ public class MessagingHttpServiceTest {
                           .map(RawMessage::getPayload)
                           .map(Bytes::toString).collect(Collectors.toList()));
   }
+
+  @Test
+  public void testPartitions() throws Exception {
+    TopicId topicId = new NamespaceId("ns1").topic("testPartitions");
+    client.createTopic(new TopicMetadata(topicId, TopicMetadata.PARTITIONS_KEY, 3));
+
+    TopicMetadata metadata = client.getTopic(topicId);
+    Assert.assertEquals(3, metadata.getPartitions());
+    List<TopicId> partitionIds = metadata.getPartitionTopicIds();
+    Assert.assertEquals(3, partitionIds.size());
+    for (TopicId partitionId : partitionIds) {
+      Assert.assertEquals(1, client.getTopic(partitionId).getPartitions());
+    }
+
+    // The number of partitions cannot be changed
+    try {
+      client.updateTopic(new TopicMetadata(topicId, TopicMetadata.PARTITIONS_KEY, 4));
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+
+    // Publish messages with keys to the partitions. Messages with the same key go to the same partition.
+    for (int i = 0; i < 10; i++) {
+      String key = "key" + (i % 4);
+      client.publish(StoreRequestBuilder.of(metadata.getPartitionTopicId(Bytes.toBytes(key)))
+                       .addPayload(key + ":" + i).build());
+    }
+
+    // Each partition has the messages of the keys it owns, in publish order
+    int total = 0;
+    for (TopicId partitionId : partitionIds) {
+      List<RawMessage> messages = new ArrayList<>();
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(partitionId).fetch()) {
+        Iterators.addAll(messages, iterator);
+      }
+      int lastIndex = -1;
+      for (RawMessage message : messages) {
+        String[] parts = Bytes.toString(message.getPayload()).split(":");
+        Assert.assertEquals(partitionId, metadata.getPartitionTopicId(Bytes.toBytes(parts[0])));
+        Assert.assertTrue(Integer.parseInt(parts[1]) > lastIndex);
+        lastIndex = Integer.parseInt(parts[1]);
+      }
+      total += messages.size();
+    }
+    Assert.assertEquals(10, total);
+
+    // Publish to the topic without key, then fetch from all partitions through the topic
+    client.publish(StoreRequestBuilder.of(topicId).addPayload("a").addPayload("b").build());
+    RollbackDetail rollbackDetail = client.publish(StoreRequestBuilder.of(topicId).setTransaction(1L)
+                                                     .addPayload("c").build());
+    Assert.assertNotNull(rollbackDetail);
+    client.rollback(topicId, rollbackDetail);
+
+    Set<String> payloads = new HashSet<>();
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId).setStartTime(0L).fetch()) {
+      while (iterator.hasNext()) {
+        payloads.add(Bytes.toString(iterator.next().getPayload()));
+      }
+    }
+    Assert.assertEquals(13, payloads.size());
+    Assert.assertTrue(payloads.containsAll(Arrays.asList("a", "b", "c")));
+
+    // The limit applies to the merged messages
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId).setStartTime(0L).setLimit(5).fetch()) {
+      Assert.assertEquals(5, Iterators.size(iterator));
+    }
+
+    // Message ids are only unique within a partition, hence fetching through the topic requires a start time
+    byte[] messageId;
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(partitionIds.get(0)).fetch()) {
+      messageId = iterator.next().getId();
+    }
+    for (MessageFetcher fetcher : Arrays.asList(client.prepareFetch(topicId),
+                                                client.prepareFetch(topicId).setStartMessage(messageId, false))) {
+      try {
+        fetcher.fetch().close();
+        Assert.fail("Expected IllegalArgumentException");
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+    }
+
+    // The partition topic name suffix is reserved
+    try {
+      client.createTopic(new TopicMetadata(new NamespaceId("ns1").topic("testPartitions__p3")));
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+
+    // The partitions are not listed and can only be updated or deleted through the topic
+    List<TopicId> topics = client.listTopics(new NamespaceId("ns1"));
+    Assert.assertTrue(topics.contains(topicId));
+    for (TopicId partitionId : partitionIds) {
+      Assert.assertFalse(topics.contains(partitionId));
+      try {
+        client.updateTopic(new TopicMetadata(partitionId, "ttl", "100"));
+        Assert.fail("Expected IllegalArgumentException");
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+      try {
+        client.deleteTopic(partitionId);
+        Assert.fail("Expected IllegalArgumentException");
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+    }
+
+    // Deleting the topic deletes all the partitions
+    client.deleteTopic(topicId);
+    for (TopicId partitionId : partitionIds) {
+      try {
+        client.getTopic(partitionId);
+        Assert.fail("Expected TopicNotFoundException");
+      } catch (TopicNotFoundException e) {
+        // Expected
+      }
+    }
+  }
 }
@@ -0,0 +1,284 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.subscriber;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.AbstractCloseableIterator;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.api.messaging.Message;
+import co.cask.cdap.api.messaging.MessageFetcher;
+import co.cask.cdap.api.messaging.MessagePublisher;
+import co.cask.cdap.api.messaging.MessagingContext;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.common.service.RetryStrategies;
+import co.cask.cdap.common.utils.ImmutablePair;
+import co.cask.cdap.common.utils.Tasks;
+import co.cask.cdap.messaging.data.MessageId;
+import co.cask.cdap.proto.id.NamespaceId;
+import com.google.common.base.Charsets;
+import org.apache.twill.common.Threads;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Unit tests for {@link AbstractMessagingPollingService}.
+ */
+public class AbstractMessagingPollingServiceTest {
+
+  private static final int SUBSCRIBER_THREADS = 3;
+
+  @Test
+  public void testConsumeAll() throws Exception {
+    List<Message> messages = createMessages(1000);
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+
+    // Multiple services share the same executor
+    List<TestPollingService> services = new ArrayList<>();
+    for (int i = 0; i < SUBSCRIBER_THREADS * 2; i++) {
+      services.add(new TestPollingService(messages, 10, Integer.MAX_VALUE, threads));
+    }
+    services.forEach(TestPollingService::startAndWait);
+    try {
+      for (TestPollingService service : services) {
+        Tasks.waitFor(messages.size(), () -> service.getProcessed().size(), 10, TimeUnit.SECONDS);
+        Assert.assertEquals(getPayloads(messages), service.getProcessed());
+      }
+    } finally {
+      services.forEach(TestPollingService::stopAndWait);
+    }
+
+    Assert.assertTrue(threads.size() <= SUBSCRIBER_THREADS);
+    for (String thread : threads) {
+      Assert.assertTrue(thread.startsWith("messaging-subscriber-"));
+    }
+  }
+
+  @Test
+  public void testPartialProcessing() throws Exception {
+    List<Message> messages = createMessages(100);
+
+    // Only part of each batch is processed. The prefetched batches must not be used.
+    TestPollingService service = new TestPollingService(messages, 10, 3, ConcurrentHashMap.newKeySet());
+    service.startAndWait();
+    try {
+      Tasks.waitFor(messages.size(), () -> service.getProcessed().size(), 10, TimeUnit.SECONDS);
+      Assert.assertEquals(getPayloads(messages), service.getProcessed());
+    } finally {
+      service.stopAndWait();
+    }
+  }
+
+  @Test
+  public void testOverrideExecutor() throws Exception {
+    List<Message> messages = createMessages(100);
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+
+    // A service that polls on its own executor still prefetches full batches
+    ScheduledExecutorService executor =
+      Executors.newSingleThreadScheduledExecutor(Threads.createDaemonThreadFactory("own-executor"));
+    TestPollingService service = new TestPollingService(messages, 10, Integer.MAX_VALUE, threads) {
+      @Override
+      protected ScheduledExecutorService executor() {
+        return executor;
+      }
+    };
+    service.startAndWait();
+    try {
+      Tasks.waitFor(messages.size(), () -> service.getProcessed().size(), 10, TimeUnit.SECONDS);
+      Assert.assertEquals(getPayloads(messages), service.getProcessed());
+    } finally {
+      service.stopAndWait();
+      executor.shutdownNow();
+    }
+    Assert.assertEquals(Collections.singleton("own-executor"), threads);
+  }
+
+  private List<Message> createMessages(int count) {
+    List<Message> messages = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < count; i++) {
+      byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
+      MessageId.putRawId(now, (short) i, 0L, (short) 0, rawId, 0);
+      messages.add(new TestMessage(Bytes.toHexString(rawId), "message" + i));
+    }
+    return Collections.unmodifiableList(messages);
+  }
+
+  private List<String> getPayloads(List<Message> messages) {
+    List<String> payloads = new ArrayList<>();
+    for (Message message : messages) {
+      payloads.add(message.getPayloadAsString());
+    }
+    return payloads;
+  }
+
+  /**
+   * A {@link AbstractMessagingPollingService} that records the processed messages.
+   */
+  private static class TestPollingService extends AbstractMessagingPollingService<String> {
+
+    private final List<Message> messages;
+    private final int maxProcess;
+    private final Set<String> threads;
+    private final List<String> processed;
+
+    TestPollingService(List<Message> messages, int fetchSize, int maxProcess, Set<String> threads) {
+      super(NamespaceId.SYSTEM.topic("test"), new NoopMetricsContext(), fetchSize, 10L,
+            RetryStrategies.fixDelay(10, TimeUnit.MILLISECONDS), SUBSCRIBER_THREADS);
+      this.messages = messages;
+      this.maxProcess = maxProcess;
+      this.threads = threads;
+      this.processed = new CopyOnWriteArrayList<>();
+    }
+
+    List<String> getProcessed() {
+      return processed;
+    }
+
+    @Override
+    protected MessagingContext getMessagingContext() {
+      return new TestMessagingContext(messages);
+    }
+
+    @Override
+    protected String decodeMessage(Message message) {
+      return message.getPayloadAsString();
+    }
+
+    @Nullable
+    @Override
+    protected String loadMessageId() {
+      return null;
+    }
+
+    @Nullable
+    @Override
+    protected String processMessages(Iterator<ImmutablePair<String, String>> messages) {
+      threads.add(Thread.currentThread().getName());
+      String messageId = null;
+      for (int i = 0; i < maxProcess && messages.hasNext(); i++) {
+        ImmutablePair<String, String> message = messages.next();
+        processed.add(message.getSecond());
+        messageId = message.getFirst();
+      }
+      return messageId;
+    }
+  }
+
+  /**
+   * A {@link MessagingContext} that fetches from a fixed list of messages.
+   */
+  private static final class TestMessagingContext implements MessagingContext {
+
+    private final List<Message> messages;
+
+    TestMessagingContext(List<Message> messages) {
+      this.messages = messages;
+    }
+
+    @Override
+    public MessagePublisher getMessagePublisher() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MessagePublisher getDirectMessagePublisher() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MessageFetcher getMessageFetcher() {
+      return new MessageFetcher() {
+        @Override
+        public CloseableIterator<Message> fetch(String namespace, String topic, int limit, long timestamp) {
+          throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CloseableIterator<Message> fetch(String namespace, String topic, int limit,
+                                                @Nullable String afterMessageId) {
+          int start = 0;
+          if (afterMessageId != null) {
+            while (!messages.get(start).getId().equals(afterMessageId)) {
+              start++;
+            }
+            start++;
+          }
+          Iterator<Message> iterator = messages.subList(start, Math.min(messages.size(), start + limit)).iterator();
+          return new AbstractCloseableIterator<Message>() {
+            @Override
+            protected Message computeNext() {
+              return iterator.hasNext() ? iterator.next() : endOfData();
+            }
+
+            @Override
+            public void close() {
+              // no-op
+            }
+          };
+        }
+      };
+    }
+  }
+
+  /**
+   * A {@link Message} with a string payload.
+   */
+  private static final class TestMessage implements Message {
+
+    private final String id;
+    private final String payload;
+
+    TestMessage(String id, String payload) {
+      this.id = id;
+      this.payload = payload;
+    }
+
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @Override
+    public String getPayloadAsString(Charset charset) {
+      return payload;
+    }
+
+    @Override
+    public String getPayloadAsString() {
+      return payload;
+    }
+
+    @Override
+    public byte[] getPayload() {
+      return payload.getBytes(Charsets.UTF_8);
+    }
+  }
+}
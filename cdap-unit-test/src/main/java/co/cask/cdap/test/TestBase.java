@@ -479,6 +479,7 @@ public class TestBase {
     }
     namespaceAdmin.delete(NamespaceId.DEFAULT);
     authorizerInstantiator.close();
+    previewManager.close();
 
     if (programScheduler instanceof Service) {
       ((Service) programScheduler).stopAndWait();
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 Cask Data, Inc.
+ * Copyright 2015-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -49,6 +49,17 @@ public interface MetricStore {
    */
   Collection<MetricTimeSeries> query(MetricDataQuery query);
 
+  /**
+   * Computes the metric data of the resolutions that are not written by {@link #add(Collection)} from the metric
+   * data of the finer resolutions. It should be called periodically and by one caller at a time.
+   *
+   * @param processedUntil timestamp in seconds before which all metric values have been added to the store.
+   *                       Intervals that end after it are recomputed by later calls.
+   */
+  default void rollup(long processedUntil) {
+    // no-op if all resolutions are written when metric values are added
+  }
+
   /**
    * Deletes all metric data before given timestamp. Used for applying TTL policy.
    *
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2017 Cask Data, Inc.
+ * Copyright © 2017-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -49,6 +49,7 @@ final class LogFileManager implements Flushable, Syncable {
   private final String dirPermissions;
   private final String filePermissions;
   private final int syncIntervalBytes;
+  private final LogFileOutputStream.Format fileFormat;
   private final long maxLifetimeMillis;
   private final long maxFileSizeInBytes;
   private final Map<LogPathIdentifier, LogFileOutputStream> outputStreamMap;
@@ -58,11 +59,20 @@ final class LogFileManager implements Flushable, Syncable {
   LogFileManager(String dirPermissions, String filePermissions,
                  long maxFileLifetimeMs, long maxFileSizeInBytes, int syncIntervalBytes,
                  FileMetaDataWriter fileMetaDataWriter, LocationFactory locationFactory) {
+    this(dirPermissions, filePermissions, maxFileLifetimeMs, maxFileSizeInBytes, syncIntervalBytes,
+         LogFileOutputStream.Format.AVRO, fileMetaDataWriter, locationFactory);
+  }
+
+  LogFileManager(String dirPermissions, String filePermissions,
+                 long maxFileLifetimeMs, long maxFileSizeInBytes, int syncIntervalBytes,
+                 LogFileOutputStream.Format fileFormat,
+                 FileMetaDataWriter fileMetaDataWriter, LocationFactory locationFactory) {
     this.dirPermissions = dirPermissions;
     this.filePermissions = filePermissions;
     this.maxLifetimeMillis = maxFileLifetimeMs;
     this.maxFileSizeInBytes = maxFileSizeInBytes;
     this.syncIntervalBytes = syncIntervalBytes;
+    this.fileFormat = fileFormat;
     this.fileMetaDataWriter = fileMetaDataWriter;
     this.logsDirectoryLocation = locationFactory.create("logs");
     this.outputStreamMap = new HashMap<>();
@@ -92,17 +102,17 @@ final class LogFileManager implements Flushable, Syncable {
                                                  long timestamp) throws IOException {
     TimeStampLocation location = createLocation(identifier);
     LogFileOutputStream logFileOutputStream = new LogFileOutputStream(
-      location.getLocation(), filePermissions, syncIntervalBytes, location.getTimeStamp(), new Closeable() {
+      location.getLocation(), fileFormat, filePermissions, syncIntervalBytes, location.getTimeStamp(), new Closeable() {
       @Override
       public void close() throws IOException {
         outputStreamMap.remove(identifier);
       }
     });
     logFileOutputStream.flush();
-    LOG.info("Created Avro file at {}", location);
+    LOG.info("Created log file at {}", location);
 
-    // we write meta data after creating output stream, as we want to avoid having meta data for zero-length avro file.
-    // LogFileOutputStream creation writes the schema to the avro file. if meta data write fails,
+    // we write meta data after creating output stream, as we want to avoid having meta data for zero-length log file.
+    // LogFileOutputStream creation writes the file header to the log file. if meta data write fails,
     // we then close output stream and delete the file
     try {
       fileMetaDataWriter.writeMetaData(identifier, timestamp, location.getTimeStamp(), location.getLocation());
@@ -224,7 +234,7 @@ final class LogFileManager implements Flushable, Syncable {
         .append(logPathIdentifier.getPathId2());
     ensureDirectoryCheck(contextLocation);
 
-    String fileName = String.format("%s.avro", currentTime);
+    String fileName = String.format("%s.%s", currentTime, fileFormat.getFileExtension());
     return new TimeStampLocation(contextLocation.append(fileName), currentTime);
   }
 
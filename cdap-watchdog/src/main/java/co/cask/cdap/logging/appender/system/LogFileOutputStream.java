@@ -1,5 +1,5 @@
 /*
- * Copyright © 2017 Cask Data, Inc.
+ * Copyright © 2017-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -21,6 +21,8 @@ import co.cask.cdap.common.io.ByteBuffers;
 import co.cask.cdap.common.io.Syncable;
 import co.cask.cdap.logging.serialize.LoggingEvent;
 import co.cask.cdap.logging.serialize.LoggingEventSerializer;
+import co.cask.cdap.logging.write.ColumnarLogFileWriter;
+import co.cask.cdap.logging.write.ColumnarLogFormat;
 import com.google.common.io.Closeables;
 import org.apache.avro.Schema;
 import org.apache.avro.file.DataFileWriter;
@@ -35,6 +37,7 @@ import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
 
 /**
  * Represents output stream for a log file.
@@ -46,17 +49,44 @@ import java.nio.ByteBuffer;
 class LogFileOutputStream implements Closeable, Flushable, Syncable {
   private static final Logger LOG = LoggerFactory.getLogger(LogFileOutputStream.class);
 
+  /**
+   * The formats a log file can be written in.
+   */
+  enum Format {
+    AVRO("avro"),
+    COLUMNAR(ColumnarLogFormat.FILE_EXTENSION);
+
+    private final String fileExtension;
+
+    Format(String fileExtension) {
+      this.fileExtension = fileExtension;
+    }
+
+    String getFileExtension() {
+      return fileExtension;
+    }
+  }
+
   private final Location location;
   private final long createTime;
   private final Closeable closeable;
   private final LoggingEventSerializer serializer;
 
   private OutputStream outputStream;
+  // Only one of the writers is used, depending on the file format
+  @Nullable
   private DataFileWriter<GenericRecord> dataFileWriter;
+  @Nullable
+  private ColumnarLogFileWriter columnarWriter;
   private long fileSize;
 
   LogFileOutputStream(Location location, String filePermissions,
                       int syncIntervalBytes, long createTime, Closeable closeable) throws IOException {
+    this(location, Format.AVRO, filePermissions, syncIntervalBytes, createTime, closeable);
+  }
+
+  LogFileOutputStream(Location location, Format format, String filePermissions,
+                      int syncIntervalBytes, long createTime, Closeable closeable) throws IOException {
     this.location = location;
     this.closeable = closeable;
     this.serializer = new LoggingEventSerializer();
@@ -65,9 +95,13 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
     try {
       this.outputStream =
         filePermissions.isEmpty() ? location.getOutputStream() : location.getOutputStream(filePermissions);
-      this.dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema));
-      this.dataFileWriter.create(schema, outputStream);
-      this.dataFileWriter.setSyncInterval(syncIntervalBytes);
+      if (format == Format.COLUMNAR) {
+        this.columnarWriter = new ColumnarLogFileWriter(outputStream, syncIntervalBytes);
+      } else {
+        this.dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema));
+        this.dataFileWriter.create(schema, outputStream);
+        this.dataFileWriter.setSyncInterval(syncIntervalBytes);
+      }
       this.createTime = createTime;
       this.fileSize = 0;
     } catch (IOException e) {
@@ -81,7 +115,12 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
     return location;
   }
 
+  @SuppressWarnings("ConstantConditions")
   void append(ILoggingEvent event) throws IOException {
+    if (columnarWriter != null) {
+      columnarWriter.append(event);
+      return;
+    }
     // If the event is already a LoggingEvent, we don't need to re-encode.
     if (event instanceof LoggingEvent) {
       ByteBuffer encoded = ((LoggingEvent) event).getEncoded();
@@ -113,8 +152,9 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   }
 
   @Override
+  @SuppressWarnings("ConstantConditions")
   public void flush() throws IOException {
-    fileSize = dataFileWriter.sync();
+    fileSize = columnarWriter != null ? columnarWriter.sync() : dataFileWriter.sync();
   }
 
   @Override
@@ -131,7 +171,11 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   public void close() throws IOException {
     LOG.trace("Closing file {}", location);
     try {
-      dataFileWriter.close();
+      if (columnarWriter != null) {
+        columnarWriter.close();
+      } else {
+        dataFileWriter.close();
+      }
     } finally {
       closeable.close();
     }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -31,7 +31,8 @@ public class LogLevelExpression implements Filter {
 
   @Override
   public boolean match(ILoggingEvent event) {
-    return event.getLevel().isGreaterOrEqual(getLevel());
+    Level eventLevel = event.getLevel();
+    return eventLevel != null && eventLevel.isGreaterOrEqual(getLevel());
   }
 
   public Level getLevel() {
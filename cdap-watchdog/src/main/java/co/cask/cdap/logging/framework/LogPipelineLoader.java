@@ -224,6 +224,7 @@ public class LogPipelineLoader {
     // The list of properties that can be overridden per pipeline configuration
     Set<String> keys = ImmutableSet.of(
       Constants.Logging.PIPELINE_BUFFER_SIZE,
+      Constants.Logging.PIPELINE_MEMORY_BUFFER_SIZE,
       Constants.Logging.PIPELINE_EVENT_DELAY_MS,
       Constants.Logging.PIPELINE_KAFKA_FETCH_SIZE,
       Constants.Logging.PIPELINE_CHECKPOINT_INTERVAL_MS,
@@ -42,6 +42,7 @@ import org.apache.twill.discovery.DiscoveryServiceClient;
 import org.apache.twill.kafka.client.BrokerService;
 import org.apache.twill.zookeeper.ZKClient;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -89,12 +90,16 @@ public class DistributedLogFramework extends ResourceBalancerService {
       final AppenderContext context = pipelineSpec.getContext();
 
       long bufferSize = getBufferSize(pipelineCount, cConf, partitions.size());
+      long memoryBufferSize = cConf.getLong(Constants.Logging.PIPELINE_MEMORY_BUFFER_SIZE);
       final String topic = cConf.get(Constants.Logging.KAFKA_TOPIC);
       final KafkaPipelineConfig config = new KafkaPipelineConfig(
         topic, partitions, bufferSize,
         cConf.getLong(Constants.Logging.PIPELINE_EVENT_DELAY_MS),
         cConf.getInt(Constants.Logging.PIPELINE_KAFKA_FETCH_SIZE),
-        cConf.getLong(Constants.Logging.PIPELINE_CHECKPOINT_INTERVAL_MS)
+        cConf.getLong(Constants.Logging.PIPELINE_CHECKPOINT_INTERVAL_MS),
+        memoryBufferSize > 0 ? memoryBufferSize : bufferSize,
+        // Each pipeline has its own spill directory, so that it only deletes its own stale files on start
+        memoryBufferSize > 0 ? new File(cConf.get(Constants.Logging.PIPELINE_SPILL_DIR), context.getName()) : null
       );
 
       RetryStrategy retryStrategy = RetryStrategies.fromConfiguration(cConf, "system.log.process.");
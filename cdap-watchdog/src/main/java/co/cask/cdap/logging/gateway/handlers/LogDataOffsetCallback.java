@@ -16,6 +16,7 @@
 
 package co.cask.cdap.logging.gateway.handlers;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.classic.spi.ThrowableProxyUtil;
 import co.cask.cdap.logging.read.LogEvent;
@@ -52,7 +53,8 @@ public class LogDataOffsetCallback extends AbstractJSONCallback {
       lineNumber = first.getLineNumber();
       isNativeMethod = first.isNativeMethod();
     }
-    LogData logData = new LogData(event.getTimeStamp(), event.getLevel().toString(), event.getThreadName(),
+    Level level = event.getLevel();
+    LogData logData = new LogData(event.getTimeStamp(), level == null ? null : level.toString(), event.getThreadName(),
                                   className, simpleClassName, lineNumber, event.getFormattedMessage(),
                                   ThrowableProxyUtil.asString(event.getThrowableProxy()), event.getLoggerName(),
                                   event.getMDCPropertyMap(), isNativeMethod);
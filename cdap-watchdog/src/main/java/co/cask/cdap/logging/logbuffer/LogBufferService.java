@@ -48,6 +48,7 @@ import org.apache.twill.common.Cancellable;
 import org.apache.twill.discovery.Discoverable;
 import org.apache.twill.discovery.DiscoveryService;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -158,10 +159,15 @@ public class LogBufferService extends AbstractIdleService {
       CConfiguration cConf = pipelineSpec.getConf();
       AppenderContext context = pipelineSpec.getContext();
       long bufferSize = getBufferSize(pipelineCount, cConf);
+      long memoryBufferSize = cConf.getLong(Constants.Logging.PIPELINE_MEMORY_BUFFER_SIZE);
+      // The pipeline deletes the stale files in its spill directory when it starts
+      File spillDir = new File(cConf.get(Constants.Logging.PIPELINE_SPILL_DIR), context.getName());
       LogBufferPipelineConfig config =
         new LogBufferPipelineConfig(bufferSize, cConf.getLong(Constants.Logging.PIPELINE_EVENT_DELAY_MS),
                                     cConf.getLong(Constants.Logging.PIPELINE_CHECKPOINT_INTERVAL_MS),
-                                    cConf.getLong(Constants.LogBuffer.LOG_BUFFER_PIPELINE_BATCH_SIZE, 1000));
+                                    cConf.getLong(Constants.LogBuffer.LOG_BUFFER_PIPELINE_BATCH_SIZE, 1000),
+                                    memoryBufferSize > 0 ? memoryBufferSize : bufferSize,
+                                    memoryBufferSize > 0 ? spillDir : null);
 
       CheckpointManager checkpointManager = checkpointManagerFactory.create(pipelineSpec.getCheckpointPrefix(),
                                                                             CheckpointManagerFactory.Type.LOG_BUFFER);
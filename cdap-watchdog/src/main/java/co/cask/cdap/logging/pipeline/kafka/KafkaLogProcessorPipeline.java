@@ -1,5 +1,5 @@
 /*
- * Copyright © 2017 Cask Data, Inc.
+ * Copyright © 2017-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -106,6 +106,7 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
     this.offsets = new Int2LongOpenHashMap();
     this.checkpoints = new Int2ObjectOpenHashMap<>();
     this.eventQueueProcessor = new TimeEventQueueProcessor<>(context, config.getMaxBufferSize(),
+                                                             config.getMaxMemoryBufferSize(), config.getSpillDir(),
                                                              config.getEventDelayMillis(), config.getPartitions());
     this.serializer = new LoggingEventSerializer();
     this.metricsContext = context;
@@ -129,6 +130,7 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
       }
     }
 
+    eventQueueProcessor.deleteStaleSpillFiles();
     context.start();
 
     fetchExecutor = Executors.newFixedThreadPool(
@@ -216,6 +218,7 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
         LOG.warn("Exception raised when closing Kafka consumer.", e);
       }
     }
+    eventQueueProcessor.close();
     LOG.info("Log processor pipeline for {} stopped with latest checkpoints {}", name, checkpoints);
   }
 
@@ -18,7 +18,9 @@ package co.cask.cdap.logging.pipeline.kafka;
 
 import com.google.common.collect.ImmutableSet;
 
+import java.io.File;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * A class to hold configurations for a {@link KafkaLogProcessorPipeline}.
@@ -31,12 +33,23 @@ public final class KafkaPipelineConfig {
   private final long eventDelayMillis;
   private final int kafkaFetchBufferSize;
   private final long checkpointIntervalMillis;
+  private final long maxMemoryBufferSize;
+  private final File spillDir;
 
   public KafkaPipelineConfig(String topic, Set<Integer> partitions, long maxBufferSize,
                              long eventDelayMillis, int kafkaFetchBufferSize, long checkpointIntervalMillis) {
+    this(topic, partitions, maxBufferSize, eventDelayMillis, kafkaFetchBufferSize, checkpointIntervalMillis,
+         maxBufferSize, null);
+  }
+
+  public KafkaPipelineConfig(String topic, Set<Integer> partitions, long maxBufferSize,
+                             long eventDelayMillis, int kafkaFetchBufferSize, long checkpointIntervalMillis,
+                             long maxMemoryBufferSize, @Nullable File spillDir) {
     this.topic = topic;
     this.partitions = ImmutableSet.copyOf(partitions);
     this.maxBufferSize = maxBufferSize;
+    this.maxMemoryBufferSize = maxMemoryBufferSize;
+    this.spillDir = spillDir;
     this.eventDelayMillis = eventDelayMillis;
     this.kafkaFetchBufferSize = kafkaFetchBufferSize;
     this.checkpointIntervalMillis = checkpointIntervalMillis;
@@ -54,6 +67,15 @@ public final class KafkaPipelineConfig {
     return maxBufferSize;
   }
 
+  long getMaxMemoryBufferSize() {
+    return maxMemoryBufferSize;
+  }
+
+  @Nullable
+  File getSpillDir() {
+    return spillDir;
+  }
+
   long getEventDelayMillis() {
     return eventDelayMillis;
   }
@@ -75,6 +97,8 @@ public final class KafkaPipelineConfig {
       ", eventDelayMillis=" + eventDelayMillis +
       ", kafkaFetchBufferSize=" + kafkaFetchBufferSize +
       ", checkpointIntervalMillis=" + checkpointIntervalMillis +
+      ", maxMemoryBufferSize=" + maxMemoryBufferSize +
+      ", spillDir=" + spillDir +
       '}';
   }
 }
@@ -16,6 +16,9 @@
 
 package co.cask.cdap.logging.pipeline.logbuffer;
 
+import java.io.File;
+import javax.annotation.Nullable;
+
 /**
  * Config for log buffer pipeline.
  */
@@ -24,10 +27,19 @@ public class LogBufferPipelineConfig {
   private final long eventDelayMillis;
   private final long checkpointIntervalMillis;
   private final long batchSize;
+  private final long maxMemoryBufferSize;
+  private final File spillDir;
 
   public LogBufferPipelineConfig(long maxBufferSize, long eventDelayMillis, long checkpointIntervalMillis,
                                  long batchSize) {
+    this(maxBufferSize, eventDelayMillis, checkpointIntervalMillis, batchSize, maxBufferSize, null);
+  }
+
+  public LogBufferPipelineConfig(long maxBufferSize, long eventDelayMillis, long checkpointIntervalMillis,
+                                 long batchSize, long maxMemoryBufferSize, @Nullable File spillDir) {
     this.maxBufferSize = maxBufferSize;
+    this.maxMemoryBufferSize = maxMemoryBufferSize;
+    this.spillDir = spillDir;
     this.eventDelayMillis = eventDelayMillis;
     this.checkpointIntervalMillis = checkpointIntervalMillis;
     this.batchSize = batchSize;
@@ -37,6 +49,15 @@ public class LogBufferPipelineConfig {
     return maxBufferSize;
   }
 
+  public long getMaxMemoryBufferSize() {
+    return maxMemoryBufferSize;
+  }
+
+  @Nullable
+  public File getSpillDir() {
+    return spillDir;
+  }
+
   public long getEventDelayMillis() {
     return eventDelayMillis;
   }
@@ -77,6 +77,7 @@ public class LogBufferProcessorPipeline extends AbstractExecutionThreadService {
     this.checkpointManager = checkpointManager;
     this.metricsContext = context;
     this.eventQueueProcessor = new TimeEventQueueProcessor<>(context, config.getMaxBufferSize(),
+                                                             config.getMaxMemoryBufferSize(), config.getSpillDir(),
                                                              config.getEventDelayMillis(), ImmutableSet.of(instanceId));
     this.incomingEventQueue = new ArrayBlockingQueue<>(INCOMING_EVENT_QUEUE_SIZE);
     this.checkpoints = new HashMap<>();
@@ -91,6 +92,7 @@ public class LogBufferProcessorPipeline extends AbstractExecutionThreadService {
     checkpoints.put(0, new MutableLogBufferCheckpoint(checkpoint.getOffset().getFileId(),
                                                       checkpoint.getOffset().getFilePos(),
                                                       checkpoint.getMaxEventTime()));
+    eventQueueProcessor.deleteStaleSpillFiles();
     context.start();
     LOG.info("Log processor pipeline for {} with config {} started with checkpoint {}", name, config, this.checkpoints);
   }
@@ -133,6 +135,7 @@ public class LogBufferProcessorPipeline extends AbstractExecutionThreadService {
     }
 
     persistCheckpoints();
+    eventQueueProcessor.close();
     LOG.info("Log processor pipeline for {} stopped with latest checkpoint {}", name, checkpoints);
   }
 
@@ -16,62 +16,173 @@
 
 package co.cask.cdap.logging.pipeline.queue;
 
+import co.cask.cdap.common.logging.LogSamplers;
+import co.cask.cdap.common.logging.Loggers;
+import co.cask.cdap.common.utils.DirUtils;
+import com.google.common.base.Throwables;
 import it.unimi.dsi.fastutil.ints.Int2ObjectArrayMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
-
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.NoSuchElementException;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
  * A queue for storing time based events with offsets association.
  *
+ * Events are ordered by timestamp, then by partition, then by offset. The ordering is maintained in primitive
+ * arrays instead of a tree of wrapper objects, with the timestamp, partition and size of every event stored in
+ * columns indexed by a slot number. Since events mostly arrive in timestamp order and leave from the head of the
+ * queue, adding and removing events are constant time operations in the common case.
+ *
+ * If an {@link EventCodec} is provided, events that would make the size of the events kept in memory exceed the
+ * memory limit are encoded and written to segment files under the spill directory instead. They are read back
+ * when they are reached by the iterator, and the segment files are deleted once all their events are removed.
+ *
  * @param <EVENT> Type of event stored in the queue.
  * @param <OFFSET> Type of event offset associated with the event.
  */
 @NotThreadSafe
-public final class TimeEventQueue<EVENT, OFFSET extends Comparable<OFFSET>> implements Iterable<EVENT> {
+public final class TimeEventQueue<EVENT, OFFSET extends Comparable<OFFSET>> implements Iterable<EVENT>, Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TimeEventQueue.class);
+  // For outage, only log once per 60 seconds per message.
+  private static final Logger OUTAGE_LOG =
+    Loggers.sampling(LOG, LogSamplers.perMessage(() -> LogSamplers.limitRate(60000)));
+
+  private static final int INITIAL_CAPACITY = 16;
+  private static final long MAX_SEGMENT_SIZE = 64L * 1024 * 1024;
+  private static final String SEGMENT_DIR_PREFIX = "queue";
+
+  private final Int2ObjectMap<PartitionOffsets<OFFSET>> partitionOffsets;
+  private final long maxMemorySize;
+  private final EventCodec<EVENT> codec;
+  private final File spillDir;
+
+  // Columns of the events in the queue, indexed by slot
+  private long[] timestamps;
+  private int[] partitions;
+  private int[] sizes;
+  private Object[] events;
+  private Object[] offsets;
+  // The segment, position and length of the encoded event for spilled events. The segment is -1 for events in memory.
+  private int[] segmentIds;
+  private long[] positions;
+  private int[] lengths;
+
+  // Slots that are not used by any event. Slots from nextSlot onward are never used yet.
+  private int[] freeSlots;
+  private int freeSlotCount;
+  private int nextSlot;
+
+  // The slots of the events in event order, occupying the range [head, tail)
+  private int[] order;
+  private int head;
+  private int tail;
+
+  private final Int2ObjectMap<Segment> segments;
+  private File segmentDir;
+  private Segment writeSegment;
+  private int nextSegmentId;
 
-  private final SortedSet<TimeEvent<EVENT, OFFSET>> events;
-  private final Int2ObjectMap<SortedSet<OFFSET>> partitionOffsets;
   private long totalSize;
+  private long memorySize;
 
   public TimeEventQueue(Iterable<Integer> partitions) {
-    this.events = new TreeSet<>();
-    this.partitionOffsets = new Int2ObjectArrayMap<>();
+    this(partitions, Long.MAX_VALUE, null, null);
+  }
 
+  /**
+   * Creates a queue that writes events to local files when the events kept in memory exceed the given size.
+   *
+   * @param partitions the partitions of the events
+   * @param maxMemorySize the maximum size of the events kept in memory
+   * @param spillDir the directory for writing events that exceed the memory limit, or {@code null} to keep
+   *                 all events in memory
+   * @param codec the {@link EventCodec} for encoding events written to files, or {@code null} to keep all events
+   *              in memory
+   */
+  public TimeEventQueue(Iterable<Integer> partitions, long maxMemorySize,
+                        @Nullable File spillDir, @Nullable EventCodec<EVENT> codec) {
+    if (maxMemorySize < 0) {
+      throw new IllegalArgumentException("Maximum memory size must not be negative: " + maxMemorySize);
+    }
+    this.partitionOffsets = new Int2ObjectArrayMap<>();
     for (int partition : partitions) {
-      partitionOffsets.put(partition, new TreeSet<>());
+      partitionOffsets.put(partition, new PartitionOffsets<>());
     }
+    this.maxMemorySize = spillDir == null || codec == null ? Long.MAX_VALUE : maxMemorySize;
+    this.spillDir = spillDir;
+    this.codec = codec;
+    this.segments = new Int2ObjectOpenHashMap<>();
+
+    this.timestamps = new long[INITIAL_CAPACITY];
+    this.partitions = new int[INITIAL_CAPACITY];
+    this.sizes = new int[INITIAL_CAPACITY];
+    this.events = new Object[INITIAL_CAPACITY];
+    this.offsets = new Object[INITIAL_CAPACITY];
+    this.segmentIds = new int[INITIAL_CAPACITY];
+    this.positions = new long[INITIAL_CAPACITY];
+    this.lengths = new int[INITIAL_CAPACITY];
+    this.freeSlots = new int[INITIAL_CAPACITY];
+    this.order = new int[INITIAL_CAPACITY];
   }
 
   public void add(EVENT event, long eventTimestamp, int eventSize, int partition, OFFSET offset) {
-    SortedSet<OFFSET> offsets = getOffsets(partition);
-    TimeEvent<EVENT, OFFSET> timeEvent = new TimeEvent<>(eventTimestamp, partition, offset, event, eventSize);
-    if (events.add(timeEvent)) {
-      if (!offsets.add(offset)) {
-        events.remove(timeEvent);
-        throw new IllegalArgumentException("Adding different event with the same offset "
-                                             + offset + ", " + event);
-      }
+    PartitionOffsets<OFFSET> partitionOffsets = getOffsets(partition);
+    ensureOrderCapacity();
+    int index = search(eventTimestamp, partition, offset);
+    if (index >= 0) {
+      // The same event is already in the queue
+      return;
+    }
+    if (!partitionOffsets.add(offset)) {
+      throw new IllegalArgumentException("Adding different event with the same offset "
+                                           + offset + ", " + event);
+    }
 
-      totalSize += eventSize;
+    int slot = allocateSlot();
+    timestamps[slot] = eventTimestamp;
+    partitions[slot] = partition;
+    sizes[slot] = eventSize;
+    offsets[slot] = offset;
+    segmentIds[slot] = -1;
+    if (memorySize + eventSize <= maxMemorySize || !spill(slot, event)) {
+      events[slot] = event;
+      memorySize += eventSize;
     }
+    insert(-index - 1, slot);
+    totalSize += eventSize;
   }
 
   /**
    * Returns the event in the queue with the smallest timestamp.
    */
   public EVENT first() {
-    return events.first().getEvent();
+    if (head == tail) {
+      throw new NoSuchElementException();
+    }
+    return getEvent(order[head]);
   }
 
   /**
    * Returns {@code true} if there is no event in the queue.
    */
   public boolean isEmpty() {
-    return events.isEmpty();
+    return head == tail;
   }
 
   /**
@@ -85,7 +196,7 @@ public final class TimeEventQueue<EVENT, OFFSET extends Comparable<OFFSET>> impl
    * Returns the number of events in the queue.
    */
   public int size() {
-    return events.size();
+    return tail - head;
   }
 
   /**
@@ -95,11 +206,18 @@ public final class TimeEventQueue<EVENT, OFFSET extends Comparable<OFFSET>> impl
     return totalSize;
   }
 
+  /**
+   * Returns the size of the events in the queue that are written to files.
+   */
+  public long getSpilledEventSize() {
+    return totalSize - memorySize;
+  }
+
   /**
    * Returns the smallest offset stored for the given partition.
    */
   public OFFSET getSmallestOffset(int partition) {
-    SortedSet<OFFSET> offsets = getOffsets(partition);
+    PartitionOffsets<OFFSET> offsets = getOffsets(partition);
     if (offsets.isEmpty()) {
       throw new IllegalStateException("Queue is empty");
     }
@@ -108,53 +226,82 @@ public final class TimeEventQueue<EVENT, OFFSET extends Comparable<OFFSET>> impl
 
   @Override
   public EventIterator<EVENT, OFFSET> iterator() {
-    final Iterator<TimeEvent<EVENT, OFFSET>> iterator = events.iterator();
     return new EventIterator<EVENT, OFFSET>() {
 
-      private TimeEvent<EVENT, OFFSET> currentEvent;
+      private int cursor = head;
+      private int currentIndex = -1;
 
       @Override
       public boolean hasNext() {
-        return iterator.hasNext();
+        return cursor < tail;
       }
 
       @Override
       public EVENT next() {
-        currentEvent = iterator.next();
-        return currentEvent.getEvent();
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        currentIndex = cursor++;
+        return getEvent(order[currentIndex]);
       }
 
       @Override
       public void remove() {
-        if (currentEvent == null) {
-          throw new IllegalStateException("The next() method must be called first.");
-        }
-        iterator.remove();
-        partitionOffsets.get(currentEvent.getPartition()).remove(currentEvent.getOffset());
-        totalSize -= currentEvent.getEventSize();
-        currentEvent = null;
+        checkCurrent();
+        cursor = removeAt(currentIndex);
+        currentIndex = -1;
       }
 
       @Override
+      @SuppressWarnings("unchecked")
       public OFFSET getOffset() {
-        if (currentEvent == null) {
-          throw new IllegalStateException("The next() method must be called first.");
-        }
-        return currentEvent.getOffset();
+        checkCurrent();
+        return (OFFSET) offsets[order[currentIndex]];
       }
 
       @Override
       public int getPartition() {
-        if (currentEvent == null) {
+        checkCurrent();
+        return partitions[order[currentIndex]];
+      }
+
+      private void checkCurrent() {
+        if (currentIndex < 0) {
           throw new IllegalStateException("The next() method must be called first.");
         }
-        return currentEvent.getPartition();
       }
     };
   }
 
-  private SortedSet<OFFSET> getOffsets(int partition) {
-    SortedSet<OFFSET> offsets = partitionOffsets.get(partition);
+  /**
+   * Deletes all files written by this queue. The queue cannot be used after it is closed.
+   */
+  @Override
+  public void close() throws IOException {
+    for (Segment segment : segments.values()) {
+      segment.close();
+    }
+    segments.clear();
+    writeSegment = null;
+    if (segmentDir != null) {
+      DirUtils.deleteDirectoryContents(segmentDir);
+      segmentDir = null;
+    }
+  }
+
+  /**
+   * Deletes the segment files under the given spill directory that were left by queues which were not closed,
+   * for example because the process was killed. It must not be called while any queue writes to the directory.
+   */
+  public static void deleteSpillFiles(File spillDir) throws IOException {
+    for (File dir : DirUtils.listFiles(spillDir, file -> file.isDirectory()
+      && file.getName().startsWith(SEGMENT_DIR_PREFIX))) {
+      DirUtils.deleteDirectoryContents(dir);
+    }
+  }
+
+  private PartitionOffsets<OFFSET> getOffsets(int partition) {
+    PartitionOffsets<OFFSET> offsets = partitionOffsets.get(partition);
     if (offsets == null) {
       throw new IllegalArgumentException("Partition " + partition +
                                            " is not in allowed partitions " + partitionOffsets.keySet());
@@ -162,6 +309,196 @@ public final class TimeEventQueue<EVENT, OFFSET extends Comparable<OFFSET>> impl
     return offsets;
   }
 
+  /**
+   * Compares the event in the given slot with the given event key, by event time, then by partition, then by offset.
+   * Combination of them are guaranteed to be unique.
+   */
+  @SuppressWarnings("unchecked")
+  private int compare(int slot, long eventTimestamp, int partition, OFFSET offset) {
+    int cmp = Long.compare(timestamps[slot], eventTimestamp);
+    if (cmp != 0) {
+      return cmp;
+    }
+    cmp = Integer.compare(partitions[slot], partition);
+    if (cmp != 0) {
+      return cmp;
+    }
+    return ((OFFSET) offsets[slot]).compareTo(offset);
+  }
+
+  /**
+   * Searches the event with the given key in the event order.
+   *
+   * @return the index of the event in the {@link #order} array if it exists; otherwise {@code -(insertion index) - 1}
+   */
+  private int search(long eventTimestamp, int partition, OFFSET offset) {
+    // Events mostly arrive in time order, hence check the last event first
+    if (head == tail || compare(order[tail - 1], eventTimestamp, partition, offset) < 0) {
+      return -tail - 1;
+    }
+    int low = head;
+    int high = tail - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = compare(order[mid], eventTimestamp, partition, offset);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -low - 1;
+  }
+
+  /**
+   * Makes sure there is space for one more event after the tail of the {@link #order} array.
+   */
+  private void ensureOrderCapacity() {
+    if (tail < order.length) {
+      return;
+    }
+    int size = tail - head;
+    int[] target = size >= order.length / 2 ? new int[order.length * 2] : order;
+    System.arraycopy(order, head, target, 0, size);
+    order = target;
+    head = 0;
+    tail = size;
+  }
+
+  /**
+   * Inserts the given slot at the given index of the {@link #order} array.
+   */
+  private void insert(int index, int slot) {
+    if (index == head && head > 0) {
+      order[--head] = slot;
+      return;
+    }
+    System.arraycopy(order, index, order, index + 1, tail - index);
+    order[index] = slot;
+    tail++;
+  }
+
+  /**
+   * Removes the event at the given index of the {@link #order} array.
+   *
+   * @return the index of the event following the removed event
+   */
+  @SuppressWarnings("unchecked")
+  private int removeAt(int index) {
+    int slot = order[index];
+    int next = index;
+    if (index == head) {
+      head++;
+      next = head;
+    } else {
+      System.arraycopy(order, index + 1, order, index, tail - index - 1);
+      tail--;
+    }
+    if (head == tail) {
+      head = tail = next = 0;
+    }
+
+    partitionOffsets.get(partitions[slot]).remove((OFFSET) offsets[slot]);
+    totalSize -= sizes[slot];
+    if (segmentIds[slot] < 0) {
+      memorySize -= sizes[slot];
+    } else {
+      releaseSegment(segmentIds[slot]);
+    }
+    events[slot] = null;
+    offsets[slot] = null;
+    freeSlots[freeSlotCount++] = slot;
+    return next;
+  }
+
+  private int allocateSlot() {
+    if (freeSlotCount > 0) {
+      return freeSlots[--freeSlotCount];
+    }
+    if (nextSlot == timestamps.length) {
+      int capacity = timestamps.length * 2;
+      timestamps = Arrays.copyOf(timestamps, capacity);
+      partitions = Arrays.copyOf(partitions, capacity);
+      sizes = Arrays.copyOf(sizes, capacity);
+      events = Arrays.copyOf(events, capacity);
+      offsets = Arrays.copyOf(offsets, capacity);
+      segmentIds = Arrays.copyOf(segmentIds, capacity);
+      positions = Arrays.copyOf(positions, capacity);
+      lengths = Arrays.copyOf(lengths, capacity);
+      freeSlots = Arrays.copyOf(freeSlots, capacity);
+    }
+    return nextSlot++;
+  }
+
+  @SuppressWarnings("unchecked")
+  private EVENT getEvent(int slot) {
+    if (segmentIds[slot] < 0) {
+      return (EVENT) events[slot];
+    }
+    Segment segment = segments.get(segmentIds[slot]);
+    try {
+      return codec.decode(segment.read(positions[slot], lengths[slot]));
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Writes the given event to the current segment file.
+   *
+   * @return {@code true} if the event was written, {@code false} if it has to be kept in memory
+   */
+  private boolean spill(int slot, EVENT event) {
+    try {
+      byte[] encoded = codec.encode(event);
+      Segment segment = getWriteSegment();
+      segmentIds[slot] = segment.id;
+      positions[slot] = segment.append(encoded);
+      lengths[slot] = encoded.length;
+      return true;
+    } catch (IOException e) {
+      OUTAGE_LOG.warn("Failed to write event to spill directory {}. Keeping it in memory.", spillDir, e);
+      segmentIds[slot] = -1;
+      return false;
+    }
+  }
+
+  private Segment getWriteSegment() throws IOException {
+    if (writeSegment != null && writeSegment.size < MAX_SEGMENT_SIZE) {
+      return writeSegment;
+    }
+    if (segmentDir == null) {
+      if (!DirUtils.mkdirs(spillDir)) {
+        throw new IOException("Failed to create spill directory " + spillDir);
+      }
+      segmentDir = Files.createTempDirectory(spillDir.toPath(), SEGMENT_DIR_PREFIX).toFile();
+    }
+    int id = nextSegmentId++;
+    writeSegment = new Segment(id, new File(segmentDir, "segment." + id));
+    segments.put(id, writeSegment);
+    return writeSegment;
+  }
+
+  private void releaseSegment(int id) {
+    Segment segment = segments.get(id);
+    if (--segment.events > 0) {
+      return;
+    }
+    if (segment == writeSegment) {
+      // Reuse the file space of the current segment
+      segment.size = 0;
+      return;
+    }
+    segments.remove(id);
+    try {
+      segment.close();
+    } catch (IOException e) {
+      LOG.warn("Failed to delete spill file {}", segment.file, e);
+    }
+  }
+
   /**
    * An {@link Iterator} for iterating over events inserted to the {@link TimeEventQueue}.
    *
@@ -182,58 +519,194 @@ public final class TimeEventQueue<EVENT, OFFSET extends Comparable<OFFSET>> impl
   }
 
   /**
-   * This class represent an event stored in the event set.
+   * Encodes and decodes events written to files by the {@link TimeEventQueue}.
+   *
+   * @param <EVENT> Type of event stored in the queue.
+   */
+  public interface EventCodec<EVENT> {
+
+    /**
+     * Encodes the given event to bytes.
+     */
+    byte[] encode(EVENT event) throws IOException;
+
+    /**
+     * Decodes an event from the given buffer, which contains the bytes returned by {@link #encode(Object)}.
+     */
+    EVENT decode(ByteBuffer buffer) throws IOException;
+  }
+
+  /**
+   * The offsets of the events of one partition in the queue, sorted in an array. Removed offsets are only marked
+   * as removed, unless they are at either end of the array, so that removing an offset doesn't shift the array.
    */
-  private static final class TimeEvent<EVENT, OFFSET extends Comparable<OFFSET>>
-                        implements Comparable<TimeEvent<EVENT, OFFSET>> {
-    private final long eventTime;
-    private final int partition;
-    private final OFFSET offset;
-    private final EVENT event;
-    private final int eventSize;
+  private static final class PartitionOffsets<OFFSET extends Comparable<OFFSET>> {
+
+    // The offsets in sorted order, occupying the range [head, tail). The first and the last offsets are never removed.
+    private Object[] offsets = new Object[INITIAL_CAPACITY];
+    private boolean[] removed = new boolean[INITIAL_CAPACITY];
+    private int head;
+    private int tail;
+    private int size;
 
-    TimeEvent(long eventTime, int partition, OFFSET offset, EVENT event, int eventSize) {
-      this.eventTime = eventTime;
-      this.partition = partition;
-      this.offset = offset;
-      this.event = event;
-      this.eventSize = eventSize;
+    boolean isEmpty() {
+      return size == 0;
     }
 
-    long getEventTime() {
-      return eventTime;
+    @SuppressWarnings("unchecked")
+    OFFSET first() {
+      return (OFFSET) offsets[head];
     }
 
-    int getPartition() {
-      return partition;
+    /**
+     * Adds the given offset.
+     *
+     * @return {@code true} if the offset was added, {@code false} if the offset already exists
+     */
+    boolean add(OFFSET offset) {
+      ensureCapacity();
+      int index = search(offset);
+      if (index >= 0) {
+        if (!removed[index]) {
+          return false;
+        }
+        removed[index] = false;
+        size++;
+        return true;
+      }
+      index = -index - 1;
+      if (index == head && head > 0) {
+        index = --head;
+      } else {
+        System.arraycopy(offsets, index, offsets, index + 1, tail - index);
+        System.arraycopy(removed, index, removed, index + 1, tail - index);
+        tail++;
+      }
+      offsets[index] = offset;
+      removed[index] = false;
+      size++;
+      return true;
     }
 
-    OFFSET getOffset() {
-      return offset;
+    void remove(OFFSET offset) {
+      int index = search(offset);
+      if (index < 0 || removed[index]) {
+        return;
+      }
+      removed[index] = true;
+      size--;
+      while (head < tail && removed[head]) {
+        offsets[head] = null;
+        removed[head++] = false;
+      }
+      while (tail > head && removed[tail - 1]) {
+        offsets[--tail] = null;
+        removed[tail] = false;
+      }
+      if (head == tail) {
+        head = tail = 0;
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int search(OFFSET offset) {
+      // Offsets mostly arrive in increasing order, hence check the last offset first
+      if (head == tail || ((OFFSET) offsets[tail - 1]).compareTo(offset) < 0) {
+        return -tail - 1;
+      }
+      int low = head;
+      int high = tail - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int cmp = ((OFFSET) offsets[mid]).compareTo(offset);
+        if (cmp < 0) {
+          low = mid + 1;
+        } else if (cmp > 0) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -low - 1;
     }
 
-    EVENT getEvent() {
-      return event;
+    /**
+     * Makes sure there is space for one more offset after the tail, by dropping removed offsets or growing the array.
+     */
+    private void ensureCapacity() {
+      if (tail < offsets.length) {
+        return;
+      }
+      Object[] targetOffsets = size >= offsets.length / 2 ? new Object[offsets.length * 2] : offsets;
+      boolean[] targetRemoved = targetOffsets == offsets ? removed : new boolean[targetOffsets.length];
+      int count = 0;
+      for (int i = head; i < tail; i++) {
+        if (!removed[i]) {
+          targetOffsets[count] = offsets[i];
+          targetRemoved[count++] = false;
+        }
+      }
+      Arrays.fill(targetOffsets, count, targetOffsets.length, null);
+      Arrays.fill(targetRemoved, count, targetRemoved.length, false);
+      offsets = targetOffsets;
+      removed = targetRemoved;
+      head = 0;
+      tail = count;
     }
+  }
 
-    int getEventSize() {
-      return eventSize;
+  /**
+   * A file containing encoded events, which is deleted when it is closed.
+   */
+  private static final class Segment implements Closeable {
+
+    private final int id;
+    private final File file;
+    private final FileChannel channel;
+    private long size;
+    private int events;
+
+    Segment(int id, File file) throws IOException {
+      this.id = id;
+      this.file = file;
+      this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+                                      StandardOpenOption.READ, StandardOpenOption.WRITE);
     }
 
-    @Override
-    public int compareTo(TimeEvent<EVENT, OFFSET> other) {
-      // Compare by event time, then by partition, then by offset
-      // Combination of them are guaranteed to be unique.
+    /**
+     * Appends the given bytes to the file.
+     *
+     * @return the position of the bytes in the file
+     */
+    long append(byte[] bytes) throws IOException {
+      long position = size;
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, position + buffer.position());
+      }
+      size += bytes.length;
+      events++;
+      return position;
+    }
 
-      int cmp = Long.compare(eventTime, other.getEventTime());
-      if (cmp != 0) {
-        return cmp;
+    ByteBuffer read(long position, int length) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(length);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, position + buffer.position()) < 0) {
+          throw new EOFException("Unexpected end of spill file " + file + " at position " + position);
+        }
       }
-      cmp = Integer.compare(partition, other.getPartition());
-      if (cmp != 0) {
-        return cmp;
+      buffer.flip();
+      return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        channel.close();
+      } finally {
+        Files.deleteIfExists(file.toPath());
       }
-      return offset.compareTo(other.getOffset());
     }
   }
 }
@@ -23,13 +23,17 @@ import co.cask.cdap.common.logging.LogSamplers;
 import co.cask.cdap.common.logging.Loggers;
 import co.cask.cdap.logging.meta.Checkpoint;
 import co.cask.cdap.logging.pipeline.LogProcessorPipelineContext;
+import co.cask.cdap.logging.serialize.LoggingEventSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * The {@link TimeEventQueue} processor to enqueue the log events to {@link TimeEventQueue}, and process them.
@@ -46,17 +50,35 @@ public class TimeEventQueueProcessor<OFFSET extends Comparable<OFFSET>> {
   private final MetricsContext metricsContext;
   private final long maxBufferSize;
   private final long eventDelayMillis;
+  @Nullable
+  private final File spillDir;
 
   /**
    * Time event queue processor.
    */
   public TimeEventQueueProcessor(LogProcessorPipelineContext context, long maxBufferSize, long eventDelayMillis,
                                  Iterable<Integer> partitions) {
+    this(context, maxBufferSize, maxBufferSize, null, eventDelayMillis, partitions);
+  }
+
+  /**
+   * Time event queue processor that writes buffered events to local files when the events kept in memory exceed
+   * the given memory buffer size.
+   *
+   * @param maxMemoryBufferSize the maximum size of the buffered events kept in memory
+   * @param spillDir the directory for writing buffered events beyond the memory buffer size, or {@code null}
+   *                 to keep all buffered events in memory
+   */
+  public TimeEventQueueProcessor(LogProcessorPipelineContext context, long maxBufferSize, long maxMemoryBufferSize,
+                                 @Nullable File spillDir, long eventDelayMillis, Iterable<Integer> partitions) {
     this.context = context;
     this.maxBufferSize = maxBufferSize;
     this.eventDelayMillis = eventDelayMillis;
     this.metricsContext = context;
-    this.eventQueue = new TimeEventQueue<>(partitions);
+    this.spillDir = maxMemoryBufferSize >= maxBufferSize ? null : spillDir;
+    this.eventQueue = this.spillDir == null
+      ? new TimeEventQueue<>(partitions)
+      : new TimeEventQueue<>(partitions, maxMemoryBufferSize, this.spillDir, new LoggingEventCodec());
   }
 
   /**
@@ -153,6 +175,7 @@ public class TimeEventQueueProcessor<OFFSET extends Comparable<OFFSET>> {
       LOG.warn("Failed to flush in pipeline {}. Will be retried.", context.getName(), e);
     }
     metricsContext.gauge("event.queue.size.bytes", eventQueue.getEventSize());
+    metricsContext.gauge("event.queue.spilled.size.bytes", eventQueue.getSpilledEventSize());
 
     // If no event was appended and the buffer is not full, so just return with 0 events appended.
     if (eventsAppended == 0) {
@@ -173,4 +196,49 @@ public class TimeEventQueueProcessor<OFFSET extends Comparable<OFFSET>> {
   public boolean isQueueEmpty(int partition) {
     return eventQueue.isEmpty(partition);
   }
+
+  /**
+   * Deletes the buffered events left in the spill directory by a previous run of the pipeline that didn't shut down
+   * cleanly. Those events are processed again from the last checkpoint. It must be called before any event is
+   * processed.
+   */
+  public void deleteStaleSpillFiles() {
+    if (spillDir == null) {
+      return;
+    }
+    try {
+      TimeEventQueue.deleteSpillFiles(spillDir);
+    } catch (IOException e) {
+      LOG.warn("Failed to delete stale buffered events of pipeline {} in {}", context.getName(), spillDir, e);
+    }
+  }
+
+  /**
+   * Releases the local files used for buffering events.
+   */
+  public void close() {
+    try {
+      eventQueue.close();
+    } catch (IOException e) {
+      LOG.warn("Failed to delete buffered events of pipeline {}", context.getName(), e);
+    }
+  }
+
+  /**
+   * A {@link TimeEventQueue.EventCodec} for encoding {@link ILoggingEvent} with the {@link LoggingEventSerializer}.
+   */
+  private static final class LoggingEventCodec implements TimeEventQueue.EventCodec<ILoggingEvent> {
+
+    private final LoggingEventSerializer serializer = new LoggingEventSerializer();
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+      return serializer.toBytes(event);
+    }
+
+    @Override
+    public ILoggingEvent decode(ByteBuffer buffer) throws IOException {
+      return serializer.fromBytes(buffer);
+    }
+  }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2017 Cask Data, Inc.
+ * Copyright © 2017-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -46,7 +46,10 @@ import javax.annotation.concurrent.NotThreadSafe;
 public final class LoggingEventSerializer {
 
   private final GenericDatumReader<GenericRecord> datumReader = new GenericDatumReader<>(getAvroSchema());
+  private final GenericDatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(getAvroSchema());
+  private final ByteArrayOutputStream encoderOutputStream = new ByteArrayOutputStream(1024);
   private BinaryDecoder decoder;
+  private BinaryEncoder encoder;
 
   /**
    * Returns the {@link Schema} for logging event, which is the same as {@link LogSchema.LoggingEvent#SCHEMA}.
@@ -59,16 +62,16 @@ public final class LoggingEventSerializer {
    * Encodes a {@link ILoggingEvent} to byte array.
    */
   public byte[] toBytes(ILoggingEvent event) {
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
-    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
-    GenericDatumWriter<GenericRecord> writer = new GenericDatumWriter<>(getAvroSchema());
+    // The datum writer, the encoder and the output buffer are reused across calls, since this class is not thread safe
+    encoderOutputStream.reset();
+    encoder = EncoderFactory.get().directBinaryEncoder(encoderOutputStream, encoder);
     try {
-      writer.write(toGenericRecord(event), encoder);
+      datumWriter.write(toGenericRecord(event), encoder);
     } catch (IOException e) {
       // This shouldn't happen since we are writing to byte array output stream.
       throw Throwables.propagate(e);
     }
-    return out.toByteArray();
+    return encoderOutputStream.toByteArray();
   }
 
   /**
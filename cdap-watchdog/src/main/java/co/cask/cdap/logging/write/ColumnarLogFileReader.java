@@ -0,0 +1,357 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.write;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import co.cask.cdap.common.io.ByteBufferDecoder;
+import co.cask.cdap.common.io.SeekableInputStream;
+import co.cask.cdap.logging.LoggingUtil;
+import co.cask.cdap.logging.serialize.LogSchema;
+import co.cask.cdap.logging.serialize.LoggingEvent;
+import com.google.common.io.ByteStreams;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Reads log files written in the {@link ColumnarLogFormat}. Blocks are read one at a time, and the columns of a block
+ * are only read and decompressed when they are accessed.
+ */
+@NotThreadSafe
+final class ColumnarLogFileReader implements Closeable {
+
+  private final SeekableInputStream in;
+  private final long length;
+  private final Inflater inflater;
+  private final GenericDatumReader<GenericRecord> detailsReader;
+  private BinaryDecoder detailsDecoder;
+  private long nextBlockPosition;
+
+  /**
+   * Creates a reader that reads from the given stream.
+   *
+   * @param in the stream to read from
+   * @param length the length of the file. Blocks that are not completely within this length are not read.
+   * @throws IOException if failed to read the file header, if the file is not a columnar log file or if the
+   *                     version of the file is not supported
+   */
+  ColumnarLogFileReader(SeekableInputStream in, long length) throws IOException {
+    this.in = in;
+    this.length = length;
+    this.inflater = new Inflater();
+    this.detailsReader = new GenericDatumReader<>(ColumnarLogFormat.DETAILS_SCHEMA);
+
+    if (!ColumnarLogFormat.isColumnar(in)) {
+      throw new IOException("Not a columnar log file");
+    }
+    DataInputStream dataInput = new DataInputStream(in);
+    byte[] metadataBytes = new byte[dataInput.readInt()];
+    dataInput.readFully(metadataBytes);
+    ByteBufferDecoder metadataDecoder = new ByteBufferDecoder(ByteBuffer.wrap(metadataBytes));
+    Map<String, String> metadata = new HashMap<>();
+    for (int i = metadataDecoder.readInt(); i > 0; i--) {
+      metadata.put(metadataDecoder.readString(), metadataDecoder.readString());
+    }
+    String version = metadata.get(ColumnarLogFormat.VERSION_KEY);
+    if (!String.valueOf(ColumnarLogFormat.VERSION).equals(version)) {
+      throw new IOException("Unsupported columnar log file version " + version);
+    }
+    this.nextBlockPosition = ColumnarLogFormat.MAGIC.length + 4 + metadataBytes.length;
+  }
+
+  /**
+   * Returns the block following the last block returned by this method.
+   *
+   * @return the next {@link Block} or {@code null} if there are no more complete blocks in the file
+   */
+  @Nullable
+  Block nextBlock() throws IOException {
+    if (nextBlockPosition + ColumnarLogFormat.BLOCK_HEADER_SIZE > length) {
+      return null;
+    }
+    in.seek(nextBlockPosition);
+    byte[] header = new byte[ColumnarLogFormat.BLOCK_HEADER_SIZE];
+    ByteStreams.readFully(in, header);
+    ByteBuffer buffer = ByteBuffer.wrap(header);
+    if (buffer.getInt() != ColumnarLogFormat.BLOCK_MARKER) {
+      throw new IOException("Invalid block marker at position " + nextBlockPosition);
+    }
+
+    int eventCount = buffer.getInt();
+    long minTimestamp = buffer.getLong();
+    long maxTimestamp = buffer.getLong();
+    int[] compressedSizes = new int[ColumnarLogFormat.NUM_COLUMNS];
+    int[] sizes = new int[ColumnarLogFormat.NUM_COLUMNS];
+    long blockSize = ColumnarLogFormat.BLOCK_HEADER_SIZE;
+    for (int i = 0; i < ColumnarLogFormat.NUM_COLUMNS; i++) {
+      compressedSizes[i] = buffer.getInt();
+      sizes[i] = buffer.getInt();
+      blockSize += compressedSizes[i];
+    }
+
+    // The last block of an open file may not be completely written yet
+    if (nextBlockPosition + blockSize > length) {
+      return null;
+    }
+    Block block = new Block(nextBlockPosition, eventCount, minTimestamp, maxTimestamp, compressedSizes, sizes);
+    nextBlockPosition += blockSize;
+    return block;
+  }
+
+  @Override
+  public void close() throws IOException {
+    inflater.end();
+    in.close();
+  }
+
+  /**
+   * A block of events in the file.
+   */
+  final class Block {
+
+    private final long position;
+    private final int eventCount;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final int[] compressedSizes;
+    private final int[] sizes;
+
+    private long[] timestamps;
+    private Level[] levels;
+    private String[] loggerNames;
+    private String[] threadNames;
+    private Map<String, String>[] mdcs;
+    private String[] messages;
+    private ByteBuffer[] details;
+
+    private Block(long position, int eventCount, long minTimestamp, long maxTimestamp,
+                  int[] compressedSizes, int[] sizes) {
+      this.position = position;
+      this.eventCount = eventCount;
+      this.minTimestamp = minTimestamp;
+      this.maxTimestamp = maxTimestamp;
+      this.compressedSizes = compressedSizes;
+      this.sizes = sizes;
+    }
+
+    int getEventCount() {
+      return eventCount;
+    }
+
+    long getMinTimestamp() {
+      return minTimestamp;
+    }
+
+    long getMaxTimestamp() {
+      return maxTimestamp;
+    }
+
+    long getTimestamp(int index) throws IOException {
+      if (timestamps == null) {
+        ByteBufferDecoder decoder = readColumn(ColumnarLogFormat.TIMESTAMP_COLUMN);
+        long[] timestamps = new long[eventCount];
+        long timestamp = 0L;
+        for (int i = 0; i < eventCount; i++) {
+          timestamp += decoder.readLong();
+          timestamps[i] = timestamp;
+        }
+        this.timestamps = timestamps;
+      }
+      return timestamps[index];
+    }
+
+    /**
+     * Returns a view of the event at the given index, which only decodes the fields of the event that are not
+     * stored in their own columns when they are accessed.
+     */
+    ILoggingEvent getEvent(int index) throws IOException {
+      return new ColumnarLoggingEvent(this, index, getTimestamp(index));
+    }
+
+    @Nullable
+    Level getLevel(int index) {
+      if (levels == null) {
+        try {
+          ByteBufferDecoder decoder = readColumn(ColumnarLogFormat.LEVEL_COLUMN);
+          Level[] levels = new Level[eventCount];
+          for (int i = 0; i < eventCount; i++) {
+            levels[i] = decoder.readBool() ? Level.toLevel(decoder.readInt()) : null;
+          }
+          this.levels = levels;
+        } catch (IOException e) {
+          throw new IllegalStateException("Failed to read levels of block at position " + position, e);
+        }
+      }
+      return levels[index];
+    }
+
+    String getLoggerName(int index) {
+      if (loggerNames == null) {
+        loggerNames = readDictionaryColumn(ColumnarLogFormat.LOGGER_COLUMN, "logger names");
+      }
+      return loggerNames[index];
+    }
+
+    String getThreadName(int index) {
+      if (threadNames == null) {
+        threadNames = readDictionaryColumn(ColumnarLogFormat.THREAD_COLUMN, "thread names");
+      }
+      return threadNames[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    Map<String, String> getMDCPropertyMap(int index) {
+      if (mdcs == null) {
+        try {
+          ByteBufferDecoder decoder = readColumn(ColumnarLogFormat.MDC_COLUMN);
+          Map<String, String>[] mdcs = new Map[eventCount];
+          for (int i = 0; i < eventCount; i++) {
+            int size = decoder.readInt();
+            Map<String, String> mdc = new HashMap<>(size * 2);
+            for (int j = 0; j < size; j++) {
+              mdc.put(ColumnarLogFormat.readString(decoder), ColumnarLogFormat.readString(decoder));
+            }
+            mdcs[i] = mdc;
+          }
+          this.mdcs = mdcs;
+        } catch (IOException e) {
+          throw new IllegalStateException("Failed to read MDC of block at position " + position, e);
+        }
+      }
+      return mdcs[index];
+    }
+
+    String getMessage(int index) {
+      if (messages == null) {
+        try {
+          ByteBufferDecoder decoder = readColumn(ColumnarLogFormat.MESSAGE_COLUMN);
+          String[] messages = new String[eventCount];
+          for (int i = 0; i < eventCount; i++) {
+            messages[i] = ColumnarLogFormat.readString(decoder);
+          }
+          this.messages = messages;
+        } catch (IOException e) {
+          throw new IllegalStateException("Failed to read messages of block at position " + position, e);
+        }
+      }
+      return messages[index];
+    }
+
+    /**
+     * Decodes the complete event at the given index, combining the fields from all the columns.
+     */
+    ILoggingEvent decodeEvent(int index) {
+      try {
+        if (details == null) {
+          ByteBufferDecoder decoder = readColumn(ColumnarLogFormat.DETAILS_COLUMN);
+          ByteBuffer[] details = new ByteBuffer[eventCount];
+          for (int i = 0; i < eventCount; i++) {
+            details[i] = decoder.readBytes();
+          }
+          this.details = details;
+        }
+        ByteBuffer buffer = details[index];
+        detailsDecoder = DecoderFactory.get().binaryDecoder(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                                                            buffer.remaining(), detailsDecoder);
+        GenericRecord detailsRecord = detailsReader.read(null, detailsDecoder);
+
+        // The decoded record doesn't refer to the block
+        GenericRecord record = new GenericData.Record(LogSchema.LoggingEvent.SCHEMA);
+        for (Schema.Field field : ColumnarLogFormat.DETAILS_SCHEMA.getFields()) {
+          record.put(field.name(), detailsRecord.get(field.pos()));
+        }
+        record.put("timestamp", getTimestamp(index));
+        // The Avro schema requires a level. The ColumnarLoggingEvent still reports a missing level as null.
+        Level level = getLevel(index);
+        record.put("level", level == null ? Level.ERROR_INT : level.toInt());
+        record.put("loggerName", getLoggerName(index));
+        record.put("threadName", getThreadName(index));
+        record.put("mdc", LoggingUtil.encodeMDC(getMDCPropertyMap(index)));
+        record.put("message", getMessage(index));
+        return new LoggingEvent(record);
+      } catch (IOException e) {
+        throw new IllegalStateException("Failed to read events of block at position " + position, e);
+      }
+    }
+
+    private String[] readDictionaryColumn(int column, String name) {
+      try {
+        ByteBufferDecoder decoder = readColumn(column);
+        String[] dictionary = new String[decoder.readInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+          dictionary[i] = ColumnarLogFormat.readString(decoder);
+        }
+        String[] values = new String[eventCount];
+        for (int i = 0; i < eventCount; i++) {
+          values[i] = dictionary[decoder.readInt()];
+        }
+        return values;
+      } catch (IOException e) {
+        throw new IllegalStateException("Failed to read " + name + " of block at position " + position, e);
+      }
+    }
+
+    private ByteBufferDecoder readColumn(int column) throws IOException {
+      return new ByteBufferDecoder(ByteBuffer.wrap(decompress(column)));
+    }
+
+    private byte[] decompress(int column) throws IOException {
+      long columnPosition = position + ColumnarLogFormat.BLOCK_HEADER_SIZE;
+      for (int i = 0; i < column; i++) {
+        columnPosition += compressedSizes[i];
+      }
+      byte[] compressed = new byte[compressedSizes[column]];
+      in.seek(columnPosition);
+      ByteStreams.readFully(in, compressed);
+
+      byte[] decompressed = new byte[sizes[column]];
+      inflater.reset();
+      inflater.setInput(compressed);
+      try {
+        int size = 0;
+        while (size < decompressed.length && !inflater.finished()) {
+          int inflated = inflater.inflate(decompressed, size, decompressed.length - size);
+          if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          size += inflated;
+        }
+        if (size != decompressed.length) {
+          throw new IOException("Corrupted column " + column + " of block at position " + position);
+        }
+      } catch (DataFormatException e) {
+        throw new IOException("Corrupted column " + column + " of block at position " + position, e);
+      }
+      return decompressed;
+    }
+  }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.write;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import co.cask.cdap.common.io.ByteBufferEncoder;
+import co.cask.cdap.logging.serialize.LoggingEvent;
+import co.cask.cdap.logging.serialize.LoggingEventSerializer;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Writes log events in the {@link ColumnarLogFormat}. Events are buffered column by column until the buffered size
+ * reaches the block size or {@link #sync()} is called, at which point they are compressed and written as one block.
+ */
+@NotThreadSafe
+public final class ColumnarLogFileWriter implements Closeable {
+
+  private final DataOutputStream out;
+  private final int blockSize;
+  private final LoggingEventSerializer serializer;
+  private final Deflater deflater;
+  private final ByteBufferEncoder[] columns;
+  private final BufferOutputStream compressed;
+  private final Dictionary loggerNames;
+  private final Dictionary threadNames;
+  private final GenericDatumWriter<GenericRecord> detailsWriter;
+  private final GenericRecord details;
+  private final BufferOutputStream detailsOutput;
+  private BinaryEncoder detailsEncoder;
+
+  private long position;
+  private int eventCount;
+  private long minTimestamp;
+  private long maxTimestamp;
+  private long prevTimestamp;
+
+  /**
+   * Creates a writer that writes to the given {@link OutputStream}, starting with the file header.
+   *
+   * @param out the stream to write to
+   * @param blockSize the size of buffered events in bytes that triggers writing a block
+   */
+  public ColumnarLogFileWriter(OutputStream out, int blockSize) throws IOException {
+    this.out = new DataOutputStream(out);
+    this.blockSize = blockSize;
+    this.serializer = new LoggingEventSerializer();
+    this.deflater = new Deflater(Deflater.BEST_SPEED);
+    this.columns = new ByteBufferEncoder[ColumnarLogFormat.NUM_COLUMNS];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = new ByteBufferEncoder();
+    }
+    this.compressed = new BufferOutputStream();
+    this.loggerNames = new Dictionary();
+    this.threadNames = new Dictionary();
+    this.detailsWriter = new GenericDatumWriter<>(ColumnarLogFormat.DETAILS_SCHEMA);
+    this.details = new GenericData.Record(ColumnarLogFormat.DETAILS_SCHEMA);
+    this.detailsOutput = new BufferOutputStream();
+
+    // The file metadata records the format version, so that readers can tell the format from the content
+    ByteBufferEncoder metadata = new ByteBufferEncoder(64);
+    metadata.writeInt(1);
+    metadata.writeString(ColumnarLogFormat.VERSION_KEY);
+    metadata.writeString(String.valueOf(ColumnarLogFormat.VERSION));
+
+    this.out.write(ColumnarLogFormat.MAGIC);
+    this.out.writeInt(metadata.size());
+    metadata.writeTo(this.out);
+    this.position = ColumnarLogFormat.MAGIC.length + 4 + metadata.size();
+  }
+
+  /**
+   * Appends the given event. If the event was decoded from an Avro record, the fields are taken from the record.
+   */
+  public void append(ILoggingEvent event) throws IOException {
+    long timestamp = event.getTimeStamp();
+    if (eventCount == 0) {
+      // The first timestamp of a block is written as the difference to zero
+      minTimestamp = maxTimestamp = timestamp;
+      prevTimestamp = 0L;
+    }
+    minTimestamp = Math.min(minTimestamp, timestamp);
+    maxTimestamp = Math.max(maxTimestamp, timestamp);
+
+    columns[ColumnarLogFormat.TIMESTAMP_COLUMN].writeLong(timestamp - prevTimestamp);
+    prevTimestamp = timestamp;
+
+    // An event without a level is written as such, rather than with a made up level
+    Level level = event.getLevel();
+    ByteBufferEncoder levelColumn = columns[ColumnarLogFormat.LEVEL_COLUMN];
+    levelColumn.writeBool(level != null);
+    if (level != null) {
+      levelColumn.writeInt(level.toInt());
+    }
+
+    loggerNames.add(event.getLoggerName());
+    threadNames.add(event.getThreadName());
+
+    ByteBufferEncoder mdcColumn = columns[ColumnarLogFormat.MDC_COLUMN];
+    Map<String, String> mdc = event.getMDCPropertyMap();
+    mdcColumn.writeInt(mdc == null ? 0 : mdc.size());
+    if (mdc != null) {
+      for (Map.Entry<String, String> entry : mdc.entrySet()) {
+        ColumnarLogFormat.writeString(mdcColumn, entry.getKey());
+        ColumnarLogFormat.writeString(mdcColumn, entry.getValue());
+      }
+    }
+
+    ColumnarLogFormat.writeString(columns[ColumnarLogFormat.MESSAGE_COLUMN], event.getMessage());
+
+    // The remaining fields are written as one Avro record, prefixed by its length
+    GenericRecord record = event instanceof LoggingEvent ? ((LoggingEvent) event).getRecord()
+                                                         : serializer.toGenericRecord(event);
+    for (Schema.Field field : ColumnarLogFormat.DETAILS_SCHEMA.getFields()) {
+      details.put(field.pos(), record.get(field.name()));
+    }
+    detailsOutput.reset();
+    detailsEncoder = EncoderFactory.get().directBinaryEncoder(detailsOutput, detailsEncoder);
+    detailsWriter.write(details, detailsEncoder);
+    columns[ColumnarLogFormat.DETAILS_COLUMN].writeBytes(detailsOutput.getBuffer(), 0, detailsOutput.size());
+
+    eventCount++;
+    if (getBufferedSize() >= blockSize) {
+      writeBlock();
+    }
+  }
+
+  /**
+   * Writes all buffered events as a block.
+   *
+   * @return the number of bytes written to the output stream
+   */
+  public long sync() throws IOException {
+    writeBlock();
+    return position;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      sync();
+    } finally {
+      deflater.end();
+      out.close();
+    }
+  }
+
+  private long getBufferedSize() {
+    // Each dictionary index takes at most five bytes
+    long size = (loggerNames.indexes.size() + threadNames.indexes.size()) * 5L;
+    for (ByteBufferEncoder column : columns) {
+      size += column.size();
+    }
+    return size;
+  }
+
+  private void writeBlock() throws IOException {
+    if (eventCount == 0) {
+      return;
+    }
+
+    loggerNames.writeTo(columns[ColumnarLogFormat.LOGGER_COLUMN]);
+    threadNames.writeTo(columns[ColumnarLogFormat.THREAD_COLUMN]);
+
+    // Compress all columns into one buffer, so that the block can be written after the header
+    int[] compressedSizes = new int[columns.length];
+    compressed.reset();
+    for (int i = 0; i < columns.length; i++) {
+      int start = compressed.size();
+      ByteBuffer column = columns[i].toByteBuffer();
+      deflater.reset();
+      deflater.setInput(column.array(), column.arrayOffset() + column.position(), column.remaining());
+      deflater.finish();
+      while (!deflater.finished()) {
+        compressed.deflate(deflater);
+      }
+      compressedSizes[i] = compressed.size() - start;
+    }
+
+    out.writeInt(ColumnarLogFormat.BLOCK_MARKER);
+    out.writeInt(eventCount);
+    out.writeLong(minTimestamp);
+    out.writeLong(maxTimestamp);
+    for (int i = 0; i < columns.length; i++) {
+      out.writeInt(compressedSizes[i]);
+      out.writeInt(columns[i].size());
+    }
+    out.write(compressed.getBuffer(), 0, compressed.size());
+    position += ColumnarLogFormat.BLOCK_HEADER_SIZE + compressed.size();
+
+    for (ByteBufferEncoder column : columns) {
+      column.reset();
+    }
+    loggerNames.clear();
+    threadNames.clear();
+    eventCount = 0;
+  }
+
+  /**
+   * A dictionary of the distinct strings of a column in a block, together with the dictionary index of each event.
+   */
+  private static final class Dictionary {
+
+    private final Map<String, Integer> entries = new LinkedHashMap<>();
+    private final IntList indexes = new IntArrayList();
+
+    void add(String str) {
+      Integer index = entries.get(str);
+      if (index == null) {
+        index = entries.size();
+        entries.put(str, index);
+      }
+      indexes.add(index.intValue());
+    }
+
+    void writeTo(ByteBufferEncoder column) throws IOException {
+      column.writeInt(entries.size());
+      for (String str : entries.keySet()) {
+        ColumnarLogFormat.writeString(column, str);
+      }
+      for (int i = 0; i < indexes.size(); i++) {
+        column.writeInt(indexes.getInt(i));
+      }
+    }
+
+    void clear() {
+      entries.clear();
+      indexes.clear();
+    }
+  }
+
+  /**
+   * A {@link ByteArrayOutputStream} that gives access to its buffer, to avoid copying it.
+   */
+  private static final class BufferOutputStream extends ByteArrayOutputStream {
+
+    byte[] getBuffer() {
+      return buf;
+    }
+
+    /**
+     * Appends output of the given {@link Deflater} to this buffer.
+     */
+    void deflate(Deflater deflater) {
+      if (buf.length - count < 4096) {
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + 4096));
+      }
+      count += deflater.deflate(buf, count, buf.length - count);
+    }
+  }
+}
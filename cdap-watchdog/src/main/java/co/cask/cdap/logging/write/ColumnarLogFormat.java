@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.write;
+
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.io.Encoder;
+import co.cask.cdap.logging.serialize.LogSchema;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import org.apache.avro.Schema;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Constants of the columnar log file format.
+ *
+ * A file starts with the {@link #MAGIC} bytes and the file metadata, which contains the {@link #VERSION} of the
+ * format, followed by blocks of events. Each block has a header with the number of events, the minimum and maximum
+ * event timestamps and the compressed and uncompressed sizes of its columns, followed by the columns, each
+ * compressed separately. Values in the columns are binary encoded, with integers as zig-zag varints:
+ * <ul>
+ *   <li>timestamp: the difference of each event timestamp to the previous one</li>
+ *   <li>level: whether each event has a level, followed by the level if it has one</li>
+ *   <li>logger: a dictionary of the logger names in the block, followed by the dictionary index of each event</li>
+ *   <li>thread: a dictionary of the thread names in the block, followed by the dictionary index of each event</li>
+ *   <li>MDC: the MDC properties of each event</li>
+ *   <li>message: the message of each event</li>
+ *   <li>details: the remaining fields of each event, encoded with the {@link #DETAILS_SCHEMA}</li>
+ * </ul>
+ * Readers only read and decompress the columns they need. Events can therefore be filtered by time, level, logger
+ * and MDC without decoding the other fields, and blocks outside of the requested time range are skipped.
+ */
+public final class ColumnarLogFormat {
+
+  /**
+   * The file name extension of columnar log files.
+   */
+  public static final String FILE_EXTENSION = "clog";
+
+  /**
+   * The version of the format, which is recorded in the file metadata.
+   */
+  static final int VERSION = 1;
+  static final String VERSION_KEY = "version";
+
+  static final byte[] MAGIC = { 'C', 'L', 'O', 'G' };
+  static final int BLOCK_MARKER = 0x424c4b31;
+
+  static final int TIMESTAMP_COLUMN = 0;
+  static final int LEVEL_COLUMN = 1;
+  static final int LOGGER_COLUMN = 2;
+  static final int THREAD_COLUMN = 3;
+  static final int MDC_COLUMN = 4;
+  static final int MESSAGE_COLUMN = 5;
+  static final int DETAILS_COLUMN = 6;
+  static final int NUM_COLUMNS = 7;
+
+  // Block marker, event count, min and max timestamps, followed by the compressed and uncompressed column sizes
+  static final int BLOCK_HEADER_SIZE = 4 + 4 + 8 + 8 + NUM_COLUMNS * 8;
+
+  /**
+   * The fields of the {@link LogSchema.LoggingEvent#SCHEMA} that are stored in their own columns.
+   */
+  private static final Set<String> COLUMN_FIELDS = ImmutableSet.of("timestamp", "level", "loggerName", "threadName",
+                                                                   "mdc", "message");
+
+  /**
+   * The {@link Schema} of the fields of the {@link LogSchema.LoggingEvent#SCHEMA} that are not stored in their own
+   * columns.
+   */
+  static final Schema DETAILS_SCHEMA = createDetailsSchema();
+
+  /**
+   * Returns whether the given stream is the content of a columnar log file, by reading the {@link #MAGIC} bytes
+   * from the stream.
+   */
+  public static boolean isColumnar(InputStream is) throws IOException {
+    byte[] magic = new byte[MAGIC.length];
+    return ByteStreams.read(is, magic, 0, magic.length) == magic.length && Arrays.equals(MAGIC, magic);
+  }
+
+  static void writeString(Encoder encoder, @Nullable String str) throws IOException {
+    encoder.writeBool(str != null);
+    if (str != null) {
+      encoder.writeString(str);
+    }
+  }
+
+  @Nullable
+  static String readString(Decoder decoder) throws IOException {
+    return decoder.readBool() ? decoder.readString() : null;
+  }
+
+  private static Schema createDetailsSchema() {
+    Schema schema = LogSchema.LoggingEvent.SCHEMA;
+    List<Schema.Field> fields = new ArrayList<>();
+    for (Schema.Field field : schema.getFields()) {
+      if (!COLUMN_FIELDS.contains(field.name())) {
+        fields.add(new Schema.Field(field.name(), field.schema(), field.doc(), field.defaultValue()));
+      }
+    }
+    Schema details = Schema.createRecord("LoggingEventDetails", null, schema.getNamespace(), false);
+    details.setFields(fields);
+    return details;
+  }
+
+  private ColumnarLogFormat() {
+    // no-op
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.write;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+import org.slf4j.Marker;
+
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * An {@link ILoggingEvent} read from a block of a columnar log file. The timestamp, level, logger name, thread name,
+ * MDC and message are read from the columns of the block, while the complete event is only decoded when any other
+ * field is accessed or {@link #prepareForDeferredProcessing()} is called. After that, the event no longer refers to the block.
+ */
+final class ColumnarLoggingEvent implements ILoggingEvent {
+
+  private final int index;
+  private final long timestamp;
+  @Nullable
+  private ColumnarLogFileReader.Block block;
+  @Nullable
+  private ILoggingEvent event;
+  @Nullable
+  private Level level;
+
+  ColumnarLoggingEvent(ColumnarLogFileReader.Block block, int index, long timestamp) {
+    this.block = block;
+    this.index = index;
+    this.timestamp = timestamp;
+  }
+
+  @Override
+  public String getThreadName() {
+    return block == null ? getDecoded().getThreadName() : block.getThreadName(index);
+  }
+
+  @Override
+  @Nullable
+  public Level getLevel() {
+    return block == null ? level : block.getLevel(index);
+  }
+
+  @Override
+  public String getMessage() {
+    return block == null ? getDecoded().getMessage() : block.getMessage(index);
+  }
+
+  @Override
+  public Object[] getArgumentArray() {
+    return getDecoded().getArgumentArray();
+  }
+
+  @Override
+  public String getFormattedMessage() {
+    return getDecoded().getFormattedMessage();
+  }
+
+  @Override
+  public String getLoggerName() {
+    return block == null ? getDecoded().getLoggerName() : block.getLoggerName(index);
+  }
+
+  @Override
+  public LoggerContextVO getLoggerContextVO() {
+    return getDecoded().getLoggerContextVO();
+  }
+
+  @Override
+  public IThrowableProxy getThrowableProxy() {
+    return getDecoded().getThrowableProxy();
+  }
+
+  @Override
+  public StackTraceElement[] getCallerData() {
+    return getDecoded().getCallerData();
+  }
+
+  @Override
+  public boolean hasCallerData() {
+    return getDecoded().hasCallerData();
+  }
+
+  @Override
+  public Marker getMarker() {
+    return getDecoded().getMarker();
+  }
+
+  @Override
+  public Map<String, String> getMDCPropertyMap() {
+    return block == null ? getDecoded().getMDCPropertyMap() : block.getMDCPropertyMap(index);
+  }
+
+  @Override
+  public Map<String, String> getMdc() {
+    return getMDCPropertyMap();
+  }
+
+  @Override
+  public long getTimeStamp() {
+    return timestamp;
+  }
+
+  @Override
+  public void prepareForDeferredProcessing() {
+    getDecoded().prepareForDeferredProcessing();
+    if (block != null) {
+      level = block.getLevel(index);
+    }
+    block = null;
+  }
+
+  @Override
+  public String toString() {
+    return getDecoded().toString();
+  }
+
+  private ILoggingEvent getDecoded() {
+    if (event == null) {
+      //noinspection ConstantConditions
+      event = block.decodeEvent(index);
+    }
+    return event;
+  }
+}
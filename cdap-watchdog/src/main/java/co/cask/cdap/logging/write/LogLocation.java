@@ -1,5 +1,5 @@
 /*
- * Copyright © 2017 Cask Data, Inc.
+ * Copyright © 2017-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -31,9 +31,11 @@ import co.cask.cdap.logging.serialize.LoggingEvent;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.impersonation.Impersonator;
 import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
 import org.apache.avro.file.DataFileReader;
 import org.apache.avro.file.SeekableInput;
 import org.apache.avro.generic.GenericDatumReader;
@@ -43,6 +45,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
@@ -50,6 +53,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 
 /**
  * LogLocation representing a log file and methods to read the file's contents.
@@ -69,6 +73,8 @@ public class LogLocation {
   private final Location location;
   private final NamespaceId namespaceId;
   private final Impersonator impersonator;
+  // Whether the file is in the columnar format, which is determined from the file content on first read
+  private Boolean columnar;
 
   public LogLocation(String frameworkVersion, long eventTimeMs, long fileCreationTimeMs, Location location,
                      String namespaceId, Impersonator impersonator) {
@@ -121,6 +127,9 @@ public class LogLocation {
    * @return closeable iterator of log events
    */
   public CloseableIterator<LogEvent> readLog(Filter logFilter, long fromTimeMs, long toTimeMs, int maxEvents) {
+    if (isColumnar()) {
+      return new ColumnarLogEventIterator(logFilter, fromTimeMs, toTimeMs, maxEvents);
+    }
     return new LogEventIterator(logFilter, fromTimeMs, toTimeMs, maxEvents);
   }
 
@@ -150,6 +159,9 @@ public class LogLocation {
    */
   @SuppressWarnings("WeakerAccess")
   public Collection<LogEvent> readLogPrev(Filter logFilter, long fromTimeMs, final int maxEvents) throws IOException {
+    if (isColumnar()) {
+      return readColumnarLogPrev(logFilter, fromTimeMs, maxEvents);
+    }
     Deque<Collection<LogEvent>> logSegments = new LinkedList<>();
     int count = 0;
     try {
@@ -206,6 +218,47 @@ public class LogLocation {
     return Lists.newArrayList(Iterables.skip(Iterables.concat(logSegments), skip));
   }
 
+  /**
+   * Reads the last events before the given time from a columnar log file. Blocks are visited from the end of the
+   * file, and only the columns needed for evaluating the filter are decoded for events that don't match.
+   */
+  private Collection<LogEvent> readColumnarLogPrev(Filter logFilter, long fromTimeMs, int maxEvents) {
+    Deque<LogEvent> logEvents = new LinkedList<>();
+    try (ColumnarLogFileReader reader = createColumnarReader()) {
+      // Only the block headers are read while searching for the blocks before fromTimeMs
+      List<ColumnarLogFileReader.Block> blocks = new ArrayList<>();
+      ColumnarLogFileReader.Block block = reader.nextBlock();
+      while (block != null && block.getMinTimestamp() <= fromTimeMs) {
+        blocks.add(block);
+        block = reader.nextBlock();
+      }
+
+      for (int i = blocks.size() - 1; i >= 0 && logEvents.size() < maxEvents; i--) {
+        block = blocks.set(i, null);
+        List<LogEvent> logSegment = new ArrayList<>();
+        for (int j = 0; j < block.getEventCount(); j++) {
+          long timestamp = block.getTimestamp(j);
+          if (timestamp > fromTimeMs) {
+            continue;
+          }
+          ILoggingEvent loggingEvent = block.getEvent(j);
+          if (logFilter.match(loggingEvent)) {
+            loggingEvent.prepareForDeferredProcessing();
+            logSegment.add(new LogEvent(loggingEvent, new LogOffset(LogOffset.INVALID_KAFKA_OFFSET, timestamp)));
+          }
+        }
+        for (int j = logSegment.size() - 1; j >= 0; j--) {
+          logEvents.addFirst(logSegment.get(j));
+        }
+      }
+    } catch (Exception e) {
+      READ_FAILURE_LOG.warn("Got exception while reading log file {}", location, e);
+    }
+
+    int skip = logEvents.size() >= maxEvents ? logEvents.size() - maxEvents : 0;
+    return Lists.newArrayList(Iterables.skip(logEvents, skip));
+  }
+
   /**
    *  Read current block in Avro file from current block sync marker to next block sync marker
    */
@@ -371,6 +424,138 @@ public class LogLocation {
     }
   }
 
+  /**
+   * A {@link CloseableIterator} over the events of a columnar log file. Blocks that end before the start time are
+   * skipped without reading their columns, and the complete events are only decoded for events matching the filter.
+   */
+  private final class ColumnarLogEventIterator extends AbstractIterator<LogEvent>
+    implements CloseableIterator<LogEvent> {
+
+    private final Filter logFilter;
+    private final long fromTimeMs;
+    private final long toTimeMs;
+    private final long maxEvents;
+
+    private ColumnarLogFileReader reader;
+    private ColumnarLogFileReader.Block block;
+    private int index;
+
+    private int count = 0;
+    private long prevTimestamp = -1;
+
+    ColumnarLogEventIterator(Filter logFilter, long fromTimeMs, long toTimeMs, long maxEvents) {
+      this.logFilter = logFilter;
+      this.fromTimeMs = fromTimeMs;
+      this.toTimeMs = toTimeMs;
+      this.maxEvents = maxEvents;
+
+      try {
+        reader = createColumnarReader();
+      } catch (Exception e) {
+        // we want to ignore invalid or missing log files
+        LOG.error("Got exception while reading log file {}", location.getName(), e);
+      }
+    }
+
+    @Override
+    protected LogEvent computeNext() {
+      if (reader == null) {
+        return endOfData();
+      }
+      try {
+        while (true) {
+          if (block == null || index >= block.getEventCount()) {
+            block = nextBlock();
+            index = 0;
+            if (block == null) {
+              return endOfData();
+            }
+          }
+
+          int eventIndex = index++;
+          long timestamp = block.getTimestamp(eventIndex);
+          if (timestamp >= fromTimeMs) {
+            ILoggingEvent loggingEvent = block.getEvent(eventIndex);
+            if (logFilter.match(loggingEvent)) {
+              ++count;
+              if ((count > maxEvents || timestamp >= toTimeMs) && timestamp != prevTimestamp) {
+                return endOfData();
+              }
+              prevTimestamp = timestamp;
+              loggingEvent.prepareForDeferredProcessing();
+              return new LogEvent(loggingEvent, new LogOffset(LogOffset.INVALID_KAFKA_OFFSET, timestamp));
+            }
+          }
+          prevTimestamp = timestamp;
+        }
+      } catch (Exception e) {
+        // We want to ignore invalid or missing log files.
+        READ_FAILURE_LOG.error("Got exception while reading log file {}", location.getName(), e);
+        return endOfData();
+      }
+    }
+
+    /**
+     * Returns the next block that may contain events in the time range, or {@code null} if there is none.
+     */
+    @Nullable
+    private ColumnarLogFileReader.Block nextBlock() throws IOException {
+      ColumnarLogFileReader.Block block = reader.nextBlock();
+      while (block != null && block.getMaxTimestamp() < fromTimeMs) {
+        block = reader.nextBlock();
+      }
+      // Events at or after the end time are only returned if they have the same timestamp as the previous event
+      if (block != null && block.getMinTimestamp() >= toTimeMs && block.getMinTimestamp() != prevTimestamp) {
+        return null;
+      }
+      return block;
+    }
+
+    @Override
+    public void close() {
+      try {
+        if (reader != null) {
+          reader.close();
+        }
+      } catch (IOException e) {
+        LOG.error("Got exception while closing log file {}", location.getName(), e);
+      }
+    }
+  }
+
+  /**
+   * Returns whether the file is written in the {@link ColumnarLogFormat}, based on the header of the file.
+   * Only files of the {@link #VERSION_1} framework with the {@link ColumnarLogFormat#FILE_EXTENSION} can be columnar,
+   * so that the header of other files is not read.
+   */
+  private boolean isColumnar() {
+    if (columnar == null) {
+      boolean isColumnar = false;
+      if (VERSION_1.equals(frameworkVersion)
+        && location.getName().endsWith("." + ColumnarLogFormat.FILE_EXTENSION)) {
+        try (InputStream is = location.getInputStream()) {
+          isColumnar = ColumnarLogFormat.isColumnar(is);
+        } catch (IOException e) {
+          // The Avro reader reports invalid or missing log files
+          LOG.trace("Failed to read the header of log file {}", location, e);
+        }
+      }
+      columnar = isColumnar;
+    }
+    return columnar;
+  }
+
+  private ColumnarLogFileReader createColumnarReader() throws IOException {
+    // impersonation is not required for V1 version.
+    SeekableInputStream is = Locations.newInputSupplier(location).getInput();
+    try {
+      return new ColumnarLogFileReader(is, location.length());
+    } catch (IOException e) {
+      Closeables.closeQuietly(is);
+      throw e;
+    }
+  }
+
   private DataFileReader<GenericRecord> createReader() throws IOException {
     boolean shouldImpersonate = this.getFrameworkVersion().equals(VERSION_0);
     return new DataFileReader<>(new LocationSeekableInput(location, namespaceId, impersonator, shouldImpersonate),
@@ -27,6 +27,8 @@ import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -39,11 +41,13 @@ import java.util.stream.IntStream;
 
 /**
  * A {@link co.cask.cdap.api.metrics.MetricsCollectionService} that writes to MetricsTable directly.
- * It also has a scheduling job that clean up old metrics periodically.
+ * It also has scheduling jobs that clean up old metrics and rollup metrics periodically.
  */
 @Singleton
 public final class LocalMetricsCollectionService extends AggregatedMetricsCollectionService {
 
+  private static final Logger LOG = LoggerFactory.getLogger(LocalMetricsCollectionService.class);
+
   private static final ImmutableMap<String, String> METRICS_PROCESSOR_CONTEXT =
     ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, Id.Namespace.SYSTEM.getId(),
                     Constants.Metrics.Tag.COMPONENT, Constants.Service.METRICS_PROCESSOR);
@@ -96,6 +100,12 @@ public final class LocalMetricsCollectionService extends AggregatedMetricsCollec
     long minimumRetentionSecs = cConf.getLong(Constants.Metrics.MINIMUM_RESOLUTION_RETENTION_SECONDS);
     // Try right away if there's anything to cleanup, we will then schedule based on the min retention interval
     scheduler.schedule(createCleanupTask(minimumRetentionSecs), 1, TimeUnit.SECONDS);
+
+    // The TMS metrics processor does the rollup if present
+    long rollupIntervalSecs = cConf.getLong(Constants.Metrics.ROLLUP_INTERVAL_SECONDS);
+    if (messagingMetricsProcessor == null && rollupIntervalSecs > 0) {
+      scheduler.scheduleWithFixedDelay(this::rollup, rollupIntervalSecs, rollupIntervalSecs, TimeUnit.SECONDS);
+    }
   }
 
   @Override
@@ -130,6 +140,15 @@ public final class LocalMetricsCollectionService extends AggregatedMetricsCollec
     }
   }
 
+  private void rollup() {
+    try {
+      // Metrics are added to the store directly, hence everything up to now has been added
+      metricStore.rollup(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+    } catch (Exception e) {
+      LOG.warn("Failed to rollup metrics.", e);
+    }
+  }
+
   /**
    * Creates a task for cleanup.
    *
@@ -28,44 +28,43 @@ import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.ServiceUnavailableException;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
-import co.cask.cdap.common.io.BinaryDecoder;
-import co.cask.cdap.common.io.DatumReader;
 import co.cask.cdap.common.logging.LogSamplers;
 import co.cask.cdap.common.logging.Loggers;
-import co.cask.cdap.internal.io.DatumReaderFactory;
 import co.cask.cdap.internal.io.SchemaGenerator;
 import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.MessagingService;
+import co.cask.cdap.messaging.data.MessageId;
 import co.cask.cdap.messaging.data.RawMessage;
 import co.cask.cdap.metrics.store.MetricDatasetFactory;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
-import com.google.common.reflect.TypeToken;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import javax.annotation.Nullable;
 
 /**
@@ -79,15 +78,18 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   private final MetricDatasetFactory metricDatasetFactory;
   private final List<TopicId> metricsTopics;
   private final MessagingService messagingService;
-  private final DatumReader<MetricValues> metricReader;
   private final Schema metricSchema;
   private final MetricStore metricStore;
   private final Map<String, String> metricsContextMap;
   private final int fetcherLimit;
   private final long maxDelayMillis;
   private final int queueSize;
-  private final BlockingDeque<MetricValues> metricsFromAllTopics;
+  private final Deque<MetricsBatch> metricsFromAllTopics;
+  // Number of messages in metricsFromAllTopics, plus the messages being fetched that have reserved a space in it
+  private final AtomicInteger queuedMessages;
   private final ConcurrentMap<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap;
+  // Timestamp in seconds of each topic before which all metrics are in metricsFromAllTopics or persisted
+  private final ConcurrentMap<TopicIdMetaKey, Long> processedUntilMap;
   private final AtomicBoolean persistingFlag;
   // maximum number of milliseconds to sleep between each run of fetching & processing new metrics, the max sleep time
   // is 1 min
@@ -95,6 +97,10 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   private final List<ProcessMetricsThread> processMetricsThreads;
   private final String processMetricName;
   private final String metricsPrefixForDelayMetrics;
+  // interval between rollups of the metric store, only rollup by the first instance
+  private final long rollupIntervalSeconds;
+  // all metrics topics, including the ones processed by other instances
+  private final List<TopicIdMetaKey> allTopicKeys;
   private long metricsProcessedCount;
 
   private MetricsConsumerMetaTable metaTable;
@@ -106,13 +112,12 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
                                    MetricDatasetFactory metricDatasetFactory,
                                    MessagingService messagingService,
                                    SchemaGenerator schemaGenerator,
-                                   DatumReaderFactory readerFactory,
                                    MetricStore metricStore,
                                    @Assisted Set<Integer> topicNumbers,
                                    @Assisted MetricsContext metricsContext,
                                    @Assisted Integer instanceId) {
     this(cConf, metricDatasetFactory, messagingService,
-         schemaGenerator, readerFactory, metricStore, topicNumbers, metricsContext,
+         schemaGenerator, metricStore, topicNumbers, metricsContext,
          TimeUnit.SECONDS.toMillis(cConf.getInt(Constants.Metrics.METRICS_MINIMUM_RESOLUTION_SECONDS)), instanceId);
   }
 
@@ -121,7 +126,6 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
                                    MetricDatasetFactory metricDatasetFactory,
                                    MessagingService messagingService,
                                    SchemaGenerator schemaGenerator,
-                                   DatumReaderFactory readerFactory,
                                    MetricStore metricStore,
                                    Set<Integer> topicNumbers,
                                    MetricsContext metricsContext,
@@ -137,7 +141,6 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     this.messagingService = messagingService;
     try {
       this.metricSchema = schemaGenerator.generate(MetricValues.class);
-      this.metricReader = readerFactory.create(TypeToken.of(MetricValues.class), metricSchema);
     } catch (UnsupportedTypeException e) {
       // This should never happen
       throw Throwables.propagate(e);
@@ -149,13 +152,19 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     this.fetcherLimit = Math.max(1, queueSize / topicNumbers.size()); // fetcherLimit is at least one
     this.metricsContextMap = metricsContext.getTags();
     this.processMetricsThreads = new ArrayList<>();
-    this.metricsFromAllTopics = new LinkedBlockingDeque<>(queueSize);
+    this.metricsFromAllTopics = new ConcurrentLinkedDeque<>();
+    this.queuedMessages = new AtomicInteger();
     this.topicProcessMetaMap = new ConcurrentHashMap<>();
+    this.processedUntilMap = new ConcurrentHashMap<>();
     this.persistingFlag = new AtomicBoolean();
     // the max sleep time will be 1 min
     this.metricsProcessIntervalMillis = metricsProcessIntervalMillis < Constants.Metrics.PROCESS_INTERVAL_MILLIS ?
       metricsProcessIntervalMillis : Constants.Metrics.PROCESS_INTERVAL_MILLIS;
     this.processMetricName = String.format("metrics.%s.process.count", instanceId);
+    this.rollupIntervalSeconds = instanceId == 0 ? cConf.getLong(Constants.Metrics.ROLLUP_INTERVAL_SECONDS) : 0L;
+    this.allTopicKeys = IntStream.range(0, cConf.getInt(Constants.Metrics.MESSAGING_TOPIC_NUM))
+      .mapToObj(n -> new TopicIdMetaKey(NamespaceId.SYSTEM.topic(topicPrefix + n)))
+      .collect(Collectors.toList());
   }
 
   private MetricsConsumerMetaTable getMetaTable() {
@@ -207,6 +216,14 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       thread.start();
     }
 
+    // Rollup reads from the metric store, hence it covers the metrics persisted by all instances
+    ScheduledExecutorService rollupExecutor = null;
+    if (rollupIntervalSeconds > 0) {
+      rollupExecutor = Executors.newSingleThreadScheduledExecutor(Threads.createDaemonThreadFactory("metrics-rollup"));
+      rollupExecutor.scheduleWithFixedDelay(this::rollup, rollupIntervalSeconds, rollupIntervalSeconds,
+                                            TimeUnit.SECONDS);
+    }
+
     for (ProcessMetricsThread thread : processMetricsThreads) {
       try {
         thread.join();
@@ -216,9 +233,13 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       }
     }
 
+    if (rollupExecutor != null) {
+      rollupExecutor.shutdownNow();
+    }
+
     // Persist metricsFromAllTopics and messageId's after all ProcessMetricsThread's complete.
     // No need to make a copy of metricsFromAllTopics and topicProcessMetaMap because no thread is writing to them
-    persistMetricsAndTopicProcessMeta(metricsFromAllTopics, topicProcessMetaMap);
+    persistMetricsAndTopicProcessMeta(metricsFromAllTopics, topicProcessMetaMap, processedUntilMap);
   }
 
   @Override
@@ -235,43 +256,69 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
    * Persist metrics from all topics into metric store and messageId's of the last persisted metrics of each topic
    * into metrics meta table
    *
-   * @param metricValues a deque of {@link MetricValues}
+   * @param batches a collection of {@link MetricsBatch}
    * @param topicProcessMetaMap a map with each key {@link TopicIdMetaKey} representing a topic
    *                            and {@link TopicProcessMeta} which has info on messageId and processing stats
+   * @param processedUntilMap a map from each topic to the timestamp before which all metrics are in {@code batches}
+   *                          or have been persisted already
    */
-  private void persistMetricsAndTopicProcessMeta(Deque<MetricValues> metricValues,
-                                                 Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap) {
+  private void persistMetricsAndTopicProcessMeta(Collection<MetricsBatch> batches,
+                                                 Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap,
+                                                 Map<TopicIdMetaKey, Long> processedUntilMap) {
     try {
-      if (!metricValues.isEmpty()) {
-        persistMetrics(metricValues, topicProcessMetaMap);
+      if (!batches.isEmpty()) {
+        persistMetrics(batches, topicProcessMetaMap);
       }
-      persistTopicProcessMeta(topicProcessMetaMap);
+      persistTopicProcessMeta(topicProcessMetaMap, processedUntilMap);
     } catch (Exception e) {
       LOG.warn("Failed to persist metrics.", e);
     }
   }
 
-  private void persistTopicProcessMeta(Map<TopicIdMetaKey, TopicProcessMeta> messageIds) {
+  private void rollup() {
+    try {
+      // Only roll up what has been persisted by the processors of all topics
+      Long processedUntil = metaTable.getProcessedUntil(allTopicKeys);
+      if (processedUntil == null) {
+        LOG.debug("Skip metrics rollup since not all metrics topics have been processed yet");
+        return;
+      }
+      metricStore.rollup(processedUntil);
+    } catch (Exception e) {
+      LOG.warn("Failed to rollup metrics. Will be retried in {} seconds.", rollupIntervalSeconds, e);
+    }
+  }
+
+  private void persistTopicProcessMeta(Map<TopicIdMetaKey, TopicProcessMeta> messageIds,
+                                      Map<TopicIdMetaKey, Long> processedUntilMap) {
     try {
       // messageIds can be empty if the current thread fetches nothing while other threads keep fetching new metrics
       // and haven't updated messageId's of the corresponding topics
       if (!messageIds.isEmpty()) {
         metaTable.saveMetricsProcessorStats(messageIds);
       }
+      if (!processedUntilMap.isEmpty()) {
+        metaTable.saveProcessedUntil(processedUntilMap);
+      }
     } catch (Exception e) {
       LOG.warn("Failed to update processing stats of consumed messages.", e);
     }
   }
 
   /**
-   * Persist metrics into metric store
+   * Persist metrics into metric store. All the batches are added to the store in one call.
    *
-   * @param metricValues a non-empty deque of {@link MetricValues}
+   * @param batches a non-empty collection of {@link MetricsBatch}
    */
-  private void persistMetrics(Deque<MetricValues> metricValues,
+  private void persistMetrics(Collection<MetricsBatch> batches,
                               Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap) {
     long now = System.currentTimeMillis();
-    long lastMetricTime = metricValues.peekLast().getTimestamp();
+    long lastMetricTime = 0L;
+    int messageCount = 0;
+    for (MetricsBatch batch : batches) {
+      lastMetricTime = batch.getLastTimestamp();
+      messageCount += batch.getMessageCount();
+    }
     List<MetricValue> topicLevelDelays = new ArrayList<>();
 
     //add topic level delay metrics
@@ -285,19 +332,19 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
                                            MetricType.GAUGE, delay));
     }
     List<MetricValue> processorMetrics = new ArrayList<>(topicLevelDelays);
-    processorMetrics.add(new MetricValue(processMetricName, MetricType.COUNTER, metricValues.size()));
+    processorMetrics.add(new MetricValue(processMetricName, MetricType.COUNTER, messageCount));
 
+    List<MetricValues> metricValues = MetricsBatch.toMetricValues(batches);
     metricValues.add(new MetricValues(metricsContextMap, TimeUnit.MILLISECONDS.toSeconds(now), processorMetrics));
     metricStore.add(metricValues);
-    metricsProcessedCount += metricValues.size();
+    metricsProcessedCount += messageCount;
     PROGRESS_LOG.debug("{} metrics persisted. Last metric's timestamp: {}",
                        metricsProcessedCount, lastMetricTime);
   }
 
   private class ProcessMetricsThread extends Thread {
     private final TopicIdMetaKey topicIdMetaKey;
-    private final PayloadInputStream payloadInput;
-    private final BinaryDecoder decoder;
+    private final MetricValuesDecoder decoder;
     private final String oldestTsMetricName;
     private final String latestTsMetricName;
     private long lastMetricTimeSecs;
@@ -321,8 +368,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
                                                      oldestTsMetricName, latestTsMetricName));
       }
       this.topicIdMetaKey = topicIdMetaKey;
-      this.payloadInput = new PayloadInputStream();
-      this.decoder = new BinaryDecoder(payloadInput);
+      this.decoder = new MetricValuesDecoder(metricSchema);
     }
 
     @Override
@@ -350,9 +396,16 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
      */
     private long processMetrics() {
       long startTime = System.currentTimeMillis();
+      // Reserve the space in the queue for the messages to fetch
+      int limit = reserveQueueSpace();
       try {
+        if (limit == 0) {
+          // The queue is full. Only try to persist what is in the queue.
+          tryPersist();
+          return metricsProcessIntervalMillis;
+        }
         MessageFetcher fetcher = messagingService.prepareFetch(topicIdMetaKey.getTopicId());
-        fetcher.setLimit(fetcherLimit);
+        fetcher.setLimit(limit);
         TopicProcessMeta persistMetaInfo = topicProcessMetaMap.get(topicIdMetaKey);
         byte[] lastMessageId = null;
 
@@ -366,24 +419,26 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
           fetcher.setStartTime(0L);
         }
 
+        // Messages published before the fetch starts are all returned, unless the fetch is limited
+        long fetchStartSecs = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        int fetchCount = 0;
         byte[] currentMessageId = null;
         TopicProcessMeta localTopicProcessMeta =
           new TopicProcessMeta(lastMessageId, Long.MAX_VALUE, Long.MIN_VALUE, 0,
                                TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()),
                                oldestTsMetricName, latestTsMetricName);
+        // Decode all the fetched messages into one batch, which is handed to the queue as a whole
+        MetricsBatch batch = new MetricsBatch();
         try (CloseableIterator<RawMessage> iterator = fetcher.fetch()) {
           while (iterator.hasNext() && isRunning()) {
             RawMessage input = iterator.next();
+            fetchCount++;
             try {
-              payloadInput.reset(input.getPayload());
-              MetricValues metricValues = metricReader.read(decoder, metricSchema);
-              if (!metricsFromAllTopics.offer(metricValues)) {
-                break;
-              }
-              lastMetricTimeSecs = metricValues.getTimestamp();
+              lastMetricTimeSecs = decoder.decode(input.getPayload(), batch);
               currentMessageId = input.getId();
               if (LOG.isTraceEnabled()) {
-                LOG.trace("Received message {} with metrics: {}", Bytes.toStringBinary(currentMessageId), metricValues);
+                LOG.trace("Received message {} with metrics at {}", Bytes.toStringBinary(currentMessageId),
+                          lastMetricTimeSecs);
               }
               localTopicProcessMeta.updateTopicProcessingStats(currentMessageId, lastMetricTimeSecs);
             } catch (IOException e) {
@@ -392,6 +447,23 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
           }
         }
 
+        if (batch.getMessageCount() > 0) {
+          // Add the batch before updating the topic meta, such that the message id is never persisted
+          // before the metrics
+          metricsFromAllTopics.add(batch);
+        }
+        if (fetchCount < limit && isRunning()) {
+          processedUntilMap.put(topicIdMetaKey, fetchStartSecs);
+        } else if (currentMessageId != null) {
+          // Only the messages published before the last message are all fetched. The metrics in a message have
+          // timestamps no later than the publish time of the message.
+          processedUntilMap.put(topicIdMetaKey,
+                                TimeUnit.MILLISECONDS.toSeconds(new MessageId(currentMessageId).getPublishTimestamp()));
+        }
+        // Release the space reserved for messages that are not in the batch
+        queuedMessages.addAndGet(batch.getMessageCount() - limit);
+        limit = 0;
+
         if (currentMessageId != null) {
           // update the last processed timestamp in local topic meta and update the topicProcessMetaMap with this
           // local topic meta for the topic
@@ -415,10 +487,32 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
         LOG.trace("Could not fetch metrics. Will be retried in next iteration.", e);
       } catch (Exception e) {
         LOG.warn("Failed to process metrics. Will be retried in next iteration.", e);
+      } finally {
+        if (limit > 0) {
+          queuedMessages.addAndGet(-limit);
+        }
       }
       return metricsProcessIntervalMillis;
     }
 
+    /**
+     * Reserves space in the metrics queue for fetching up to {@code fetcherLimit} messages.
+     *
+     * @return the number of messages reserved, which can be {@code 0} if the queue is full
+     */
+    private int reserveQueueSpace() {
+      while (true) {
+        int queued = queuedMessages.get();
+        int reserve = Math.min(fetcherLimit, queueSize - queued);
+        if (reserve <= 0) {
+          return 0;
+        }
+        if (queuedMessages.compareAndSet(queued, queued + reserve)) {
+          return reserve;
+        }
+      }
+    }
+
     /**
      * Persist metrics and messageId's of the last metrics to be persisted if no other thread is persisting
      */
@@ -435,21 +529,24 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
         // topicMessageIdsCopy will not contain new MessageId's in metricsFromAllTopics but not in metricsCopy.
         // This guarantees the metrics corresponding to last persisted MessageId's of each topic are persisted.
         Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMapCopy = new HashMap<>(topicProcessMetaMap);
-        // Remove at most queueSize of metrics from metricsFromAllTopics and put into metricsCopy to limit
-        // the number of metrics being persisted each time
-        Deque<MetricValues> metricsCopy = new LinkedList<>();
-        Iterator<MetricValues> iterator = metricsFromAllTopics.iterator();
-        // Though the blocking queue(metricsFromAllTopics) has upper bound on its size (which is the "queueSize")
-        // there can be a scenario, as the current thread is removing entries from blocking queue
-        // and adding it to a copy list, other threads are simultaneously adding entries to the queue and
-        // the current list might become very big causing out of memory issues, we avoid this
-        // by making the copy list size also to be limited by the max queue size.
-        while (iterator.hasNext() && metricsCopy.size() < queueSize) {
-          metricsCopy.add(iterator.next());
-          iterator.remove();
+        Map<TopicIdMetaKey, Long> processedUntilMapCopy = new HashMap<>(processedUntilMap);
+        // Remove batches from metricsFromAllTopics and put into metricsCopy. The number of messages in the queue
+        // is bounded by the "queueSize" through the space reserved before fetching. Since the batches are only
+        // removed here, the number of messages being persisted each time is bounded by "queueSize" as well.
+        List<MetricsBatch> metricsCopy = new ArrayList<>();
+        int messageCount = 0;
+        MetricsBatch batch = metricsFromAllTopics.poll();
+        while (batch != null) {
+          metricsCopy.add(batch);
+          messageCount += batch.getMessageCount();
+          batch = metricsFromAllTopics.poll();
         }
         // Persist the copy of metrics and MessageId's
-        persistMetricsAndTopicProcessMeta(metricsCopy, topicProcessMetaMapCopy);
+        try {
+          persistMetricsAndTopicProcessMeta(metricsCopy, topicProcessMetaMapCopy, processedUntilMapCopy);
+        } finally {
+          queuedMessages.addAndGet(-messageCount);
+        }
       } catch (Exception e) {
         LOG.warn("Failed to persist metrics. Will be retried in next iteration.", e);
       } finally {
@@ -458,18 +555,4 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       }
     }
   }
-
-  private class PayloadInputStream extends ByteArrayInputStream {
-
-    PayloadInputStream() {
-      super(Bytes.EMPTY_BYTE_ARRAY);
-    }
-
-    void reset(byte[] buf) {
-      this.buf = buf;
-      this.pos = 0;
-      this.count = buf.length;
-      this.mark = 0;
-    }
-  }
 }
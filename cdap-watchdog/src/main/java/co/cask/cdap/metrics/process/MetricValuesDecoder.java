@@ -0,0 +1,351 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.process;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.api.metrics.MetricValues;
+import co.cask.cdap.common.io.ByteBufferDecoder;
+import com.google.common.base.Charsets;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Decodes encoded {@link MetricValues} messages directly into a {@link MetricsBatch}, without creating a
+ * {@link MetricValues} for each message. The decoding follows the {@link Schema} that the messages were written with.
+ *
+ * The tags and metric names are interned by their encoded bytes, so that for the same tags and names, which is the
+ * common case, the strings are skipped instead of decoded. The interned values are dropped once there are too many
+ * of them, so that the memory used stays bounded when tags have high cardinality.
+ *
+ * An instance of this class is not thread safe.
+ */
+final class MetricValuesDecoder {
+
+  private static final int MAX_INTERNED = 10000;
+
+  private final ByteBufferDecoder decoder;
+  private final Schema recordSchema;
+  private final Schema tagKeySchema;
+  private final Schema tagValueSchema;
+  private final Schema metricsComponentSchema;
+  private final Schema metricSchema;
+  private final MetricType[] metricTypes;
+  private final Map<ByteBuffer, Map<String, String>> internedTags;
+  private final Map<ByteBuffer, String> internedNames;
+  private ByteBuffer buffer;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param schema the {@link Schema} that the {@link MetricValues} are encoded with
+   * @throws IllegalArgumentException if the schema is not a {@link MetricValues} schema
+   */
+  MetricValuesDecoder(Schema schema) {
+    this.decoder = new ByteBufferDecoder();
+    this.recordSchema = nonNullable(schema);
+    checkField(recordSchema, "tags", Schema.Type.MAP);
+    checkField(recordSchema, "metrics", Schema.Type.ARRAY);
+    checkField(recordSchema, "timestamp", Schema.Type.LONG);
+
+    Map.Entry<Schema, Schema> tagsSchema = nonNullable(recordSchema.getField("tags").getSchema()).getMapSchema();
+    this.tagKeySchema = tagsSchema.getKey();
+    this.tagValueSchema = tagsSchema.getValue();
+    checkType(tagKeySchema, Schema.Type.STRING);
+    checkType(tagValueSchema, Schema.Type.STRING);
+
+    this.metricsComponentSchema = nonNullable(recordSchema.getField("metrics").getSchema()).getComponentSchema();
+    this.metricSchema = nonNullable(metricsComponentSchema);
+    checkType(metricSchema, Schema.Type.RECORD);
+    checkField(metricSchema, "name", Schema.Type.STRING);
+    checkField(metricSchema, "type", Schema.Type.ENUM);
+    checkField(metricSchema, "value", Schema.Type.LONG);
+
+    Schema typeSchema = nonNullable(metricSchema.getField("type").getSchema());
+    this.metricTypes = new MetricType[typeSchema.getEnumValues().size()];
+    for (int i = 0; i < metricTypes.length; i++) {
+      metricTypes[i] = MetricType.valueOf(typeSchema.getEnumValue(i));
+    }
+    this.internedTags = new HashMap<>();
+    this.internedNames = new HashMap<>();
+  }
+
+  /**
+   * Decodes the given encoded {@link MetricValues} and adds the metric values to the given batch. If the decoding
+   * fails, nothing is added to the batch.
+   *
+   * @param payload the encoded {@link MetricValues}
+   * @param batch the batch to add to
+   * @return the timestamp of the {@link MetricValues} in seconds
+   * @throws IOException if failed to decode
+   */
+  long decode(byte[] payload, MetricsBatch batch) throws IOException {
+    if (internedTags.size() > MAX_INTERNED || internedNames.size() > MAX_INTERNED) {
+      internedTags.clear();
+      internedNames.clear();
+    }
+
+    buffer = ByteBuffer.wrap(payload);
+    decoder.reset(buffer);
+    int start = batch.size();
+    try {
+      Map<String, String> tags = Collections.emptyMap();
+      long timestamp = 0L;
+      for (Schema.Field field : recordSchema.getFields()) {
+        Schema fieldSchema = resolveUnion(field.getSchema());
+        if (fieldSchema.getType() == Schema.Type.NULL) {
+          continue;
+        }
+        switch (field.getName()) {
+          case "tags":
+            tags = readTags();
+            break;
+          case "metrics":
+            readMetrics(batch);
+            break;
+          case "timestamp":
+            timestamp = decoder.readLong();
+            break;
+          default:
+            skip(fieldSchema);
+        }
+      }
+      batch.endMessage(start, tags, timestamp);
+      return timestamp;
+    } catch (IOException | RuntimeException e) {
+      batch.truncate(start);
+      throw e;
+    }
+  }
+
+  /**
+   * Reads the tags map. If the same encoded tags have been seen before, the interned map is returned without
+   * decoding the strings.
+   */
+  private Map<String, String> readTags() throws IOException {
+    int start = buffer.position();
+    readTagEntries(null);
+    int end = buffer.position();
+
+    Map<String, String> tags = internedTags.get(ByteBuffer.wrap(buffer.array(), start, end - start));
+    if (tags != null) {
+      return tags;
+    }
+
+    // Not seen before. Go back and decode the tags.
+    buffer.position(start);
+    Map<String, String> decoded = new HashMap<>();
+    readTagEntries(decoded);
+    tags = Collections.unmodifiableMap(decoded);
+    internedTags.put(ByteBuffer.wrap(Arrays.copyOfRange(buffer.array(), start, end)), tags);
+    return tags;
+  }
+
+  /**
+   * Reads the entries of the tags map.
+   *
+   * @param tags the map to put the entries to, or {@code null} to skip the entries
+   */
+  private void readTagEntries(@Nullable Map<String, String> tags) throws IOException {
+    int len = decoder.readInt();
+    while (len != 0) {
+      for (int i = 0; i < len; i++) {
+        String key = readNullableString(tagKeySchema, tags != null);
+        String value = readNullableString(tagValueSchema, tags != null);
+        if (tags != null) {
+          tags.put(key, value);
+        }
+      }
+      len = decoder.readInt();
+    }
+  }
+
+  @Nullable
+  private String readNullableString(Schema schema, boolean decode) throws IOException {
+    if (resolveUnion(schema).getType() == Schema.Type.NULL) {
+      return null;
+    }
+    if (decode) {
+      return decoder.readString();
+    }
+    decoder.skipString();
+    return null;
+  }
+
+  private void readMetrics(MetricsBatch batch) throws IOException {
+    int len = decoder.readInt();
+    while (len != 0) {
+      for (int i = 0; i < len; i++) {
+        if (resolveUnion(metricsComponentSchema).getType() != Schema.Type.NULL) {
+          readMetric(batch);
+        }
+      }
+      len = decoder.readInt();
+    }
+  }
+
+  private void readMetric(MetricsBatch batch) throws IOException {
+    String name = null;
+    MetricType type = null;
+    long value = 0L;
+    for (Schema.Field field : metricSchema.getFields()) {
+      Schema fieldSchema = resolveUnion(field.getSchema());
+      if (fieldSchema.getType() == Schema.Type.NULL) {
+        continue;
+      }
+      switch (field.getName()) {
+        case "name":
+          name = readName();
+          break;
+        case "type":
+          int idx = decoder.readInt();
+          if (idx < 0 || idx >= metricTypes.length) {
+            throw new IOException("Invalid metric type index " + idx);
+          }
+          type = metricTypes[idx];
+          break;
+        case "value":
+          value = decoder.readLong();
+          break;
+        default:
+          skip(fieldSchema);
+      }
+    }
+    if (name == null || type == null) {
+      throw new IOException("Missing metric name or type");
+    }
+    batch.add(name, type, value);
+  }
+
+  /**
+   * Reads a metric name. The interned string is returned if the same name has been seen before.
+   */
+  private String readName() throws IOException {
+    int len = decoder.readInt();
+    int start = buffer.position();
+    if (len < 0 || len > buffer.remaining()) {
+      throw new EOFException();
+    }
+    buffer.position(start + len);
+
+    String name = internedNames.get(ByteBuffer.wrap(buffer.array(), start, len));
+    if (name == null) {
+      byte[] encoded = Arrays.copyOfRange(buffer.array(), start, start + len);
+      name = new String(encoded, Charsets.UTF_8);
+      internedNames.put(ByteBuffer.wrap(encoded), name);
+    }
+    return name;
+  }
+
+  /**
+   * Returns the schema of the value to read next. For a union, it reads the union index from the input.
+   */
+  private Schema resolveUnion(Schema schema) throws IOException {
+    while (schema.getType() == Schema.Type.UNION) {
+      int idx = decoder.readInt();
+      if (idx < 0 || idx >= schema.getUnionSchemas().size()) {
+        throw new IOException("Invalid union index " + idx);
+      }
+      schema = schema.getUnionSchema(idx);
+    }
+    return schema;
+  }
+
+  private void skip(Schema schema) throws IOException {
+    schema = resolveUnion(schema);
+    switch (schema.getType()) {
+      case NULL:
+        break;
+      case BOOLEAN:
+        decoder.readBool();
+        break;
+      case INT:
+      case ENUM:
+        decoder.readInt();
+        break;
+      case LONG:
+        decoder.readLong();
+        break;
+      case FLOAT:
+        decoder.skipFloat();
+        break;
+      case DOUBLE:
+        decoder.skipDouble();
+        break;
+      case BYTES:
+        decoder.skipBytes();
+        break;
+      case STRING:
+        decoder.skipString();
+        break;
+      case ARRAY: {
+        int len = decoder.readInt();
+        while (len != 0) {
+          for (int i = 0; i < len; i++) {
+            skip(schema.getComponentSchema());
+          }
+          len = decoder.readInt();
+        }
+        break;
+      }
+      case MAP: {
+        Map.Entry<Schema, Schema> mapSchema = schema.getMapSchema();
+        int len = decoder.readInt();
+        while (len != 0) {
+          for (int i = 0; i < len; i++) {
+            skip(mapSchema.getKey());
+            skip(mapSchema.getValue());
+          }
+          len = decoder.readInt();
+        }
+        break;
+      }
+      case RECORD:
+        for (Schema.Field field : schema.getFields()) {
+          skip(field.getSchema());
+        }
+        break;
+      default:
+        throw new IOException("Unsupported schema type " + schema.getType());
+    }
+  }
+
+  private static Schema nonNullable(Schema schema) {
+    return schema.isNullable() ? schema.getNonNullable() : schema;
+  }
+
+  private static void checkType(Schema schema, Schema.Type type) {
+    if (nonNullable(schema).getType() != type) {
+      throw new IllegalArgumentException(String.format("Schema %s is not of type %s", schema, type));
+    }
+  }
+
+  private static void checkField(Schema recordSchema, String name, Schema.Type type) {
+    Schema.Field field = recordSchema.getField(name);
+    if (field == null || nonNullable(field.getSchema()).getType() != type) {
+      throw new IllegalArgumentException(String.format("Schema %s doesn't have the field %s of type %s",
+                                                       recordSchema, name, type));
+    }
+  }
+}
@@ -75,7 +75,8 @@ public class MetricsAdminSubscriberService extends AbstractMessagingPollingServi
             Constants.Metrics.Tag.CONSUMER, "metrics.admin"
           )),
           FETCH_SIZE, cConf.getLong(Constants.Metrics.ADMIN_POLL_DELAY_MILLIS),
-          RetryStrategies.fromConfiguration(cConf, "system.metrics."));
+          RetryStrategies.fromConfiguration(cConf, "system.metrics."),
+          cConf.getInt(Constants.MessagingSystem.SUBSCRIBER_THREADS));
 
     this.messagingContext = new MultiThreadMessagingContext(messagingService);
     this.metricDatasetFactory = metricDatasetFactory;
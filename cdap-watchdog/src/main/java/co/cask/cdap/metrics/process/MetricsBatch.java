@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.process;
+
+import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.api.metrics.MetricValue;
+import co.cask.cdap.api.metrics.MetricValues;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A batch of decoded metrics stored in columns, one row per metric value. The tags and metric names are references to
+ * interned instances shared by all rows, hence adding a row doesn't allocate any object.
+ *
+ * A batch is filled by a single thread and then handed over as a whole, hence it is not thread safe.
+ */
+final class MetricsBatch {
+
+  private static final MetricType[] METRIC_TYPES = MetricType.values();
+  private static final int INITIAL_CAPACITY = 64;
+
+  private Map<String, String>[] tags;
+  private String[] names;
+  private byte[] types;
+  private long[] values;
+  private long[] timestamps;
+  private int size;
+  private int messageCount;
+  private long lastTimestamp;
+
+  @SuppressWarnings("unchecked")
+  MetricsBatch() {
+    this.tags = new Map[INITIAL_CAPACITY];
+    this.names = new String[INITIAL_CAPACITY];
+    this.types = new byte[INITIAL_CAPACITY];
+    this.values = new long[INITIAL_CAPACITY];
+    this.timestamps = new long[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Returns the number of metric values in this batch.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of messages decoded into this batch.
+   */
+  int getMessageCount() {
+    return messageCount;
+  }
+
+  /**
+   * Returns the timestamp in seconds of the last message decoded into this batch.
+   */
+  long getLastTimestamp() {
+    return lastTimestamp;
+  }
+
+  /**
+   * Adds a metric value. The tags and timestamp of the value are set by the {@link #endMessage(int, Map, long)} call
+   * of the message that contains it.
+   */
+  void add(String name, MetricType type, long value) {
+    if (size == names.length) {
+      grow();
+    }
+    names[size] = name;
+    types[size] = (byte) type.ordinal();
+    values[size] = value;
+    size++;
+  }
+
+  /**
+   * Marks the end of a message, which sets the tags and timestamp of all the metric values added since the end of
+   * the previous message.
+   *
+   * @param start the size of this batch before the message was decoded
+   * @param messageTags the tags of the message
+   * @param timestamp the timestamp of the message in seconds
+   */
+  void endMessage(int start, Map<String, String> messageTags, long timestamp) {
+    Arrays.fill(tags, start, size, messageTags);
+    Arrays.fill(timestamps, start, size, timestamp);
+    messageCount++;
+    lastTimestamp = timestamp;
+  }
+
+  /**
+   * Discards the metric values added after the given size, which is used to drop a message that fails to decode.
+   */
+  void truncate(int size) {
+    Arrays.fill(names, size, this.size, null);
+    Arrays.fill(tags, size, this.size, null);
+    this.size = size;
+  }
+
+  /**
+   * Converts the given batches to {@link MetricValues}. Metric values with the same tags and timestamp are put into
+   * the same {@link MetricValues}, where counters of the same name are summed and only the last value of a gauge
+   * is kept.
+   */
+  static List<MetricValues> toMetricValues(Iterable<MetricsBatch> batches) {
+    Map<GroupKey, Map<String, MetricValue>> groups = new LinkedHashMap<>();
+    Map<String, String> currentTags = null;
+    long currentTimestamp = -1L;
+    Map<String, MetricValue> group = null;
+
+    for (MetricsBatch batch : batches) {
+      for (int i = 0; i < batch.size; i++) {
+        // Rows of the same message are consecutive, hence only need to look up the group when the message changes
+        if (group == null || batch.tags[i] != currentTags || batch.timestamps[i] != currentTimestamp) {
+          currentTags = batch.tags[i];
+          currentTimestamp = batch.timestamps[i];
+          group = groups.computeIfAbsent(new GroupKey(currentTags, currentTimestamp), k -> new LinkedHashMap<>());
+        }
+        MetricType type = METRIC_TYPES[batch.types[i]];
+        MetricValue existing = group.get(batch.names[i]);
+        long value = batch.values[i];
+        if (existing != null && type == MetricType.COUNTER && existing.getType() == MetricType.COUNTER) {
+          value += existing.getValue();
+        }
+        group.put(batch.names[i], new MetricValue(batch.names[i], type, value));
+      }
+    }
+
+    List<MetricValues> result = new ArrayList<>(groups.size());
+    for (Map.Entry<GroupKey, Map<String, MetricValue>> entry : groups.entrySet()) {
+      result.add(new MetricValues(entry.getKey().tags, entry.getKey().timestamp,
+                                  new ArrayList<>(entry.getValue().values())));
+    }
+    return result;
+  }
+
+  private void grow() {
+    int capacity = names.length * 2;
+    tags = Arrays.copyOf(tags, capacity);
+    names = Arrays.copyOf(names, capacity);
+    types = Arrays.copyOf(types, capacity);
+    values = Arrays.copyOf(values, capacity);
+    timestamps = Arrays.copyOf(timestamps, capacity);
+  }
+
+  /**
+   * Key for grouping metric values by tags and timestamp. Tags are compared by identity since they are interned
+   * by the decoder. Equal tags interned by different decoders simply end up in different groups.
+   */
+  private static final class GroupKey {
+    private final Map<String, String> tags;
+    private final long timestamp;
+
+    GroupKey(Map<String, String> tags, long timestamp) {
+      this.tags = tags;
+      this.timestamp = timestamp;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      GroupKey other = (GroupKey) o;
+      return tags == other.tags && timestamp == other.timestamp;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(tags), timestamp);
+    }
+  }
+}
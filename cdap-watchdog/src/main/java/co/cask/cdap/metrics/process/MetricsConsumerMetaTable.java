@@ -19,6 +19,7 @@ package co.cask.cdap.metrics.process;
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -34,6 +35,10 @@ public class MetricsConsumerMetaTable {
   private static final byte[] PROCESS_TIMESTAMP_OLDEST = Bytes.toBytes("pto");
   private static final byte[] LAST_PROCESS_TIMESTAMP = Bytes.toBytes("lpt");
   private static final byte[] PROCESS_TIMESTAMP_LATEST = Bytes.toBytes("ptl");
+  private static final byte[] PROCESSED_UNTIL = Bytes.toBytes("pu");
+
+  private static final String ROLLUP_ROW_PREFIX = "rollup.";
+  private static final byte[] ROLLUP_CHECKPOINT = Bytes.toBytes("rc");
 
   private final MetricsTable metaTable;
 
@@ -79,6 +84,68 @@ public class MetricsConsumerMetaTable {
     return new TopicProcessMeta(messageId, oldestTs, latestTs, processedCount, lastProcessedTs);
   }
 
+  /**
+   * Saves the timestamps before which all the metrics of the given keys have been persisted.
+   *
+   * @param processedUntil map from key to the timestamp in seconds
+   */
+  public <T extends MetricsMetaKey> void saveProcessedUntil(Map<T, Long> processedUntil) {
+    SortedMap<byte[], SortedMap<byte[], byte[]>> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<T, Long> entry : processedUntil.entrySet()) {
+      SortedMap<byte[], byte[]> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      columns.put(PROCESSED_UNTIL, Bytes.toBytes(entry.getValue()));
+      updates.put(entry.getKey().getKey(), columns);
+    }
+    metaTable.putBytes(updates);
+  }
+
+  /**
+   * Gets the timestamp before which all the metrics of all the given keys have been persisted.
+   *
+   * @param metaKeys the keys to get the timestamp for
+   * @return the minimum of the timestamps in seconds saved by {@link #saveProcessedUntil(Map)} for the given keys, or
+   *         {@code null} if no timestamp has been saved for some of the keys
+   */
+  @Nullable
+  public synchronized Long getProcessedUntil(Collection<? extends MetricsMetaKey> metaKeys) {
+    Long result = null;
+    for (MetricsMetaKey metaKey : metaKeys) {
+      byte[] value = metaTable.get(metaKey.getKey(), PROCESSED_UNTIL);
+      if (value == null) {
+        return null;
+      }
+      long processedUntil = Bytes.toLong(value);
+      result = result == null ? processedUntil : Math.min(result, processedUntil);
+    }
+    return result;
+  }
+
+  /**
+   * Saves the rollup checkpoint of the given resolution.
+   *
+   * @param resolution the resolution in seconds
+   * @param timestamp the timestamp in seconds before which the resolution has been completely rolled up
+   */
+  public void saveRollupCheckpoint(int resolution, long timestamp) {
+    SortedMap<byte[], SortedMap<byte[], byte[]>> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    SortedMap<byte[], byte[]> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    columns.put(ROLLUP_CHECKPOINT, Bytes.toBytes(timestamp));
+    updates.put(Bytes.toBytes(ROLLUP_ROW_PREFIX + resolution), columns);
+    metaTable.putBytes(updates);
+  }
+
+  /**
+   * Gets the rollup checkpoint of the given resolution.
+   *
+   * @param resolution the resolution in seconds
+   * @return the timestamp in seconds saved by {@link #saveRollupCheckpoint(int, long)} or {@code null} if there is
+   *         no checkpoint
+   */
+  @Nullable
+  public synchronized Long getRollupCheckpoint(int resolution) {
+    byte[] result = metaTable.get(Bytes.toBytes(ROLLUP_ROW_PREFIX + resolution), ROLLUP_CHECKPOINT);
+    return result == null ? null : Bytes.toLong(result);
+  }
 
   private synchronized long getLong(byte[] rowKey, byte[] column) {
     byte[] result = metaTable.get(rowKey, column);
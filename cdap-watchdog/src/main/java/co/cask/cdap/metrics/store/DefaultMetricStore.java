@@ -16,7 +16,6 @@
 
 package co.cask.cdap.metrics.store;
 
-import co.cask.cdap.api.dataset.lib.cube.Cube;
 import co.cask.cdap.api.dataset.lib.cube.CubeDeleteQuery;
 import co.cask.cdap.api.dataset.lib.cube.CubeExploreQuery;
 import co.cask.cdap.api.dataset.lib.cube.CubeFact;
@@ -58,6 +57,8 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -65,6 +66,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
@@ -74,7 +77,10 @@ import javax.annotation.Nullable;
 public class DefaultMetricStore implements MetricStore {
   public static final Map<String, Aggregation> AGGREGATIONS;
 
+  private static final Logger LOG = LoggerFactory.getLogger(DefaultMetricStore.class);
   private static final int TOTALS_RESOLUTION = Integer.MAX_VALUE;
+  // maximum number of intervals to recompute in one call to the cube rollup
+  private static final int MAX_ROLLUP_INTERVALS = 60;
   private static final String BY_NAMESPACE = "namespace";
   private static final String BY_APP = "app";
   private static final String BY_MAPREDUCE = "mapreduce";
@@ -90,11 +96,14 @@ public class DefaultMetricStore implements MetricStore {
                     new AggregationAlias(ImmutableMap.of(Constants.Metrics.Tag.RUN_ID,
                                                          Constants.Metrics.Tag.WORKFLOW_RUN_ID)));
 
-  private final Supplier<Cube> cube;
+  private final Supplier<DefaultCube> cube;
   private final Supplier<MetricsConsumerMetaTable> metaTableSupplier;
   private MetricsContext metricsContext;
   private final List<TopicId> metricsTopics;
   private final Map<Integer, Long> resolutionTTLMap;
+  // resolutions computed by rollup, in ascending order
+  private final SortedSet<Integer> rollupResolutions;
+  private final long rollupDelaySeconds;
 
 
   static {
@@ -212,15 +221,26 @@ public class DefaultMetricStore implements MetricStore {
       builder.put(minimumResolution, cConf.getLong(Constants.Metrics.MINIMUM_RESOLUTION_RETENTION_SECONDS));
     }
     this.resolutionTTLMap = builder.build();
+
+    // When rollup is enabled, only the minimum resolution and totals are written when metrics are added.
+    // The resolutions in between are computed by rollup.
+    this.rollupResolutions = new TreeSet<>();
+    if (cConf.getInt(Constants.Metrics.ROLLUP_INTERVAL_SECONDS) > 0) {
+      for (int i = 1; i < resolutions.length - 1; i++) {
+        rollupResolutions.add(resolutions[i]);
+      }
+    }
+    this.rollupDelaySeconds = cConf.getLong(Constants.Metrics.ROLLUP_DELAY_SECONDS);
     FactTableSupplier factTableSupplier = (resolution, ignoredRollTime) -> {
       // roll time will be taken from configuration
       // TODO: remove roll time from the supplier api, https://issues.cask.co/browse/CDAP-14730
       return dsFactory.getOrCreateFactTable(resolution);
     };
-    this.cube = Suppliers.memoize(new Supplier<Cube>() {
+    this.cube = Suppliers.memoize(new Supplier<DefaultCube>() {
       @Override
-      public Cube get() {
-        DefaultCube cube = new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS);
+      public DefaultCube get() {
+        DefaultCube cube = new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS,
+                                           rollupResolutions);
         cube.setMetricsCollector(metricsContext);
         return cube;
       }
@@ -266,6 +286,42 @@ public class DefaultMetricStore implements MetricStore {
     cube.get().add(facts);
   }
 
+  @Override
+  public void rollup(long processedUntil) {
+    if (rollupResolutions.isEmpty()) {
+      return;
+    }
+
+    DefaultCube cube = this.cube.get();
+    MetricsConsumerMetaTable metaTable = metaTableSupplier.get();
+    long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    // Metrics with timestamp before this are considered processed. It is bounded by what has been added to the
+    // store, less the delay allowed between the metrics timestamp and the time they are published.
+    // For a coarser resolution, it is bounded by the checkpoint of the finer resolution it is computed from.
+    long closedTs = Math.min(now, processedUntil) - rollupDelaySeconds;
+
+    for (int resolution : rollupResolutions) {
+      // Intervals that end before this are closed and don't need to be recomputed after the checkpoint passed them
+      long closed = closedTs / resolution * resolution;
+      Long checkpoint = metaTable.getRollupCheckpoint(resolution);
+      // Without a checkpoint, only catch up from the last closed interval
+      long start = checkpoint == null ? Math.max(0L, closed - resolution) : checkpoint;
+      long newCheckpoint = start;
+
+      // Recompute up to now, including the intervals that are not closed yet, so that queries see recent metrics
+      while (start <= now) {
+        long end = start + (long) resolution * MAX_ROLLUP_INTERVALS;
+        cube.rollup(resolution, start, Math.min(end - 1, now));
+        if (start < closed) {
+          newCheckpoint = Math.min(end, closed);
+          metaTable.saveRollupCheckpoint(resolution, newCheckpoint);
+        }
+        start = end;
+      }
+      closedTs = newCheckpoint;
+    }
+  }
+
   @Override
   public Collection<MetricTimeSeries> query(MetricDataQuery query) {
     Collection<TimeSeries> cubeResult = cube.get().query(buildCubeQuery(query));
@@ -295,8 +351,31 @@ public class DefaultMetricStore implements MetricStore {
   @Override
   public void deleteTTLExpired() {
     long currentTime = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    long totalBytes = 0L;
     for (Map.Entry<Integer, Long> resolutionTTL : resolutionTTLMap.entrySet()) {
-      deleteMetricsBeforeTimestamp(currentTime - resolutionTTL.getValue(), resolutionTTL.getKey());
+      int resolution = resolutionTTL.getKey();
+      long expiredTs = currentTime - resolutionTTL.getValue();
+
+      // If a coarser resolution is rolled up from this one, only delete what has been rolled up already,
+      // so that expired metrics are kept in the coarser resolution instead of being lost
+      SortedSet<Integer> coarser = rollupResolutions.tailSet(resolution + 1);
+      if (!coarser.isEmpty()) {
+        Long checkpoint = metaTableSupplier.get().getRollupCheckpoint(coarser.first());
+        if (checkpoint == null) {
+          LOG.debug("Skip deleting expired metrics of resolution {} since resolution {} is not rolled up yet",
+                    resolution, coarser.first());
+          continue;
+        }
+        // The checkpoint is the start of the first interval that is not rolled up
+        expiredTs = Math.min(expiredTs, checkpoint - 1);
+      }
+
+      long bytes = deleteMetricsBeforeTimestamp(expiredTs, resolution);
+      LOG.debug("Deleted {} bytes of metrics of resolution {} up to {}", bytes, resolution, expiredTs);
+      totalBytes += bytes;
+    }
+    if (totalBytes > 0) {
+      LOG.info("Reclaimed {} bytes of expired metrics", totalBytes);
     }
   }
 
@@ -369,10 +448,13 @@ public class DefaultMetricStore implements MetricStore {
     return processMap;
   }
 
-  private void deleteMetricsBeforeTimestamp(long timestamp, int resolution) {
-    CubeDeleteQuery query = new CubeDeleteQuery(0, timestamp, resolution, Collections.emptyMap(),
-                                                Collections.emptySet(), strings -> true);
-    cube.get().delete(query);
+  /**
+   * Deletes the metrics of the given resolution up to and including the given timestamp.
+   *
+   * @return the approximate number of bytes deleted
+   */
+  private long deleteMetricsBeforeTimestamp(long timestamp, int resolution) {
+    return cube.get().deleteBefore(resolution, timestamp + 1);
   }
 
   private List<DimensionValue> toTagValues(List<co.cask.cdap.api.metrics.TagValue> input) {
@@ -18,20 +18,31 @@ package co.cask.cdap.logging.pipeline.queue;
 
 import com.google.common.collect.ImmutableSet;
 import org.junit.Assert;
+import org.junit.ClassRule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
 
 /**
  * Unit-test for {@link TimeEventQueue}.
  */
 public class TimeEventQueueTest {
 
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
   @Test
   public void testOrdering() {
     TimeEventQueue<TimestampedEvent, Integer> eventQueue = new TimeEventQueue<>(ImmutableSet.of(1, 3));
@@ -159,6 +170,145 @@ public class TimeEventQueueTest {
     iterator.remove();
   }
 
+  @Test
+  public void testDuplicateEvent() {
+    TimeEventQueue<String, Integer> eventQueue = new TimeEventQueue<>(Collections.singleton(1));
+    eventQueue.add("m1", 1L, 10, 1, 0);
+
+    // Adding the same event again is ignored
+    eventQueue.add("m1", 1L, 10, 1, 0);
+    Assert.assertEquals(1, eventQueue.size());
+    Assert.assertEquals(10, eventQueue.getEventSize());
+
+    // Adding a different event with the same offset fails
+    try {
+      eventQueue.add("m2", 2L, 10, 1, 0);
+      Assert.fail("Expected failure for adding an event with an existing offset");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    Assert.assertEquals(1, eventQueue.size());
+    Assert.assertEquals("m1", eventQueue.first());
+  }
+
+  @Test
+  public void testRandomOrder() {
+    // Compares the queue with a sorted map, with events removed both from the head and the middle of the queue
+    TimeEventQueue<String, Integer> eventQueue = new TimeEventQueue<>(ImmutableSet.of(0, 1, 2));
+    TreeMap<String, Integer> expected = new TreeMap<>();
+    Random random = new Random(0);
+    int offset = 0;
+
+    for (int round = 0; round < 50; round++) {
+      for (int i = 0; i < 100; i++) {
+        long timestamp = round * 10 + random.nextInt(100);
+        int partition = random.nextInt(3);
+        // Use the same ordering as the queue for the key of the expected events
+        String event = String.format("%08d-%d-%08d", timestamp, partition, offset);
+        eventQueue.add(event, timestamp, 1, partition, offset++);
+        expected.put(event, partition);
+      }
+
+      TimeEventQueue.EventIterator<String, Integer> iterator = eventQueue.iterator();
+      Iterator<String> expectedIterator = expected.keySet().iterator();
+      while (iterator.hasNext()) {
+        String event = iterator.next();
+        Assert.assertEquals(expectedIterator.next(), event);
+        Assert.assertEquals(expected.get(event).intValue(), iterator.getPartition());
+        if (random.nextInt(3) == 0) {
+          iterator.remove();
+          expectedIterator.remove();
+        }
+      }
+      Assert.assertFalse(expectedIterator.hasNext());
+      Assert.assertEquals(expected.size(), eventQueue.size());
+      Assert.assertEquals(expected.size(), eventQueue.getEventSize());
+
+      for (int partition = 0; partition < 3; partition++) {
+        Integer smallest = null;
+        for (String event : expected.keySet()) {
+          if (Integer.parseInt(event.substring(9, 10)) == partition) {
+            int eventOffset = Integer.parseInt(event.substring(11));
+            smallest = smallest == null ? eventOffset : Math.min(smallest, eventOffset);
+          }
+        }
+        Assert.assertEquals(smallest == null, eventQueue.isEmpty(partition));
+        if (smallest != null) {
+          Assert.assertEquals(smallest, eventQueue.getSmallestOffset(partition));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSpill() throws IOException {
+    File spillDir = TMP_FOLDER.newFolder();
+    try (TimeEventQueue<String, Integer> eventQueue =
+           new TimeEventQueue<>(Collections.singleton(1), 50, spillDir, new StringCodec())) {
+      // Insert 10 events with decreasing timestamps, only the first 5 fit in memory
+      for (int i = 0; i < 10; i++) {
+        eventQueue.add("m" + (10 - i), 10 - i, 10, 1, i);
+      }
+      Assert.assertEquals(100, eventQueue.getEventSize());
+      Assert.assertEquals(50, eventQueue.getSpilledEventSize());
+      Assert.assertEquals(1, spillDir.listFiles().length);
+
+      // Events are in time order, regardless of whether they are in memory or not
+      Assert.assertEquals("m1", eventQueue.first());
+      TimeEventQueue.EventIterator<String, Integer> iterator = eventQueue.iterator();
+      for (int i = 1; i <= 10; i++) {
+        Assert.assertEquals("m" + i, iterator.next());
+        Assert.assertEquals(10 - i, iterator.getOffset().intValue());
+        iterator.remove();
+      }
+      Assert.assertTrue(eventQueue.isEmpty());
+      Assert.assertEquals(0, eventQueue.getSpilledEventSize());
+
+      // Once events are removed, there is space in memory again
+      eventQueue.add("m11", 11, 10, 1, 10);
+      Assert.assertEquals(0, eventQueue.getSpilledEventSize());
+    }
+
+    // Files are deleted when the queue is closed
+    Assert.assertEquals(0, spillDir.listFiles().length);
+  }
+
+  @Test
+  public void testDeleteSpillFiles() throws IOException {
+    File spillDir = TMP_FOLDER.newFolder();
+    File otherFile = new File(spillDir, "other");
+    Assert.assertTrue(otherFile.createNewFile());
+
+    // A queue that is not closed leaves its files behind
+    TimeEventQueue<String, Integer> eventQueue =
+      new TimeEventQueue<>(Collections.singleton(1), 0, spillDir, new StringCodec());
+    eventQueue.add("m1", 1, 10, 1, 0);
+    Assert.assertEquals(2, spillDir.listFiles().length);
+
+    // Only the files of queues are deleted
+    TimeEventQueue.deleteSpillFiles(spillDir);
+    Assert.assertArrayEquals(new File[] { otherFile }, spillDir.listFiles());
+
+    // A missing spill directory has nothing to delete
+    TimeEventQueue.deleteSpillFiles(new File(spillDir, "missing"));
+  }
+
+  /**
+   * A {@link TimeEventQueue.EventCodec} for {@link String} events.
+   */
+  private static final class StringCodec implements TimeEventQueue.EventCodec<String> {
+
+    @Override
+    public byte[] encode(String event) {
+      return event.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String decode(ByteBuffer buffer) {
+      return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+  }
+
   private static final class TimestampedEvent {
     private final long timestamp;
     private final String message;
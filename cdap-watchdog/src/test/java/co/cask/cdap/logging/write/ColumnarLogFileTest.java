@@ -0,0 +1,245 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.write;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.logging.filter.AndFilter;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.filter.LogLevelExpression;
+import co.cask.cdap.logging.filter.MdcExpression;
+import co.cask.cdap.logging.read.LogEvent;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for writing and reading log files in the {@link ColumnarLogFormat}.
+ */
+public class ColumnarLogFileTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  private static LocalLocationFactory locationFactory;
+
+  @BeforeClass
+  public static void init() throws IOException {
+    locationFactory = new LocalLocationFactory(TMP_FOLDER.newFolder());
+  }
+
+  @Test
+  public void testReadLog() throws IOException {
+    // Small blocks, so that events are spread over multiple blocks
+    Location location = writeEvents("testReadLog.clog", 1000, 0, 256);
+
+    // Read all events
+    List<LogEvent> events = readLog(location, Filter.EMPTY_FILTER, 0, Long.MAX_VALUE, Integer.MAX_VALUE);
+    Assert.assertEquals(1000, events.size());
+    for (int i = 0; i < events.size(); i++) {
+      assertEvent(i, events.get(i).getLoggingEvent());
+      Assert.assertEquals(1000L + i, events.get(i).getOffset().getTime());
+    }
+
+    // Read a time range
+    events = readLog(location, Filter.EMPTY_FILTER, 1100, 1200, Integer.MAX_VALUE);
+    Assert.assertEquals(100, events.size());
+    Assert.assertEquals(1100L, events.get(0).getLoggingEvent().getTimeStamp());
+    Assert.assertEquals(1199L, events.get(99).getLoggingEvent().getTimeStamp());
+
+    // Read with max events
+    events = readLog(location, Filter.EMPTY_FILTER, 1500, Long.MAX_VALUE, 10);
+    Assert.assertEquals(10, events.size());
+    Assert.assertEquals(1509L, events.get(9).getLoggingEvent().getTimeStamp());
+
+    // Filter by level and MDC
+    Filter filter = new AndFilter(ImmutableList.of(new LogLevelExpression("WARN"), new MdcExpression("id", "3")));
+    events = readLog(location, filter, 0, Long.MAX_VALUE, Integer.MAX_VALUE);
+    for (LogEvent event : events) {
+      ILoggingEvent loggingEvent = event.getLoggingEvent();
+      Assert.assertTrue(loggingEvent.getLevel().isGreaterOrEqual(Level.WARN));
+      Assert.assertEquals("3", loggingEvent.getMDCPropertyMap().get("id"));
+      assertEvent((int) (loggingEvent.getTimeStamp() - 1000), loggingEvent);
+    }
+    // Every 10th event has id 3, and every second of those is an ERROR
+    Assert.assertEquals(50, events.size());
+  }
+
+  @Test
+  public void testReadLogPrev() throws IOException {
+    Location location = writeEvents("testReadLogPrev.clog", 1000, 0, 256);
+
+    List<LogEvent> events = new ArrayList<>(new LogLocation(LogLocation.VERSION_1, 1000, 0, location, "default", null)
+                                              .readLogPrev(Filter.EMPTY_FILTER, 1499, 100));
+    Assert.assertEquals(100, events.size());
+    for (int i = 0; i < events.size(); i++) {
+      assertEvent(400 + i, events.get(i).getLoggingEvent());
+    }
+
+    Filter filter = new MdcExpression("id", "5");
+    events = new ArrayList<>(new LogLocation(LogLocation.VERSION_1, 1000, 0, location, "default", null)
+                               .readLogPrev(filter, Long.MAX_VALUE, 1000));
+    Assert.assertEquals(100, events.size());
+    for (int i = 0; i < events.size(); i++) {
+      assertEvent(i * 10 + 5, events.get(i).getLoggingEvent());
+    }
+  }
+
+  @Test
+  public void testIncompleteBlock() throws IOException {
+    Location location = locationFactory.create("testIncompleteBlock.clog");
+    try (OutputStream os = location.getOutputStream()) {
+      ColumnarLogFileWriter writer = new ColumnarLogFileWriter(os, 1024 * 1024);
+      for (int i = 0; i < 10; i++) {
+        writer.append(createEvent(i));
+      }
+      writer.sync();
+      for (int i = 10; i < 20; i++) {
+        writer.append(createEvent(i));
+      }
+      // Only flush the events appended before the sync
+      os.flush();
+
+      List<LogEvent> events = readLog(location, Filter.EMPTY_FILTER, 0, Long.MAX_VALUE, Integer.MAX_VALUE);
+      Assert.assertEquals(10, events.size());
+
+      writer.close();
+    }
+
+    List<LogEvent> events = readLog(location, Filter.EMPTY_FILTER, 0, Long.MAX_VALUE, Integer.MAX_VALUE);
+    Assert.assertEquals(20, events.size());
+    for (int i = 0; i < events.size(); i++) {
+      assertEvent(i, events.get(i).getLoggingEvent());
+    }
+  }
+
+  @Test
+  public void testNullLevel() throws IOException {
+    Location location = locationFactory.create("testNullLevel.clog");
+    try (ColumnarLogFileWriter writer = new ColumnarLogFileWriter(location.getOutputStream(), 1024)) {
+      writer.append(createEvent(0));
+      LoggingEvent event = new LoggingEvent(getClass().getName(), (Logger) LoggerFactory.getLogger("logger1"), null,
+                                            "message {}", null, new Object[] { 1 });
+      event.setTimeStamp(1001L);
+      event.setMDCPropertyMap(ImmutableMap.of("id", "1", "index", "1"));
+      writer.append(event);
+    }
+
+    // The missing level is read back as such, also after the event is prepared for deferred processing
+    List<LogEvent> events = readLog(location, Filter.EMPTY_FILTER, 0, Long.MAX_VALUE, Integer.MAX_VALUE);
+    Assert.assertEquals(2, events.size());
+    Assert.assertEquals(Level.INFO, events.get(0).getLoggingEvent().getLevel());
+    ILoggingEvent loggingEvent = events.get(1).getLoggingEvent();
+    Assert.assertNull(loggingEvent.getLevel());
+    loggingEvent.prepareForDeferredProcessing();
+    Assert.assertNull(loggingEvent.getLevel());
+    Assert.assertEquals("message 1", loggingEvent.getFormattedMessage());
+
+    // An event without a level doesn't match a level filter
+    events = readLog(location, new LogLevelExpression("DEBUG"), 0, Long.MAX_VALUE, Integer.MAX_VALUE);
+    Assert.assertEquals(1, events.size());
+    assertEvent(0, events.get(0).getLoggingEvent());
+  }
+
+  @Test
+  public void testFormatVersion() throws IOException {
+    Location location = writeEvents("testFormatVersion.clog", 100, 0, 1024);
+    List<LogEvent> events = readLog(location, Filter.EMPTY_FILTER, 0, Long.MAX_VALUE, Integer.MAX_VALUE);
+    Assert.assertEquals(100, events.size());
+    for (int i = 0; i < events.size(); i++) {
+      assertEvent(i, events.get(i).getLoggingEvent());
+    }
+
+    // A file of an unknown format version is not read
+    byte[] content = ByteStreams.toByteArray(Locations.newInputSupplier(location));
+    int metadataSize = Ints.fromByteArray(Arrays.copyOfRange(content, 4, 8));
+    int versionPos = 8 + metadataSize - 1;
+    Assert.assertEquals('0' + ColumnarLogFormat.VERSION, content[versionPos]);
+    content[versionPos]++;
+    Location newVersionLocation = locationFactory.create("testNewVersion.clog");
+    try (OutputStream os = newVersionLocation.getOutputStream()) {
+      os.write(content);
+    }
+    try {
+      new ColumnarLogFileReader(Locations.newInputSupplier(newVersionLocation).getInput(), content.length).close();
+      Assert.fail("Expected failure for unsupported format version");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  private Location writeEvents(String name, int count, int start, int blockSize) throws IOException {
+    Location location = locationFactory.create(name);
+    try (ColumnarLogFileWriter writer = new ColumnarLogFileWriter(location.getOutputStream(), blockSize)) {
+      for (int i = start; i < start + count; i++) {
+        writer.append(createEvent(i));
+      }
+    }
+    return location;
+  }
+
+  private List<LogEvent> readLog(Location location, Filter filter,
+                                 long fromTimeMs, long toTimeMs, int maxEvents) throws IOException {
+    List<LogEvent> events = new ArrayList<>();
+    LogLocation logLocation = new LogLocation(LogLocation.VERSION_1, fromTimeMs, 0, location, "default", null);
+    try (CloseableIterator<LogEvent> iterator = logLocation.readLog(filter, fromTimeMs, toTimeMs, maxEvents)) {
+      while (iterator.hasNext()) {
+        events.add(iterator.next());
+      }
+    }
+    return events;
+  }
+
+  private ILoggingEvent createEvent(int i) {
+    Logger logger = (Logger) LoggerFactory.getLogger("logger" + (i % 3));
+    Level level = i % 20 < 10 ? Level.INFO : Level.ERROR;
+    LoggingEvent event = new LoggingEvent(getClass().getName(), logger, level, "message {}", null, new Object[] { i });
+    event.setTimeStamp(1000L + i);
+    event.setMDCPropertyMap(ImmutableMap.of("id", String.valueOf(i % 10), "index", String.valueOf(i)));
+    return event;
+  }
+
+  private void assertEvent(int i, ILoggingEvent event) {
+    Assert.assertEquals(1000L + i, event.getTimeStamp());
+    Assert.assertEquals("logger" + (i % 3), event.getLoggerName());
+    Assert.assertEquals(i % 20 < 10 ? Level.INFO : Level.ERROR, event.getLevel());
+    Assert.assertEquals(Thread.currentThread().getName(), event.getThreadName());
+    Assert.assertEquals("message {}", event.getMessage());
+    Assert.assertEquals("message " + i, event.getFormattedMessage());
+    Assert.assertEquals(String.valueOf(i), event.getMDCPropertyMap().get("index"));
+    Assert.assertEquals(String.valueOf(i % 10), event.getMDCPropertyMap().get("id"));
+  }
+}
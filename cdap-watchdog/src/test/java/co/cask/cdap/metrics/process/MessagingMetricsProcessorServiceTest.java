@@ -33,7 +33,6 @@ import co.cask.cdap.common.utils.Tasks;
 import co.cask.cdap.data2.datafabric.dataset.service.DatasetService;
 import co.cask.cdap.data2.datafabric.dataset.service.executor.DatasetOpExecutor;
 import co.cask.cdap.data2.datafabric.dataset.service.executor.DatasetOpExecutorService;
-import co.cask.cdap.internal.io.DatumReaderFactory;
 import co.cask.cdap.internal.io.SchemaGenerator;
 import co.cask.cdap.metrics.store.MetricDatasetFactory;
 import co.cask.cdap.spi.data.StructuredTableAdmin;
@@ -89,8 +88,7 @@ public class MessagingMetricsProcessorServiceTest extends MetricsProcessorServic
       // again after it's stopped
       MessagingMetricsProcessorService messagingMetricsProcessorService =
         new MessagingMetricsProcessorService(cConf, injector.getInstance(MetricDatasetFactory.class), messagingService,
-                                             injector.getInstance(SchemaGenerator.class),
-                                             injector.getInstance(DatumReaderFactory.class), metricStore,
+                                             injector.getInstance(SchemaGenerator.class), metricStore,
                                              partitions, new NoopMetricsContext(), 50, 0);
       messagingMetricsProcessorService.startAndWait();
 
@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.process;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.api.metrics.MetricValue;
+import co.cask.cdap.api.metrics.MetricValues;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.internal.io.ReflectionDatumWriter;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link MetricValuesDecoder} and {@link MetricsBatch}.
+ */
+public class MetricValuesDecoderTest {
+
+  private static final Map<String, String> TAGS1 = ImmutableMap.of("namespace", "ns1", "app", "app1");
+  private static final Map<String, String> TAGS2 = ImmutableMap.of("namespace", "ns2");
+
+  @Test
+  public void testDecode() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(MetricValues.class);
+    ReflectionDatumWriter<MetricValues> writer = new ReflectionDatumWriter<>(schema);
+    MetricValuesDecoder decoder = new MetricValuesDecoder(schema);
+
+    MetricsBatch batch = new MetricsBatch();
+    Assert.assertEquals(10L, decoder.decode(encode(writer, new MetricValues(TAGS1, 10L, ImmutableList.of(
+      new MetricValue("count", MetricType.COUNTER, 1L),
+      new MetricValue("size", MetricType.GAUGE, 5L)))), batch));
+    Assert.assertEquals(10L, decoder.decode(encode(writer, new MetricValues(TAGS1, "count", 10L, 2L,
+                                                                             MetricType.COUNTER)), batch));
+    Assert.assertEquals(10L, decoder.decode(encode(writer, new MetricValues(TAGS1, "size", 10L, 3L,
+                                                                             MetricType.GAUGE)), batch));
+    Assert.assertEquals(11L, decoder.decode(encode(writer, new MetricValues(TAGS2, "count", 11L, 4L,
+                                                                             MetricType.COUNTER)), batch));
+
+    // A message that fails to decode is not added
+    byte[] truncated = encode(writer, new MetricValues(TAGS2, "count", 12L, 5L, MetricType.COUNTER));
+    try {
+      decoder.decode(Arrays.copyOf(truncated, truncated.length - 1), batch);
+      Assert.fail("Expected IOException");
+    } catch (IOException e) {
+      // Expected
+    }
+
+    Assert.assertEquals(4, batch.getMessageCount());
+    Assert.assertEquals(5, batch.size());
+    Assert.assertEquals(11L, batch.getLastTimestamp());
+
+    // Counters are summed and only the last gauge is kept for the same tags and timestamp
+    List<MetricValues> metricValues = MetricsBatch.toMetricValues(Collections.singletonList(batch));
+    Assert.assertEquals(2, metricValues.size());
+    assertMetricValues(TAGS1, 10L, ImmutableMap.of("count", 3L, "size", 3L), metricValues.get(0));
+    assertMetricValues(TAGS2, 11L, ImmutableMap.of("count", 4L), metricValues.get(1));
+  }
+
+  @Test
+  public void testInterning() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(MetricValues.class);
+    ReflectionDatumWriter<MetricValues> writer = new ReflectionDatumWriter<>(schema);
+    MetricValuesDecoder decoder = new MetricValuesDecoder(schema);
+
+    MetricsBatch batch1 = new MetricsBatch();
+    MetricsBatch batch2 = new MetricsBatch();
+    for (int i = 0; i < 100; i++) {
+      decoder.decode(encode(writer, new MetricValues(TAGS1, "count", 10L + i, 1L, MetricType.COUNTER)), batch1);
+      decoder.decode(encode(writer, new MetricValues(TAGS1, "count", 10L + i, 1L, MetricType.COUNTER)), batch2);
+    }
+
+    // The same tags and names are shared across messages and batches
+    List<MetricValues> metricValues = MetricsBatch.toMetricValues(Arrays.asList(batch1, batch2));
+    Assert.assertEquals(100, metricValues.size());
+    for (int i = 0; i < 100; i++) {
+      MetricValues values = metricValues.get(i);
+      Assert.assertSame(metricValues.get(0).getTags(), values.getTags());
+      Assert.assertSame(metricValues.get(0).getMetrics().iterator().next().getName(),
+                        values.getMetrics().iterator().next().getName());
+      assertMetricValues(TAGS1, 10L + i, ImmutableMap.of("count", 2L), values);
+    }
+  }
+
+  private void assertMetricValues(Map<String, String> tags, long timestamp,
+                                  Map<String, Long> metrics, MetricValues metricValues) {
+    Assert.assertEquals(tags, metricValues.getTags());
+    Assert.assertEquals(timestamp, metricValues.getTimestamp());
+    Assert.assertEquals(metrics.size(), metricValues.getMetrics().size());
+    for (MetricValue metricValue : metricValues.getMetrics()) {
+      Assert.assertEquals(metrics.get(metricValue.getName()), Long.valueOf(metricValue.getValue()));
+    }
+  }
+
+  private byte[] encode(ReflectionDatumWriter<MetricValues> writer, MetricValues metricValues) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    writer.encode(metricValues, new BinaryEncoder(os));
+    return os.toByteArray();
+  }
+}
@@ -27,7 +27,6 @@ import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.utils.Tasks;
 import co.cask.cdap.data2.datafabric.dataset.service.DatasetService;
 import co.cask.cdap.data2.datafabric.dataset.service.executor.DatasetOpExecutorService;
-import co.cask.cdap.internal.io.DatumReaderFactory;
 import co.cask.cdap.internal.io.SchemaGenerator;
 import co.cask.cdap.metrics.store.MetricDatasetFactory;
 import co.cask.cdap.spi.data.StructuredTableAdmin;
@@ -81,8 +80,7 @@ public class MetricsProcessorServiceTest extends MetricsProcessorServiceTestBase
     MessagingMetricsProcessorService messagingMetricsProcessorService =
       new MessagingMetricsProcessorService(cConf, injector.getInstance(MetricDatasetFactory.class),
                                            messagingService, injector.getInstance(SchemaGenerator.class),
-                                           injector.getInstance(DatumReaderFactory.class), metricStore,
-                                           partitions, new NoopMetricsContext(), 50, 0);
+                                           metricStore, partitions, new NoopMetricsContext(), 50, 0);
     messagingMetricsProcessorService.startAndWait();
 
     long startTime = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
@@ -99,8 +97,7 @@ public class MetricsProcessorServiceTest extends MetricsProcessorServiceTestBase
     messagingMetricsProcessorService =
       new MessagingMetricsProcessorService(cConf, injector.getInstance(MetricDatasetFactory.class),
                                            messagingService, injector.getInstance(SchemaGenerator.class),
-                                           injector.getInstance(DatumReaderFactory.class), metricStore,
-                                           partitions, new NoopMetricsContext(), 50, 0);
+                                           metricStore, partitions, new NoopMetricsContext(), 50, 0);
     messagingMetricsProcessorService.startAndWait();
 
     // Publish metrics after MessagingMetricsProcessorService restarts and record expected metrics
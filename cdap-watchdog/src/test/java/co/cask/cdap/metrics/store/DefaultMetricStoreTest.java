@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.store;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.metrics.MetricDataQuery;
+import co.cask.cdap.api.metrics.MetricTimeSeries;
+import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.api.metrics.MetricValues;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.guice.IOModule;
+import co.cask.cdap.common.guice.NamespaceAdminTestModule;
+import co.cask.cdap.common.guice.NonCustomLocationUnitTestModule;
+import co.cask.cdap.data.runtime.DataFabricModules;
+import co.cask.cdap.data.runtime.DataSetServiceModules;
+import co.cask.cdap.data.runtime.DataSetsModules;
+import co.cask.cdap.data2.datafabric.dataset.service.DatasetService;
+import co.cask.cdap.data2.datafabric.dataset.service.executor.DatasetOpExecutorService;
+import co.cask.cdap.data2.metadata.writer.MetadataPublisher;
+import co.cask.cdap.data2.metadata.writer.NoOpMetadataPublisher;
+import co.cask.cdap.explore.guice.ExploreClientModule;
+import co.cask.cdap.metrics.MetricsTestBase;
+import co.cask.cdap.metrics.guice.MetricsStoreModule;
+import co.cask.cdap.metrics.process.MetricsConsumerMetaTable;
+import co.cask.cdap.security.auth.context.AuthenticationContextModules;
+import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
+import co.cask.cdap.security.authorization.AuthorizationTestModule;
+import co.cask.cdap.security.impersonation.NoOpOwnerAdmin;
+import co.cask.cdap.security.impersonation.OwnerAdmin;
+import co.cask.cdap.security.impersonation.UGIProvider;
+import co.cask.cdap.security.impersonation.UnsupportedUGIProvider;
+import co.cask.cdap.spi.data.StructuredTableAdmin;
+import co.cask.cdap.spi.data.table.StructuredTableRegistry;
+import co.cask.cdap.store.StoreDefinition;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+import com.google.inject.util.Modules;
+import org.apache.tephra.TransactionManager;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the rollup of {@link DefaultMetricStore}.
+ */
+public class DefaultMetricStoreTest extends MetricsTestBase {
+
+  private static final String METRIC_NAME = "counter";
+  private static final Map<String, String> TAGS = ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, "ns1");
+
+  @Test
+  public void testRollup() throws Exception {
+    injector.getInstance(TransactionManager.class).startAndWait();
+    StructuredTableRegistry structuredTableRegistry = injector.getInstance(StructuredTableRegistry.class);
+    structuredTableRegistry.initialize();
+    StoreDefinition.createAllTables(injector.getInstance(StructuredTableAdmin.class), structuredTableRegistry);
+    injector.getInstance(DatasetOpExecutorService.class).startAndWait();
+    injector.getInstance(DatasetService.class).startAndWait();
+
+    // Keep the minimum resolution metrics of the last hours, which the rollup reads from
+    cConf.setInt(Constants.Metrics.METRICS_MINIMUM_RESOLUTION_SECONDS, 1);
+    cConf.setLong(Constants.Metrics.MINIMUM_RESOLUTION_RETENTION_SECONDS, TimeUnit.DAYS.toSeconds(1));
+    cConf.setInt(Constants.Metrics.ROLLUP_INTERVAL_SECONDS, 30);
+    cConf.setLong(Constants.Metrics.ROLLUP_DELAY_SECONDS, 0L);
+    MetricDatasetFactory dsFactory = injector.getInstance(MetricDatasetFactory.class);
+    DefaultMetricStore metricStore = new DefaultMetricStore(dsFactory, cConf);
+    metricStore.setMetricsContext(new NoopMetricsContext());
+    MetricsConsumerMetaTable metaTable = dsFactory.createConsumerMeta();
+
+    // Start of the previous hour, such that all the intervals below are in the past
+    long hour = (TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) / 3600 - 1) * 3600;
+
+    // Only the minimum resolution is written when metrics are added
+    addMetric(metricStore, hour + 5, 1L);
+    Assert.assertEquals(1L, getValue(metricStore, hour, 1, hour + 5));
+    Assert.assertEquals(0L, getValue(metricStore, hour, 60, hour));
+
+    // Rollup with metrics processed until the second interval. Only the first interval is closed, even though
+    // the current time is much later.
+    metricStore.rollup(hour + 70);
+    Assert.assertEquals(1L, getValue(metricStore, hour, 60, hour));
+    Assert.assertEquals(Long.valueOf(hour + 60), metaTable.getRollupCheckpoint(60));
+    Assert.assertEquals(Long.valueOf(hour), metaTable.getRollupCheckpoint(3600));
+
+    // Late metrics of an interval that is not closed are included by the next rollup
+    addMetric(metricStore, hour + 65, 2L);
+    metricStore.rollup(hour + 70);
+    Assert.assertEquals(Long.valueOf(hour + 60), metaTable.getRollupCheckpoint(60));
+    Assert.assertEquals(2L, getValue(metricStore, hour, 60, hour + 60));
+
+    // Once all metrics are processed, the checkpoints move to the last closed intervals
+    long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    metricStore.rollup(now);
+    Assert.assertTrue(metaTable.getRollupCheckpoint(60) >= now / 60 * 60);
+    Assert.assertTrue(metaTable.getRollupCheckpoint(3600) >= hour + 3600);
+    Assert.assertEquals(3L, getValue(metricStore, hour, 3600, hour));
+
+    // Metrics of closed intervals are not rolled up again
+    addMetric(metricStore, hour + 10, 4L);
+    metricStore.rollup(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+    Assert.assertEquals(5L, getValue(metricStore, hour, 1, hour + 5) + getValue(metricStore, hour, 1, hour + 10));
+    Assert.assertEquals(1L, getValue(metricStore, hour, 60, hour));
+    Assert.assertEquals(3L, getValue(metricStore, hour, 3600, hour));
+
+    metricStore.deleteAll();
+  }
+
+  private void addMetric(DefaultMetricStore metricStore, long timestamp, long value) {
+    metricStore.add(new MetricValues(TAGS, METRIC_NAME, timestamp, value, MetricType.COUNTER));
+  }
+
+  /**
+   * Returns the value of the metric at the given timestamp in the given resolution, or {@code 0} if there is none.
+   */
+  private long getValue(DefaultMetricStore metricStore, long hour, int resolution, long timestamp) {
+    Collection<MetricTimeSeries> result = metricStore.query(
+      new MetricDataQuery(hour, hour + 3599, resolution, "system." + METRIC_NAME, AggregationFunction.SUM,
+                          TAGS, Collections.emptyList()));
+    if (result.isEmpty()) {
+      return 0L;
+    }
+    for (TimeValue timeValue : Iterables.getOnlyElement(result).getTimeValues()) {
+      if (timeValue.getTimestamp() == timestamp) {
+        return timeValue.getValue();
+      }
+    }
+    return 0L;
+  }
+
+  @Override
+  protected List<Module> getAdditionalModules() {
+    List<Module> list = new ArrayList<>();
+    list.add(new DataSetsModules().getStandaloneModules());
+    list.add(new IOModule());
+    list.add(Modules.override(
+      new NonCustomLocationUnitTestModule(),
+      new DataFabricModules().getInMemoryModules(),
+      new DataSetServiceModules().getInMemoryModules(),
+      new ExploreClientModule(),
+      new NamespaceAdminTestModule(),
+      new MetricsStoreModule(),
+      new AuthorizationTestModule(),
+      new AuthorizationEnforcementModule().getInMemoryModules(),
+      new AuthenticationContextModules().getMasterModule()
+    ).with(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(UGIProvider.class).to(UnsupportedUGIProvider.class);
+        bind(OwnerAdmin.class).to(NoOpOwnerAdmin.class);
+        bind(MetadataPublisher.class).to(NoOpMetadataPublisher.class);
+      }
+    }));
+    return list;
+  }
+}